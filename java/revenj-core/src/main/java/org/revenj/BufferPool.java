@@ -0,0 +1,176 @@
+package org.revenj;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded pool of reusable buffers (or objects which wrap growable buffers).
+ * Unlike thread local buffers, retained memory doesn't depend on the number of threads,
+ * which is important when requests are processed on a large number of short lived (or virtual) threads.
+ * <p>
+ * Buffers are kept in size classes (each class is four times larger than the previous one),
+ * so a request for a large buffer doesn't take a small one and small requests don't hold on to large buffers.
+ * Each class retains a limited number of buffers and buffers which grew beyond max retained capacity
+ * are dropped on release, so a single oversized response doesn't keep a huge buffer alive.
+ * <p>
+ * Acquired buffer is exclusively owned by the caller until it's released.
+ * Buffer must not be used after it was released.
+ *
+ * @param <T> buffer type
+ */
+public final class BufferPool<T> {
+
+	private static final int MIN_CLASS_SIZE = 4096;
+
+	private final IntFunction<T> factory;
+	private final ToIntFunction<T> capacity;
+	private final int maxRetainedCapacity;
+	private final int maxPerClass;
+	private final int[] classSizes;
+	private final ConcurrentLinkedDeque<T>[] classes;
+	private final AtomicInteger[] counts;
+	private final LongAdder reused = new LongAdder();
+	private final LongAdder created = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	/**
+	 * Create a new pool.
+	 *
+	 * @param factory             creates a new buffer with at least requested capacity
+	 * @param capacity            current capacity of the buffer
+	 * @param maxRetainedCapacity buffers larger than this will not be returned to the pool
+	 * @param maxPerClass         maximum number of retained buffers in each size class
+	 */
+	@SuppressWarnings("unchecked")
+	public BufferPool(
+			IntFunction<T> factory,
+			ToIntFunction<T> capacity,
+			int maxRetainedCapacity,
+			int maxPerClass) {
+		if (factory == null) throw new IllegalArgumentException("factory can't be null");
+		if (capacity == null) throw new IllegalArgumentException("capacity can't be null");
+		if (maxRetainedCapacity < 0) throw new IllegalArgumentException("maxRetainedCapacity can't be negative");
+		if (maxPerClass < 0) throw new IllegalArgumentException("maxPerClass can't be negative");
+		this.factory = factory;
+		this.capacity = capacity;
+		this.maxRetainedCapacity = maxRetainedCapacity;
+		this.maxPerClass = maxPerClass;
+		int total = 1;
+		for (long size = MIN_CLASS_SIZE; size * 4 <= maxRetainedCapacity; size *= 4) {
+			total++;
+		}
+		this.classSizes = new int[total];
+		this.classes = new ConcurrentLinkedDeque[total];
+		this.counts = new AtomicInteger[total];
+		for (int i = 0; i < total; i++) {
+			classSizes[i] = i == 0 ? 0 : MIN_CLASS_SIZE << (2 * i);
+			classes[i] = new ConcurrentLinkedDeque<>();
+			counts[i] = new AtomicInteger();
+		}
+	}
+
+	/**
+	 * Default number of buffers retained in each size class.
+	 * It's proportional to the number of processors, since that's the number of buffers
+	 * which can be in active use at the same time, regardless of the number of threads.
+	 *
+	 * @return default number of retained buffers per size class
+	 */
+	public static int defaultMaxPerClass() {
+		return Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Acquire a buffer from the pool or create a new one if there are no pooled buffers.
+	 *
+	 * @return buffer exclusively owned by the caller
+	 */
+	public T acquire() {
+		return acquire(0);
+	}
+
+	/**
+	 * Acquire a buffer with at least requested capacity from the pool
+	 * or create a new one if there are no suitable pooled buffers.
+	 *
+	 * @param minCapacity minimum buffer capacity
+	 * @return buffer exclusively owned by the caller
+	 */
+	public T acquire(int minCapacity) {
+		for (int i = classFor(minCapacity); i < classes.length; i++) {
+			T buffer = classes[i].pollFirst();
+			if (buffer != null) {
+				counts[i].decrementAndGet();
+				if (capacity.applyAsInt(buffer) >= minCapacity) {
+					reused.increment();
+					return buffer;
+				}
+				release(buffer);
+			}
+		}
+		created.increment();
+		return factory.apply(minCapacity);
+	}
+
+	/**
+	 * Return the buffer to the pool.
+	 * Buffer will be dropped if it's too large or if there are already enough pooled buffers of that size.
+	 *
+	 * @param buffer buffer which is not used anymore
+	 */
+	public void release(T buffer) {
+		if (buffer == null) {
+			return;
+		}
+		int size = capacity.applyAsInt(buffer);
+		if (size > maxRetainedCapacity) {
+			dropped.increment();
+			return;
+		}
+		int index = classFor(size);
+		if (index > 0 && classSizes[index] > size) {
+			index--;
+		}
+		if (counts[index].incrementAndGet() > maxPerClass) {
+			counts[index].decrementAndGet();
+			dropped.increment();
+			return;
+		}
+		classes[index].offerFirst(buffer);
+	}
+
+	private int classFor(int size) {
+		int index = 0;
+		while (index + 1 < classSizes.length && classSizes[index] < size) {
+			index++;
+		}
+		return index;
+	}
+
+	public int getMaxRetainedCapacity() {
+		return maxRetainedCapacity;
+	}
+
+	public int getRetained() {
+		int total = 0;
+		for (AtomicInteger c : counts) {
+			total += c.get();
+		}
+		return total;
+	}
+
+	public long getReused() {
+		return reused.sum();
+	}
+
+	public long getCreated() {
+		return created.sum();
+	}
+
+	public long getDropped() {
+		return dropped.sum();
+	}
+}
@@ -8,96 +8,361 @@ import javax.sql.DataSource;
 import java.io.Closeable;
 import java.io.IOException;
 import java.sql.Connection;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Background store for queued domain events.
+ * Events are kept in a separate queue for each event type, so interleaved types don't break up batches.
+ * A type is processed by at most one writer at a time, which keeps events of the same type in order,
+ * while different types are written in parallel by a small pool of writers, each with its own connection.
+ * Total number of queued events is bounded; when the limit is reached, queue will wait for space
+ * up to the configured timeout and then fail.
+ * Writers wait for the earliest batch deadline instead of polling, so a lingering type doesn't hold back other types.
+ * After close new events are rejected, while already queued events are written before close returns.
+ * <p>
+ * Store is configured through properties:
+ * <ul>
+ * <li>revenj.eventStore.batchSize - maximum number of events submitted at once (default 1000)</li>
+ * <li>revenj.eventStore.linger - how long to wait in milliseconds for a batch to fill up (default 0)</li>
+ * <li>revenj.eventStore.queueSize - maximum number of queued events (default 100000)</li>
+ * <li>revenj.eventStore.queueTimeout - how long to wait in milliseconds for space in a full queue, 0 waits indefinitely (default 30000)</li>
+ * <li>revenj.eventStore.writers - number of writer threads (default 2)</li>
+ * <li>revenj.eventStore.retries - how many times a failed batch is retried before its events are dropped (default 2)</li>
+ * <li>revenj.eventStore.retryDelay - delay in milliseconds before the first retry, doubled for each next one (default 100)</li>
+ * </ul>
+ */
 class GlobalEventStore implements Closeable {
 
+	private static final Logger LOGGER = Logger.getLogger(GlobalEventStore.class.getName());
+	private static final long MAX_RETRY_DELAY = 30000;
+
 	private final Container container;
 	private final DataSource dataSource;
-	private Connection connection;
-	private final ConcurrentMap<Class<?>, DomainEventStore> eventStores = new ConcurrentHashMap<>();
-	private final BlockingQueue<DomainEvent> eventQueue = new LinkedBlockingDeque<>();
-	private final Thread loop;
-	private boolean isClosed;
+	private final int batchSize;
+	private final long linger;
+	private final long queueTimeout;
+	private final int retries;
+	private final long retryDelay;
+	private final Semaphore capacity;
+	private final ConcurrentMap<Class<?>, TypeQueue> queues = new ConcurrentHashMap<>();
+	//types waiting for a writer, in the order they were scheduled
+	private final ArrayDeque<TypeQueue> ready = new ArrayDeque<>();
+	private final ReentrantLock readyLock = new ReentrantLock();
+	private final Condition readyChanged = readyLock.newCondition();
+	//queuing holds the read lock, so close can't happen between accepting and scheduling an event
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+	private final AtomicLong queued = new AtomicLong();
+	private final AtomicLong flushed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final List<Thread> writers = new ArrayList<>();
+	private volatile boolean isClosed;
+
+	private static final class TypeQueue {
+		final Class<?> manifest;
+		final ConcurrentLinkedQueue<DomainEvent> events = new ConcurrentLinkedQueue<>();
+		final AtomicInteger size = new AtomicInteger();
+		final AtomicBoolean scheduled = new AtomicBoolean();
+		volatile long scheduledAt;
+
+		TypeQueue(Class<?> manifest) {
+			this.manifest = manifest;
+		}
+	}
 
 	public GlobalEventStore(Container container, DataSource dataSource) {
 		this.container = container;
 		this.dataSource = dataSource;
-		setupConnection();
-		loop = new Thread(new WaitForEvents());
-		loop.setDaemon(true);
-		loop.start();
+		Properties properties = container.tryResolve(Properties.class).orElse(new Properties());
+		this.batchSize = parse(properties, "revenj.eventStore.batchSize", 1000);
+		this.linger = parse(properties, "revenj.eventStore.linger", 0);
+		this.capacity = new Semaphore(Math.max(1, parse(properties, "revenj.eventStore.queueSize", 100000)));
+		this.queueTimeout = parse(properties, "revenj.eventStore.queueTimeout", 30000);
+		this.retries = parse(properties, "revenj.eventStore.retries", 2);
+		this.retryDelay = parse(properties, "revenj.eventStore.retryDelay", 100);
+		int writerCount = Math.max(1, parse(properties, "revenj.eventStore.writers", 2));
+		for (int i = 0; i < writerCount; i++) {
+			Thread loop = new Thread(new WaitForEvents(), "Revenj event store " + (i + 1));
+			loop.setDaemon(true);
+			loop.start();
+			writers.add(loop);
+		}
+	}
+
+	private static int parse(Properties properties, String name, int defaultValue) {
+		String value = properties.getProperty(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			int result = Integer.parseInt(value);
+			if (result < 0) {
+				throw new NumberFormatException();
+			}
+			return result;
+		} catch (NumberFormatException e) {
+			throw new RuntimeException("Error parsing " + name + " setting. Expecting non negative integer. Found: " + value);
+		}
 	}
 
 	<TEvent extends DomainEvent> void queue(TEvent domainEvent) {
-		eventQueue.add(domainEvent);
+		if (isClosed) {
+			throw new IllegalStateException("Event store has been closed. Unable to queue " + domainEvent.getClass());
+		}
+		try {
+			if (queueTimeout == 0) {
+				capacity.acquire();
+			} else if (!capacity.tryAcquire(queueTimeout, TimeUnit.MILLISECONDS)) {
+				throw new RuntimeException("Event queue is full. Unable to queue " + domainEvent.getClass() + " within " + queueTimeout + "ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting to queue event", e);
+		}
+		closeLock.readLock().lock();
+		try {
+			if (isClosed) {
+				capacity.release();
+				throw new IllegalStateException("Event store has been closed. Unable to queue " + domainEvent.getClass());
+			}
+			TypeQueue tq = queues.computeIfAbsent(domainEvent.getClass(), TypeQueue::new);
+			tq.events.add(domainEvent);
+			queued.incrementAndGet();
+			if (tq.size.incrementAndGet() == batchSize && linger > 0) {
+				//wake up writer waiting for this batch to fill up
+				signal();
+			}
+			schedule(tq);
+		} finally {
+			closeLock.readLock().unlock();
+		}
+	}
+
+	private void schedule(TypeQueue tq) {
+		if (tq.scheduled.compareAndSet(false, true)) {
+			readyLock.lock();
+			try {
+				tq.scheduledAt = System.currentTimeMillis();
+				ready.add(tq);
+				readyChanged.signal();
+			} finally {
+				readyLock.unlock();
+			}
+		}
+	}
+
+	private void signal() {
+		readyLock.lock();
+		try {
+			readyChanged.signalAll();
+		} finally {
+			readyLock.unlock();
+		}
+	}
+
+	/**
+	 * Waits for the first type which can be written: its linger has expired, batch is full or the store is closing.
+	 * Returns null when the store is closed and there is nothing left to write.
+	 */
+	private TypeQueue next() throws InterruptedException {
+		readyLock.lock();
+		try {
+			while (true) {
+				long now = System.currentTimeMillis();
+				long deadline = Long.MAX_VALUE;
+				Iterator<TypeQueue> iter = ready.iterator();
+				while (iter.hasNext()) {
+					TypeQueue tq = iter.next();
+					long due = tq.scheduledAt + linger;
+					if (due <= now || isClosed || tq.size.get() >= batchSize) {
+						iter.remove();
+						return tq;
+					}
+					deadline = Math.min(deadline, due);
+				}
+				if (isClosed) {
+					return null;
+				}
+				if (deadline == Long.MAX_VALUE) {
+					readyChanged.await();
+				} else {
+					readyChanged.await(deadline - now, TimeUnit.MILLISECONDS);
+				}
+			}
+		} finally {
+			readyLock.unlock();
+		}
+	}
+
+	public long getQueued() {
+		return queued.get();
+	}
+
+	public long getFlushed() {
+		return flushed.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public long getPending() {
+		return queued.get() - flushed.get() - failed.get();
 	}
 
-	@SuppressWarnings("unchecked")
 	private class WaitForEvents implements Runnable {
+		private Container scope;
+		private Connection connection;
+		private final Map<Class<?>, DomainEventStore> eventStores = new HashMap<>();
+
 		@Override
 		public void run() {
-			List<DomainEvent> bulk = new ArrayList<>(1000);
-			Class<?> lastType;
-			DomainEvent info = null;
-			while (!isClosed) {
+			List<DomainEvent> bulk = new ArrayList<>(batchSize);
+			while (true) {
+				TypeQueue tq;
 				try {
-					if (bulk.size() == 0) {
-						info = eventQueue.take();
-						bulk.add(info);
+					tq = next();
+				} catch (InterruptedException e) {
+					break;
+				}
+				if (tq == null) {
+					break;
+				}
+				DomainEvent info;
+				while (bulk.size() < batchSize && (info = tq.events.poll()) != null) {
+					bulk.add(info);
+				}
+				tq.size.addAndGet(-bulk.size());
+				try {
+					if (!bulk.isEmpty()) {
+						submit(tq.manifest, bulk);
 					}
-					if (info == null) break;
-					lastType = info.getClass();
-					int i = 0;
-					while (i++ < 1000 && !eventQueue.isEmpty()) {
-						info = eventQueue.take();
-						if (info.getClass() != lastType) break;
-						bulk.add(info);
+				} finally {
+					capacity.release(bulk.size());
+					bulk.clear();
+					tq.scheduled.set(false);
+					if (!tq.events.isEmpty()) {
+						schedule(tq);
 					}
-					final Class<?> currentType = lastType;
-					DomainEventStore store = eventStores.computeIfAbsent(lastType, t -> {
-						try {
-							return container.resolve(DomainEventStore.class, currentType);
-						} catch (ReflectiveOperationException e) {
-							throw new RuntimeException(e);
-						}
-					});
-					try {
-						store.submit(bulk);
-					} finally {
-						bulk.clear();
+				}
+			}
+			cleanup();
+		}
+
+		/**
+		 * Failed batch is retried on a new connection with exponential backoff,
+		 * so a database which is temporarily unavailable is not hit with immediate retries.
+		 */
+		private void submit(Class<?> manifest, List<DomainEvent> bulk) {
+			for (int attempt = 0; attempt <= retries; attempt++) {
+				try {
+					if (scope == null) {
+						setupConnection();
 					}
-					if (info.getClass() != currentType) {
-						bulk.add(info);
+					DomainEventStore store = eventStores.get(manifest);
+					if (store == null) {
+						store = scope.resolve(DomainEventStore.class, manifest);
+						eventStores.put(manifest, store);
 					}
+					store.submit(bulk);
+					flushed.addAndGet(bulk.size());
+					return;
 				} catch (Exception e) {
-					try {
-						connection.close();
-					} catch (Exception ignore) {
+					cleanup();
+					if (attempt == retries || !backoff(attempt)) {
+						failed.addAndGet(bulk.size());
+						LOGGER.log(Level.WARNING, "Unable to store " + bulk.size() + " events of " + manifest, e);
+						return;
 					}
-					setupConnection();
 				}
 			}
 		}
-	}
 
-	private void setupConnection() {
-		try {
+		private boolean backoff(int attempt) {
+			long delay = Math.min(retryDelay << Math.min(attempt, 20), MAX_RETRY_DELAY);
+			if (delay == 0) {
+				return true;
+			}
+			try {
+				Thread.sleep(delay);
+				return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		private void setupConnection() throws Exception {
+			Container scope = container.createScope();
+			try {
+				Connection connection = dataSource.getConnection();
+				connection.setAutoCommit(true);
+				scope.registerInstance(Connection.class, connection, false);
+				this.connection = connection;
+				this.scope = scope;
+			} catch (Exception e) {
+				scope.close();
+				throw e;
+			}
+		}
+
+		private void cleanup() {
 			eventStores.clear();
-			connection = dataSource.getConnection();
-			connection.setAutoCommit(true);
-			container.registerInstance(connection);
-		} catch (Exception ignore) {
+			try {
+				if (scope != null) {
+					scope.close();
+				}
+			} catch (Exception ignore) {
+			}
+			try {
+				if (connection != null) {
+					connection.close();
+				}
+			} catch (Exception ignore) {
+			}
+			scope = null;
+			connection = null;
 		}
 	}
 
+	/**
+	 * Stop accepting new work. Already queued events will be written before close returns.
+	 */
 	@Override
 	public void close() throws IOException {
-		isClosed = true;
+		closeLock.writeLock().lock();
+		try {
+			isClosed = true;
+		} finally {
+			closeLock.writeLock().unlock();
+		}
+		signal();
+		try {
+			for (Thread writer : writers) {
+				writer.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for queued events to be written", e);
+		}
 	}
 }
@@ -14,8 +14,21 @@ import java.util.concurrent.Callable;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
+/**
+ * Bulk reader which executes all queued queries in a single round trip.
+ * By default all queries are combined into a single row, where each query is a scalar sub-select.
+ * In multi statement mode each query is sent as a separate statement within the same round trip,
+ * so results are processed one result set at a time and cubes are read row by row instead of as a single aggregated value.
+ * Postgres driver still buffers all results of the round trip before returning the first one, so results are not read lazily.
+ * Multi statement mode avoids building the aggregated values on the server and parsing them on the client,
+ * but it doesn't reduce the memory needed to hold the results of all queries.
+ * Multi statement mode is enabled with revenj.bulkReader.mode=multiStatement
+ */
 class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoCloseable {
 
+	private static final String STATEMENT_START = "SELECT (";
+	private static final String STATEMENT_END = ";\n" + STATEMENT_START;
+
 	private final ServiceLocator locator;
 	private final Connection connection;
 	private final PostgresReader reader;
@@ -28,14 +41,22 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 	private final Map<Class<?>, BulkRepository> repositories = new HashMap<>();
 	private final Map<Class<?>, PostgresOlapCubeQuery> cubes = new HashMap<>();
 	private final boolean closeConnection;
+	private final PreparedStatementCache statementCache;
+	private final boolean multiStatement;
 
 	public PostgresBulkReader(ServiceLocator locator, Connection connection, boolean closeConnection) {
+		this(locator, connection, closeConnection, false);
+	}
+
+	public PostgresBulkReader(ServiceLocator locator, Connection connection, boolean closeConnection, boolean multiStatement) {
 		this.locator = locator;
 		this.connection = connection;
 		this.closeConnection = closeConnection;
+		this.multiStatement = multiStatement;
+		this.statementCache = locator.tryResolve(PreparedStatementCache.class).orElse(PreparedStatementCache.DISABLED);
 		this.reader = PostgresReader.create(locator);
 		this.writer = PostgresWriter.create();
-		this.builder = new StringBuilder("SELECT (");
+		this.builder = new StringBuilder(STATEMENT_START);
 	}
 
 	public static PostgresBulkReader create(ServiceLocator locator) {
@@ -52,7 +73,9 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 		} else {
 			connection = tryConnection.get();
 		}
-		return new PostgresBulkReader(locator, connection, closeConnection);
+		Optional<Properties> properties = locator.tryResolve(Properties.class);
+		boolean multiStatement = properties.isPresent() && "multiStatement".equals(properties.get().getProperty("revenj.bulkReader.mode"));
+		return new PostgresBulkReader(locator, connection, closeConnection, multiStatement);
 	}
 
 	@Override
@@ -83,7 +106,7 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 		writeArguments.clear();
 		totalArguments = 0;
 		results = null;
-		builder.append("SELECT (");
+		builder.append(STATEMENT_START);
 	}
 
 	@Override
@@ -94,9 +117,21 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 
 	@SuppressWarnings("unchecked")
 	private <T> Callable<T> add(BiFunction<ResultSet, Integer, T> reader) {
-		builder.append("),(");
 		int i = resultActions.size();
-		resultActions.add(reader::apply);
+		if (multiStatement) {
+			builder.append(')').append(STATEMENT_END);
+			resultActions.add((rs, ind) -> {
+				try {
+					rs.next();
+				} catch (SQLException e) {
+					throw new RuntimeException(e);
+				}
+				return reader.apply(rs, ind);
+			});
+		} else {
+			builder.append("),(");
+			resultActions.add(reader::apply);
+		}
 		return () -> {
 			if (results == null) {
 				execute();
@@ -163,7 +198,12 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 			Integer limit,
 			Integer offset) {
 		PostgresOlapCubeQuery<TSource> cube = getCube(manifest);
-		builder.append("SELECT array_agg(_x) FROM (");
+		if (multiStatement) {
+			//cube is sent as a standalone statement, so rows can be processed without aggregating them into an array
+			builder.setLength(builder.length() - STATEMENT_START.length());
+		} else {
+			builder.append("SELECT array_agg(_x) FROM (");
+		}
 		List<String> dimensions = new ArrayList<>(dimensionsAndFacts.size());
 		List<String> facts = new ArrayList<>(dimensionsAndFacts.size());
 		for (String dof : dimensionsAndFacts) {
@@ -173,8 +213,8 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 				facts.add(dof);
 			}
 		}
-		List<GeneratedQueryParameter> parameters = filter != null ? new ArrayList<>() : null;
-		List<LambdaInfo> lambdas = filter != null ? new ArrayList<>(1) : null;
+		List<GeneratedQueryParameter> parameters = new ArrayList<>();
+		List<LambdaInfo> lambdas = new ArrayList<>();
 		cube.prepareSql(builder, true, dimensions, facts, order, filter, limit, offset, parameters, lambdas);
 		PostgresOlapCubeQuery.Converter[] converters = cube.prepareConverters(dimensions, facts);
 		String[] columnNames = new String[dimensionsAndFacts.size()];
@@ -184,8 +224,11 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 		for (int x = 0; x < facts.size(); x++) {
 			columnNames[dimensions.size() + x] = facts.get(x);
 		}
-		builder.append(") _x),(");
-		int i = resultActions.size();
+		if (multiStatement) {
+			builder.append(STATEMENT_END);
+		} else {
+			builder.append(") _x),(");
+		}
 		List<Map<String, Object>> result = new ArrayList<>();
 		int args = getArgumentIndex();
 		writeArguments.add(ps -> {
@@ -202,7 +245,22 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 			}
 		});
 		totalArguments += parameters != null ? parameters.size() : 0;
-		resultActions.add((rs, ind) -> {
+		resultActions.add(multiStatement ? (rs, ind) -> {
+			try {
+				while (rs.next()) {
+					reader.process(rs.getString(ind));
+					reader.read();
+					Map<String, Object> map = new LinkedHashMap<>();
+					for (int x = 0; x < converters.length; x++) {
+						map.put(columnNames[x], converters[x].convert(reader, 1));
+					}
+					result.add(map);
+				}
+				return result;
+			} catch (SQLException | IOException ex) {
+				throw new RuntimeException(ex);
+			}
+		} : (rs, ind) -> {
 			try {
 				reader.process(rs.getString(ind));
 				ArrayTuple.parse(reader, 0, (rdr, outCtx, ctx) -> {
@@ -231,11 +289,13 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 	@Override
 	public void execute() throws IOException {
 		results = new Object[resultActions.size()];
+		if (multiStatement) {
+			executeMultiStatement();
+			return;
+		}
 		try {
-			try (PreparedStatement ps = connection.prepareStatement(builder.substring(0, builder.length() - 2))) {
-				for (Consumer<PreparedStatement> writeArgument : writeArguments) {
-					writeArgument.accept(ps);
-				}
+			try (PreparedStatementCache.Lease lease = statementCache.prepare(connection, builder.substring(0, builder.length() - 2), this::writeArguments)) {
+				PreparedStatement ps = lease.statement;
 				ps.setEscapeProcessing(false);
 				ResultSet rs = ps.executeQuery();
 				rs.next();
@@ -248,6 +308,41 @@ class PostgresBulkReader implements RepositoryBulkReader, BulkReaderQuery, AutoC
 		}
 	}
 
+	private void writeArguments(PreparedStatement ps) {
+		for (Consumer<PreparedStatement> writeArgument : writeArguments) {
+			writeArgument.accept(ps);
+		}
+	}
+
+	private void executeMultiStatement() throws IOException {
+		if (resultActions.isEmpty()) {
+			return;
+		}
+		//driver sends each statement as a separate Parse/Bind/Execute and synchronizes only once after the last one.
+		//all results are received before execute returns, since the driver doesn't use a cursor for multiple statements
+		String sql = builder.substring(0, builder.length() - STATEMENT_END.length());
+		try {
+			try (PreparedStatementCache.Lease lease = statementCache.prepare(connection, sql, this::writeArguments)) {
+				PreparedStatement ps = lease.statement;
+				boolean hasResults = ps.execute();
+				for (int i = 0; i < resultActions.size(); i++) {
+					while (!hasResults) {
+						if (ps.getUpdateCount() == -1) {
+							throw new IOException("Expecting " + resultActions.size() + " results in bulk reader. Found only: " + i);
+						}
+						hasResults = ps.getMoreResults();
+					}
+					try (ResultSet rs = ps.getResultSet()) {
+						results[i] = resultActions.get(i).apply(rs, 1);
+					}
+					hasResults = ps.getMoreResults();
+				}
+			}
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
 	@Override
 	public void close() throws Exception {
 		if (closeConnection) {
@@ -15,6 +15,7 @@ import rx.subjects.PublishSubject;
 import javax.sql.DataSource;
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.channels.SocketChannel;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -22,6 +23,10 @@ import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 final class PostgresDatabaseNotification implements EagerNotification, Closeable {
 
@@ -36,12 +41,22 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 
 	private final ConcurrentMap<Class<?>, Repository> repositories = new ConcurrentHashMap<>();
 	private final ConcurrentMap<String, HashSet<Class<?>>> targets = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Class<?>, Observable<?>> tracking = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Class<?>, FetchBatch<?>> batches = new ConcurrentHashMap<>();
 
 	private int retryCount;
 	private final int maxTimeout;
+	private final int fetchWindow;
 
 	private boolean isClosed;
 	private PGStream currentStream;
+	//selector errors are processed by a single reconnecting thread
+	private final AtomicBoolean reconnecting = new AtomicBoolean();
+	private final ExecutorService reconnection = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "Revenj notification reconnect");
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	public PostgresDatabaseNotification(
 			DataSource dataSource,
@@ -65,6 +80,16 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 		} else {
 			maxTimeout = 1000;
 		}
+		String fetchWindowValue = properties.getProperty("revenj.notifications.fetchWindow");
+		if (fetchWindowValue != null) {
+			try {
+				fetchWindow = Integer.parseInt(fetchWindowValue);
+			} catch (NumberFormatException e) {
+				throw new RuntimeException("Error parsing notificationFetchWindow setting");
+			}
+		} else {
+			fetchWindow = 0;
+		}
 		if ("disabled".equals(properties.getProperty("revenj.notifications.status"))) {
 			isClosed = true;
 		} else if ("pooling".equals(properties.getProperty("revenj.notifications.type"))) {
@@ -111,10 +136,11 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 				}
 			}
 			if (bc != null) {
-				Statement stmt = bc.createStatement();
-				stmt.execute("LISTEN events; LISTEN aggregate_roots; LISTEN migration; LISTEN revenj");
+				try (Statement stmt = bc.createStatement()) {
+					stmt.execute("LISTEN events; LISTEN aggregate_roots; LISTEN migration; LISTEN revenj");
+				}
 				retryCount = 0;
-				Pooling pooling = new Pooling(bc, stmt);
+				Pooling pooling = new Pooling(bc);
 				Thread thread = new Thread(pooling);
 				thread.setDaemon(true);
 				thread.start();
@@ -136,34 +162,23 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 
 	private class Pooling implements Runnable {
 		private final BaseConnection connection;
-		private final Statement ping;
 
-		Pooling(BaseConnection connection, Statement ping) {
+		Pooling(BaseConnection connection) {
 			this.connection = connection;
-			this.ping = ping;
 		}
 
 		@Override
 		public void run() {
 			PostgresReader reader = new PostgresReader();
-			int timeout = maxTimeout;
+			//driver waits on the socket until notification arrives, so there is no need for polling.
+			//timeout is used only to check if notifications were closed
+			int timeout = maxTimeout > 0 ? maxTimeout : 1000;
 			systemState.notify(new SystemState.SystemEvent("notification", "started"));
 			while (!isClosed) {
 				try {
-					ping.execute("");
-					PGNotification[] notifications = connection.getNotifications();
-					if (notifications == null || notifications.length == 0) {
-						try {
-							Thread.sleep(timeout);
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						}
-						if (timeout < maxTimeout) {
-							timeout++;
-						}
+					PGNotification[] notifications = connection.getNotifications(timeout);
+					if (notifications == null) {
 						continue;
-					} else {
-						timeout = 0;
 					}
 					for (PGNotification n : notifications) {
 						processNotification(reader, n);
@@ -207,13 +222,26 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 			String password = properties.containsKey("revenj.password") ? properties.getProperty("revenj.password") : parsed.getProperty("password", "");
 			String db = parsed.getProperty("PGDBNAME");
 			HostSpec host = new HostSpec(parsed.getProperty("PGHOST").split(",")[0], Integer.parseInt(parsed.getProperty("PGPORT").split(",")[0]));
-			PGStream pgStream = ConnectionFactory.openConnection(new HostSpec[] { host }, user, password, db, properties);
+			PGStream pgStream = ConnectionFactory.openConnection(
+					new HostSpec[] { host },
+					user,
+					password,
+					db,
+					properties,
+					PostgresNotificationSelector.CHANNEL_SOCKETS);
 			currentStream = pgStream;
 			retryCount = 0;
 			Listening listening = new Listening(pgStream);
-			Thread thread = new Thread(listening);
-			thread.setDaemon(true);
-			thread.start();
+			//SSL connections don't have a channel, so they are processed on a dedicated thread
+			SocketChannel channel = pgStream.getSocket().getChannel();
+			if (channel != null && !pgStream.hasMessagePending()) {
+				PostgresNotificationSelector.getInstance().register(channel, new SelectorListener(pgStream));
+				systemState.notify(new SystemState.SystemEvent("notification", "started"));
+			} else {
+				Thread thread = new Thread(listening);
+				thread.setDaemon(true);
+				thread.start();
+			}
 			return true;
 		} catch (Exception ex) {
 			try {
@@ -305,6 +333,62 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 		}
 	}
 
+	private class SelectorListener implements PostgresNotificationSelector.Listener {
+		private final PGStream stream;
+		private final PostgresReader reader = new PostgresReader();
+
+		SelectorListener(PGStream stream) {
+			this.stream = stream;
+		}
+
+		@Override
+		public void onNotification(String channel, int pid, String payload) {
+			try {
+				processNotification(reader, new org.postgresql.core.Notification(channel, pid, payload));
+			} catch (Exception ex) {
+				systemState.notify(new SystemState.SystemEvent("notification", "error: " + ex.getMessage()));
+			}
+		}
+
+		@Override
+		public void onError(Exception ex) {
+			try {
+				if (currentStream == stream) {
+					currentStream = null;
+				}
+				stream.close();
+			} catch (Exception ignore) {
+			}
+			if (isClosed) {
+				return;
+			}
+			systemState.notify(new SystemState.SystemEvent("notification", "error: " + ex.getMessage()));
+			if (!reconnecting.compareAndSet(false, true)) {
+				return;
+			}
+			//reconnect outside of selector thread, so other connections are not blocked
+			try {
+				reconnection.execute(PostgresDatabaseNotification.this::reconnect);
+			} catch (RejectedExecutionException ignore) {
+				reconnecting.set(false);
+			}
+		}
+	}
+
+	private void reconnect() {
+		try {
+			do {
+				do {
+					Thread.sleep(1000);
+				} while (!isClosed && !setupListening());
+				reconnecting.set(false);
+				//new connection could have failed before the flag was reset
+			} while (!isClosed && currentStream == null && reconnecting.compareAndSet(false, true));
+		} catch (InterruptedException ignore) {
+			reconnecting.set(false);
+		}
+	}
+
 	private void processNotification(PostgresReader reader, PGNotification n) throws IOException {
 		if ("events".equals(n.getName()) || "aggregate_roots".equals(n.getName())) {
 			String param = n.getParameter();
@@ -355,9 +439,16 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 		return notifications;
 	}
 
+	/**
+	 * Tracking observable is shared per type, so all subscribers receive the same lazy result
+	 * and the same notification is looked up only once.
+	 * Lazy results for notifications which arrive within the fetch window are loaded with a single lookup.
+	 * Fetch window is disabled by default and can be enabled with revenj.notifications.fetchWindow (in milliseconds).
+	 */
+	@SuppressWarnings("unchecked")
 	@Override
 	public <T> Observable<TrackInfo<T>> track(final Class<T> manifest) {
-		return notifications.filter(it -> {
+		return (Observable<TrackInfo<T>>) tracking.computeIfAbsent(manifest, m -> notifications.filter(it -> {
 			HashSet<Class<?>> set = targets.get(it.name);
 			if (set == null) {
 				set = new HashSet<>();
@@ -369,25 +460,98 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 				targets.put(it.name, set);
 			}
 			return set.contains(manifest);
-		}).map(it -> new TrackInfo<T>(it.uris, new LazyResult<T>(manifest, it.uris)));
+		}).map(it -> new TrackInfo<T>(it.uris, new LazyResult<T>(it.uris, addToBatch(manifest, it.uris)))).share());
 	}
 
-	private class LazyResult<T> implements Callable<List<T>> {
+	@SuppressWarnings("unchecked")
+	private <T> FetchBatch<T> addToBatch(Class<T> manifest, String[] uris) {
+		//items can be matched to notifications only by their URI
+		if (fetchWindow <= 0 || !Identifiable.class.isAssignableFrom(manifest)) {
+			FetchBatch<T> batch = new FetchBatch<>(manifest);
+			batch.add(uris);
+			return batch;
+		}
+		final long now = System.currentTimeMillis();
+		return (FetchBatch<T>) batches.compute(manifest, (k, current) -> {
+			if (current != null && now - current.started <= fetchWindow && current.add(uris)) {
+				return current;
+			}
+			FetchBatch<T> batch = new FetchBatch<>(manifest);
+			batch.add(uris);
+			return batch;
+		});
+	}
 
+	private static final int MAX_BATCH_SIZE = 1000;
+
+	private class FetchBatch<T> {
 		private final Class<T> manifest;
+		private final long started = System.currentTimeMillis();
+		private final LinkedHashSet<String> uris = new LinkedHashSet<>();
+		private Map<String, T> found;
+
+		FetchBatch(Class<T> manifest) {
+			this.manifest = manifest;
+		}
+
+		synchronized boolean add(String[] values) {
+			if (found != null || uris.size() + values.length > MAX_BATCH_SIZE && !uris.isEmpty()) {
+				return false;
+			}
+			Collections.addAll(uris, values);
+			return true;
+		}
+
+		/**
+		 * Failed lookup is not remembered, so the next call will try to load the batch again.
+		 * Once loaded, batch is removed from the pending batches, so it's not kept after delivery.
+		 * Items which are not identifiable can't be matched to notifications, so they are looked up directly.
+		 */
+		@SuppressWarnings("unchecked")
+		synchronized List<T> find(String[] values) {
+			if (found == null) {
+				Repository repository = getRepository(manifest);
+				if (!Identifiable.class.isAssignableFrom(manifest)) {
+					return repository.find(values);
+				}
+				List<T> items = repository.find(uris.toArray(new String[uris.size()]));
+				Map<String, T> map = new HashMap<>(items.size());
+				for (T item : items) {
+					if (!(item instanceof Identifiable)) {
+						throw new IllegalStateException("Repository for " + manifest + " returned an item which is not Identifiable: " + item);
+					}
+					map.put(((Identifiable) item).getURI(), item);
+				}
+				found = map;
+				batches.remove(manifest, this);
+			}
+			List<T> result = new ArrayList<>(values.length);
+			for (String uri : values) {
+				T item = found.get(uri);
+				if (item != null) {
+					result.add(item);
+				}
+			}
+			return result;
+		}
+	}
+
+	private static class LazyResult<T> implements Callable<List<T>> {
+
 		private final String[] uris;
+		private FetchBatch<T> batch;
 		private List<T> result;
 
-		LazyResult(Class<T> manifest, String[] uris) {
-			this.manifest = manifest;
+		LazyResult(String[] uris, FetchBatch<T> batch) {
 			this.uris = uris;
+			this.batch = batch;
 		}
 
 		@Override
-		public List<T> call() throws Exception {
+		public synchronized List<T> call() throws Exception {
 			if (result == null) {
-				Repository repository = getRepository(manifest);
-				result = repository.find(uris);
+				result = batch.find(uris);
+				batch = null;
 			}
 			return result;
 		}
@@ -405,6 +569,7 @@ final class PostgresDatabaseNotification implements EagerNotification, Closeable
 
 	public void close() {
 		isClosed = true;
+		reconnection.shutdownNow();
 		try {
 			if (currentStream != null) {
 				currentStream.close();
@@ -0,0 +1,272 @@
+package org.revenj;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Single thread which waits for Postgres notifications on all listening connections.
+ * Connection is registered after LISTEN commands have been processed, so only asynchronous
+ * messages are expected on the socket. Notifications are pushed to the listener as soon as they arrive.
+ * If selector keeps failing, all registered listeners are notified about the error and the thread stops.
+ * Next registration will start a new selector.
+ */
+final class PostgresNotificationSelector {
+
+	private static final Logger LOGGER = Logger.getLogger(PostgresNotificationSelector.class.getName());
+	private static final int MAX_FAILURES = 10;
+
+	interface Listener {
+		void onNotification(String channel, int pid, String payload);
+
+		void onError(Exception ex);
+	}
+
+	/**
+	 * Creates sockets backed by channels so they can be switched to non-blocking mode
+	 * once connection has been established.
+	 */
+	static final SocketFactory CHANNEL_SOCKETS = new SocketFactory() {
+		@Override
+		public Socket createSocket() throws IOException {
+			return SocketChannel.open().socket();
+		}
+
+		@Override
+		public Socket createSocket(String host, int port) throws IOException {
+			return SocketChannel.open(new InetSocketAddress(host, port)).socket();
+		}
+
+		@Override
+		public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+			Socket socket = createSocket();
+			socket.bind(new InetSocketAddress(localHost, localPort));
+			socket.connect(new InetSocketAddress(host, port));
+			return socket;
+		}
+
+		@Override
+		public Socket createSocket(InetAddress host, int port) throws IOException {
+			return SocketChannel.open(new InetSocketAddress(host, port)).socket();
+		}
+
+		@Override
+		public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+			Socket socket = createSocket();
+			socket.bind(new InetSocketAddress(localAddress, localPort));
+			socket.connect(new InetSocketAddress(address, port));
+			return socket;
+		}
+	};
+
+	private static PostgresNotificationSelector instance;
+
+	static synchronized PostgresNotificationSelector getInstance() throws IOException {
+		if (instance == null) {
+			instance = new PostgresNotificationSelector();
+		}
+		return instance;
+	}
+
+	private static final class Registration {
+		final SocketChannel channel;
+		final Listener listener;
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+		Registration(SocketChannel channel, Listener listener) {
+			this.channel = channel;
+			this.listener = listener;
+		}
+	}
+
+	private final Selector selector;
+	private final ConcurrentLinkedQueue<Registration> pending = new ConcurrentLinkedQueue<>();
+	private final Set<Registration> registered = ConcurrentHashMap.newKeySet();
+	private volatile boolean stopped;
+
+	private PostgresNotificationSelector() throws IOException {
+		this.selector = Selector.open();
+		Thread thread = new Thread(this::run, "Revenj notifications");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	void register(SocketChannel channel, Listener listener) throws IOException {
+		channel.configureBlocking(false);
+		Registration registration = new Registration(channel, listener);
+		pending.add(registration);
+		if (stopped && pending.remove(registration)) {
+			throw new IOException("Notification selector has been stopped");
+		}
+		selector.wakeup();
+	}
+
+	/**
+	 * Stops the selector thread. All registered listeners will receive an error.
+	 */
+	void close() throws IOException {
+		selector.close();
+	}
+
+	private void run() {
+		int failures = 0;
+		try {
+			while (true) {
+				try {
+					selector.select();
+					failures = 0;
+				} catch (IOException ex) {
+					failures++;
+					LOGGER.log(Level.WARNING, "Error waiting for notifications (attempt " + failures + ")", ex);
+					if (failures >= MAX_FAILURES) {
+						LOGGER.log(Level.SEVERE, "Notification selector stopped after " + failures + " failed attempts. Listeners will reconnect with a new selector", ex);
+						stop(ex);
+						return;
+					}
+					Thread.sleep(100L * failures);
+					continue;
+				}
+				Registration registration;
+				while ((registration = pending.poll()) != null) {
+					try {
+						registration.channel.register(selector, SelectionKey.OP_READ, registration);
+						registered.add(registration);
+					} catch (ClosedSelectorException ex) {
+						fail(registration, new IOException("Notification selector has been closed", ex));
+						throw ex;
+					} catch (Exception ex) {
+						fail(registration, ex);
+					}
+				}
+				Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+				while (iter.hasNext()) {
+					SelectionKey key = iter.next();
+					iter.remove();
+					Registration reg = (Registration) key.attachment();
+					try {
+						if (!key.isValid() || !key.isReadable()) {
+							continue;
+						}
+						if (reg.channel.read(reg.buffer) == -1) {
+							throw new IOException("Connection closed");
+						}
+						processMessages(reg);
+					} catch (Exception ex) {
+						key.cancel();
+						registered.remove(reg);
+						fail(reg, ex);
+					}
+				}
+			}
+		} catch (ClosedSelectorException ex) {
+			stop(new IOException("Notification selector has been closed", ex));
+		} catch (InterruptedException ex) {
+			stop(ex);
+		} catch (RuntimeException ex) {
+			LOGGER.log(Level.SEVERE, "Unexpected error in notification selector", ex);
+			stop(ex);
+		}
+	}
+
+	private void stop(Exception error) {
+		synchronized (PostgresNotificationSelector.class) {
+			if (instance == this) {
+				instance = null;
+			}
+		}
+		stopped = true;
+		try {
+			selector.close();
+		} catch (IOException ex) {
+			LOGGER.log(Level.WARNING, "Unable to close notification selector", ex);
+		}
+		for (Registration registration : registered) {
+			fail(registration, error);
+		}
+		registered.clear();
+		Registration registration;
+		while ((registration = pending.poll()) != null) {
+			fail(registration, error);
+		}
+	}
+
+	private static void fail(Registration registration, Exception error) {
+		try {
+			registration.listener.onError(error);
+		} catch (RuntimeException ex) {
+			LOGGER.log(Level.WARNING, "Error in notification listener", ex);
+		}
+	}
+
+	private static void processMessages(Registration reg) throws IOException {
+		ByteBuffer buf = reg.buffer;
+		buf.flip();
+		while (buf.remaining() >= 5) {
+			int start = buf.position();
+			byte type = buf.get(start);
+			int length = buf.getInt(start + 1);
+			if (buf.remaining() < length + 1) {
+				break;
+			}
+			buf.position(start + 5);
+			int end = start + 1 + length;
+			switch (type) {
+				case 'A':
+					int pid = buf.getInt();
+					String channel = readString(buf, end);
+					String payload = readString(buf, end);
+					reg.listener.onNotification(channel, pid, payload);
+					break;
+				case 'E':
+					String message = null;
+					while (buf.position() < end) {
+						byte field = buf.get();
+						if (field == 0) break;
+						String value = readString(buf, end);
+						if (field == 'M') {
+							message = value;
+						}
+					}
+					throw new IOException(message != null ? message : "Unknown error received from server");
+				default:
+					//notices and parameter status messages are not relevant for notifications
+					break;
+			}
+			buf.position(end);
+		}
+		buf.compact();
+		if (!buf.hasRemaining() || buf.position() >= 5 && buf.getInt(1) + 1 > buf.capacity()) {
+			int required = buf.position() >= 5 ? buf.getInt(1) + 1 : buf.capacity() * 2;
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(required, buf.capacity() * 2));
+			buf.flip();
+			larger.put(buf);
+			reg.buffer = larger;
+		}
+	}
+
+	private static String readString(ByteBuffer buf, int end) throws IOException {
+		int start = buf.position();
+		for (int i = start; i < end; i++) {
+			if (buf.get(i) == 0) {
+				String value = new String(buf.array(), buf.arrayOffset() + start, i - start, StandardCharsets.UTF_8);
+				buf.position(i + 1);
+				return value;
+			}
+		}
+		throw new IOException("Invalid message received from server");
+	}
+}
@@ -1,6 +1,8 @@
 package org.revenj;
 
-import org.postgresql.ds.PGPoolingDataSource;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.revenj.database.postgres.PostgresConnectionPool;
+import org.revenj.database.postgres.PreparedStatementCache;
 import org.revenj.database.postgres.converters.JsonConverter;
 import org.revenj.extensibility.*;
 import org.revenj.serialization.json.DslJsonSerialization;
@@ -71,7 +73,7 @@ public abstract class Revenj {
 			throw new IOException("Invalid revenj.jdbcUrl provided. Expecting: 'jdbc:postgresql:...'. Found: '" + jdbcUrl + "'.\n" +
 					"If you wish to use custom jdbc driver provide custom data source instead of using Postgres builtin data source.");
 		}
-		org.postgresql.ds.PGPoolingDataSource dataSource = new PGPoolingDataSource();
+		PGSimpleDataSource dataSource = new PGSimpleDataSource();
 		dataSource.setUrl(jdbcUrl);
 		String user = properties.getProperty("user");
 		String revUser = properties.getProperty("revenj.user");
@@ -87,7 +89,7 @@ public abstract class Revenj {
 		} else if (password != null && password.length() > 0) {
 			dataSource.setPassword(password);
 		}
-		return dataSource;
+		return PostgresConnectionPool.create(dataSource, properties);
 	}
 
 	public static Container setup(
@@ -122,9 +124,13 @@ public abstract class Revenj {
 
 	private static class SimpleDomainModel implements DomainModel {
 
+		//bounded, so requests with random names can't exhaust memory
+		private static final int MAX_UNKNOWN_NAMES = 10000;
+
 		private String[] namespaces = new String[0];
 		private final ClassLoader loader;
 		private final ConcurrentMap<String, Class<?>> cache = new ConcurrentHashMap<>();
+		private final Set<String> unknown = ConcurrentHashMap.newKeySet();
 
 		SimpleDomainModel(ClassLoader loader) {
 			this.loader = loader;
@@ -137,6 +143,7 @@ public abstract class Revenj {
 				String ns = parts[i];
 				this.namespaces[i] = ns.length() > 0 ? ns + "." : "";
 			}
+			unknown.clear();
 		}
 
 		@Override
@@ -148,6 +155,9 @@ public abstract class Revenj {
 			if (found != null) {
 				return Optional.of(found);
 			}
+			if (unknown.contains(name)) {
+				return Optional.empty();
+			}
 			String className = name.indexOf('+') != -1 ? name.replace('+', '$') : name;
 			for (String ns : namespaces) {
 				try {
@@ -157,6 +167,10 @@ public abstract class Revenj {
 				} catch (ClassNotFoundException ignore) {
 				}
 			}
+			if (unknown.size() >= MAX_UNKNOWN_NAMES) {
+				unknown.clear();
+			}
+			unknown.add(name);
 			return Optional.empty();
 		}
 	}
@@ -186,6 +200,15 @@ public abstract class Revenj {
 		container.registerInstance(ServiceLocator.class, container, false);
 		container.registerInstance(DataSource.class, dataSource, false);
 		container.registerInstance(ClassLoader.class, loader, false);
+		String statementCacheSize = properties.getProperty("revenj.statementCache.size");
+		try {
+			container.registerInstance(
+					PreparedStatementCache.class,
+					new PreparedStatementCache(statementCacheSize != null ? Integer.parseInt(statementCacheSize) : 0),
+					false);
+		} catch (NumberFormatException ex) {
+			throw new IOException("Invalid revenj.statementCache.size provided. Expecting integer. Found: " + statementCacheSize);
+		}
 		container.register(GlobalEventStore.class, InstanceScope.SINGLETON);
 		container.register(JsonConverter.class, InstanceScope.SINGLETON);
 		SimpleDomainModel domainModel = new SimpleDomainModel(loader);
@@ -196,7 +219,7 @@ public abstract class Revenj {
 				new Generic<Function<Connection, DataContext>>(){}.type,
 				c -> (Function<Connection, DataContext>) connection -> LocatorDataContext.asDataContext(c, connection),
 				InstanceScope.CONTEXT);
-		PluginLoader plugins = new ServicesPluginLoader(loader);
+		PluginLoader plugins = new ServicesPluginLoader(loader, "true".equals(properties.getProperty("revenj.plugins.indexOnly")));
 		container.registerInstance(PluginLoader.class, plugins, false);
 		PostgresDatabaseNotification databaseNotification =
 				new PostgresDatabaseNotification(
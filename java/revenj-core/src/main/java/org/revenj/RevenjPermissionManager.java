@@ -12,6 +12,11 @@ import java.io.Closeable;
 import java.security.Principal;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -20,17 +25,21 @@ final class RevenjPermissionManager implements PermissionManager, Closeable {
 	private final Callable<Optional<SearchableRepository<GlobalPermission>>> globalRepository;
 	private final Callable<Optional<SearchableRepository<RolePermission>>> rolesRepository;
 	private final boolean defaultPermissions;
+	private final boolean queryFilters;
 
 	private final Subscription globalSubscription;
 	private final Subscription roleSubscription;
 
+	//bounded, so a large number of distinct identifiers can't exhaust memory
+	static final int MAX_CACHED_DECISIONS = 100000;
+
 	private Map<String, Boolean> globalPermissions = new HashMap<>();
 	private Map<String, List<Pair>> rolePermissions = new HashMap<>();
 
-	private Map<String, Boolean> cache = new HashMap<>();
-	private final Map<Class<?>, List<Filter>> registeredFilters = new HashMap<>();
+	private volatile Rules rules;
+	private final ConcurrentMap<Class<?>, List<Filter>> registeredFilters = new ConcurrentHashMap<>();
 
-	private final class Pair {
+	private static final class Pair {
 		public final String name;
 		public final boolean isAllowed;
 
@@ -40,6 +49,126 @@ final class RevenjPermissionManager implements PermissionManager, Closeable {
 		}
 	}
 
+	/**
+	 * Permissions for a single identifier segment. Path from the root to the node
+	 * matches the permission name, eg. module.Entity is found at root -> module -> Entity.
+	 */
+	private static final class Node {
+		final Map<String, Node> children = new HashMap<>();
+		Boolean global;
+		Pair[] roles;
+
+		Node add(String name) {
+			Node node = this;
+			if (name.length() == 0) {
+				return node;
+			}
+			int start = 0;
+			while (start <= name.length()) {
+				int end = name.indexOf('.', start);
+				if (end == -1) {
+					end = name.length();
+				}
+				node = node.children.computeIfAbsent(name.substring(start, end), n -> new Node());
+				start = end + 1;
+			}
+			return node;
+		}
+	}
+
+	private static final class Decision {
+		final ConcurrentMap<Object, Boolean> decisions;
+		final Object key;
+
+		Decision(ConcurrentMap<Object, Boolean> decisions, Object key) {
+			this.decisions = decisions;
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Immutable snapshot of loaded permissions with decisions cached for it.
+	 * When permissions change, a new snapshot is built and swapped in,
+	 * so cache doesn't need to be invalidated and readers never see a partially loaded state.
+	 * Decision depends only on which of the configured roles principal is in,
+	 * so decisions are shared between principals with the same role membership.
+	 * Oldest decisions are evicted first when cache is full.
+	 */
+	private static final class Rules {
+		final Node root;
+		final String[] roles;
+		final boolean defaultPermissions;
+		final ConcurrentMap<BitSet, ConcurrentMap<Object, Boolean>> memberships = new ConcurrentHashMap<>();
+		final ConcurrentLinkedQueue<Decision> order = new ConcurrentLinkedQueue<>();
+		final AtomicInteger cached = new AtomicInteger();
+
+		Rules(Node root, String[] roles, boolean defaultPermissions) {
+			this.root = root;
+			this.roles = roles;
+			this.defaultPermissions = defaultPermissions;
+		}
+
+		ConcurrentMap<Object, Boolean> decisions(Principal user) {
+			BitSet membership = new BitSet(roles.length);
+			if (user != null) {
+				for (int i = 0; i < roles.length; i++) {
+					if (implies(user, roles[i])) {
+						membership.set(i);
+					}
+				}
+			}
+			ConcurrentMap<Object, Boolean> decisions = memberships.get(membership);
+			return decisions != null ? decisions : memberships.computeIfAbsent(membership, m -> new ConcurrentHashMap<>());
+		}
+
+		void remember(ConcurrentMap<Object, Boolean> decisions, Object key, boolean isAllowed) {
+			if (decisions.putIfAbsent(key, isAllowed) != null) {
+				return;
+			}
+			order.add(new Decision(decisions, key));
+			if (cached.incrementAndGet() > MAX_CACHED_DECISIONS) {
+				Decision oldest = order.poll();
+				if (oldest != null) {
+					oldest.decisions.remove(oldest.key);
+					cached.decrementAndGet();
+				}
+			}
+		}
+
+		boolean evaluate(String identifier, Principal user) {
+			boolean isAllowed = defaultPermissions;
+			Boolean roleDecision = null;
+			Node node = root;
+			int start = 0;
+			while (true) {
+				if (node.global != null) {
+					isAllowed = node.global;
+				}
+				if (user != null && node.roles != null) {
+					for (Pair p : node.roles) {
+						if (implies(user, p.name)) {
+							roleDecision = p.isAllowed;
+							break;
+						}
+					}
+				}
+				if (start > identifier.length()) {
+					break;
+				}
+				int end = identifier.indexOf('.', start);
+				if (end == -1) {
+					end = identifier.length();
+				}
+				node = node.children.get(identifier.substring(start, end));
+				if (node == null) {
+					break;
+				}
+				start = end + 1;
+			}
+			return roleDecision != null ? roleDecision : isAllowed;
+		}
+	}
+
 	private final class Filter<T> {
 		public final Specification<T> specification;
 		public final String role;
@@ -52,7 +181,7 @@ final class RevenjPermissionManager implements PermissionManager, Closeable {
 		}
 	}
 
-	private boolean permissionsChanged = true;
+	private volatile boolean permissionsChanged = true;
 
 	public RevenjPermissionManager(ServiceLocator locator) {
 		this(locator.resolve(Properties.class),
@@ -80,16 +209,42 @@ final class RevenjPermissionManager implements PermissionManager, Closeable {
 			}
 		}
 		defaultPermissions = permissions == null || "open".equals(permissions);
+		String filters = properties.getProperty("revenj.permissions.queryFilters");
+		if (filters != null && !"enabled".equalsIgnoreCase(filters) && !"disabled".equalsIgnoreCase(filters)) {
+			throw new RuntimeException("Invalid revenj.permissions.queryFilters settings found: '" + filters + "'.\n"
+					+ "Allowed values are enabled and disabled");
+		}
+		queryFilters = "enabled".equalsIgnoreCase(filters);
 		globalSubscription = globalChanges.subscribe(c -> permissionsChanged = true);
 		roleSubscription = roleChanges.subscribe(c -> permissionsChanged = true);
 		this.globalRepository = globalRepository;
 		this.rolesRepository = rolesRepository;
 	}
 
-	private void checkPermissions() {
-		if (!permissionsChanged) {
-			return;
+	private Rules currentRules() {
+		if (permissionsChanged) {
+			synchronized (this) {
+				if (permissionsChanged) {
+					//changes which arrive while loading will trigger another reload
+					permissionsChanged = false;
+					try {
+						rules = loadRules();
+					} catch (RuntimeException ex) {
+						permissionsChanged = true;
+						throw ex;
+					}
+				}
+			}
 		}
+		return rules;
+	}
+
+	int getCachedDecisions() {
+		Rules current = rules;
+		return current != null ? current.cached.get() : 0;
+	}
+
+	private Rules loadRules() {
 		Optional<SearchableRepository<GlobalPermission>> global;
 		Optional<SearchableRepository<RolePermission>> roles;
 		try {
@@ -111,20 +266,21 @@ final class RevenjPermissionManager implements PermissionManager, Closeable {
 									RolePermission::getName,
 									Collectors.mapping(it -> new Pair(it.getRoleID(), it.getIsAllowed()), Collectors.toList())));
 		}
-		cache = new HashMap<>();
-		permissionsChanged = false;
-	}
-
-	private boolean checkOpen(String[] parts, int len) {
-		if (len < 0) {
-			return defaultPermissions;
+		Node root = new Node();
+		for (Map.Entry<String, Boolean> kv : globalPermissions.entrySet()) {
+			root.add(kv.getKey()).global = kv.getValue();
+		}
+		Set<String> roleNames = new LinkedHashSet<>();
+		for (Map.Entry<String, List<Pair>> kv : rolePermissions.entrySet()) {
+			root.add(kv.getKey()).roles = kv.getValue().toArray(new Pair[0]);
+			for (Pair p : kv.getValue()) {
+				roleNames.add(p.name);
+			}
 		}
-		String name = String.join(".", Arrays.copyOf(parts, len));
-		Boolean found = globalPermissions.get(name);
-		return found != null ? found : checkOpen(parts, len - 1);
+		return new Rules(root, roleNames.toArray(new String[0]), defaultPermissions);
 	}
 
-	private boolean implies(Principal principal, String role) {
+	private static boolean implies(Principal principal, String role) {
 		return principal instanceof UserPrincipal
 				? ((UserPrincipal) principal).implies(role)
 				: role.equals(principal.getName());
@@ -132,32 +288,28 @@ final class RevenjPermissionManager implements PermissionManager, Closeable {
 
 	@Override
 	public boolean canAccess(String identifier, Principal user) {
-		checkPermissions();
+		Rules current = currentRules();
 		String target = identifier != null ? identifier : "";
-		String id = user != null ? user.getName() + ":" + target : target;
-		Boolean exists = cache.get(id);
+		ConcurrentMap<Object, Boolean> decisions = current.decisions(user);
+		Boolean exists = decisions.get(target);
 		if (exists != null) {
 			return exists;
 		}
-		String[] parts = target.split("\\.");
-		boolean isAllowed = checkOpen(parts, parts.length);
-		if (user != null) {
-			List<Pair> permissions;
-			for (int i = parts.length; i >= 0; i--) {
-				String subName = String.join(".", Arrays.copyOf(parts, i));
-				permissions = rolePermissions.get(subName);
-				if (permissions != null) {
-					Optional<Pair> found = permissions.stream().filter(it -> implies(user, it.name)).findFirst();
-					if (found.isPresent()) {
-						isAllowed = found.get().isAllowed;
-						break;
-					}
-				}
-			}
+		boolean isAllowed = current.evaluate(target, user);
+		current.remember(decisions, target, isAllowed);
+		return isAllowed;
+	}
+
+	@Override
+	public boolean canAccess(Class<?> manifest, Principal user) {
+		Rules current = currentRules();
+		ConcurrentMap<Object, Boolean> decisions = current.decisions(user);
+		Boolean exists = decisions.get(manifest);
+		if (exists != null) {
+			return exists;
 		}
-		Map<String, Boolean> newCache = new HashMap<>(cache);
-		newCache.put(id, isAllowed);
-		cache = newCache;
+		boolean isAllowed = current.evaluate(manifest.getTypeName(), user);
+		current.remember(decisions, manifest, isAllowed);
 		return isAllowed;
 	}
 
@@ -197,15 +349,33 @@ final class RevenjPermissionManager implements PermissionManager, Closeable {
 
 	@Override
 	public <T> Closeable registerFilter(Class<T> manifest, Specification<T> filter, String role, boolean inverse) {
+		List<Filter> registered = registeredFilters.computeIfAbsent(manifest, m -> new CopyOnWriteArrayList<>());
+		Filter item = new Filter(filter, role, inverse);
+		registered.add(item);
+		return () -> registered.remove(item);
+	}
+
+	/**
+	 * When revenj.permissions.queryFilters is enabled, filters registered for the type
+	 * are merged into the WHERE clause of queries executed for the bound principal.
+	 * Filters must be convertible to SQL, otherwise query will fail.
+	 */
+	@Override
+	public <T> List<Specification<T>> queryFilters(Class<T> manifest, Principal user) {
+		if (!queryFilters || user == null) {
+			return Collections.emptyList();
+		}
 		List<Filter> registered = registeredFilters.get(manifest);
-		if (registered == null) {
-			registered = new ArrayList<>();
-			registeredFilters.put(manifest, registered);
+		if (registered == null || registered.isEmpty()) {
+			return Collections.emptyList();
 		}
-		Filter item = new Filter(filter, role, inverse);
-		List<Filter> reg = registered;
-		reg.add(item);
-		return () -> reg.remove(item);
+		List<Specification<T>> result = new ArrayList<>(registered.size());
+		for (Filter r : registered) {
+			if (implies(user, r.role) != r.inverse) {
+				result.add(r.specification);
+			}
+		}
+		return result;
 	}
 
 	public void close() {
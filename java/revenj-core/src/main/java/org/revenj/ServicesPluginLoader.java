@@ -9,29 +9,54 @@ import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.util.*;
 
+/**
+ * Plugins are found through service files in the classpath.
+ * Each lookup searches the whole classpath for a service file, which can take a while
+ * when there are many plugin types (such as event handlers for each event).
+ * When revenj.plugins.indexOnly=true is specified, plugins are found only through
+ * the index generated by the annotation processor (META-INF/revenj.plugins),
+ * which is loaded once, so plugin lookups don't search the classpath.
+ */
 final class ServicesPluginLoader implements PluginLoader {
 
 	private static final String PREFIX = "META-INF/services/";
+	private static final String INDEX = "META-INF/revenj.plugins";
 	private static final Charset UTF8 = Charset.forName("UTF-8");
 
 	private final ClassLoader loader;
+	private final boolean indexOnly;
+	private Map<String, List<String>> index;
 
 	ServicesPluginLoader(ClassLoader loader) {
+		this(loader, false);
+	}
+
+	ServicesPluginLoader(ClassLoader loader, boolean indexOnly) {
 		this.loader = loader != null ? loader : ClassLoader.getSystemClassLoader();
+		this.indexOnly = indexOnly;
 	}
 
 	public <T> List<Class<T>> find(Class<T> manifest, Type... types) throws Exception {
-		String fullName;
+		String name;
 		if (types.length == 0) {
-			fullName = PREFIX + manifest.getName();
+			name = manifest.getName();
 		} else if (types.length == 1) {
-			fullName = PREFIX + URLEncoder.encode(Utils.makeGenericType(manifest, types[0]).toString(), "UTF-8");
+			name = URLEncoder.encode(Utils.makeGenericType(manifest, types[0]).toString(), "UTF-8");
 		} else {
-			fullName = PREFIX + URLEncoder.encode(Utils.makeGenericType(manifest, types[0], Arrays.stream(types).skip(1).toArray(i -> new Type[types.length - 1])).toString(), "UTF-8");
+			name = URLEncoder.encode(Utils.makeGenericType(manifest, types[0], Arrays.stream(types).skip(1).toArray(i -> new Type[types.length - 1])).toString(), "UTF-8");
 		}
-		//TODO: release class loader to avoid locking up jars on Windows
-		Enumeration<URL> configs = loader.getResources(fullName);
 		List<Class<T>> plugins = new ArrayList<>();
+		if (indexOnly) {
+			List<String> services = getIndex().get(name);
+			if (services != null) {
+				for (String service : services) {
+					plugins.add((Class<T>) loader.loadClass(service));
+				}
+			}
+			return plugins;
+		}
+		//TODO: release class loader to avoid locking up jars on Windows
+		Enumeration<URL> configs = loader.getResources(PREFIX + name);
 		while (configs.hasMoreElements()) {
 			URL url = configs.nextElement();
 			lookupServices(manifest, url, plugins);
@@ -39,6 +64,42 @@ final class ServicesPluginLoader implements PluginLoader {
 		return plugins;
 	}
 
+	private synchronized Map<String, List<String>> getIndex() throws IOException {
+		if (index != null) {
+			return index;
+		}
+		Map<String, List<String>> services = new HashMap<>();
+		Enumeration<URL> indexes = loader.getResources(INDEX);
+		while (indexes.hasMoreElements()) {
+			URL url = indexes.nextElement();
+			try (InputStream stream = url.openStream();
+			     BufferedReader reader = new BufferedReader(new InputStreamReader(stream, UTF8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					int ci = line.indexOf('#');
+					if (ci >= 0) line = line.substring(0, ci);
+					line = line.trim();
+					if (line.length() == 0) {
+						continue;
+					}
+					int ei = line.indexOf('=');
+					if (ei <= 0 || ei == line.length() - 1) {
+						throw new IOException("Invalid plugin index in " + url + ". Expecting service=implementation. Found: " + line);
+					}
+					String service = line.substring(0, ei).trim();
+					List<String> implementations = services.get(service);
+					if (implementations == null) {
+						implementations = new ArrayList<>();
+						services.put(service, implementations);
+					}
+					implementations.add(line.substring(ei + 1).trim());
+				}
+			}
+		}
+		index = services;
+		return services;
+	}
+
 	private <T> void lookupServices(Class<T> manifest, URL u, List<Class<T>> plugins) throws Exception {
 		try (InputStream stream = u.openStream();
 		     BufferedReader reader = new BufferedReader(new InputStreamReader(stream, UTF8))) {
@@ -4,31 +4,32 @@ import org.revenj.extensibility.Container;
 import org.revenj.extensibility.InstanceScope;
 import org.revenj.patterns.ServiceLocator;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.*;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
 final class SimpleContainer implements Container {
 
 	private static class Registration<T> {
-		public final Registration<T> parent;
 		public final Type signature;
 		public final SimpleContainer owner;
 		public final Class<T> manifest;
-		public T instance;
+		public final T instance;
 		public final Function<Container, T> singleFactory;
 		public final BiFunction<Container, Type[], T> biFactory;
 		public final InstanceScope lifetime;
 
-		public final String name;
-
 		private Registration(
-				Registration<T> parent,
 				Type signature,
 				SimpleContainer owner,
 				Class<T> manifest,
@@ -36,7 +37,6 @@ final class SimpleContainer implements Container {
 				Function<Container, T> singleFactory,
 				BiFunction<Container, Type[], T> biFactory,
 				InstanceScope lifetime) {
-			this.parent = parent;
 			this.signature = signature;
 			this.owner = owner;
 			this.manifest = manifest;
@@ -44,53 +44,76 @@ final class SimpleContainer implements Container {
 			this.singleFactory = singleFactory;
 			this.biFactory = biFactory;
 			this.lifetime = lifetime;
-
-			this.name = signature.getTypeName();
 		}
 
 		static <T> Registration<T> register(Type signature, SimpleContainer owner, Class<T> manifest, InstanceScope lifetime) {
-			return new Registration<>(null, signature, owner, manifest, null, null, null, lifetime);
+			return new Registration<>(signature, owner, manifest, null, null, null, lifetime);
 		}
 
 		static <T> Registration<T> register(Type signature, SimpleContainer owner, T instance, boolean singleton) {
-			return new Registration<>(null, signature, owner, null, instance, null, null, singleton ? InstanceScope.SINGLETON : InstanceScope.CONTEXT);
+			return new Registration<>(signature, owner, null, instance, null, null, singleton ? InstanceScope.SINGLETON : InstanceScope.CONTEXT);
 		}
 
 		static <T> Registration<T> register(Type signature, SimpleContainer owner, Function<Container, T> factory, InstanceScope lifetime) {
-			return new Registration<>(null, signature, owner, null, null, factory, null, lifetime);
+			return new Registration<>(signature, owner, null, null, factory, null, lifetime);
 		}
 
 		static <T> Registration<T> register(Type signature, SimpleContainer owner, BiFunction<Container, Type[], T> factory, InstanceScope lifetime) {
-			return new Registration<>(null, signature, owner, null, null, null, factory, lifetime);
-		}
-
-		boolean promoted;
-		boolean promoting;
-
-		void promoteToSingleton(Object instance) {
-			promoted = true;
-			promoting = false;
-			this.instance = (T) instance;
+			return new Registration<>(signature, owner, null, null, null, factory, lifetime);
 		}
+	}
 
-		Registration<T> prepareSingleton(SimpleContainer caller) {
-			Registration<T> registration = new Registration<>(this, signature, caller, manifest, null, singleFactory, biFactory, InstanceScope.CONTEXT);
-			caller.addToRegistry(registration);
-			return registration;
-		}
+	/**
+	 * Thread which is resolving dependencies.
+	 * It's used to detect circular dependencies between threads waiting on each other.
+	 */
+	private static final class Resolver {
+		volatile Promotion waitingFor;
+	}
 
-		@Override
-		public int hashCode() {
-			return parent == null ? super.hashCode() : parent.hashCode();
+	private static final ThreadLocal<Resolver> resolvers = ThreadLocal.withInitial(Resolver::new);
+
+	/**
+	 * Singleton or context instance of a registration within a scope.
+	 * Instance is created only once per scope; promotion slot is claimed by the first thread
+	 * which puts it into the scope, while other threads wait for it to complete.
+	 * Map of the scope can't be used with computeIfAbsent, since creating an instance
+	 * resolves other dependencies from the same map.
+	 * Once completed, instance is read without any locking.
+	 */
+	private static final class Promotion {
+		final Resolver owner = resolvers.get();
+		final CompletableFuture<Object> instance = new CompletableFuture<>();
+
+		Object await(Registration<?> registration) {
+			Resolver current = resolvers.get();
+			if (owner == current) {
+				return circularDependency(registration);
+			}
+			current.waitingFor = this;
+			try {
+				if (dependsOn(current)) {
+					return circularDependency(registration);
+				}
+				return instance.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return Failure.of(e);
+			} catch (ExecutionException e) {
+				return Failure.of(e.getCause());
+			} finally {
+				current.waitingFor = null;
+			}
 		}
 
-		@Override
-		public boolean equals(Object obj) {
-			if (obj instanceof Registration) {
-				Registration reg = (Registration)obj;
-				Registration thisParent = parent != null ? parent : this;
-				Registration regParent = reg.parent != null ? reg.parent : reg;
-				return thisParent == regParent;
+		private boolean dependsOn(Resolver resolver) {
+			Set<Resolver> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+			Promotion next = this;
+			while (next != null && visited.add(next.owner)) {
+				if (next.owner == resolver) {
+					return true;
+				}
+				next = next.owner.waitingFor;
 			}
 			return false;
 		}
@@ -137,48 +160,70 @@ final class SimpleContainer implements Container {
 		final Constructor<?> ctor;
 		final Type[] rawTypes;
 		final Type[] genTypes;
+		final MethodHandle factory;
 
 		public CtorInfo(Constructor<?> ctor) {
 			this.ctor = ctor;
 			rawTypes = ctor.getParameterTypes();
 			genTypes = ctor.getGenericParameterTypes();
+			MethodHandle handle;
+			try {
+				handle = MethodHandles.publicLookup().unreflectConstructor(ctor)
+						.asSpreader(Object[].class, genTypes.length)
+						.asType(MethodType.methodType(Object.class, Object[].class));
+			} catch (IllegalAccessException | IllegalArgumentException ignore) {
+				handle = null;
+			}
+			this.factory = handle;
+		}
+
+		/**
+		 * Create instance through a method handle, so resolution doesn't go through reflection.
+		 * Anything thrown from the constructor (including errors) is wrapped the same way as with reflection.
+		 */
+		Object newInstance(Object[] args) throws ReflectiveOperationException {
+			if (factory == null) {
+				return ctor.newInstance(args);
+			}
+			try {
+				return (Object) factory.invokeExact(args);
+			} catch (Throwable e) {
+				throw new InvocationTargetException(e);
+			}
 		}
 	}
 
-	private static final class Either<T> {
-		final T value;
+	/**
+	 * Resolution failure. Resolved values are returned as is,
+	 * so successful resolution doesn't need to allocate a wrapper for each dependency.
+	 */
+	private static final class Failure {
 		final Throwable error;
 
-		private Either(T value, Throwable error) {
-			this.value = value;
+		private Failure(Throwable error) {
 			this.error = error;
 		}
 
-		boolean hasError() {
-			return error != null;
-		}
-
-		boolean isPresent() {
-			return error == null;
-		}
-
-		static <T> Either<T> success(final T value) {
-			return new Either<>(value, null);
+		static Failure of(final Throwable error) {
+			return new Failure(error);
 		}
 
-		static <T> Either<T> fail(final Throwable error) {
-			return new Either<>(null, error);
-		}
-
-		static <T> Either<T> fail(final String error) {
-			return new Either<>(null, new ReflectiveOperationException(error));
+		static Failure of(final String error) {
+			return new Failure(new ReflectiveOperationException(error));
 		}
 	}
 
-	private final Map<Type, List<Registration<?>>> container = new HashMap<>();
+	private static final Registration<?>[] NO_REGISTRATIONS = new Registration<?>[0];
+
+	/**
+	 * Registrations are kept in immutable arrays, so lookup doesn't require locking.
+	 * Scope doesn't copy registrations from the parent, so creating a scope is cheap.
+	 */
+	private final ConcurrentMap<Type, Registration<?>[]> container = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Registration<?>, Promotion> instances = new ConcurrentHashMap<>();
 	private final SimpleContainer parent;
 	private final boolean resolveUnknown;
-	private boolean closed = false;
+	private volatile boolean closed = false;
 
 	private final CopyOnWriteArrayList<AutoCloseable> closeables = new CopyOnWriteArrayList<>();
 
@@ -208,7 +253,7 @@ final class SimpleContainer implements Container {
 		registerInstance(ServiceLocator.class, this, false);
 	}
 
-	private Either<Object> tryResolveClass(Class<?> manifest, SimpleContainer caller) {
+	private Object tryResolveClass(Class<?> manifest, SimpleContainer caller) {
 		Throwable error = null;
 		CtorInfo[] constructors = classCache.get(manifest);
 		if (constructors == null) {
@@ -225,22 +270,21 @@ final class SimpleContainer implements Container {
 			boolean success = true;
 			for (int i = 0; i < genTypes.length; i++) {
 				Type p = genTypes[i];
-				Either<Object> arg = tryResolve(p, caller);
-				if (arg.hasError()) {
+				Object arg = tryResolve(p, caller);
+				if (arg instanceof Failure) {
 					success = false;
 					if (error == null) {
-						error = arg.error;
+						error = ((Failure) arg).error;
 					} else {
-						error.addSuppressed(arg.error);
+						error.addSuppressed(((Failure) arg).error);
 					}
 					break;
 				}
-				args[i] = arg.value;
+				args[i] = arg;
 			}
 			if (success) {
 				try {
-					Object instance = info.ctor.newInstance(args);
-					return Either.success(instance);
+					return info.newInstance(args);
 				} catch (Exception e) {
 					if (error == null) {
 						error = e;
@@ -252,32 +296,36 @@ final class SimpleContainer implements Container {
 		}
 		if (constructors.length == 0) {
 			try {
-				Object instance = manifest.newInstance();
-				return Either.success(instance);
+				return manifest.newInstance();
 			} catch (Exception ignore) {
 			}
 		}
 		return error == null
-				? Either.fail("Unable to find constructors for: " + manifest)
-				: Either.fail(error);
+				? Failure.of("Unable to find constructors for: " + manifest)
+				: Failure.of(error);
 	}
 
-	private Either<Object> tryResolveType(ParameterizedType type, SimpleContainer caller) {
+	private static TypeInfo getTypeInfo(ParameterizedType type) {
 		TypeInfo typeInfo = typeCache.get(type);
 		if (typeInfo == null) {
 			typeInfo = new TypeInfo(type);
 			typeCache.putIfAbsent(type, typeInfo);
 		}
+		return typeInfo;
+	}
+
+	private Object tryResolveType(ParameterizedType type, SimpleContainer caller) {
+		TypeInfo typeInfo = getTypeInfo(type);
 		if (typeInfo.rawClass == null) {
-			return Either.fail(type + " is not an instance of Class<?> and cannot be resolved");
+			return Failure.of(type + " is not an instance of Class<?> and cannot be resolved");
 		}
 		Registration<?> registration = getRegistration(typeInfo.rawClass);
 		if (registration != null && registration.biFactory != null && typeInfo.genericArguments != null) {
 			try {
 				Object result = registration.biFactory.apply(caller, typeInfo.genericArguments);
-				return Either.success(result);
+				return result;
 			} catch (Exception ex) {
-				return Either.fail(ex);
+				return Failure.of(ex);
 			}
 		} else if (typeInfo.constructors.length == 0 && typeInfo.mappedType != null) {
 			return tryResolve(typeInfo.mappedType, caller);
@@ -286,7 +334,7 @@ final class SimpleContainer implements Container {
 		return tryResolveTypeFrom(typeInfo, mappings, caller);
 	}
 
-	private Either<Object> tryResolveTypeFrom(TypeInfo typeInfo, Map<Type, Type> mappings, SimpleContainer caller) {
+	private Object tryResolveTypeFrom(TypeInfo typeInfo, Map<Type, Type> mappings, SimpleContainer caller) {
 		Throwable error = null;
 		for (CtorInfo info : typeInfo.constructors) {
 			Type[] genTypes = info.genTypes;
@@ -311,24 +359,25 @@ final class SimpleContainer implements Container {
 						}
 						break;
 					} else if (nestedInfo.rawClass == Optional.class) {
-						args[i] = tryResolve(nestedInfo.genericArguments[0], caller);
+						Object value = tryResolve(nestedInfo.genericArguments[0], caller);
+						args[i] = value instanceof Failure ? Optional.empty() : Optional.ofNullable(value);
 					} else {
 						Map<Type, Type> nestedMappings = new HashMap<>(typeInfo.mappings);
 						for (Map.Entry<Type, Type> entry : nestedInfo.mappings.entrySet()) {
 							Type parentValue = nestedMappings.get(entry.getValue());
 							nestedMappings.put(entry.getKey(), parentValue != null ? parentValue : entry.getValue());
 						}
-						Either<Object> arg = tryResolveTypeFrom(nestedInfo, nestedMappings, caller);
-						if (arg.hasError()) {
+						Object arg = tryResolveTypeFrom(nestedInfo, nestedMappings, caller);
+						if (arg instanceof Failure) {
 							success = false;
 							if (error == null) {
-								error = arg.error;
+								error = ((Failure) arg).error;
 							} else {
-								error.addSuppressed(arg.error);
+								error.addSuppressed(((Failure) arg).error);
 							}
 							break;
 						}
-						args[i] = arg.value;
+						args[i] = arg;
 					}
 
 				} else {
@@ -339,24 +388,23 @@ final class SimpleContainer implements Container {
 							break;
 						}
 					}
-					Either<Object> arg = tryResolve(p, caller);
-					if (arg.hasError()) {
+					Object arg = tryResolve(p, caller);
+					if (arg instanceof Failure) {
 						success = false;
 						if (error == null) {
-							error = arg.error;
+							error = ((Failure) arg).error;
 						} else {
-							error.addSuppressed(arg.error);
+							error.addSuppressed(((Failure) arg).error);
 						}
 						break;
 					}
-					args[i] = arg.value;
+					args[i] = arg;
 				}
 			}
 
 			if (success) {
 				try {
-					Object instance = info.ctor.newInstance(args);
-					return Either.success(instance);
+					return info.newInstance(args);
 				} catch (final Exception e) {
 					if (error == null) {
 						error = e;
@@ -367,16 +415,20 @@ final class SimpleContainer implements Container {
 			}
 		}
 		return error == null
-				? Either.fail("Unable to find constructors for: " + typeInfo.rawClass)
-				: Either.fail(error);
+				? Failure.of("Unable to find constructors for: " + typeInfo.rawClass)
+				: Failure.of(error);
 	}
 
 	private Registration<?> getRegistration(Type type) {
-		List<Registration<?>> registrations = container.get(type);
-		if (registrations == null) {
-			return parent != null ? parent.getRegistration(type) : null;
-		}
-		return registrations.get(registrations.size() - 1);
+		SimpleContainer current = this;
+		do {
+			Registration<?>[] registrations = current.container.get(type);
+			if (registrations != null) {
+				return registrations[registrations.length - 1];
+			}
+			current = current.parent;
+		} while (current != null);
+		return null;
 	}
 
 	@Override
@@ -387,20 +439,24 @@ final class SimpleContainer implements Container {
 			}
 			throw new ReflectiveOperationException("Container has been closed");
 		}
-		Either<Object> found = tryResolve(type, this);
-		if (found.hasError()) {
-			if (found.error instanceof ReflectiveOperationException) {
-				throw (ReflectiveOperationException) found.error;
+		Object found = tryResolve(type, this);
+		if (found instanceof Failure) {
+			Throwable error = ((Failure) found).error;
+			if (error instanceof ReflectiveOperationException) {
+				throw (ReflectiveOperationException) error;
 			}
-			throw new ReflectiveOperationException("Unable to resolve: " + type + ". Reason: " + found.error.getMessage(), found.error);
+			throw new ReflectiveOperationException("Unable to resolve: " + type + ". Reason: " + error.getMessage(), error);
 		}
-		return found.value;
+		return found;
 	}
 
-	public Either<Object> tryResolve(Type type, SimpleContainer caller) {
+	public Object tryResolve(Type type, SimpleContainer caller) {
 		Registration<?> registration = getRegistration(type);
 		if (registration == null) {
-			Type basicType = typeNameMappings.get(type.toString());
+			//classes are matched by identity, only other type implementations can be matched by name
+			Type basicType = type instanceof Class<?>
+					? null
+					: typeNameMappings.get(type instanceof ParameterizedType ? getTypeInfo((ParameterizedType) type).name : type.toString());
 			if (basicType != null) {
 				registration = getRegistration(basicType);
 				if (registration != null) {
@@ -421,7 +477,7 @@ final class SimpleContainer implements Container {
 				}
 			}
 			if (type instanceof Class<?> == false) {
-				return Either.fail(type + " is not an instance of Class<?> and cannot be resolved since it's not registered in the container.");
+				return Failure.of(type + " is not an instance of Class<?> and cannot be resolved since it's not registered in the container.");
 			}
 			Class<?> target = (Class<?>) type;
 			if (target.isArray()) {
@@ -429,15 +485,15 @@ final class SimpleContainer implements Container {
 			}
 			if (resolveUnknown) {
 				if (target.isInterface()) {
-					return Either.fail(type + " is not an class and cannot be resolved since it's not registered in the container.\n" +
+					return Failure.of(type + " is not an class and cannot be resolved since it's not registered in the container.\n" +
 							"Try resolving implementation instead.");
 				}
 				return tryResolveClass(target, caller);
 			}
 			return target.isInterface()
-					? Either.fail(type + " is not registered in the container.\n" +
+					? Failure.of(type + " is not registered in the container.\n" +
 					"Since " + type + " is an interface, it must be registered into the container.")
-					: Either.fail(type + " is not registered in the container.\n" +
+					: Failure.of(type + " is not registered in the container.\n" +
 					"If you wish to resolve types not registered in the container, specify revenj.resolveUnknown=true in Properties configuration.");
 		}
 		if (registration.biFactory != null && type instanceof ParameterizedType) {
@@ -450,124 +506,115 @@ final class SimpleContainer implements Container {
 			if (typeInfo.genericArguments != null) {
 				try {
 					Object result = registration.biFactory.apply(caller, typeInfo.genericArguments);
-					return Either.success(result);
+					return result;
 				} catch (Exception ex) {
-					return Either.fail(ex);
+					return Failure.of(ex);
 				}
 			}
 		}
 		return resolveRegistration(registration, caller);
 	}
 
-	private Either<Object> tryResolveCollection(Class<?> container, Type element, SimpleContainer caller) {
-		LinkedHashSet<Registration<?>> registrations = new LinkedHashSet<>();
+	private Object tryResolveCollection(Class<?> container, Type element, SimpleContainer caller) {
+		List<Registration<?>> registrations = new ArrayList<>();
 		SimpleContainer current = caller;
 		do {
-			List<Registration<?>> found = current.container.get(element);
+			Registration<?>[] found = current.container.get(element);
 			if (found != null) {
-				registrations.addAll(found);
+				Collections.addAll(registrations, found);
 			}
 			current = current.parent;
 		} while (current != null);
 		if (registrations.isEmpty()) {
-			return Either.success(Array.newInstance(container, 0));
+			return Array.newInstance(container, 0);
 		}
 		Object[] result = (Object[]) Array.newInstance(container, registrations.size());
 		Iterator<Registration<?>> iter = registrations.iterator();
 		int i = 0;
 		while (iter.hasNext()) {
 			Registration<?> it = iter.next();
-			Either<Object> item = resolveRegistration(it, caller);
-			if (item.isPresent()) {
-				result[i++] = item.value;
-			} else {
-				String message = item.error.getMessage();
-				if (message == null && item.error.getCause() != null) {
-					message = item.error.getCause().getMessage();
+			Object item = resolveRegistration(it, caller);
+			if (item instanceof Failure) {
+				Throwable error = ((Failure) item).error;
+				String message = error.getMessage();
+				if (message == null && error.getCause() != null) {
+					message = error.getCause().getMessage();
 				}
-				return Either.fail(new ReflectiveOperationException("Unable to resolve " + it.signature + ". Error: " + message, item.error));
+				return Failure.of(new ReflectiveOperationException("Unable to resolve " + it.signature + ". Error: " + message, error));
 			}
+			result[i++] = item;
 		}
-		return Either.success(result);
+		return result;
 	}
 
-	private Either<Object> resolveRegistration(Registration<?> registration, SimpleContainer caller) {
+	private Object resolveRegistration(Registration<?> registration, SimpleContainer caller) {
 		if (registration.instance != null) {
-			return Either.success(registration.instance);
-		} else if (registration.singleFactory != null) {
-			try {
-				//TODO match registration owner and caller
-				Object instance;
-				if (registration.lifetime != InstanceScope.TRANSIENT) {
-					final SimpleContainer self = registration.lifetime == InstanceScope.SINGLETON
-							? registration.owner
-							: registration.owner == caller
-							? this
-							: caller;
-					final Registration<?> reg = registration.lifetime == InstanceScope.SINGLETON || registration.owner == caller
-							? registration
-							: registration.prepareSingleton(caller);
-					synchronized (self) {
-						if (reg.promoted) {
-							return Either.success(reg.instance);
-						} else if (reg.promoting) {
-							return Either.fail("Unable to resolve: " + registration.signature + ". Circular dependencies in signature detected");
-						}
-						reg.promoting = true;
-						instance = reg.singleFactory.apply(self);
-						if (instance instanceof AutoCloseable) {
-							self.closeables.add((AutoCloseable) instance);
-						}
-						reg.promoteToSingleton(instance);
-					}
-				} else {
-					instance = registration.singleFactory.apply(this);
+			return registration.instance;
+		} else if (registration.lifetime == InstanceScope.TRANSIENT) {
+			if (registration.singleFactory != null) {
+				try {
+					return registration.singleFactory.apply(this);
+				} catch (Throwable ex) {
+					return Failure.of(ex);
 				}
-				return Either.success(instance);
-			} catch (Throwable ex) {
-				return Either.fail(ex);
 			}
-		}
-		if (registration.lifetime != InstanceScope.TRANSIENT) {
-			final SimpleContainer self = registration.lifetime == InstanceScope.SINGLETON
-					? registration.owner
-					: registration.owner == caller
-					? this
-					: caller;
-			final Registration<?> reg = registration.lifetime == InstanceScope.SINGLETON || registration.owner == caller
-					? registration
-					: registration.prepareSingleton(caller);
-			synchronized (self) {
-				if (reg.promoted) {
-					return Either.success(reg.instance);
-				} else if (reg.promoting) {
-					return Either.fail("Unable to resolve: " + registration.signature + ". Circular dependencies in signature detected");
-				} else if (reg.manifest == null) {
-					return Either.fail("Unable to resolve: " + registration.signature);
-				}
-				reg.promoting = true;
-				Either<Object> tryInstance = self.tryResolveClass(reg.manifest, self);
-				if (tryInstance.isPresent()) {
-					if (tryInstance.value instanceof AutoCloseable) {
-						self.closeables.add((AutoCloseable) tryInstance.value);
-					}
-					reg.promoteToSingleton(tryInstance.value);
+			return tryResolveClass(registration.manifest, caller);
+		}
+		final SimpleContainer self = registration.lifetime == InstanceScope.SINGLETON
+				? registration.owner
+				: registration.owner == caller
+				? this
+				: caller;
+		Promotion promotion = self.instances.get(registration);
+		if (promotion == null) {
+			Promotion created = new Promotion();
+			promotion = self.instances.putIfAbsent(registration, created);
+			if (promotion == null) {
+				Object instance = self.createInstance(registration);
+				if (instance instanceof Failure) {
+					self.instances.remove(registration, created);
+				} else if (instance instanceof AutoCloseable) {
+					self.closeables.add((AutoCloseable) instance);
 				}
-				return tryInstance;
+				created.instance.complete(instance);
+				return instance;
+			}
+		}
+		if (promotion.instance.isDone()) {
+			return promotion.instance.getNow(null);
+		}
+		return promotion.await(registration);
+	}
+
+	private Object createInstance(Registration<?> registration) {
+		if (registration.singleFactory != null) {
+			try {
+				return registration.singleFactory.apply(this);
+			} catch (Throwable ex) {
+				return Failure.of(ex);
 			}
+		} else if (registration.manifest == null) {
+			return Failure.of("Unable to resolve: " + registration.signature);
 		}
-		return tryResolveClass(registration.manifest, caller);
+		return tryResolveClass(registration.manifest, this);
 	}
 
-	private synchronized void addToRegistry(Registration registration) {
-		List<Registration<?>> registrations = container.get(registration.signature);
-		typeNameMappings.put(registration.name, registration.signature);
+	private static Failure circularDependency(Registration<?> registration) {
+		return Failure.of("Unable to resolve: " + registration.signature + ". Circular dependencies in signature detected");
+	}
+
+	private synchronized void addToRegistry(Registration<?> registration) {
+		//classes are matched by identity, so only other types need to be found by name
+		if (!(registration.signature instanceof Class<?>)) {
+			typeNameMappings.put(registration.signature.getTypeName(), registration.signature);
+		}
+		Registration<?>[] registrations = container.get(registration.signature);
 		if (registrations == null) {
-			registrations = new CopyOnWriteArrayList<>();
-			registrations.add(registration);
-			container.put(registration.signature, registrations);
+			container.put(registration.signature, new Registration<?>[]{registration});
 		} else {
-			registrations.add(registration);
+			Registration<?>[] copy = Arrays.copyOf(registrations, registrations.length + 1);
+			copy[registrations.length] = registration;
+			container.put(registration.signature, copy);
 		}
 	}
 
@@ -603,6 +650,7 @@ final class SimpleContainer implements Container {
 	public void close() throws Exception {
 		closed = true;
 		container.clear();
+		instances.clear();
 		for (AutoCloseable closable : closeables) {
 			closable.close();
 		}
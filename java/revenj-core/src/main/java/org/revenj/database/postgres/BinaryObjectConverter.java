@@ -0,0 +1,11 @@
+package org.revenj.database.postgres;
+
+import java.io.IOException;
+
+public interface BinaryObjectConverter<T> extends ObjectConverter<T> {
+	T from(PostgresBinaryReader reader) throws IOException;
+
+	interface Reader<T> {
+		T read(T instance, PostgresBinaryReader reader) throws IOException;
+	}
+}
@@ -90,6 +90,10 @@ public abstract class ConnectionFactory {
 	}
 
 	public static PGStream openConnection(HostSpec[] hostSpecs, String user, String password, String database, Properties info) throws SQLException {
+		return openConnection(hostSpecs, user, password, database, info, SocketFactoryFactory.getSocketFactory(info));
+	}
+
+	public static PGStream openConnection(HostSpec[] hostSpecs, String user, String password, String database, Properties info, SocketFactory socketFactory) throws SQLException {
 		// Extract interesting values from the info properties:
 		// - the SSL setting
 		boolean requireSSL;
@@ -126,8 +130,6 @@ public abstract class ConnectionFactory {
 
 		long lastKnownTime = System.currentTimeMillis() - PGProperty.HOST_RECHECK_SECONDS.getInt(info) * 1000;
 
-		SocketFactory socketFactory = SocketFactoryFactory.getSocketFactory(info);
-
 		HostChooser hostChooser =
 				HostChooserFactory.createHostChooser(hostSpecs, targetServerType, info);
 		Iterator<CandidateHost> hostIter = hostChooser.iterator();
@@ -0,0 +1,208 @@
+package org.revenj.database.postgres;
+
+import org.revenj.patterns.ServiceLocator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Reader for values received in Postgres binary wire format.
+ * Composite records are encoded as number of fields followed by (oid, length, value) for each field,
+ * while arrays are encoded as a header describing dimensions followed by (length, value) for each element.
+ * Unlike text format, there is no escaping, so values can be read directly from the received bytes.
+ */
+public final class PostgresBinaryReader implements AutoCloseable {
+	private static final byte[] EMPTY = new byte[0];
+
+	private byte[] input = EMPTY;
+	private int position;
+	private int length;
+	private ServiceLocator locator;
+
+	public PostgresBinaryReader() {
+		this(null);
+	}
+
+	public PostgresBinaryReader(ServiceLocator locator) {
+		this.locator = locator;
+	}
+
+	public Optional<ServiceLocator> getLocator() {
+		return Optional.ofNullable(locator);
+	}
+
+	public void close() {
+		input = EMPTY;
+		position = length = 0;
+	}
+
+	public void process(byte[] input) {
+		process(input, 0, input.length);
+	}
+
+	public void process(byte[] input, int offset, int length) {
+		this.input = input;
+		this.position = offset;
+		this.length = offset + length;
+	}
+
+	public int position() {
+		return position;
+	}
+
+	public int remaining() {
+		return length - position;
+	}
+
+	public void skip(int count) throws IOException {
+		ensure(count);
+		position += count;
+	}
+
+	private void ensure(int count) throws IOException {
+		if (position + count > length) {
+			throw new IOException("End of input detected. Expecting " + count + " bytes at position " + position + ", but only " + (length - position) + " available");
+		}
+	}
+
+	public byte readByte() throws IOException {
+		ensure(1);
+		return input[position++];
+	}
+
+	public short readShort() throws IOException {
+		ensure(2);
+		final byte[] buf = input;
+		final int pos = position;
+		position += 2;
+		return (short) (((buf[pos] & 0xff) << 8) | (buf[pos + 1] & 0xff));
+	}
+
+	public int readInt() throws IOException {
+		ensure(4);
+		final byte[] buf = input;
+		final int pos = position;
+		position += 4;
+		return ((buf[pos] & 0xff) << 24)
+				| ((buf[pos + 1] & 0xff) << 16)
+				| ((buf[pos + 2] & 0xff) << 8)
+				| (buf[pos + 3] & 0xff);
+	}
+
+	public long readLong() throws IOException {
+		ensure(8);
+		final byte[] buf = input;
+		final int pos = position;
+		position += 8;
+		return ((long) (buf[pos] & 0xff) << 56)
+				| ((long) (buf[pos + 1] & 0xff) << 48)
+				| ((long) (buf[pos + 2] & 0xff) << 40)
+				| ((long) (buf[pos + 3] & 0xff) << 32)
+				| ((long) (buf[pos + 4] & 0xff) << 24)
+				| ((long) (buf[pos + 5] & 0xff) << 16)
+				| ((long) (buf[pos + 6] & 0xff) << 8)
+				| ((long) (buf[pos + 7] & 0xff));
+	}
+
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	/**
+	 * Read text value of specified length. Postgres sends text as UTF-8 encoded bytes.
+	 *
+	 * @param len number of bytes
+	 * @return decoded string
+	 * @throws IOException when input is too short
+	 */
+	public String readString(int len) throws IOException {
+		if (len == 0) return "";
+		ensure(len);
+		String result = new String(input, position, len, StandardCharsets.UTF_8);
+		position += len;
+		return result;
+	}
+
+	public byte[] readBytes(int len) throws IOException {
+		if (len == 0) return EMPTY;
+		ensure(len);
+		byte[] result = new byte[len];
+		System.arraycopy(input, position, result, 0, len);
+		position += len;
+		return result;
+	}
+
+	/**
+	 * Read value of specified length as a view over the input, without copying it.
+	 * View is valid only while the processed input is not modified.
+	 *
+	 * @param len number of bytes
+	 * @return buffer over the value
+	 * @throws IOException when input is too short
+	 */
+	public ByteBuffer readBuffer(int len) throws IOException {
+		ensure(len);
+		ByteBuffer result = ByteBuffer.wrap(input, position, len).slice();
+		position += len;
+		return result;
+	}
+
+	/**
+	 * Start reading composite record.
+	 *
+	 * @return number of fields in the record
+	 * @throws IOException when input is too short
+	 */
+	public int readRecord() throws IOException {
+		return readInt();
+	}
+
+	/**
+	 * Move to the next field in a composite record.
+	 * Field type oid is skipped since converters already know the expected type.
+	 *
+	 * @return length of the field value in bytes or -1 for NULL
+	 * @throws IOException when input is too short
+	 */
+	public int nextField() throws IOException {
+		skip(4);
+		return readInt();
+	}
+
+	/**
+	 * Move to the next element in an array.
+	 *
+	 * @return length of the element value in bytes or -1 for NULL
+	 * @throws IOException when input is too short
+	 */
+	public int nextElement() throws IOException {
+		return readInt();
+	}
+
+	/**
+	 * Start reading an array. Only one dimensional arrays are supported.
+	 *
+	 * @return number of elements in the array
+	 * @throws IOException when input is too short or array has multiple dimensions
+	 */
+	public int readArray() throws IOException {
+		int dimensions = readInt();
+		//has nulls flag and element oid
+		skip(8);
+		if (dimensions == 0) {
+			return 0;
+		} else if (dimensions != 1) {
+			throw new IOException("Only one dimensional arrays are supported. Found: " + dimensions);
+		}
+		int size = readInt();
+		//lower bound
+		skip(4);
+		return size;
+	}
+}
@@ -0,0 +1,559 @@
+package org.revenj.database.postgres;
+
+import org.postgresql.core.BaseConnection;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded Postgres connection pool.
+ * Idle connections are kept in a lock-free stack, so most recently used (warm) connections are reused first.
+ * Number of connections is limited by a fair semaphore, so threads waiting for a connection
+ * are served in order and give up after configured timeout.
+ * Connection which was idle for a while is validated before it's handed out.
+ * Background thread closes connections which were idle for too long and reports connections which were not returned.
+ * It's stopped when the pool is closed and it doesn't keep the pool alive.
+ * Statements, result sets and metadata created from a pooled connection return the pooled connection,
+ * so the physical connection is never exposed to the caller.
+ * Unwrapping to a driver interface returns a guarded proxy which is released to the pool on close
+ * and can't be used after that.
+ * <p>
+ * Pool uses credentials of the configured factory. Connection for a different user is rejected.
+ * <p>
+ * Pool is configured through properties:
+ * <ul>
+ * <li>revenj.pool.maxSize - maximum number of connections (default 20)</li>
+ * <li>revenj.pool.timeout - how long to wait for a connection in milliseconds (default 30000)</li>
+ * <li>revenj.pool.idleTimeout - after how many milliseconds idle connections are closed (default 600000, 0 disables)</li>
+ * <li>revenj.pool.validationTimeout - how long to wait for connection validation in seconds (default 5)</li>
+ * <li>revenj.pool.validateAfter - connection idle for that many milliseconds will be validated before use (default 1000)</li>
+ * <li>revenj.pool.leakDetection - report connections borrowed for longer than that many milliseconds (default 0 - disabled)</li>
+ * </ul>
+ */
+public final class PostgresConnectionPool implements javax.sql.DataSource, Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(PostgresConnectionPool.class.getName());
+
+	private final PGSimpleDataSource factory;
+	private final int maxSize;
+	private final long timeout;
+	private final long idleTimeout;
+	private final int validationTimeout;
+	private final long validateAfter;
+	private final long leakDetection;
+
+	private final Semaphore permits;
+	private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+	private final Set<PooledConnection> active = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger total = new AtomicInteger();
+	private final AtomicLong created = new AtomicLong();
+	private final AtomicLong evicted = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong leaks = new AtomicLong();
+	private final Thread housekeeping;
+	private volatile boolean isClosed;
+
+	private static final class PooledConnection {
+		final Connection physical;
+		volatile long lastUsed;
+		volatile long borrowedAt;
+		volatile Throwable borrowedBy;
+		volatile boolean leakReported;
+
+		PooledConnection(Connection physical) {
+			this.physical = physical;
+			this.lastUsed = System.currentTimeMillis();
+		}
+	}
+
+	public PostgresConnectionPool(
+			PGSimpleDataSource factory,
+			int maxSize,
+			long timeout,
+			long idleTimeout,
+			int validationTimeout,
+			long validateAfter,
+			long leakDetection) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be positive");
+		}
+		this.factory = factory;
+		this.maxSize = maxSize;
+		this.timeout = timeout;
+		this.idleTimeout = idleTimeout;
+		this.validationTimeout = validationTimeout;
+		this.validateAfter = validateAfter;
+		this.leakDetection = leakDetection;
+		this.permits = new Semaphore(maxSize, true);
+		long period = Math.min(idleTimeout > 0 ? idleTimeout : Long.MAX_VALUE, leakDetection > 0 ? leakDetection : Long.MAX_VALUE);
+		if (period != Long.MAX_VALUE) {
+			housekeeping = new Thread(new Housekeeping(this, Math.max(period / 2, 100)), "Revenj connection pool housekeeping");
+			housekeeping.setDaemon(true);
+			housekeeping.start();
+		} else {
+			housekeeping = null;
+		}
+	}
+
+	/**
+	 * Pool is referenced weakly, so forgotten pool can be collected (and its thread will stop),
+	 * even if it was never closed.
+	 */
+	private static final class Housekeeping implements Runnable {
+		private final WeakReference<PostgresConnectionPool> pool;
+		private final long sleep;
+
+		Housekeeping(PostgresConnectionPool pool, long sleep) {
+			this.pool = new WeakReference<>(pool);
+			this.sleep = sleep;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				try {
+					Thread.sleep(sleep);
+				} catch (InterruptedException ignore) {
+					return;
+				}
+				PostgresConnectionPool current = pool.get();
+				if (current == null || current.isClosed) {
+					return;
+				}
+				current.housekeeping();
+			}
+		}
+	}
+
+	public static PostgresConnectionPool create(PGSimpleDataSource factory, Properties properties) throws IOException {
+		return new PostgresConnectionPool(
+				factory,
+				(int) parse(properties, "revenj.pool.maxSize", 20),
+				parse(properties, "revenj.pool.timeout", 30000),
+				parse(properties, "revenj.pool.idleTimeout", 600000),
+				(int) parse(properties, "revenj.pool.validationTimeout", 5),
+				parse(properties, "revenj.pool.validateAfter", 1000),
+				parse(properties, "revenj.pool.leakDetection", 0));
+	}
+
+	private static long parse(Properties properties, String name, long defaultValue) throws IOException {
+		String value = properties.getProperty(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException ex) {
+			throw new IOException("Invalid " + name + " provided. Expecting number. Found: " + value);
+		}
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (isClosed) {
+			throw new SQLException("Connection pool has been closed");
+		}
+		try {
+			if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+				timeouts.incrementAndGet();
+				throw new SQLException("Timeout waiting for connection after " + timeout + "ms. Active connections: " + active.size() + ", max size: " + maxSize);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for connection", e);
+		}
+		try {
+			PooledConnection pooled = borrow();
+			pooled.borrowedAt = System.currentTimeMillis();
+			pooled.borrowedBy = leakDetection > 0 ? new Throwable("Connection borrowed here") : null;
+			pooled.leakReported = false;
+			active.add(pooled);
+			LogicalConnection handler = new LogicalConnection(pooled);
+			handler.logical = (Connection) Proxy.newProxyInstance(
+					PostgresConnectionPool.class.getClassLoader(),
+					new Class<?>[]{Connection.class},
+					handler);
+			return handler.logical;
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	private PooledConnection borrow() throws SQLException {
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			if (System.currentTimeMillis() - pooled.lastUsed < validateAfter
+					|| isValid(pooled.physical)) {
+				return pooled;
+			}
+			discard(pooled);
+		}
+		pooled = new PooledConnection(factory.getConnection());
+		total.incrementAndGet();
+		created.incrementAndGet();
+		return pooled;
+	}
+
+	private boolean isValid(Connection connection) {
+		try {
+			return connection.isValid(validationTimeout);
+		} catch (SQLException ignore) {
+			return false;
+		}
+	}
+
+	private void discard(PooledConnection pooled) {
+		total.decrementAndGet();
+		try {
+			pooled.physical.close();
+		} catch (SQLException ignore) {
+		}
+	}
+
+	private void release(PooledConnection pooled) {
+		active.remove(pooled);
+		pooled.borrowedBy = null;
+		try {
+			Connection physical = pooled.physical;
+			if (isClosed || physical.isClosed()) {
+				discard(pooled);
+				return;
+			}
+			if (!physical.getAutoCommit()) {
+				physical.rollback();
+				physical.setAutoCommit(true);
+			}
+			physical.clearWarnings();
+			pooled.lastUsed = System.currentTimeMillis();
+			idle.offerFirst(pooled);
+		} catch (SQLException ignore) {
+			discard(pooled);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private void housekeeping() {
+		long now = System.currentTimeMillis();
+		if (idleTimeout > 0) {
+			Iterator<PooledConnection> iter = idle.descendingIterator();
+			while (iter.hasNext()) {
+				PooledConnection pooled = iter.next();
+				if (now - pooled.lastUsed > idleTimeout && idle.remove(pooled)) {
+					evicted.incrementAndGet();
+					discard(pooled);
+				}
+			}
+		}
+		if (leakDetection > 0) {
+			for (PooledConnection pooled : active) {
+				if (!pooled.leakReported && now - pooled.borrowedAt > leakDetection) {
+					pooled.leakReported = true;
+					leaks.incrementAndGet();
+					LOGGER.log(Level.WARNING, "Connection was not returned to the pool for " + (now - pooled.borrowedAt) + "ms", pooled.borrowedBy);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Physical connection behind a pooled connection.
+	 * It's available only within the package, so statements can be cached across borrows
+	 * while the physical connection is never handed out to the caller.
+	 * For connections which were not created by the pool, Postgres connection is unwrapped.
+	 *
+	 * @param connection borrowed connection
+	 * @return physical connection or null if it's not a Postgres connection
+	 * @throws SQLException when pooled connection has been closed
+	 */
+	static BaseConnection physicalConnection(Connection connection) throws SQLException {
+		if (Proxy.isProxyClass(connection.getClass())
+				&& Proxy.getInvocationHandler(connection) instanceof LogicalConnection) {
+			LogicalConnection logical = (LogicalConnection) Proxy.getInvocationHandler(connection);
+			if (logical.isReleased) {
+				throw new SQLException("Connection has been closed");
+			}
+			connection = logical.pooled.physical;
+		}
+		if (connection instanceof BaseConnection) {
+			return (BaseConnection) connection;
+		}
+		return connection.isWrapperFor(BaseConnection.class)
+				? connection.unwrap(BaseConnection.class)
+				: null;
+	}
+
+	private static Class<?> jdbcType(Object instance) {
+		if (instance instanceof CallableStatement) return CallableStatement.class;
+		if (instance instanceof PreparedStatement) return PreparedStatement.class;
+		if (instance instanceof Statement) return Statement.class;
+		if (instance instanceof ResultSet) return ResultSet.class;
+		if (instance instanceof DatabaseMetaData) return DatabaseMetaData.class;
+		return null;
+	}
+
+	/**
+	 * Objects which can reach the connection (statements, result sets and metadata) are wrapped,
+	 * so they return the pooled connection instead of the physical one.
+	 */
+	private static Object wrap(Object result, LogicalConnection connection, Object owner) {
+		Class<?> type = jdbcType(result);
+		if (type == null) {
+			return result;
+		}
+		return Proxy.newProxyInstance(
+				PostgresConnectionPool.class.getClassLoader(),
+				new Class<?>[]{type},
+				new LogicalObject(result, type, connection, owner instanceof Statement ? owner : null));
+	}
+
+	/**
+	 * Driver specific interfaces are exposed through a guarded proxy which uses the same handler,
+	 * so the physical object is never returned to the caller.
+	 */
+	private static Object unwrap(Object proxy, Class<?> type, Object target, InvocationHandler handler, Class<?> iface) throws SQLException {
+		if (iface.isInstance(proxy)) {
+			return proxy;
+		}
+		if (!iface.isInterface() || !iface.isInstance(target)) {
+			throw new SQLException(type.getSimpleName() + " is not a wrapper for " + iface);
+		}
+		return Proxy.newProxyInstance(
+				PostgresConnectionPool.class.getClassLoader(),
+				iface == type || type.isAssignableFrom(iface) ? new Class<?>[]{iface} : new Class<?>[]{iface, type},
+				handler);
+	}
+
+	private static boolean isWrapperFor(Object proxy, Object target, Class<?> iface) {
+		return iface.isInstance(proxy) || iface.isInterface() && iface.isInstance(target);
+	}
+
+	private final class LogicalConnection implements InvocationHandler {
+		private final PooledConnection pooled;
+		private volatile boolean isReleased;
+		private Connection logical;
+
+		LogicalConnection(PooledConnection pooled) {
+			this.pooled = pooled;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			switch (name) {
+				case "close":
+					if (!isReleased) {
+						isReleased = true;
+						release(pooled);
+					}
+					return null;
+				case "isClosed":
+					return isReleased || pooled.physical.isClosed();
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Pooled " + pooled.physical;
+			}
+			if (isReleased) {
+				throw new SQLException("Connection has been closed");
+			}
+			switch (name) {
+				case "unwrap":
+					return unwrap(proxy, Connection.class, pooled.physical, this, (Class<?>) args[0]);
+				case "isWrapperFor":
+					return isWrapperFor(proxy, pooled.physical, (Class<?>) args[0]);
+			}
+			Object result;
+			try {
+				result = method.invoke(pooled.physical, args);
+			} catch (InvocationTargetException ex) {
+				throw ex.getCause();
+			}
+			return wrap(result, this, null);
+		}
+	}
+
+	private static final class LogicalObject implements InvocationHandler {
+		private final Object target;
+		private final Class<?> type;
+		private final LogicalConnection connection;
+		private final Object statement;
+
+		LogicalObject(Object target, Class<?> type, LogicalConnection connection, Object statement) {
+			this.target = target;
+			this.type = type;
+			this.connection = connection;
+			this.statement = statement;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return target.toString();
+				case "close":
+				case "isClosed":
+					break;
+				default:
+					//physical connection could already be used by someone else
+					if (connection.isReleased) {
+						throw new SQLException("Connection has been closed");
+					}
+			}
+			switch (method.getName()) {
+				case "getConnection":
+					return connection.logical;
+				case "getStatement":
+					return statement;
+				case "unwrap":
+					return unwrap(proxy, type, target, this, (Class<?>) args[0]);
+				case "isWrapperFor":
+					return isWrapperFor(proxy, target, (Class<?>) args[0]);
+			}
+			Object result;
+			try {
+				result = method.invoke(target, args);
+			} catch (InvocationTargetException ex) {
+				throw ex.getCause();
+			}
+			return wrap(result, connection, proxy);
+		}
+	}
+
+	/**
+	 * Close idle connections and reject further requests.
+	 * Borrowed connections will be closed when they are returned.
+	 */
+	@Override
+	public void close() {
+		isClosed = true;
+		if (housekeeping != null) {
+			housekeeping.interrupt();
+		}
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			discard(pooled);
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int getActiveConnections() {
+		return active.size();
+	}
+
+	public int getIdleConnections() {
+		return idle.size();
+	}
+
+	public int getTotalConnections() {
+		return total.get();
+	}
+
+	public int getWaitingThreads() {
+		return permits.getQueueLength();
+	}
+
+	public long getCreatedConnections() {
+		return created.get();
+	}
+
+	public long getEvictedConnections() {
+		return evicted.get();
+	}
+
+	public long getTimeouts() {
+		return timeouts.get();
+	}
+
+	public long getLeaks() {
+		return leaks.get();
+	}
+
+	/**
+	 * Pool has connections only for the configured user.
+	 * Connection is borrowed from the pool when credentials match, otherwise it's rejected.
+	 */
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		if (!Objects.equals(username, factory.getUser()) || !Objects.equals(password, factory.getPassword())) {
+			throw new SQLException("Connection pool supports only configured credentials");
+		}
+		return getConnection();
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return factory.getLogWriter();
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		factory.setLogWriter(out);
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		factory.setLoginTimeout(seconds);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return factory.getLoginTimeout();
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return LOGGER.getParent();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return (T) this;
+		}
+		throw new SQLException("Pool is not a wrapper for " + iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) {
+		return iface.isInstance(this);
+	}
+}
@@ -8,14 +8,23 @@ import org.revenj.patterns.Specification;
 import org.revenj.database.postgres.jinq.RevenjQueryComposer;
 import org.revenj.database.postgres.jinq.jpqlquery.*;
 import org.revenj.database.postgres.jinq.transform.*;
+import org.revenj.security.PermissionManager;
 
 import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.security.Principal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public abstract class PostgresOlapCubeQuery<TSource extends DataSource> implements OlapCubeQuery<TSource> {
 
@@ -25,6 +34,8 @@ public abstract class PostgresOlapCubeQuery<TSource extends DataSource> implemen
 	protected final javax.sql.DataSource dataSource;
 	private final MetamodelUtil metamodel;
 	private final ClassLoader loader;
+	private final QueryCache queryCache;
+	private final PermissionManager permissions;
 
 	protected abstract String getSource();
 
@@ -32,6 +43,149 @@ public abstract class PostgresOlapCubeQuery<TSource extends DataSource> implemen
 	protected final Map<String, Function<String, String>> cubeFacts = new LinkedHashMap<>();
 	protected final Map<String, Converter> cubeConverters = new LinkedHashMap<>();
 
+	/**
+	 * Analyzed filters and SQL templates are shared between all instances of the same cube.
+	 * Dimensions and facts are defined by the cube class, so the same input will always produce the same SQL.
+	 */
+	private static final Map<Class<?>, QueryCache> QUERY_CACHES = new ConcurrentHashMap<>();
+	private static final int MAX_CACHED_ENTRIES = 256;
+	private static final int STREAM_FETCH_SIZE = 1000;
+
+	private static final class QueryCache {
+		final Class<?> source;
+		final BoundedCache<ConditionKey, Optional<WhereCondition>> conditions = new BoundedCache<>(MAX_CACHED_ENTRIES);
+		final BoundedCache<String, SqlTemplate> templates = new BoundedCache<>(MAX_CACHED_ENTRIES);
+
+		QueryCache(Class<?> source) {
+			this.source = source;
+		}
+	}
+
+	/**
+	 * Concurrent cache with clock (second chance) eviction.
+	 * Entries which were used since the last pass of the sweep are kept, while the others are evicted.
+	 */
+	private static final class BoundedCache<K, V> {
+		private static final class Entry<K, V> {
+			final K key;
+			final V value;
+			volatile boolean referenced = true;
+
+			Entry(K key, V value) {
+				this.key = key;
+				this.value = value;
+			}
+		}
+
+		private final int capacity;
+		private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+		private final ConcurrentLinkedQueue<Entry<K, V>> clock = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean evicting = new AtomicBoolean();
+
+		BoundedCache(int capacity) {
+			this.capacity = capacity;
+		}
+
+		V get(K key) {
+			Entry<K, V> entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (!entry.referenced) {
+				entry.referenced = true;
+			}
+			return entry.value;
+		}
+
+		void put(K key, V value) {
+			Entry<K, V> entry = new Entry<>(key, value);
+			if (entries.putIfAbsent(key, entry) != null) {
+				return;
+			}
+			clock.add(entry);
+			if (entries.size() > capacity && evicting.compareAndSet(false, true)) {
+				try {
+					Entry<K, V> candidate;
+					while (entries.size() > capacity && (candidate = clock.poll()) != null) {
+						if (candidate.referenced) {
+							candidate.referenced = false;
+							clock.add(candidate);
+						} else {
+							entries.remove(candidate.key, candidate);
+						}
+					}
+				} finally {
+					evicting.set(false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Lambda class determines the lambda method and therefore the translated condition,
+	 * while generated parameters refer to the lambda by its position.
+	 */
+	private static final class ConditionKey {
+		final Class<?> lambda;
+		final int index;
+
+		ConditionKey(Class<?> lambda, int index) {
+			this.lambda = lambda;
+			this.index = index;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * lambda.hashCode() + index;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ConditionKey)) return false;
+			ConditionKey other = (ConditionKey) obj;
+			return lambda == other.lambda && index == other.index;
+		}
+	}
+
+	private static Class<?> findSource(Class<?> cube) {
+		Type type = cube.getGenericSuperclass();
+		while (type != null) {
+			if (type instanceof ParameterizedType) {
+				ParameterizedType pt = (ParameterizedType) type;
+				if (pt.getRawType() == PostgresOlapCubeQuery.class) {
+					Type source = pt.getActualTypeArguments()[0];
+					return source instanceof Class<?> ? (Class<?>) source : null;
+				}
+				type = ((Class<?>) pt.getRawType()).getGenericSuperclass();
+			} else if (type instanceof Class<?>) {
+				type = ((Class<?>) type).getGenericSuperclass();
+			} else {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	private static final class WhereCondition {
+		final String sql;
+		final List<GeneratedQueryParameter> parameters;
+
+		WhereCondition(String sql, List<GeneratedQueryParameter> parameters) {
+			this.sql = sql;
+			this.parameters = parameters;
+		}
+	}
+
+	private static final class SqlTemplate {
+		final String select;
+		final String groupAndOrder;
+
+		SqlTemplate(String select, String groupAndOrder) {
+			this.select = select;
+			this.groupAndOrder = groupAndOrder;
+		}
+	}
+
 	@FunctionalInterface
 	public interface Converter {
 		Object convert(PostgresReader reader, int context) throws IOException;
@@ -44,6 +198,8 @@ public abstract class PostgresOlapCubeQuery<TSource extends DataSource> implemen
 		this.transactionConnection = locator.tryResolve(Connection.class).orElse(null);
 		this.dataSource = transactionConnection != null ? null : locator.resolve(javax.sql.DataSource.class);
 		this.metamodel = locator.resolve(MetamodelUtil.class);
+		this.queryCache = QUERY_CACHES.computeIfAbsent(getClass(), c -> new QueryCache(findSource(c)));
+		this.permissions = locator.tryResolve(PermissionManager.class).orElse(null);
 	}
 
 	@Override
@@ -150,9 +306,120 @@ public abstract class PostgresOlapCubeQuery<TSource extends DataSource> implemen
 			}
 		}
 
+		SqlTemplate template = prepareTemplate(asRecord, usedDimensions, usedFacts, customOrder);
+		sb.append(template.select);
+		boolean hasWhere = false;
+		//row filters are merged into the WHERE clause, so forbidden rows are not aggregated
+		for (Specification<TSource> rowFilter : rowFilters()) {
+			int index = lambdas.size();
+			Specification<TSource> specification = rewriteSpecification(rowFilter);
+			LambdaInfo lambdaInfo = LambdaInfo.analyze(specification, index, true);
+			Optional<WhereCondition> condition = prepareCondition(specification, lambdaInfo, index);
+			if (!condition.isPresent()) {
+				throw new SecurityException("Unable to convert row filter for " + queryCache.source.getTypeName() + " to SQL");
+			}
+			hasWhere = appendCondition(sb, hasWhere, condition.get(), parameters);
+			lambdas.add(lambdaInfo);
+		}
+		if (filter != null) {
+			int index = lambdas.size();
+			Specification<TSource> specification = rewriteSpecification(filter);
+			LambdaInfo lambdaInfo = LambdaInfo.analyze(specification, index, true);
+			Optional<WhereCondition> condition = prepareCondition(specification, lambdaInfo, index);
+			if (condition.isPresent()) {
+				appendCondition(sb, hasWhere, condition.get(), parameters);
+			}
+			lambdas.add(lambdaInfo);
+		}
+		sb.append(template.groupAndOrder);
+		//limit and offset are bound as parameters, so all pages share the same statement and plan
+		if (limit != null) {
+			sb.append(" LIMIT ?");
+			bindValue(limit.longValue(), parameters, lambdas);
+		}
+		if (offset != null) {
+			sb.append(" OFFSET ?");
+			bindValue(offset.longValue(), parameters, lambdas);
+		}
+	}
+
+	private static void bindValue(long value, List<GeneratedQueryParameter> parameters, List<LambdaInfo> lambdas) {
+		int index = lambdas.size();
+		lambdas.add(new ValueInfo(index, value));
+		parameters.add(new GeneratedQueryParameter(null, index, 0, "long"));
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Specification<TSource>> rowFilters() {
+		if (permissions == null || queryCache.source == null) {
+			return Collections.emptyList();
+		}
+		Principal principal = PermissionManager.boundPrincipal.get();
+		if (principal == null) {
+			return Collections.emptyList();
+		}
+		return permissions.queryFilters((Class<TSource>) queryCache.source, principal);
+	}
+
+	private static boolean appendCondition(
+			StringBuilder sb,
+			boolean hasWhere,
+			WhereCondition condition,
+			List<GeneratedQueryParameter> parameters) {
+		sb.append(hasWhere ? " AND (" : " WHERE (");
+		sb.append(condition.sql);
+		sb.append(')');
+		parameters.addAll(condition.parameters);
+		return true;
+	}
+
+	private Optional<WhereCondition> prepareCondition(Specification<TSource> specification, LambdaInfo lambdaInfo, int index) {
+		if (lambdaInfo == null) {
+			return Optional.empty();
+		}
+		ConditionKey key = new ConditionKey(specification.getClass(), index);
+		Optional<WhereCondition> condition = queryCache.conditions.get(key);
+		if (condition != null) {
+			return condition;
+		}
+		String alias = "_it";
+		SelectFromWhere<?> sfw = applyTransformWithLambda(alias, lambdaInfo);
+		if (sfw != null && sfw.generateWhere("\"" + alias + "\"")) {
+			condition = Optional.of(new WhereCondition(sfw.getQueryString(), new ArrayList<>(sfw.getQueryParameters())));
+		} else {
+			condition = Optional.empty();
+		}
+		queryCache.conditions.put(key, condition);
+		return condition;
+	}
+
+	private SqlTemplate prepareTemplate(
+			boolean asRecord,
+			List<String> usedDimensions,
+			List<String> usedFacts,
+			Map<String, Boolean> customOrder) {
+		StringBuilder key = new StringBuilder(asRecord ? "R" : "C");
+		for (String d : usedDimensions) {
+			key.append(d).append(',');
+		}
+		key.append(';');
+		for (String f : usedFacts) {
+			key.append(f).append(',');
+		}
+		key.append(';');
+		for (Map.Entry<String, Boolean> o : customOrder.entrySet()) {
+			key.append(o.getKey()).append(o.getValue() ? '+' : '-');
+		}
+		String templateKey = key.toString();
+		SqlTemplate template = queryCache.templates.get(templateKey);
+		if (template != null) {
+			return template;
+		}
+
 		validateInput(usedDimensions, usedFacts, customOrder.keySet());
 
 		String alias = "_it";
+		StringBuilder sb = new StringBuilder();
 		sb.append("SELECT ");
 		if (asRecord) {
 			sb.append("ROW(");
@@ -168,17 +435,9 @@ public abstract class PostgresOlapCubeQuery<TSource extends DataSource> implemen
 			sb.append(")");
 		}
 		sb.append(" FROM ").append(getSource()).append(" \"").append(alias).append("\"");
+		String select = sb.toString();
 
-		if (filter != null) {
-			LambdaInfo lambdaInfo = LambdaInfo.analyze(rewriteSpecification(filter), 0, true);
-			SelectFromWhere<?> sfw = applyTransformWithLambda(alias, lambdaInfo);
-			if (sfw != null && sfw.generateWhere("\"" + alias + "\"")) {
-				sb.append(" WHERE ");
-				sb.append(sfw.getQueryString());
-				parameters.addAll(sfw.getQueryParameters());
-			}
-			lambdas.add(lambdaInfo);
-		}
+		sb.setLength(0);
 		if (!usedDimensions.isEmpty()) {
 			sb.append(" GROUP BY ");
 			for (String d : usedDimensions) {
@@ -203,12 +462,9 @@ public abstract class PostgresOlapCubeQuery<TSource extends DataSource> implemen
 			}
 			sb.setLength(sb.length() - 2);
 		}
-		if (limit != null) {
-			sb.append(" LIMIT ").append(Integer.toString(limit));
-		}
-		if (offset != null) {
-			sb.append(" OFFSET ").append(Integer.toString(offset));
-		}
+		template = new SqlTemplate(select, sb.toString());
+		queryCache.templates.put(templateKey, template);
+		return template;
 	}
 
 	public Converter[] prepareConverters(List<String> dimensions, List<String> facts) {
@@ -241,12 +497,14 @@ public abstract class PostgresOlapCubeQuery<TSource extends DataSource> implemen
 			usedFacts.addAll(facts);
 		}
 
-		List<GeneratedQueryParameter> parameters = filter != null ? new ArrayList<>() : null;
-		List<LambdaInfo> lambdas = filter != null ? new ArrayList<>(1) : null;
+		List<GeneratedQueryParameter> parameters = new ArrayList<>();
+		List<LambdaInfo> lambdas = new ArrayList<>();
 		StringBuilder sb = new StringBuilder();
 		prepareSql(sb, true, usedDimensions, usedFacts, order, filter, limit, offset, parameters, lambdas);
 		Converter[] converters = prepareConverters(usedDimensions, usedFacts);
 
+		String[] columnNames = prepareColumnNames(usedDimensions, usedFacts);
+
 		Connection connection = getConnection();
 		List<Map<String, Object>> result = new ArrayList<>();
 		try (PreparedStatement ps = connection.prepareStatement(sb.toString())) {
@@ -260,29 +518,209 @@ public abstract class PostgresOlapCubeQuery<TSource extends DataSource> implemen
 						lambdas);
 			}
 			ResultSet rs = ps.executeQuery();
-			String[] columnNames = new String[usedFacts.size() + usedDimensions.size()];
-			for (int i = 0; i < usedDimensions.size(); i++) {
-				columnNames[i] = usedDimensions.get(i);
-			}
-			for (int i = 0; i < usedFacts.size(); i++) {
-				columnNames[usedDimensions.size() + i] = usedFacts.get(i);
-			}
 			while (rs.next()) {
-				reader.process(rs.getString(1));
-				reader.read();
-				Map<String, Object> item = new LinkedHashMap<>();
-				for (int i = 0; i < columnNames.length; i++) {
-					item.put(columnNames[i], converters[i].convert(reader, 1));
-				}
-				result.add(item);
+				result.add(readRow(reader, rs.getString(1), columnNames, converters));
 			}
 			rs.close();
 		} catch (SQLException | IOException ex) {
 			throw new RuntimeException(ex);
+		} finally {
+			try {
+				releaseConnection(connection);
+			} catch (SQLException ignore) {
+			}
 		}
 		return result;
 	}
 
+	private static String[] prepareColumnNames(List<String> usedDimensions, List<String> usedFacts) {
+		String[] columnNames = new String[usedFacts.size() + usedDimensions.size()];
+		for (int i = 0; i < usedDimensions.size(); i++) {
+			columnNames[i] = usedDimensions.get(i);
+		}
+		for (int i = 0; i < usedFacts.size(); i++) {
+			columnNames[usedDimensions.size() + i] = usedFacts.get(i);
+		}
+		return columnNames;
+	}
+
+	private static Map<String, Object> readRow(
+			PostgresReader reader,
+			String value,
+			String[] columnNames,
+			Converter[] converters) throws IOException {
+		reader.process(value);
+		reader.read();
+		Map<String, Object> item = new LinkedHashMap<>();
+		for (int i = 0; i < columnNames.length; i++) {
+			item.put(columnNames[i], converters[i].convert(reader, 1));
+		}
+		return item;
+	}
+
+	/**
+	 * Lazily process analysis results. Postgres driver will use a server side cursor
+	 * only when fetch size is set and autocommit is disabled.
+	 * When connection is acquired for this query, transaction will be started
+	 * and finished on stream close, otherwise provided connection is used as is.
+	 * Resources are released when stream is closed or fully consumed.
+	 */
+	@Override
+	public Stream<Map<String, Object>> stream(
+			List<String> dimensions,
+			List<String> facts,
+			Collection<Map.Entry<String, Boolean>> order,
+			Specification<TSource> filter,
+			Integer limit,
+			Integer offset) {
+		List<String> usedDimensions = new ArrayList<>();
+		List<String> usedFacts = new ArrayList<>();
+
+		if (dimensions != null) {
+			usedDimensions.addAll(dimensions);
+		}
+		if (facts != null) {
+			usedFacts.addAll(facts);
+		}
+
+		List<GeneratedQueryParameter> parameters = new ArrayList<>();
+		List<LambdaInfo> lambdas = new ArrayList<>();
+		StringBuilder sb = new StringBuilder();
+		prepareSql(sb, true, usedDimensions, usedFacts, order, filter, limit, offset, parameters, lambdas);
+		Converter[] converters = prepareConverters(usedDimensions, usedFacts);
+		String[] columnNames = prepareColumnNames(usedDimensions, usedFacts);
+
+		final Connection connection = getConnection();
+		PreparedStatement ps = null;
+		boolean startTransaction = false;
+		try {
+			startTransaction = transactionConnection == null && connection.getAutoCommit();
+			if (startTransaction) {
+				connection.setAutoCommit(false);
+			}
+			ps = connection.prepareStatement(sb.toString());
+			ps.setFetchSize(STREAM_FETCH_SIZE);
+			if (parameters != null && parameters.size() > 0) {
+				RevenjQueryComposer.fillQueryParameters(
+						connection,
+						locator,
+						ps,
+						0,
+						parameters,
+						lambdas);
+			}
+			ResultSet rs = ps.executeQuery();
+			PostgresReader rowReader = new PostgresReader(locator);
+			RowIterator iterator = new RowIterator(connection, ps, rs, startTransaction, rowReader, columnNames, converters);
+			return StreamSupport.stream(
+					Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+					false).onClose(iterator::close);
+		} catch (SQLException | RuntimeException e) {
+			try {
+				if (ps != null) ps.close();
+				if (startTransaction) {
+					connection.rollback();
+					connection.setAutoCommit(true);
+				}
+			} catch (SQLException ex) {
+				e.addSuppressed(ex);
+			} finally {
+				try {
+					releaseConnection(connection);
+				} catch (SQLException ex) {
+					e.addSuppressed(ex);
+				}
+			}
+			if (e instanceof RuntimeException) {
+				throw (RuntimeException) e;
+			}
+			throw new RuntimeException(e);
+		}
+	}
+
+	private final class RowIterator implements Iterator<Map<String, Object>> {
+		private final Connection connection;
+		private final PreparedStatement statement;
+		private final ResultSet resultSet;
+		private final boolean finishTransaction;
+		private final PostgresReader rowReader;
+		private final String[] columnNames;
+		private final Converter[] converters;
+		private boolean hasNext;
+		private boolean checked;
+		private boolean closed;
+
+		RowIterator(
+				Connection connection,
+				PreparedStatement statement,
+				ResultSet resultSet,
+				boolean finishTransaction,
+				PostgresReader rowReader,
+				String[] columnNames,
+				Converter[] converters) {
+			this.connection = connection;
+			this.statement = statement;
+			this.resultSet = resultSet;
+			this.finishTransaction = finishTransaction;
+			this.rowReader = rowReader;
+			this.columnNames = columnNames;
+			this.converters = converters;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (closed) return false;
+			if (!checked) {
+				try {
+					hasNext = resultSet.next();
+				} catch (SQLException e) {
+					close();
+					throw new RuntimeException(e);
+				}
+				checked = true;
+				if (!hasNext) {
+					close();
+				}
+			}
+			return hasNext;
+		}
+
+		@Override
+		public Map<String, Object> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			checked = false;
+			try {
+				return readRow(rowReader, resultSet.getString(1), columnNames, converters);
+			} catch (SQLException | IOException e) {
+				close();
+				throw new RuntimeException(e);
+			}
+		}
+
+		void close() {
+			if (closed) return;
+			closed = true;
+			try {
+				resultSet.close();
+				statement.close();
+				if (finishTransaction) {
+					connection.commit();
+					connection.setAutoCommit(true);
+				}
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			} finally {
+				try {
+					releaseConnection(connection);
+				} catch (SQLException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+	}
+
 	public ResultSet stream(
 			Connection connection,
 			List<String> dimensions,
@@ -301,8 +739,8 @@ public abstract class PostgresOlapCubeQuery<TSource extends DataSource> implemen
 			usedFacts.addAll(facts);
 		}
 
-		List<GeneratedQueryParameter> parameters = filter != null ? new ArrayList<>() : null;
-		List<LambdaInfo> lambdas = filter != null ? new ArrayList<>(1) : null;
+		List<GeneratedQueryParameter> parameters = new ArrayList<>();
+		List<LambdaInfo> lambdas = new ArrayList<>();
 		StringBuilder sb = new StringBuilder();
 		prepareSql(sb, false, usedDimensions, usedFacts, order, filter, limit, offset, parameters, lambdas);
 
@@ -1,8 +1,10 @@
 package org.revenj.database.postgres;
 
+import org.revenj.BufferPool;
 import org.revenj.patterns.ServiceLocator;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Optional;
 
@@ -13,7 +15,9 @@ public final class PostgresReader implements PostgresBuffer, AutoCloseable {
 	private int last;
 	private char[] buffer;
 	private int positionInBuffer;
+	private byte[] utf8 = new byte[0];
 	private ServiceLocator locator;
+	private boolean pooled;
 	public final char[] tmp;
 
 	public PostgresReader() {
@@ -36,22 +40,37 @@ public final class PostgresReader implements PostgresBuffer, AutoCloseable {
 		this.locator = locator;
 	}
 
-	private static ThreadLocal<PostgresReader> threadReader = new ThreadLocal<PostgresReader>() {
-		@Override
-		protected PostgresReader initialValue() {
-			return new PostgresReader();
-		}
-	};
-
+	private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+
+	private static final BufferPool<PostgresReader> POOL = new BufferPool<>(
+			size -> new PostgresReader(),
+			reader -> Math.max(reader.buffer.length, reader.utf8.length),
+			MAX_RETAINED_BUFFER,
+			BufferPool.defaultMaxPerClass());
+
+	/**
+	 * Reader from the shared pool. Reader is returned to the pool when it's closed,
+	 * so it must not be used after close.
+	 *
+	 * @param locator context for converters
+	 * @return pooled reader
+	 */
 	public static PostgresReader create(ServiceLocator locator) {
-		PostgresReader reader = threadReader.get();
+		PostgresReader reader = POOL.acquire();
 		reader.reset(locator);
+		reader.pooled = true;
 		return reader;
 	}
 
 	public void close() {
 		length = positionInBuffer = positionInInput = 0;
 		last = -1;
+		if (pooled) {
+			pooled = false;
+			input = "";
+			locator = null;
+			POOL.release(this);
+		}
 	}
 
 	public void process(String input) {
@@ -197,6 +216,122 @@ public final class PostgresReader implements PostgresBuffer, AutoCloseable {
 		positionInInput += count;
 	}
 
+	private static final int[] HEX_LOOKUP;
+
+	static {
+		HEX_LOOKUP = new int[128];
+		Arrays.fill(HEX_LOOKUP, -1);
+		for (int i = 0; i < 10; i++) {
+			HEX_LOOKUP['0' + i] = i;
+		}
+		for (int i = 0; i < 6; i++) {
+			HEX_LOOKUP['a' + i] = 10 + i;
+			HEX_LOOKUP['A' + i] = 10 + i;
+		}
+	}
+
+	private int hexRunEnd(int start) {
+		int end = start;
+		while (end < length) {
+			char c = input.charAt(end);
+			if (c >= 128 || HEX_LOOKUP[c] == -1) {
+				break;
+			}
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * Decode hex encoded bytes starting from the last read character.
+	 * Hex run is measured first, so bytes are decoded directly into array of the exact size.
+	 * After decoding, last read character will be the one after the hex run.
+	 *
+	 * @return decoded bytes
+	 */
+	public byte[] readHexBytes() {
+		if (last == -1) {
+			return new byte[0];
+		}
+		final int start = positionInInput - 1;
+		final int end = hexRunEnd(start);
+		final byte[] result = new byte[(end - start) >> 1];
+		for (int i = 0, j = start; i < result.length; i++, j += 2) {
+			result[i] = (byte) ((HEX_LOOKUP[input.charAt(j)] << 4) + HEX_LOOKUP[input.charAt(j + 1)]);
+		}
+		positionInInput = end;
+		read();
+		return result;
+	}
+
+	/**
+	 * Stream of hex encoded bytes starting from the last read character.
+	 * Bytes are decoded while the stream is consumed, directly from the processed input.
+	 * After the call, last read character will be the one after the hex run.
+	 *
+	 * @return stream of decoded bytes
+	 */
+	public InputStream readHexStream() {
+		if (last == -1) {
+			return new HexInputStream(input, 0, 0);
+		}
+		final int start = positionInInput - 1;
+		final int end = hexRunEnd(start);
+		positionInInput = end;
+		read();
+		return new HexInputStream(input, start, end - ((end - start) & 1));
+	}
+
+	private static final class HexInputStream extends InputStream {
+		private final String input;
+		private int position;
+		private final int end;
+
+		HexInputStream(String input, int start, int end) {
+			this.input = input;
+			this.position = start;
+			this.end = end;
+		}
+
+		@Override
+		public int read() {
+			if (position >= end) {
+				return -1;
+			}
+			int result = (HEX_LOOKUP[input.charAt(position)] << 4) + HEX_LOOKUP[input.charAt(position + 1)];
+			position += 2;
+			return result;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (position >= end) {
+				return -1;
+			}
+			int count = Math.min(len, (end - position) >> 1);
+			for (int i = 0; i < count; i++) {
+				b[off + i] = (byte) ((HEX_LOOKUP[input.charAt(position)] << 4) + HEX_LOOKUP[input.charAt(position + 1)]);
+				position += 2;
+			}
+			return count;
+		}
+
+		@Override
+		public long skip(long n) {
+			long count = Math.max(0, Math.min(n, (end - position) >> 1));
+			position += (int) count * 2;
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return (end - position) >> 1;
+		}
+	}
+
 	@Override
 	public String bufferToString() {
 		int len = positionInBuffer;
@@ -207,6 +342,52 @@ public final class PostgresReader implements PostgresBuffer, AutoCloseable {
 		return new String(buffer, 0, len);
 	}
 
+	public interface ConvertToUtf8Value<T> {
+		T to(byte[] buffer, int len) throws IOException;
+	}
+
+	/**
+	 * Encode content of the buffer as UTF-8 into a reusable byte array and convert it.
+	 * Used for values which are parsed from bytes, to avoid creating an intermediate String.
+	 * Byte array is valid only during the conversion.
+	 *
+	 * @param converter conversion from UTF-8 bytes
+	 * @param <T>       result type
+	 * @return converted value
+	 * @throws IOException when conversion fails
+	 */
+	public <T> T bufferToUtf8Value(ConvertToUtf8Value<T> converter) throws IOException {
+		final int len = positionInBuffer;
+		positionInBuffer = 0;
+		if (utf8.length < len * 3) {
+			utf8 = new byte[Math.max(len * 3, 256)];
+		}
+		final char[] chars = buffer;
+		final byte[] bytes = utf8;
+		int pos = 0;
+		for (int i = 0; i < len; i++) {
+			final char c = chars[i];
+			if (c < 0x80) {
+				bytes[pos++] = (byte) c;
+			} else if (c < 0x800) {
+				bytes[pos++] = (byte) (0xC0 | (c >> 6));
+				bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(chars[i + 1])) {
+				//surrogate pair is encoded as 4 byte sequence, which fits into the space reserved for two chars
+				final int cp = Character.toCodePoint(c, chars[++i]);
+				bytes[pos++] = (byte) (0xF0 | (cp >> 18));
+				bytes[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+				bytes[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+				bytes[pos++] = (byte) (0x80 | (cp & 0x3F));
+			} else {
+				bytes[pos++] = (byte) (0xE0 | (c >> 12));
+				bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		return converter.to(bytes, pos);
+	}
+
 	public interface ConvertToValue<T> {
 		T to(char[] buffer, int offset, int len);
 	}
@@ -1,11 +1,14 @@
 package org.revenj.database.postgres;
 
+import org.revenj.BufferPool;
+
 import java.util.Arrays;
 
 public final class PostgresWriter implements PostgresBuffer, AutoCloseable {
 	private char[] buffer;
 	public final char[] tmp;
 	private int position;
+	private boolean pooled;
 
 	public PostgresWriter() {
 		buffer = new char[64];
@@ -13,21 +16,33 @@ public final class PostgresWriter implements PostgresBuffer, AutoCloseable {
 		position = 0;
 	}
 
-	private static ThreadLocal<PostgresWriter> threadWriter = new ThreadLocal<PostgresWriter>() {
-		@Override
-		protected PostgresWriter initialValue() {
-			return new PostgresWriter();
-		}
-	};
+	private static final int MAX_RETAINED_BUFFER = 256 * 1024;
 
+	private static final BufferPool<PostgresWriter> POOL = new BufferPool<>(
+			size -> new PostgresWriter(),
+			writer -> writer.buffer.length,
+			MAX_RETAINED_BUFFER,
+			BufferPool.defaultMaxPerClass());
+
+	/**
+	 * Writer from the shared pool. Writer is returned to the pool when it's closed,
+	 * so it must not be used after close.
+	 *
+	 * @return pooled writer
+	 */
 	public static PostgresWriter create() {
-		PostgresWriter writer = threadWriter.get();
+		PostgresWriter writer = POOL.acquire();
 		writer.reset();
+		writer.pooled = true;
 		return writer;
 	}
 
 	public void close() {
 		position = 0;
+		if (pooled) {
+			pooled = false;
+			POOL.release(this);
+		}
 	}
 
 	public void reset() {
@@ -0,0 +1,272 @@
+package org.revenj.database.postgres;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGStatement;
+import org.postgresql.util.PGobject;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per connection cache of prepared statements.
+ * Statements are prepared on the physical Postgres connection so they survive
+ * returning the connection to the pool. Each connection holds a bounded LRU of statements
+ * keyed by SQL and types of the bound parameters, so the same SQL with different parameter types
+ * doesn't cause the server side statement to be reprepared.
+ * Parameters are first bound to a recorder, since the key is not known before binding,
+ * and then replayed on the cached statement.
+ * Connection is used by a single thread at a time, so statements for a connection are not synchronized.
+ * <p>
+ * Cache is disabled by default (revenj.statementCache.size is 0),
+ * since server side statements don't work with pgbouncer in transaction pooling mode.
+ */
+public final class PreparedStatementCache {
+
+	public static final PreparedStatementCache DISABLED = new PreparedStatementCache(0);
+
+	private final int capacity;
+	private final Map<Connection, Statements> connections = new WeakHashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	public PreparedStatementCache(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Binds parameters to the provided statement.
+	 */
+	@FunctionalInterface
+	public interface Parameters {
+		void bind(PreparedStatement ps) throws SQLException;
+	}
+
+	private final class Statements extends LinkedHashMap<String, PreparedStatement> {
+		Statements() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+			if (size() <= capacity) {
+				return false;
+			}
+			evictions.incrementAndGet();
+			try {
+				eldest.getValue().close();
+			} catch (SQLException ignore) {
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Prepared statement acquired from the cache.
+	 * Closing the lease will return the statement to the cache,
+	 * or close it if it was not cached.
+	 */
+	public static final class Lease implements AutoCloseable {
+		public final PreparedStatement statement;
+		private final boolean cached;
+
+		Lease(PreparedStatement statement, boolean cached) {
+			this.statement = statement;
+			this.cached = cached;
+		}
+
+		@Override
+		public void close() throws SQLException {
+			if (cached) {
+				statement.clearParameters();
+			} else {
+				statement.close();
+			}
+		}
+	}
+
+	public Lease prepare(Connection connection, String sql) throws SQLException {
+		return prepare(connection, sql, null);
+	}
+
+	public Lease prepare(Connection connection, String sql, Parameters parameters) throws SQLException {
+		return prepare(connection, sql, parameters, false);
+	}
+
+	/**
+	 * Negative prepare threshold forces describe of the statement so that the driver can request
+	 * binary format for types which are registered for binary transfer (binaryTransferEnable connection property).
+	 * Driver can't turn off binary transfer on the statement afterwards,
+	 * so it should be called only on a statement which is not shared.
+	 *
+	 * @param ps statement not used by anyone else
+	 * @throws SQLException unable to change prepare threshold
+	 */
+	public static void forceBinaryTransfer(PreparedStatement ps) throws SQLException {
+		if (ps.isWrapperFor(PGStatement.class)) {
+			ps.unwrap(PGStatement.class).setPrepareThreshold(-1);
+		}
+	}
+
+	/**
+	 * Lease statement with parameters bound to it.
+	 * Statements which force binary transfer are cached separately,
+	 * since binary transfer can't be turned off once it was enabled on a statement.
+	 *
+	 * @param connection  borrowed connection
+	 * @param sql         statement SQL
+	 * @param parameters  parameter binding, can be null
+	 * @param forceBinary should binary results be requested for the statement
+	 * @return leased statement which must be closed
+	 * @throws SQLException unable to prepare statement or bind parameters
+	 */
+	public Lease prepare(Connection connection, String sql, Parameters parameters, boolean forceBinary) throws SQLException {
+		Connection physical = capacity > 0 ? PostgresConnectionPool.physicalConnection(connection) : null;
+		if (physical == null) {
+			PreparedStatement ps = connection.prepareStatement(sql);
+			try {
+				if (forceBinary) {
+					forceBinaryTransfer(ps);
+				}
+				if (parameters != null) {
+					parameters.bind(ps);
+				}
+			} catch (SQLException | RuntimeException e) {
+				ps.close();
+				throw e;
+			}
+			return new Lease(ps, false);
+		}
+		Statements statements;
+		synchronized (connections) {
+			statements = connections.get(physical);
+			if (statements == null) {
+				statements = new Statements();
+				connections.put(physical, statements);
+			}
+		}
+		Recorder recorder = new Recorder();
+		if (parameters != null) {
+			parameters.bind(recorder.create());
+		}
+		String key = recorder.types.length() == 0 && !forceBinary
+				? sql
+				: sql + '\0' + recorder.types + (forceBinary ? "\0binary" : "");
+		PreparedStatement ps = statements.get(key);
+		if (ps != null && !ps.isClosed()) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+			ps = physical.prepareStatement(sql);
+			//prepare on server immediately unless server side statements were disabled in the driver
+			if (forceBinary) {
+				forceBinaryTransfer(ps);
+			} else if (physical.unwrap(PGConnection.class).getPrepareThreshold() > 0) {
+				ps.unwrap(PGStatement.class).setPrepareThreshold(1);
+			}
+			statements.put(key, ps);
+		}
+		Lease lease = new Lease(ps, true);
+		try {
+			recorder.replay(ps);
+		} catch (SQLException | RuntimeException e) {
+			lease.close();
+			throw e;
+		}
+		return lease;
+	}
+
+	/**
+	 * Collects parameter setters and their types.
+	 * Postgres objects and arrays are described by their database type,
+	 * nulls by their SQL type and other values by their Java class.
+	 */
+	private static final class Recorder implements InvocationHandler {
+		private final List<Method> methods = new ArrayList<>();
+		private final List<Object[]> arguments = new ArrayList<>();
+		private final StringBuilder types = new StringBuilder();
+
+		PreparedStatement create() {
+			return (PreparedStatement) Proxy.newProxyInstance(
+					PreparedStatementCache.class.getClassLoader(),
+					new Class<?>[]{PreparedStatement.class},
+					this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (!name.startsWith("set") || args == null || args.length < 2 || method.getParameterTypes()[0] != int.class) {
+				throw new SQLFeatureNotSupportedException("Only parameters can be set while binding cached statement. Found: " + name);
+			}
+			methods.add(method);
+			arguments.add(args);
+			types.append(args[0]).append(':').append(name);
+			for (int i = 1; i < args.length; i++) {
+				Object arg = args[i];
+				types.append(':');
+				if (arg instanceof PGobject) {
+					types.append(((PGobject) arg).getType());
+				} else if (arg instanceof Array) {
+					types.append(((Array) arg).getBaseTypeName()).append("[]");
+				} else if (arg instanceof Integer && "setNull".equals(name)) {
+					types.append(arg);
+				} else if (arg != null) {
+					types.append(arg.getClass().getName());
+				}
+			}
+			types.append(';');
+			return null;
+		}
+
+		void replay(PreparedStatement ps) throws SQLException {
+			for (int i = 0; i < methods.size(); i++) {
+				try {
+					methods.get(i).invoke(ps, arguments.get(i));
+				} catch (InvocationTargetException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof SQLException) throw (SQLException) cause;
+					if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+					throw new SQLException(cause);
+				} catch (IllegalAccessException e) {
+					throw new SQLException(e);
+				}
+			}
+		}
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public double getHitRatio() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0 : (double) h / total;
+	}
+}
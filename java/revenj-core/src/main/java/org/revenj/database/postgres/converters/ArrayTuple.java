@@ -1,5 +1,6 @@
 package org.revenj.database.postgres.converters;
 
+import org.revenj.database.postgres.PostgresBinaryReader;
 import org.revenj.database.postgres.PostgresWriter;
 import org.revenj.database.postgres.PostgresReader;
 
@@ -243,6 +244,26 @@ public class ArrayTuple extends PostgresTuple {
 		return list;
 	}
 
+	public interface BinaryRecordParser<T> {
+		T parse(PostgresBinaryReader reader) throws IOException;
+	}
+
+	public static <T> List<T> parse(PostgresBinaryReader reader, BinaryRecordParser<T> converter) throws IOException {
+		if (reader.nextField() == -1) {
+			return null;
+		}
+		int size = reader.readArray();
+		List<T> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			if (reader.nextElement() == -1) {
+				list.add(null);
+			} else {
+				list.add(converter.parse(reader));
+			}
+		}
+		return list;
+	}
+
 	public void buildTuple(PostgresWriter sw, boolean quote) {
 		Mapping mappings = null;
 		if (quote) {
@@ -1,9 +1,11 @@
 package org.revenj.database.postgres.converters;
 
+import org.revenj.database.postgres.PostgresBinaryReader;
 import org.revenj.database.postgres.PostgresBuffer;
 import org.revenj.database.postgres.PostgresWriter;
 import org.revenj.database.postgres.PostgresReader;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -74,6 +76,31 @@ public abstract class BoolConverter {
 		return list;
 	}
 
+	public static Boolean parseNullable(PostgresBinaryReader reader) throws IOException {
+		return reader.nextField() == -1 ? null : reader.readByte() != 0;
+	}
+
+	public static boolean parse(PostgresBinaryReader reader) throws IOException {
+		return reader.nextField() == -1 ? false : reader.readByte() != 0;
+	}
+
+	public static List<Boolean> parseCollection(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		if (reader.nextField() == -1) {
+			return null;
+		}
+		int size = reader.readArray();
+		Boolean defaultValue = allowNulls ? null : false;
+		List<Boolean> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			if (reader.nextElement() == -1) {
+				list.add(defaultValue);
+			} else {
+				list.add(reader.readByte() != 0);
+			}
+		}
+		return list;
+	}
+
 	public static PostgresTuple toTuple(Boolean value) {
 		if (value == null) return null;
 		return new BoolTuple(value);
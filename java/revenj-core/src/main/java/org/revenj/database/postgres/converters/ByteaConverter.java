@@ -1,24 +1,20 @@
 package org.revenj.database.postgres.converters;
 
+import org.revenj.database.postgres.PostgresBinaryReader;
 import org.revenj.database.postgres.PostgresBuffer;
 import org.revenj.database.postgres.PostgresWriter;
 import org.revenj.database.postgres.PostgresReader;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 public abstract class ByteaConverter {
 
-	private static final char[] CharMap;
-	private static final int[] CharLookup;
-
-	static {
-		CharMap = "0123456789abcdef".toCharArray();
-		CharLookup = new int['f' + 1];
-		for (int i = 0; i < CharMap.length; i++) {
-			CharLookup[CharMap[i]] = i;
-		}
-	}
+	private static final char[] CharMap = "0123456789abcdef".toCharArray();
 
 	private static final byte[] EMPTY_BYTES = new byte[0];
 	private static final char[] XX = "\\x".toCharArray();
@@ -31,31 +27,58 @@ public abstract class ByteaConverter {
 		}
 	}
 
-	private static byte[] toArray(List<Byte> list) {
-		byte[] result = new byte[list.size()];
-		for (int i = 0; i < list.size(); i++) {
-			result[i] = list.get(i);
-		}
-		return result;
-	}
-
-	public static byte[] parse(PostgresReader reader, int context) {
+	private static boolean startHex(PostgresReader reader, int context) {
 		int cur = reader.read();
 		if (cur == ',' || cur == ')') {
-			return null;
+			return false;
 		}
 		int len = context + (context << 1);
 		if (len == 0) {
 			len = 1;
 		}
-		cur = reader.read(len + 1);
-		List<Byte> list = new ArrayList<>(1024);
-		while (cur != -1 && cur != '\\' && cur != '"') {
-			list.add((byte) ((CharLookup[cur] << 4) + CharLookup[reader.read()]));
-			cur = reader.read();
+		reader.read(len + 1);
+		return true;
+	}
+
+	public static byte[] parse(PostgresReader reader, int context) {
+		if (!startHex(reader, context)) {
+			return null;
 		}
+		byte[] result = reader.readHexBytes();
 		reader.read(context);
-		return toArray(list);
+		return result;
+	}
+
+	/**
+	 * Parse bytea value as a buffer.
+	 * Bytes are decoded directly into buffer of the exact size.
+	 *
+	 * @param reader  input
+	 * @param context nesting level
+	 * @return buffer with decoded bytes or null
+	 */
+	public static ByteBuffer parseBuffer(PostgresReader reader, int context) {
+		byte[] result = parse(reader, context);
+		return result != null ? ByteBuffer.wrap(result) : null;
+	}
+
+	/**
+	 * Parse bytea value as a stream.
+	 * Bytes are decoded lazily from the input while the stream is consumed,
+	 * so large values are never fully materialized.
+	 * Reader can be reused while stream is consumed.
+	 *
+	 * @param reader  input
+	 * @param context nesting level
+	 * @return stream of decoded bytes or null
+	 */
+	public static InputStream parseStream(PostgresReader reader, int context) {
+		if (!startHex(reader, context)) {
+			return null;
+		}
+		InputStream result = reader.readHexStream();
+		reader.read(context);
+		return result;
 	}
 
 	public static List<byte[]> parseCollection(PostgresReader reader, int context, boolean allowNulls) {
@@ -82,14 +105,10 @@ public abstract class ByteaConverter {
 				cur = reader.read(4);
 			} else {
 				reader.read(skipInner);
-				List<Byte> item = new ArrayList<>(1024);
-				cur = reader.read();
-				while (cur != -1 && cur != '"' && cur != '\\') {
-					item.add((byte) ((CharLookup[cur] << 4) + CharLookup[reader.read()]));
-					cur = reader.read();
-				}
+				reader.read();
+				byte[] item = reader.readHexBytes();
 				cur = reader.read(innerContext);
-				list.add(toArray(item));
+				list.add(item);
 			}
 		}
 		if (escaped) {
@@ -100,6 +119,44 @@ public abstract class ByteaConverter {
 		return list;
 	}
 
+	public static byte[] parse(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		int len = reader.nextField();
+		if (len == -1) {
+			return allowNulls ? null : EMPTY_BYTES;
+		}
+		return reader.readBytes(len);
+	}
+
+	public static ByteBuffer parseBuffer(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		int len = reader.nextField();
+		if (len == -1) {
+			return allowNulls ? null : ByteBuffer.wrap(EMPTY_BYTES);
+		}
+		return reader.readBuffer(len);
+	}
+
+	public static InputStream parseStream(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		ByteBuffer buffer = parseBuffer(reader, allowNulls);
+		if (buffer == null) {
+			return null;
+		}
+		return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+	}
+
+	public static List<byte[]> parseCollection(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		if (reader.nextField() == -1) {
+			return null;
+		}
+		int size = reader.readArray();
+		byte[] defaultValue = allowNulls ? null : EMPTY_BYTES;
+		List<byte[]> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			int len = reader.nextElement();
+			list.add(len == -1 ? defaultValue : reader.readBytes(len));
+		}
+		return list;
+	}
+
 	public static PostgresTuple toTuple(byte[] value) {
 		return value != null ? new ByteTuple(value) : null;
 	}
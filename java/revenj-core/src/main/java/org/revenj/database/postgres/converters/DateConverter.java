@@ -1,6 +1,7 @@
 package org.revenj.database.postgres.converters;
 
 import org.postgresql.util.PGobject;
+import org.revenj.database.postgres.PostgresBinaryReader;
 import org.revenj.database.postgres.PostgresBuffer;
 import org.revenj.database.postgres.PostgresReader;
 import org.revenj.database.postgres.PostgresWriter;
@@ -117,6 +118,40 @@ public abstract class DateConverter {
 		return list;
 	}
 
+	public static LocalDate parse(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		int len = reader.nextField();
+		if (len == -1) {
+			return allowNulls ? null : MIN_DATE;
+		}
+		return parseDate(reader);
+	}
+
+	public static List<LocalDate> parseCollection(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		if (reader.nextField() == -1) {
+			return null;
+		}
+		int size = reader.readArray();
+		LocalDate defaultValue = allowNulls ? null : MIN_DATE;
+		List<LocalDate> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			int len = reader.nextElement();
+			list.add(len == -1 ? defaultValue : parseDate(reader));
+		}
+		return list;
+	}
+
+	private static final int POSTGRES_DATE_OFFSET = 10957;
+
+	private static LocalDate parseDate(PostgresBinaryReader reader) throws IOException {
+		int days = reader.readInt();
+		if (days == Integer.MAX_VALUE) {
+			return LocalDate.MAX;
+		} else if (days == Integer.MIN_VALUE) {
+			return LocalDate.MIN;
+		}
+		return LocalDate.ofEpochDay(days + POSTGRES_DATE_OFFSET);
+	}
+
 	public static PostgresTuple toTuple(LocalDate value) {
 		if (value == null) return null;
 		return new DateTuple(value);
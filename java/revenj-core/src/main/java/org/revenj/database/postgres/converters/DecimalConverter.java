@@ -1,11 +1,14 @@
 package org.revenj.database.postgres.converters;
 
+import org.revenj.database.postgres.PostgresBinaryReader;
 import org.revenj.database.postgres.PostgresBuffer;
 import org.revenj.database.postgres.PostgresReader;
 import org.revenj.database.postgres.PostgresWriter;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -69,6 +72,56 @@ public abstract class DecimalConverter {
 		return list;
 	}
 
+	public static BigDecimal parse(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		int len = reader.nextField();
+		if (len == -1) {
+			return allowNulls ? null : BigDecimal.ZERO;
+		}
+		return parseDecimal(reader);
+	}
+
+	public static List<BigDecimal> parseCollection(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		if (reader.nextField() == -1) {
+			return null;
+		}
+		int size = reader.readArray();
+		BigDecimal defaultValue = allowNulls ? null : BigDecimal.ZERO;
+		List<BigDecimal> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			int len = reader.nextElement();
+			list.add(len == -1 ? defaultValue : parseDecimal(reader));
+		}
+		return list;
+	}
+
+	private static final BigInteger TEN_THOUSAND = BigInteger.valueOf(10000);
+
+	private static BigDecimal parseDecimal(PostgresBinaryReader reader) throws IOException {
+		int digits = reader.readShort();
+		int weight = reader.readShort();
+		int sign = reader.readShort() & 0xffff;
+		int scale = reader.readShort();
+		if (sign == 0xc000) {
+			throw new IOException("NaN can't be represented as BigDecimal");
+		}
+		BigDecimal result;
+		if (digits <= 4) {
+			long unscaled = 0;
+			for (int i = 0; i < digits; i++) {
+				unscaled = unscaled * 10000 + reader.readShort();
+			}
+			result = BigDecimal.valueOf(unscaled);
+		} else {
+			BigInteger unscaled = BigInteger.ZERO;
+			for (int i = 0; i < digits; i++) {
+				unscaled = unscaled.multiply(TEN_THOUSAND).add(BigInteger.valueOf(reader.readShort()));
+			}
+			result = new BigDecimal(unscaled);
+		}
+		result = result.scaleByPowerOfTen((weight - digits + 1) * 4).setScale(scale, RoundingMode.DOWN);
+		return sign == 0x4000 ? result.negate() : result;
+	}
+
 	public static PostgresTuple toTuple(BigDecimal value) {
 		if (value == null) return null;
 		return new DecimalTuple(value);
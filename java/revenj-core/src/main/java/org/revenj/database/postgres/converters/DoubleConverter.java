@@ -1,5 +1,6 @@
 package org.revenj.database.postgres.converters;
 
+import org.revenj.database.postgres.PostgresBinaryReader;
 import org.revenj.database.postgres.PostgresBuffer;
 import org.revenj.database.postgres.PostgresWriter;
 import org.revenj.database.postgres.PostgresReader;
@@ -89,6 +90,31 @@ public abstract class DoubleConverter {
 		return list;
 	}
 
+	public static Double parseNullable(PostgresBinaryReader reader) throws IOException {
+		return reader.nextField() == -1 ? null : reader.readDouble();
+	}
+
+	public static double parse(PostgresBinaryReader reader) throws IOException {
+		return reader.nextField() == -1 ? 0d : reader.readDouble();
+	}
+
+	public static List<Double> parseCollection(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		if (reader.nextField() == -1) {
+			return null;
+		}
+		int size = reader.readArray();
+		Double defaultValue = allowNulls ? null : 0d;
+		List<Double> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			if (reader.nextElement() == -1) {
+				list.add(defaultValue);
+			} else {
+				list.add(reader.readDouble());
+			}
+		}
+		return list;
+	}
+
 	public static PostgresTuple toTuple(double value) {
 		return new DoubleTuple(value);
 	}
@@ -1,5 +1,6 @@
 package org.revenj.database.postgres.converters;
 
+import org.revenj.database.postgres.PostgresBinaryReader;
 import org.revenj.database.postgres.PostgresBuffer;
 import org.revenj.database.postgres.PostgresWriter;
 import org.revenj.database.postgres.PostgresReader;
@@ -89,6 +90,31 @@ public abstract class FloatConverter {
 		return list;
 	}
 
+	public static Float parseNullable(PostgresBinaryReader reader) throws IOException {
+		return reader.nextField() == -1 ? null : reader.readFloat();
+	}
+
+	public static float parse(PostgresBinaryReader reader) throws IOException {
+		return reader.nextField() == -1 ? 0f : reader.readFloat();
+	}
+
+	public static List<Float> parseCollection(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		if (reader.nextField() == -1) {
+			return null;
+		}
+		int size = reader.readArray();
+		Float defaultValue = allowNulls ? null : 0f;
+		List<Float> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			if (reader.nextElement() == -1) {
+				list.add(defaultValue);
+			} else {
+				list.add(reader.readFloat());
+			}
+		}
+		return list;
+	}
+
 	public static PostgresTuple toTuple(float value) {
 		return new FloatTuple(value);
 	}
@@ -1,5 +1,6 @@
 package org.revenj.database.postgres.converters;
 
+import org.revenj.database.postgres.PostgresBinaryReader;
 import org.revenj.database.postgres.PostgresBuffer;
 import org.revenj.database.postgres.PostgresReader;
 import org.revenj.database.postgres.PostgresWriter;
@@ -95,6 +96,31 @@ public abstract class IntConverter {
 		return list;
 	}
 
+	public static Integer parseNullable(PostgresBinaryReader reader) throws IOException {
+		return reader.nextField() == -1 ? null : reader.readInt();
+	}
+
+	public static int parse(PostgresBinaryReader reader) throws IOException {
+		return reader.nextField() == -1 ? 0 : reader.readInt();
+	}
+
+	public static List<Integer> parseCollection(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		if (reader.nextField() == -1) {
+			return null;
+		}
+		int size = reader.readArray();
+		Integer defaultValue = allowNulls ? null : 0;
+		List<Integer> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			if (reader.nextElement() == -1) {
+				list.add(defaultValue);
+			} else {
+				list.add(reader.readInt());
+			}
+		}
+		return list;
+	}
+
 	private static final PostgresTuple MIN_TUPLE = new ValueTuple("-2147483648", false, false);
 
 	public static PostgresTuple toTuple(Integer value) {
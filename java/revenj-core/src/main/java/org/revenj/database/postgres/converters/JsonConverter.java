@@ -1,12 +1,17 @@
 package org.revenj.database.postgres.converters;
 
+import com.dslplatform.json.DslJson;
+import com.dslplatform.json.JsonWriter;
 import org.revenj.database.postgres.PostgresBuffer;
 import org.revenj.database.postgres.PostgresReader;
+import org.revenj.database.postgres.PostgresWriter;
 import org.revenj.serialization.Serialization;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,9 +19,76 @@ import java.util.Map;
 public class JsonConverter {
 
 	private final Serialization<String> serialization;
+	private final DslJson<?> dslJson;
+	private final StringConverter.BufferConverter<Map<String, Object>> bufferConverter;
 
+	/**
+	 * When DSL-JSON is used for serialization, values are parsed directly from the UTF-8 encoded reader buffer
+	 * and serialized into a byte buffer which is decoded directly into the Postgres writer,
+	 * so no intermediate String is created on either side.
+	 *
+	 * @param serialization JSON serialization
+	 */
+	@SuppressWarnings("unchecked")
 	public JsonConverter(Serialization<String> serialization) {
 		this.serialization = serialization;
+		this.dslJson = serialization instanceof DslJson ? (DslJson<?>) serialization : null;
+		if (dslJson != null) {
+			final PostgresReader.ConvertToUtf8Value<Map<String, Object>> fromUtf8 = (bytes, len) -> {
+				final int supplementary = countSupplementary(bytes, len);
+				if (supplementary == 0) {
+					return dslJson.deserialize(Map.class, bytes, len);
+				}
+				final byte[] escaped = escapeSupplementary(bytes, len, supplementary);
+				return dslJson.deserialize(Map.class, escaped, escaped.length);
+			};
+			this.bufferConverter = reader -> reader.bufferToUtf8Value(fromUtf8);
+		} else {
+			this.bufferConverter = reader -> (Map<String, Object>) serialization.deserialize(Map.class, reader.bufferToString());
+		}
+	}
+
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+	private static int countSupplementary(byte[] bytes, int len) {
+		int count = 0;
+		for (int i = 0; i < len; i++) {
+			if ((bytes[i] & 0xF8) == 0xF0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * DSL-JSON 1.6.1 doesn't decode 4 byte UTF-8 sequences correctly.
+	 * They can only appear inside JSON strings, so they are replaced with escaped surrogate pairs before parsing.
+	 */
+	private static byte[] escapeSupplementary(byte[] bytes, int len, int count) {
+		final byte[] result = new byte[len + count * 8];
+		int pos = 0;
+		for (int i = 0; i < len; i++) {
+			final int b = bytes[i];
+			if ((b & 0xF8) == 0xF0 && i + 3 < len) {
+				final int cp = ((b & 0x07) << 18) | ((bytes[i + 1] & 0x3F) << 12) | ((bytes[i + 2] & 0x3F) << 6) | (bytes[i + 3] & 0x3F);
+				pos = writeEscaped(Character.highSurrogate(cp), result, pos);
+				pos = writeEscaped(Character.lowSurrogate(cp), result, pos);
+				i += 3;
+			} else {
+				result[pos++] = (byte) b;
+			}
+		}
+		return pos == result.length ? result : Arrays.copyOf(result, pos);
+	}
+
+	private static int writeEscaped(final char c, final byte[] bytes, int pos) {
+		bytes[pos++] = '\\';
+		bytes[pos++] = 'u';
+		bytes[pos++] = HEX_DIGITS[c >> 12];
+		bytes[pos++] = HEX_DIGITS[(c >> 8) & 0xF];
+		bytes[pos++] = HEX_DIGITS[(c >> 4) & 0xF];
+		bytes[pos++] = HEX_DIGITS[c & 0xF];
+		return pos;
 	}
 
 	private String toJson(Map<String, Object> value) {
@@ -40,26 +112,22 @@ public class JsonConverter {
 	}
 
 	public Map<String, Object> parse(PostgresReader reader, int context, boolean allowNulls) throws IOException {
-		String input = StringConverter.parse(reader, context, true);
-		if (input == null) {
+		Map<String, Object> result = StringConverter.parse(reader, context, bufferConverter);
+		if (result == null) {
 			return allowNulls ? null : new HashMap<>(0);
 		}
-		return (Map<String, Object>) serialization.deserialize(Map.class, input);
+		return result;
 	}
 
 	public List<Map<String, Object>> parseCollection(
 			PostgresReader reader,
 			int context,
 			boolean allowNulls) throws IOException {
-		List<String> parsed = StringConverter.parseCollection(reader, context, true);
-		if (parsed == null) return null;
-		List<Map<String, Object>> list = new ArrayList<>(parsed.size());
-		for (String s : parsed) {
-			if (s == null) {
-				if (allowNulls) list.add(null);
-				else list.add(new HashMap<>(0));
-			} else {
-				list.add((Map<String, Object>) serialization.deserialize(Map.class, s));
+		List<Map<String, Object>> list = StringConverter.parseCollection(reader, context, null, bufferConverter);
+		if (list == null || allowNulls) return list;
+		for (int i = 0; i < list.size(); i++) {
+			if (list.get(i) == null) {
+				list.set(i, new HashMap<>(0));
 			}
 		}
 		return list;
@@ -70,10 +138,99 @@ public class JsonConverter {
 	public PostgresTuple toTuple(Map<String, Object> value) {
 		if (value == null) return null;
 		else if (value.isEmpty()) return EMPTY;
+		if (dslJson != null) {
+			JsonWriter writer = dslJson.newWriter();
+			if (dslJson.serialize(writer, value.getClass(), value)) {
+				return new JsonTuple(writer);
+			}
+		}
 		try {
 			return ValueTuple.from(serialization.serialize(value));
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
 	}
+
+	/**
+	 * JSON object serialized as UTF-8. It's decoded directly into the writer, with escaping applied while decoding.
+	 * JSON object always contains quotes and commas, so it must always be escaped.
+	 */
+	private static class JsonTuple extends PostgresTuple {
+		private final byte[] bytes;
+		private final int length;
+
+		JsonTuple(JsonWriter writer) {
+			this.bytes = writer.getByteBuffer();
+			this.length = writer.size();
+		}
+
+		public boolean mustEscapeRecord() {
+			return true;
+		}
+
+		public boolean mustEscapeArray() {
+			return true;
+		}
+
+		private static void write(PostgresWriter sw, Mapping mappings, char c) {
+			if (mappings != null) {
+				mappings.map(sw, c);
+			} else {
+				sw.write(c);
+			}
+		}
+
+		public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
+			String quoteEscape = null;
+			String slashEscape = null;
+			final byte[] buf = bytes;
+			for (int i = 0; i < length; i++) {
+				final int b = buf[i];
+				if (b == '"') {
+					quoteEscape = quoteEscape != null ? quoteEscape : buildQuoteEscape(escaping);
+					for (int x = 0; x < quoteEscape.length(); x++) {
+						write(sw, mappings, quoteEscape.charAt(x));
+					}
+				} else if (b == '\\') {
+					slashEscape = slashEscape != null ? slashEscape : buildSlashEscape(escaping.length());
+					for (int x = 0; x < slashEscape.length(); x++) {
+						write(sw, mappings, slashEscape.charAt(x));
+					}
+				} else if (b >= 0) {
+					write(sw, mappings, (char) b);
+				} else if ((b & 0xE0) == 0xC0) {
+					checkSequence(i, 1);
+					write(sw, mappings, (char) (((b & 0x1F) << 6) | (buf[++i] & 0x3F)));
+				} else if ((b & 0xF0) == 0xE0) {
+					checkSequence(i, 2);
+					int c = ((b & 0x0F) << 12) | ((buf[i + 1] & 0x3F) << 6) | (buf[i + 2] & 0x3F);
+					i += 2;
+					write(sw, mappings, (char) c);
+				} else if ((b & 0xF8) == 0xF0) {
+					checkSequence(i, 3);
+					int cp = ((b & 0x07) << 18) | ((buf[i + 1] & 0x3F) << 12) | ((buf[i + 2] & 0x3F) << 6) | (buf[i + 3] & 0x3F);
+					i += 3;
+					write(sw, mappings, Character.highSurrogate(cp));
+					write(sw, mappings, Character.lowSurrogate(cp));
+				} else {
+					throw invalidUtf8(i);
+				}
+			}
+		}
+
+		private void checkSequence(int start, int continuation) {
+			if (start + continuation >= length) {
+				throw invalidUtf8(start);
+			}
+			for (int i = 1; i <= continuation; i++) {
+				if ((bytes[start + i] & 0xC0) != 0x80) {
+					throw invalidUtf8(start);
+				}
+			}
+		}
+
+		private IllegalArgumentException invalidUtf8(int position) {
+			return new IllegalArgumentException("Invalid UTF-8 sequence in serialized JSON at byte " + position + " of " + length);
+		}
+	}
 }
@@ -1,5 +1,6 @@
 package org.revenj.database.postgres.converters;
 
+import org.revenj.database.postgres.PostgresBinaryReader;
 import org.revenj.database.postgres.PostgresBuffer;
 import org.revenj.database.postgres.PostgresReader;
 import org.revenj.database.postgres.PostgresWriter;
@@ -95,6 +96,31 @@ public abstract class LongConverter {
 		return list;
 	}
 
+	public static Long parseNullable(PostgresBinaryReader reader) throws IOException {
+		return reader.nextField() == -1 ? null : reader.readLong();
+	}
+
+	public static long parse(PostgresBinaryReader reader) throws IOException {
+		return reader.nextField() == -1 ? 0L : reader.readLong();
+	}
+
+	public static List<Long> parseCollection(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		if (reader.nextField() == -1) {
+			return null;
+		}
+		int size = reader.readArray();
+		Long defaultValue = allowNulls ? null : 0L;
+		List<Long> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			if (reader.nextElement() == -1) {
+				list.add(defaultValue);
+			} else {
+				list.add(reader.readLong());
+			}
+		}
+		return list;
+	}
+
 	private static final PostgresTuple MIN_TUPLE = new ValueTuple("-9223372036854775808", false, false);
 
 	public static PostgresTuple toTuple(Long value) {
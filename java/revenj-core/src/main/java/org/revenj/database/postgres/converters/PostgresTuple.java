@@ -38,16 +38,8 @@ public abstract class PostgresTuple {
 		} else insertRecord(sw, "", null);
 	}
 
-	protected static ThreadLocal<PostgresWriter> threadWriter = new ThreadLocal<PostgresWriter>() {
-		@Override
-		protected PostgresWriter initialValue() {
-			return new PostgresWriter();
-		}
-	};
-
 	public String buildTuple(boolean quote) {
-		try (PostgresWriter sw = threadWriter.get()) {
-			sw.reset();
+		try (PostgresWriter sw = PostgresWriter.create()) {
 			buildTuple(sw, quote);
 			return sw.toString();
 		}
@@ -75,25 +75,14 @@ public class RecordTuple extends PostgresTuple {
 	}
 
 	public String buildTuple(boolean quote) {
-		PostgresWriter sw = threadWriter.get();
-		sw.reset();
-		Mapping mappings = null;
-		if (quote) {
-			mappings = PostgresTuple::escapeQuote;
-			sw.write('\'');
-		}
-		sw.write('(');
-		PostgresTuple p = properties[0];
-		if (p != null) {
-			if (p.mustEscapeRecord()) {
-				sw.write('"');
-				p.insertRecord(sw, "1", mappings);
-				sw.write('"');
-			} else p.insertRecord(sw, "", mappings);
-		}
-		for (int i = 1; i < properties.length; i++) {
-			sw.write(',');
-			p = properties[i];
+		try (PostgresWriter sw = PostgresWriter.create()) {
+			Mapping mappings = null;
+			if (quote) {
+				mappings = PostgresTuple::escapeQuote;
+				sw.write('\'');
+			}
+			sw.write('(');
+			PostgresTuple p = properties[0];
 			if (p != null) {
 				if (p.mustEscapeRecord()) {
 					sw.write('"');
@@ -101,12 +90,23 @@ public class RecordTuple extends PostgresTuple {
 					sw.write('"');
 				} else p.insertRecord(sw, "", mappings);
 			}
+			for (int i = 1; i < properties.length; i++) {
+				sw.write(',');
+				p = properties[i];
+				if (p != null) {
+					if (p.mustEscapeRecord()) {
+						sw.write('"');
+						p.insertRecord(sw, "1", mappings);
+						sw.write('"');
+					} else p.insertRecord(sw, "", mappings);
+				}
+			}
+			sw.write(')');
+			if (quote) {
+				sw.write('\'');
+			}
+			return sw.toString();
 		}
-		sw.write(')');
-		if (quote) {
-			sw.write('\'');
-		}
-		return sw.toString();
 	}
 
 	public void insertRecord(PostgresWriter sw, String escaping, Mapping mappings) {
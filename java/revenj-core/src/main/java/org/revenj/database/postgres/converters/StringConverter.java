@@ -1,5 +1,6 @@
 package org.revenj.database.postgres.converters;
 
+import org.revenj.database.postgres.PostgresBinaryReader;
 import org.revenj.database.postgres.PostgresBuffer;
 import org.revenj.database.postgres.PostgresReader;
 
@@ -49,28 +50,50 @@ public abstract class StringConverter {
 		}
 	}
 
+	/**
+	 * Conversion of the unescaped string which is placed in the reader buffer.
+	 * Allows parsing of string based values without creating an intermediate String.
+	 *
+	 * @param <T> result type
+	 */
+	@FunctionalInterface
+	public interface BufferConverter<T> {
+		T convert(PostgresReader reader) throws IOException;
+	}
+
 	public static String parse(PostgresReader reader, int context, boolean allowNulls) throws IOException {
+		String result = parse(reader, context, PostgresReader::bufferToString);
+		return result != null || allowNulls ? result : "";
+	}
+
+	public static <T> T parse(PostgresReader reader, int context, BufferConverter<T> converter) throws IOException {
 		int cur = reader.read();
 		if (cur == ',' || cur == ')') {
-			return allowNulls ? null : "";
+			return null;
 		}
 		if (cur != '"' && cur != '\\') {
 			reader.initBuffer((char) cur);
 			reader.fillUntil(',', ')');
 			reader.read();
-			return reader.bufferToString();
+		} else {
+			fillEscapedString(reader, context, ')');
 		}
-		return parseEscapedString(reader, context, ')');
+		return converter.convert(reader);
 	}
 
 	static String parseEscapedString(PostgresReader reader, int context, char matchEnd) throws IOException {
+		fillEscapedString(reader, context, matchEnd);
+		return reader.bufferToString();
+	}
+
+	private static void fillEscapedString(PostgresReader reader, int context, char matchEnd) throws IOException {
 		int cur = reader.read(context);
 		reader.initBuffer();
 		do {
 			if (cur == '\\' || cur == '"') {
 				cur = reader.read(context);
 				if (cur == ',' || cur == matchEnd) {
-					return reader.bufferToString();
+					return;
 				}
 				for (int i = 0; i < context - 1; i++) {
 					cur = reader.read();
@@ -84,6 +107,14 @@ public abstract class StringConverter {
 	}
 
 	public static List<String> parseCollection(PostgresReader reader, int context, boolean allowNull) throws IOException {
+		return parseCollection(reader, context, allowNull ? null : "", PostgresReader::bufferToString);
+	}
+
+	public static <T> List<T> parseCollection(
+			PostgresReader reader,
+			int context,
+			T nullValue,
+			BufferConverter<T> converter) throws IOException {
 		int cur = reader.read();
 		if (cur == ',' || cur == ')') {
 			return null;
@@ -102,21 +133,22 @@ public abstract class StringConverter {
 			return new ArrayList<>(0);
 		}
         int innerContext = context << 1;
-		List<String> list = new ArrayList<>();
-		String emptyCol = allowNull ? null : "";
+		List<T> list = new ArrayList<>();
 		do {
 			cur = reader.read();
 			if (cur == '"' || cur == '\\') {
-				list.add(parseEscapedString(reader, innerContext, '}'));
+				fillEscapedString(reader, innerContext, '}');
+				list.add(converter.convert(reader));
 				cur = reader.last();
 			} else {
 				reader.initBuffer((char) cur);
 				reader.fillUntil(',', '}');
 				cur = reader.read();
 				if (reader.bufferMatches("NULL")) {
-					list.add(emptyCol);
+					reader.initBuffer();
+					list.add(nullValue);
 				} else {
-					list.add(reader.bufferToString());
+					list.add(converter.convert(reader));
 				}
 			}
 		} while (cur == ',');
@@ -128,6 +160,28 @@ public abstract class StringConverter {
 		return list;
 	}
 
+	public static String parse(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		int len = reader.nextField();
+		if (len == -1) {
+			return allowNulls ? null : "";
+		}
+		return reader.readString(len);
+	}
+
+	public static List<String> parseCollection(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		if (reader.nextField() == -1) {
+			return null;
+		}
+		int size = reader.readArray();
+		String defaultValue = allowNulls ? null : "";
+		List<String> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			int len = reader.nextElement();
+			list.add(len == -1 ? defaultValue : reader.readString(len));
+		}
+		return list;
+	}
+
 	public static PostgresTuple toTuple(String value) {
 		return ValueTuple.from(value);
 	}
@@ -1,6 +1,7 @@
 package org.revenj.database.postgres.converters;
 
 import org.postgresql.util.PGobject;
+import org.revenj.database.postgres.PostgresBinaryReader;
 import org.revenj.database.postgres.PostgresBuffer;
 import org.revenj.database.postgres.PostgresReader;
 import org.revenj.database.postgres.PostgresWriter;
@@ -8,8 +9,10 @@ import org.revenj.database.postgres.PostgresWriter;
 import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
@@ -375,6 +378,77 @@ public abstract class TimestampConverter {
 		return list;
 	}
 
+	public static LocalDateTime parseLocal(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		int len = reader.nextField();
+		if (len == -1) {
+			return allowNulls ? null : MIN_LOCAL_DATE_TIME;
+		}
+		return parseLocalTimestamp(reader);
+	}
+
+	public static List<LocalDateTime> parseLocalCollection(PostgresBinaryReader reader, boolean allowNulls) throws IOException {
+		if (reader.nextField() == -1) {
+			return null;
+		}
+		int size = reader.readArray();
+		LocalDateTime defaultValue = allowNulls ? null : MIN_LOCAL_DATE_TIME;
+		List<LocalDateTime> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			int len = reader.nextElement();
+			list.add(len == -1 ? defaultValue : parseLocalTimestamp(reader));
+		}
+		return list;
+	}
+
+	public static OffsetDateTime parseOffset(PostgresBinaryReader reader, boolean allowNulls, boolean asUtc) throws IOException {
+		int len = reader.nextField();
+		if (len == -1) {
+			return allowNulls ? null : MIN_DATE_TIME_UTC;
+		}
+		return parseOffsetTimestamp(reader, asUtc);
+	}
+
+	public static List<OffsetDateTime> parseOffsetCollection(PostgresBinaryReader reader, boolean allowNulls, boolean asUtc) throws IOException {
+		if (reader.nextField() == -1) {
+			return null;
+		}
+		int size = reader.readArray();
+		OffsetDateTime defaultValue = allowNulls ? null : MIN_DATE_TIME_UTC;
+		List<OffsetDateTime> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			int len = reader.nextElement();
+			list.add(len == -1 ? defaultValue : parseOffsetTimestamp(reader, asUtc));
+		}
+		return list;
+	}
+
+	private static final long POSTGRES_EPOCH_SECONDS = 946684800L;
+
+	private static LocalDateTime parseLocalTimestamp(PostgresBinaryReader reader) throws IOException {
+		long micros = reader.readLong();
+		if (micros == Long.MAX_VALUE) {
+			return LocalDateTime.MAX;
+		} else if (micros == Long.MIN_VALUE) {
+			return LocalDateTime.MIN;
+		}
+		long seconds = Math.floorDiv(micros, 1000000L);
+		int nanos = (int) Math.floorMod(micros, 1000000L) * 1000;
+		return LocalDateTime.ofEpochSecond(seconds + POSTGRES_EPOCH_SECONDS, nanos, ZoneOffset.UTC);
+	}
+
+	private static OffsetDateTime parseOffsetTimestamp(PostgresBinaryReader reader, boolean asUtc) throws IOException {
+		long micros = reader.readLong();
+		if (micros == Long.MAX_VALUE) {
+			return OffsetDateTime.MAX;
+		} else if (micros == Long.MIN_VALUE) {
+			return OffsetDateTime.MIN;
+		}
+		long seconds = Math.floorDiv(micros, 1000000L);
+		int nanos = (int) Math.floorMod(micros, 1000000L) * 1000;
+		Instant instant = Instant.ofEpochSecond(seconds + POSTGRES_EPOCH_SECONDS, nanos);
+		return OffsetDateTime.ofInstant(instant, asUtc ? ZoneOffset.UTC : ZoneId.systemDefault());
+	}
+
 	public static PostgresTuple toTuple(LocalDateTime value) {
 		if (value == null) return null;
 		return new LocalTimestampTuple(value);
@@ -1,5 +1,6 @@
 package org.revenj.database.postgres.converters;
 
+import org.revenj.database.postgres.PostgresBinaryReader;
 import org.revenj.database.postgres.PostgresWriter;
 import org.revenj.database.postgres.PostgresBuffer;
 import org.revenj.database.postgres.PostgresReader;
@@ -195,6 +196,28 @@ public abstract class UuidConverter {
 		return list;
 	}
 
+	public static UUID parse(PostgresBinaryReader reader, boolean nullable) throws IOException {
+		int len = reader.nextField();
+		if (len == -1) {
+			return nullable ? null : MIN_UUID;
+		}
+		return new UUID(reader.readLong(), reader.readLong());
+	}
+
+	public static List<UUID> parseCollection(PostgresBinaryReader reader, boolean nullable) throws IOException {
+		if (reader.nextField() == -1) {
+			return null;
+		}
+		int size = reader.readArray();
+		UUID defaultValue = nullable ? null : MIN_UUID;
+		List<UUID> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			int len = reader.nextElement();
+			list.add(len == -1 ? defaultValue : new UUID(reader.readLong(), reader.readLong()));
+		}
+		return list;
+	}
+
 	public static PostgresTuple toTupleNullable(UUID value) {
 		return value == null ? null : new UuidTuple(value);
 	}
@@ -5,6 +5,7 @@ import ch.epfl.labos.iu.orm.queryll2.symbolic.TypedValue;
 import org.jinq.rebased.org.objectweb.asm.Type;
 import org.revenj.extensibility.Container;
 import org.revenj.patterns.Query;
+import org.revenj.database.postgres.PreparedStatementCache;
 import org.revenj.database.postgres.QueryProvider;
 import org.revenj.database.postgres.jinq.transform.MetamodelUtil;
 
@@ -13,6 +14,7 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Optional;
+import java.util.Properties;
 
 public final class JinqMetaModel extends MetamodelUtil {
 
@@ -34,7 +36,15 @@ public final class JinqMetaModel extends MetamodelUtil {
 		container.registerInstance(JinqMetaModel.class, metamodel, false);
 		DataSource dataSource = container.resolve(DataSource.class);
 		ClassLoader loader = container.resolve(ClassLoader.class);
-		container.registerInstance(QueryProvider.class, new RevenjQueryProvider(metamodel, loader, dataSource), false);
+		Optional<Properties> properties = container.tryResolve(Properties.class);
+		boolean binaryResults = properties.isPresent() && "binary".equals(properties.get().getProperty("revenj.resultFormat"));
+		PreparedStatementCache statementCache = container.tryResolve(PreparedStatementCache.class).orElse(PreparedStatementCache.DISABLED);
+		RevenjQueryComposerCache cachedQueries = RevenjQueryComposerCache.create(properties.orElse(null));
+		container.registerInstance(RevenjQueryComposerCache.class, cachedQueries, false);
+		container.registerInstance(
+				QueryProvider.class,
+				new RevenjQueryProvider(metamodel, loader, dataSource, binaryResults, statementCache, cachedQueries),
+				false);
 		return metamodel;
 	}
 
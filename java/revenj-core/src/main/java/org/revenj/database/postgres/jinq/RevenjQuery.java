@@ -9,8 +9,16 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Optional;
-
-final class RevenjQuery<T extends DataSource> implements Query<T> {
+import java.util.stream.Stream;
+
+/**
+ * Query translated to SQL through Jinq.
+ * Besides the {@link Query} operations, it supports keyset pagination, e.g.
+ * ((RevenjQuery&lt;Item&gt;) repository.query()).sortedByAfter(...)
+ *
+ * @param <T> data source type
+ */
+public final class RevenjQuery<T extends DataSource> implements Query<T> {
 	private final RevenjQueryComposer<T> queryComposer;
 
 	public RevenjQuery(RevenjQueryComposer<T> query) {
@@ -32,6 +40,14 @@ final class RevenjQuery<T extends DataSource> implements Query<T> {
 		return queryComposer.sortedBy(LambdaInfo.analyze(order, queryComposer.getLambdaCount(), true), ascending);
 	}
 
+	RevenjQuery<T> restrict(Class<?> manifest, Specification<T> filter) {
+		RevenjQueryComposer<T> composer = applyWhere(filter);
+		if (composer == null) {
+			throw new SecurityException("Unable to convert row filter for " + manifest.getTypeName() + " to SQL");
+		}
+		return makeQueryStream(composer);
+	}
+
 	@Override
 	public Query<T> filter(Specification<T> predicate) {
 		if (predicate == null) return this;
@@ -60,6 +76,43 @@ final class RevenjQuery<T extends DataSource> implements Query<T> {
 		return makeQueryStream(applyOrder(order, false));
 	}
 
+	/**
+	 * Keyset (seek) pagination. Results are sorted by the key
+	 * and only the ones with the key greater than provided value are returned.
+	 * Multiple keys can be chained for a composite key, e.g. for the next page after the last item:
+	 * query.sortedByAfter(it -&gt; it.getDate(), last.getDate()).sortedByAfter(it -&gt; it.getID(), last.getID()).limit(50)
+	 * Unlike skip, the database doesn't need to read and discard all the previous rows
+	 * when there is an index on the keys.
+	 * Keys must be applied before other sorting.
+	 * Comparison is strict, so rows which have the same keys as the last row are skipped.
+	 * Last key must therefore be unique (e.g. the identity), otherwise rows which tie
+	 * with the last row of the previous page are never returned.
+	 *
+	 * @param order key to sort by
+	 * @param value last value from the previous page
+	 * @param <V>   key type
+	 * @return query sorted by the key starting after provided value
+	 */
+	public <V> RevenjQuery<T> sortedByAfter(Compare<T, V> order, V value) {
+		if (value == null) throw new IllegalArgumentException("value can't be null");
+		return makeQueryStream(queryComposer.sortedAfter(LambdaInfo.analyze(order, queryComposer.getLambdaCount(), true), value, true));
+	}
+
+	/**
+	 * Keyset (seek) pagination in descending order. Results are sorted by the key in descending order
+	 * and only the ones with the key less than provided value are returned.
+	 *
+	 * @param order key to sort by
+	 * @param value last value from the previous page
+	 * @param <V>   key type
+	 * @return query sorted by the key in descending order starting after provided value
+	 * @see #sortedByAfter(Compare, Object)
+	 */
+	public <V> RevenjQuery<T> sortedDescendingByAfter(Compare<T, V> order, V value) {
+		if (value == null) throw new IllegalArgumentException("value can't be null");
+		return makeQueryStream(queryComposer.sortedAfter(LambdaInfo.analyze(order, queryComposer.getLambdaCount(), true), value, false));
+	}
+
 	@Override
 	public long count() throws IOException {
 		try {
@@ -123,4 +176,13 @@ final class RevenjQuery<T extends DataSource> implements Query<T> {
 			throw new IOException(e);
 		}
 	}
+
+	@Override
+	public Stream<T> stream() throws IOException {
+		try {
+			return queryComposer.stream();
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
 }
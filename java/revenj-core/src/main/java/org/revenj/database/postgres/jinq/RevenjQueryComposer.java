@@ -10,13 +10,20 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.postgresql.PGResultSetMetaData;
+import org.postgresql.core.Field;
 import org.postgresql.core.Oid;
 import org.postgresql.util.PGobject;
 import org.revenj.patterns.DataSource;
 import org.revenj.patterns.Specification;
+import org.revenj.database.postgres.BinaryObjectConverter;
 import org.revenj.database.postgres.ObjectConverter;
+import org.revenj.database.postgres.PostgresBinaryReader;
 import org.revenj.database.postgres.PostgresWriter;
+import org.revenj.database.postgres.PreparedStatementCache;
 import org.revenj.database.postgres.converters.ArrayTuple;
 import org.revenj.database.postgres.jinq.jpqlquery.GeneratedQueryParameter;
 import org.revenj.database.postgres.jinq.jpqlquery.JinqPostgresQuery;
@@ -28,11 +35,13 @@ import org.revenj.database.postgres.jinq.transform.RevenjNoLambdaQueryTransform;
 import org.revenj.database.postgres.jinq.transform.RevenjOneLambdaQueryTransform;
 import org.revenj.database.postgres.jinq.transform.RevenjQueryTransformConfiguration;
 import org.revenj.database.postgres.jinq.transform.LambdaAnalysis;
+import org.revenj.database.postgres.jinq.transform.KeysetTransform;
 import org.revenj.database.postgres.jinq.transform.LambdaInfo;
 import org.revenj.database.postgres.jinq.transform.LimitSkipTransform;
 import org.revenj.database.postgres.jinq.transform.MetamodelUtil;
 import org.revenj.database.postgres.jinq.transform.QueryTransformException;
 import org.revenj.database.postgres.jinq.transform.SortingTransform;
+import org.revenj.database.postgres.jinq.transform.ValueInfo;
 import org.revenj.database.postgres.jinq.transform.WhereTransform;
 import org.revenj.database.postgres.PostgresReader;
 import org.revenj.patterns.ServiceLocator;
@@ -86,6 +95,8 @@ public final class RevenjQueryComposer<T> {
 	private final ReleaseConnection releaseConnection;
 	private final JinqPostgresQuery<T> query;
 	private final Class<T> manifest;
+	private final boolean binaryResults;
+	private final PreparedStatementCache statementCache;
 
 	/**
 	 * Holds the chain of lambdas that were used to create this query. This is needed
@@ -105,7 +116,7 @@ public final class RevenjQueryComposer<T> {
 			JinqPostgresQuery<T> query,
 			List<LambdaInfo> chainedLambdas,
 			LambdaInfo... additionalLambdas) {
-		this(base.metamodel, base.loader, manifest, base.cachedQueries, base.connection, base.locator, base.getConnection, base.releaseConnection, query, chainedLambdas, additionalLambdas);
+		this(base.metamodel, base.loader, manifest, base.cachedQueries, base.connection, base.locator, base.getConnection, base.releaseConnection, base.binaryResults, base.statementCache, query, chainedLambdas, additionalLambdas);
 	}
 
 	private RevenjQueryComposer(
@@ -117,6 +128,8 @@ public final class RevenjQueryComposer<T> {
 			ServiceLocator locator,
 			GetConnection getConnection,
 			ReleaseConnection releaseConnection,
+			boolean binaryResults,
+			PreparedStatementCache statementCache,
 			JinqPostgresQuery<T> query,
 			List<LambdaInfo> chainedLambdas,
 			LambdaInfo... additionalLambdas) {
@@ -128,6 +141,8 @@ public final class RevenjQueryComposer<T> {
 		this.locator = locator;
 		this.getConnection = getConnection;
 		this.releaseConnection = releaseConnection;
+		this.binaryResults = binaryResults;
+		this.statementCache = statementCache;
 		this.query = query;
 		lambdas.addAll(chainedLambdas);
 		for (LambdaInfo newLambda : additionalLambdas) {
@@ -143,7 +158,9 @@ public final class RevenjQueryComposer<T> {
 			Connection conn,
 			ServiceLocator locator,
 			GetConnection getConnection,
-			ReleaseConnection releaseConnection) {
+			ReleaseConnection releaseConnection,
+			boolean binaryResults,
+			PreparedStatementCache statementCache) {
 		String sqlSource = metamodel.dataSourceNameFromClass(manifest);
 		Optional<JinqPostgresQuery<?>> cachedQuery = cachedQueries.findCachedFindAll(sqlSource);
 		if (cachedQuery == null) {
@@ -162,6 +179,8 @@ public final class RevenjQueryComposer<T> {
 						locator,
 						getConnection,
 						releaseConnection,
+						binaryResults,
+						statementCache,
 						findAllQuery,
 						new ArrayList<>());
 		return new RevenjQuery<>(queryComposer);
@@ -325,11 +344,46 @@ public final class RevenjQueryComposer<T> {
 		if (this.connection == null) releaseConnection.release(connection);
 	}
 
+	/**
+	 * Statement is leased from the cache with query parameters bound to it.
+	 * Parameter types are part of the cache key.
+	 */
+	private PreparedStatementCache.Lease prepare(Connection connection, String sql) throws SQLException {
+		return prepare(connection, sql, false);
+	}
+
+	private PreparedStatementCache.Lease prepare(Connection connection, String sql, boolean forceBinary) throws SQLException {
+		return statementCache.prepare(
+				connection,
+				sql,
+				ps -> fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas),
+				forceBinary);
+	}
+
+	/**
+	 * Binary results are used only when enabled and converter knows how to process them.
+	 * Statement must be prepared with forced binary transfer, so that the driver requests binary format
+	 * for types which are registered for binary transfer (binaryTransferEnable connection property).
+	 * If the type was not registered, Postgres will still return text which is processed as before.
+	 */
+	@SuppressWarnings("unchecked")
+	private BinaryObjectConverter<T> binaryConverter(ObjectConverter<T> converter) {
+		return binaryResults && converter instanceof BinaryObjectConverter
+				? (BinaryObjectConverter<T>) converter
+				: null;
+	}
+
+	private static boolean hasBinaryResult(ResultSet rs) throws SQLException {
+		ResultSetMetaData metadata = rs.getMetaData();
+		return metadata.isWrapperFor(PGResultSetMetaData.class)
+				&& metadata.unwrap(PGResultSetMetaData.class).getFormat(1) == Field.BINARY_FORMAT;
+	}
+
 	public long count() throws SQLException {
 		final String queryString = query.getQueryString();
 		Connection connection = getConnection();
-		try (PreparedStatement ps = connection.prepareStatement("SELECT COUNT(*) FROM (" + queryString + ") sq")) {
-			fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
+		try (PreparedStatementCache.Lease lease = prepare(connection, "SELECT COUNT(*) FROM (" + queryString + ") sq")) {
+			final PreparedStatement ps = lease.statement;
 			try (final ResultSet rs = ps.executeQuery()) {
 				if (rs.next()) {
 					return rs.getLong(1);
@@ -344,8 +398,8 @@ public final class RevenjQueryComposer<T> {
 	public boolean any() throws SQLException {
 		final String queryString = query.getQueryString();
 		Connection connection = getConnection();
-		try (PreparedStatement ps = connection.prepareStatement("SELECT EXISTS(" + queryString + ")")) {
-			fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
+		try (PreparedStatementCache.Lease lease = prepare(connection, "SELECT EXISTS(" + queryString + ")")) {
+			final PreparedStatement ps = lease.statement;
 			try (final ResultSet rs = ps.executeQuery()) {
 				if (rs.next()) {
 					return rs.getBoolean(1);
@@ -368,8 +422,8 @@ public final class RevenjQueryComposer<T> {
 	public boolean none() throws SQLException {
 		final String queryString = query.getQueryString();
 		Connection connection = getConnection();
-		try (PreparedStatement ps = connection.prepareStatement("SELECT NOT EXISTS(" + queryString + ")")) {
-			fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
+		try (PreparedStatementCache.Lease lease = prepare(connection, "SELECT NOT EXISTS(" + queryString + ")")) {
+			final PreparedStatement ps = lease.statement;
 			try (final ResultSet rs = ps.executeQuery()) {
 				if (rs.next()) {
 					return rs.getBoolean(1);
@@ -383,54 +437,276 @@ public final class RevenjQueryComposer<T> {
 
 	public Optional<T> first() throws SQLException {
 		final String queryString = query.getQueryString();
+		final ObjectConverter<T> converter = getConverterFor(locator, manifest).get();
+		final BinaryObjectConverter<T> binary = binaryConverter(converter);
 		Connection connection = getConnection();
-		try (PreparedStatement ps = connection.prepareStatement(queryString)) {
-			fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
-			final PostgresReader pr = new PostgresReader(locator);
+		try (PreparedStatementCache.Lease lease = prepare(connection, queryString, binary != null)) {
+			final PreparedStatement ps = lease.statement;
 			try {
-				final ObjectConverter<T> converter = getConverterFor(locator, manifest).get();
 				try (final ResultSet rs = ps.executeQuery()) {
 					if (rs.next()) {
+						if (binary != null && hasBinaryResult(rs)) {
+							final PostgresBinaryReader br = new PostgresBinaryReader(locator);
+							br.process(rs.getBytes(1));
+							return Optional.of(binary.from(br));
+						}
+						final PostgresReader pr = new PostgresReader(locator);
 						pr.process(rs.getString(1));
 						return Optional.of(converter.from(pr));
 					}
 				}
 			} catch (IOException e) {
 				throw new SQLException(e);
-			} finally {
-				releaseConnection(connection);
 			}
 			return Optional.empty();
+		} finally {
+			releaseConnection(connection);
 		}
 	}
 
 	public List<T> toList() throws SQLException {
 		final String queryString = query.getQueryString();
+		final ObjectConverter<T> converter = getConverterFor(locator, manifest).get();
+		final BinaryObjectConverter<T> binary = binaryConverter(converter);
 		Connection connection = getConnection();
-		try (PreparedStatement ps = connection.prepareStatement(queryString)) {
-			fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
-			final PostgresReader pr = new PostgresReader(locator);
+		try (PreparedStatementCache.Lease lease = prepare(connection, queryString, binary != null)) {
+			final PreparedStatement ps = lease.statement;
 			final ArrayList<T> result = new ArrayList<>();
 			try {
-				final ObjectConverter<T> converter = getConverterFor(locator, manifest).get();
 				try (final ResultSet rs = ps.executeQuery()) {
-					while (rs.next()) {
-						pr.process(rs.getString(1));
-						result.add(converter.from(pr));
+					if (binary != null && hasBinaryResult(rs)) {
+						final PostgresBinaryReader br = new PostgresBinaryReader(locator);
+						while (rs.next()) {
+							br.process(rs.getBytes(1));
+							result.add(binary.from(br));
+						}
+					} else {
+						final PostgresReader pr = new PostgresReader(locator);
+						while (rs.next()) {
+							pr.process(rs.getString(1));
+							result.add(converter.from(pr));
+						}
 					}
 				}
 			} catch (IOException e) {
 				throw new SQLException(e);
-			} finally {
-				releaseConnection(connection);
 			}
 			return result;
+		} finally {
+			releaseConnection(connection);
+		}
+	}
+
+	/**
+	 * Number of rows fetched from the server cursor per round trip while streaming.
+	 */
+	private static final int STREAM_FETCH_SIZE = 1000;
+
+	/**
+	 * Lazily process query results. Postgres driver will use a server side cursor
+	 * only when fetch size is set and autocommit is disabled.
+	 * When connection is acquired for this query, a transaction is started only to keep the cursor open
+	 * and rolled back on stream close, while provided connection is used in its current transaction.
+	 * If provided connection is in autocommit mode, cursor can't be used and its transaction
+	 * is not ours to change, so the result is loaded into a list first (same as the default {@link org.revenj.patterns.Query#stream()}).
+	 * Resources are released when stream is closed or fully consumed.
+	 *
+	 * @return stream of lazily decoded rows
+	 * @throws SQLException when query could not be executed
+	 */
+	public Stream<T> stream() throws SQLException {
+		if (this.connection != null && this.connection.getAutoCommit()) {
+			return toList().stream();
+		}
+		final String queryString = query.getQueryString();
+		final Connection connection = getConnection();
+		PreparedStatement ps = null;
+		boolean startTransaction = false;
+		try {
+			if (this.connection == null && connection.getAutoCommit()) {
+				connection.setAutoCommit(false);
+				startTransaction = true;
+			}
+			//statement cache is not used, since the statement is bound to the cursor until the stream is closed
+			//and fetch size would be left on the shared statement
+			ps = connection.prepareStatement(queryString);
+			ps.setFetchSize(STREAM_FETCH_SIZE);
+			fillQueryParameters(connection, locator, ps, 0, query.getQueryParameters(), lambdas);
+			final ObjectConverter<T> converter = getConverterFor(locator, manifest).get();
+			final BinaryObjectConverter<T> binary = binaryConverter(converter);
+			if (binary != null) {
+				PreparedStatementCache.forceBinaryTransfer(ps);
+			}
+			final ResultSet rs = ps.executeQuery();
+			final StreamReader<T> reader;
+			if (binary != null && hasBinaryResult(rs)) {
+				final PostgresBinaryReader br = new PostgresBinaryReader(locator);
+				reader = row -> {
+					br.process(row.getBytes(1));
+					return binary.from(br);
+				};
+			} else {
+				final PostgresReader pr = new PostgresReader(locator);
+				reader = row -> {
+					pr.process(row.getString(1));
+					return converter.from(pr);
+				};
+			}
+			final ResultSetIterator<T> iterator = new ResultSetIterator<>(this, connection, ps, rs, reader, startTransaction);
+			return StreamSupport.stream(
+					Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+					false).onClose(iterator::close);
+		} catch (SQLException | RuntimeException e) {
+			try {
+				if (ps != null) ps.close();
+			} catch (SQLException ex) {
+				e.addSuppressed(ex);
+			}
+			if (startTransaction) {
+				finishTransaction(connection, e);
+			}
+			try {
+				releaseConnection(connection);
+			} catch (SQLException ex) {
+				e.addSuppressed(ex);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Rollback the transaction started for the stream and restore autocommit,
+	 * so the connection is always returned to the pool in the state it was acquired in.
+	 * Transaction was only used to keep the cursor open, so there is nothing to commit.
+	 * Errors are attached to the provided exception, or a new one is created if required.
+	 */
+	private static SQLException finishTransaction(Connection connection, Exception error) {
+		SQLException failure = null;
+		try {
+			connection.rollback();
+		} catch (SQLException e) {
+			failure = e;
+		}
+		try {
+			connection.setAutoCommit(true);
+		} catch (SQLException e) {
+			if (failure == null) failure = e;
+			else failure.addSuppressed(e);
+		}
+		if (failure != null && error != null) {
+			error.addSuppressed(failure);
+			return null;
+		}
+		return failure;
+	}
+
+	@FunctionalInterface
+	private interface StreamReader<T> {
+		T read(ResultSet rs) throws SQLException, IOException;
+	}
+
+	private static final class ResultSetIterator<T> implements Iterator<T> {
+		private final RevenjQueryComposer<T> composer;
+		private final Connection connection;
+		private final PreparedStatement statement;
+		private final ResultSet resultSet;
+		private final StreamReader<T> reader;
+		private final boolean finishTransaction;
+		private boolean hasNext;
+		private boolean checked;
+		private boolean closed;
+
+		ResultSetIterator(
+				RevenjQueryComposer<T> composer,
+				Connection connection,
+				PreparedStatement statement,
+				ResultSet resultSet,
+				StreamReader<T> reader,
+				boolean finishTransaction) {
+			this.composer = composer;
+			this.connection = connection;
+			this.statement = statement;
+			this.resultSet = resultSet;
+			this.reader = reader;
+			this.finishTransaction = finishTransaction;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (closed) return false;
+			if (!checked) {
+				try {
+					hasNext = resultSet.next();
+				} catch (SQLException e) {
+					fail(e);
+				}
+				checked = true;
+				if (!hasNext) {
+					close();
+				}
+			}
+			return hasNext;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			checked = false;
+			try {
+				return reader.read(resultSet);
+			} catch (SQLException | IOException | RuntimeException e) {
+				fail(e);
+				return null;
+			}
+		}
+
+		private void fail(Exception error) {
+			RuntimeException ex = error instanceof RuntimeException ? (RuntimeException) error : new RuntimeException(error);
+			try {
+				close();
+			} catch (RuntimeException e) {
+				ex.addSuppressed(e);
+			}
+			throw ex;
+		}
+
+		void close() {
+			if (closed) return;
+			closed = true;
+			SQLException failure = null;
+			try {
+				resultSet.close();
+			} catch (SQLException e) {
+				failure = e;
+			}
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				if (failure == null) failure = e;
+				else failure.addSuppressed(e);
+			}
+			if (finishTransaction) {
+				SQLException e = finishTransaction(connection, failure);
+				if (failure == null) failure = e;
+			}
+			try {
+				composer.releaseConnection(connection);
+			} catch (SQLException e) {
+				if (failure == null) failure = e;
+				else failure.addSuppressed(e);
+			}
+			if (failure != null) {
+				throw new RuntimeException(failure);
+			}
 		}
 	}
 
 	private <U> RevenjQueryComposer<U> applyTransformWithLambda(
 			Class<U> newManifest,
-			RevenjNoLambdaQueryTransform transform) {
+			RevenjNoLambdaQueryTransform transform,
+			LambdaInfo... values) {
 		Optional<JinqPostgresQuery<?>> cachedQuery = cachedQueries.findInCache(query, transform.getTransformationTypeCachingTag(), null);
 		if (cachedQuery == null) {
 			cachedQuery = Optional.empty();
@@ -448,7 +724,7 @@ public final class RevenjQueryComposer<T> {
 		if (!cachedQuery.isPresent()) {
 			return null;
 		}
-		return new RevenjQueryComposer<>(this, newManifest, (JinqPostgresQuery<U>) cachedQuery.get(), lambdas);
+		return new RevenjQueryComposer<>(this, newManifest, (JinqPostgresQuery<U>) cachedQuery.get(), lambdas, values);
 	}
 
 	public <U> RevenjQueryComposer<U> applyTransformWithLambda(
@@ -559,11 +835,22 @@ public final class RevenjQueryComposer<T> {
 		return applyTransformWithLambda(manifest, new SortingTransform(getConfig(), isAscending), lambdaInfo);
 	}
 
+	/**
+	 * Keyset pagination. Key value is bound as a parameter which follows the key lambda.
+	 */
+	public RevenjQueryComposer<T> sortedAfter(LambdaInfo lambdaInfo, Object value, boolean isAscending) {
+		RevenjQueryComposer<T> sorted = applyTransformWithLambda(manifest, new KeysetTransform(getConfig(), isAscending), lambdaInfo);
+		if (sorted == null) {
+			return null;
+		}
+		return new RevenjQueryComposer<>(sorted, manifest, sorted.query, sorted.lambdas, new ValueInfo(sorted.lambdas.size(), value));
+	}
+
 	public RevenjQueryComposer<T> limit(long n) {
-		return applyTransformWithLambda(manifest, new LimitSkipTransform(getConfig(), true, n));
+		return applyTransformWithLambda(manifest, new LimitSkipTransform(getConfig(), true, lambdas.size()), new ValueInfo(lambdas.size(), n));
 	}
 
 	public RevenjQueryComposer<T> skip(long n) {
-		return applyTransformWithLambda(manifest, new LimitSkipTransform(getConfig(), false, n));
+		return applyTransformWithLambda(manifest, new LimitSkipTransform(getConfig(), false, lambdas.size()), new ValueInfo(lambdas.size(), n));
 	}
 }
@@ -3,14 +3,33 @@ package org.revenj.database.postgres.jinq;
 import org.revenj.database.postgres.jinq.jpqlquery.JinqPostgresQuery;
 
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Cache of translated Jinq queries.
+ * Lookups don't take locks, so lambda translations from different threads don't serialize on the cache.
+ * Number of cached transformations is bounded. When capacity is exceeded,
+ * transformations are evicted one at a time by a single thread, using clock (second chance) algorithm:
+ * entries which were used since the last pass of the sweep are kept, while the others are evicted.
+ */
 public final class RevenjQueryComposerCache {
-    private static class CacheKey {
-        @Override
-        public int hashCode() {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final class CacheKey {
+        private final String transformationType;
+        private final JinqPostgresQuery<?> baseQuery;
+        private final String[] lambdaSources;
+        private final int hash;
+
+        CacheKey(JinqPostgresQuery<?> baseQuery, String transformationType, String[] lambdaSources) {
+            this.transformationType = transformationType;
+            this.baseQuery = baseQuery;
+            this.lambdaSources = lambdaSources;
             final int prime = 31;
             int result = 1;
             result = prime * result
@@ -20,7 +39,12 @@ public final class RevenjQueryComposerCache {
                     * result
                     + ((transformationType == null) ? 0 : transformationType
                     .hashCode());
-            return result;
+            this.hash = result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
         }
 
         @Override
@@ -32,10 +56,12 @@ public final class RevenjQueryComposerCache {
             if (getClass() != obj.getClass())
                 return false;
             CacheKey other = (CacheKey) obj;
+            if (hash != other.hash)
+                return false;
             if (baseQuery == null) {
                 if (other.baseQuery != null)
                     return false;
-            } else if (!baseQuery.equals(other.baseQuery))
+            } else if (baseQuery != other.baseQuery && !baseQuery.equals(other.baseQuery))
                 return false;
             if (!Arrays.equals(lambdaSources, other.lambdaSources))
                 return false;
@@ -46,23 +72,78 @@ public final class RevenjQueryComposerCache {
                 return false;
             return true;
         }
+    }
 
-        String transformationType;
-        JinqPostgresQuery<?> baseQuery;
-        String[] lambdaSources;
+    private static final class CacheEntry {
+        final CacheKey key;
+        final Optional<JinqPostgresQuery<?>> query;
+        volatile boolean referenced = true;
+
+        CacheEntry(CacheKey key, Optional<JinqPostgresQuery<?>> query) {
+            this.key = key;
+            this.query = query;
+        }
     }
 
     /**
      * Map of cached query transforms. Maps from a description of the transform
      * to the cached result of the transform.
      */
-    private final Map<CacheKey, Optional<JinqPostgresQuery<?>>> cachedQueryTransforms = new HashMap<>();
+    private final ConcurrentHashMap<CacheKey, CacheEntry> cachedQueryTransforms = new ConcurrentHashMap<>();
 
     /**
      * Map of cached queries for finding all the entities of a certain type. The
      * map maps from entity name to the corresponding query.
+     * It's bounded by the number of data sources, so it's never evicted.
+     */
+    private final ConcurrentHashMap<String, Optional<JinqPostgresQuery<?>>> cachedFindAllEntities = new ConcurrentHashMap<>();
+
+    /**
+     * Eviction order of cached transformations. Hits only mark the entry as referenced,
+     * so they don't contend on the queue.
+     */
+    private final ConcurrentLinkedQueue<CacheEntry> clock = new ConcurrentLinkedQueue<>();
+
+    private final int capacity;
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RevenjQueryComposerCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Cache with specified maximum number of transformations.
+     *
+     * @param capacity maximum number of cached transformations. 0 disables caching of transformations
+     */
+    public RevenjQueryComposerCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity can't be negative");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Cache configured through revenj.queryCache.size property.
+     * When property is not defined, default capacity is used.
+     *
+     * @param properties configuration, can be null
+     * @return cache with configured capacity
      */
-    private final Map<String, Optional<JinqPostgresQuery<?>>> cachedFindAllEntities = new HashMap<>();
+    public static RevenjQueryComposerCache create(Properties properties) {
+        String queryCacheSize = properties != null ? properties.getProperty("revenj.queryCache.size") : null;
+        if (queryCacheSize == null) {
+            return new RevenjQueryComposerCache();
+        }
+        try {
+            return new RevenjQueryComposerCache(Integer.parseInt(queryCacheSize));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Error parsing revenj.queryCache.size setting. Expecting non negative integer. Found: " + queryCacheSize);
+        }
+    }
 
     /**
      * Looks up whether a certain transformation is already in the cache or not.
@@ -73,11 +154,20 @@ public final class RevenjQueryComposerCache {
      * @return cached transformation result or null if this transformation hasn't
      * been cached
      */
-    public synchronized Optional<JinqPostgresQuery<?>> findInCache(
+    public Optional<JinqPostgresQuery<?>> findInCache(
             JinqPostgresQuery<?> base,
             String transformationType,
             String[] lambdaSources) {
-        return cacheQuery(base, transformationType, lambdaSources, null);
+        CacheEntry entry = cachedQueryTransforms.get(new CacheKey(base, transformationType, lambdaSources));
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry.query;
     }
 
     /**
@@ -90,23 +180,52 @@ public final class RevenjQueryComposerCache {
      * @param resultingQuery     result of the transformation that should be cached
      * @return the existing cached entry or resultingQuery if nothing is cached
      */
-    public synchronized Optional<JinqPostgresQuery<?>> cacheQuery(
+    public Optional<JinqPostgresQuery<?>> cacheQuery(
             JinqPostgresQuery<?> base,
             String transformationType,
             String[] lambdaSources,
             Optional<JinqPostgresQuery<?>> resultingQuery) {
-        CacheKey key = new CacheKey();
-        key.transformationType = transformationType;
-        key.baseQuery = base;
-        if (lambdaSources != null)
-            key.lambdaSources = Arrays.copyOf(lambdaSources, lambdaSources.length);
-        if (cachedQueryTransforms.containsKey(key))
-            return cachedQueryTransforms.get(key);
-        if (resultingQuery != null)
-            cachedQueryTransforms.put(key, resultingQuery);
+        if (resultingQuery == null) {
+            return findInCache(base, transformationType, lambdaSources);
+        }
+        if (capacity == 0) {
+            return resultingQuery;
+        }
+        CacheKey key = new CacheKey(
+                base,
+                transformationType,
+                lambdaSources != null ? Arrays.copyOf(lambdaSources, lambdaSources.length) : null);
+        CacheEntry entry = new CacheEntry(key, resultingQuery);
+        CacheEntry existing = cachedQueryTransforms.putIfAbsent(key, entry);
+        if (existing != null) {
+            return existing.query;
+        }
+        clock.add(entry);
+        if (cachedQueryTransforms.size() > capacity) {
+            evict();
+        }
         return resultingQuery;
     }
 
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            CacheEntry candidate;
+            while (cachedQueryTransforms.size() > capacity && (candidate = clock.poll()) != null) {
+                if (candidate.referenced) {
+                    candidate.referenced = false;
+                    clock.add(candidate);
+                } else if (cachedQueryTransforms.remove(candidate.key, candidate)) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
     /**
      * Checks if a query for finding all the entities of a certain type has
      * already been cached
@@ -114,8 +233,8 @@ public final class RevenjQueryComposerCache {
      * @param dataSource name of the type of entity the query should return
      * @return the cached query or null if no query has been cached.
      */
-    public synchronized Optional<JinqPostgresQuery<?>> findCachedFindAll(String dataSource) {
-        return cacheFindAll(dataSource, null);
+    public Optional<JinqPostgresQuery<?>> findCachedFindAll(String dataSource) {
+        return cachedFindAllEntities.get(dataSource);
     }
 
     /**
@@ -129,13 +248,33 @@ public final class RevenjQueryComposerCache {
      * @return if a query has already been cached, that query is returned;
      * otherwise, queryToCache is inserted into the cache and returned.
      */
-    public synchronized Optional<JinqPostgresQuery<?>> cacheFindAll(
+    public Optional<JinqPostgresQuery<?>> cacheFindAll(
             String dataSource,
             Optional<JinqPostgresQuery<?>> queryToCache) {
-        if (cachedFindAllEntities.containsKey(dataSource))
+        if (queryToCache == null) {
             return cachedFindAllEntities.get(dataSource);
-        if (queryToCache != null)
-            cachedFindAllEntities.put(dataSource, queryToCache);
-        return queryToCache;
+        }
+        Optional<JinqPostgresQuery<?>> existing = cachedFindAllEntities.putIfAbsent(dataSource, queryToCache);
+        return existing != null ? existing : queryToCache;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return cachedQueryTransforms.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
     }
 }
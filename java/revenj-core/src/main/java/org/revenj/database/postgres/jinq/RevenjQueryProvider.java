@@ -1,10 +1,14 @@
 package org.revenj.database.postgres.jinq;
 
+import java.security.Principal;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Optional;
 
 import org.revenj.patterns.Query;
+import org.revenj.patterns.Specification;
+import org.revenj.security.PermissionManager;
+import org.revenj.database.postgres.PreparedStatementCache;
 import org.revenj.database.postgres.QueryProvider;
 import org.revenj.database.postgres.jinq.jpqlquery.JinqPostgresQuery;
 
@@ -16,16 +20,28 @@ final class RevenjQueryProvider implements QueryProvider {
 	private final MetamodelUtil metamodel;
 	private final ClassLoader loader;
 	private final javax.sql.DataSource dataSource;
-	private final RevenjQueryComposerCache cachedQueries = new RevenjQueryComposerCache();
+	private final boolean binaryResults;
+	private final PreparedStatementCache statementCache;
+	private final RevenjQueryComposerCache cachedQueries;
+	private volatile Optional<PermissionManager> permissions;
 
-	public RevenjQueryProvider(MetamodelUtil metamodel, ClassLoader loader, javax.sql.DataSource dataSource) {
+	public RevenjQueryProvider(
+			MetamodelUtil metamodel,
+			ClassLoader loader,
+			javax.sql.DataSource dataSource,
+			boolean binaryResults,
+			PreparedStatementCache statementCache,
+			RevenjQueryComposerCache cachedQueries) {
 		this.metamodel = metamodel;
 		this.loader = loader;
 		this.dataSource = dataSource;
+		this.binaryResults = binaryResults;
+		this.statementCache = statementCache;
+		this.cachedQueries = cachedQueries;
 	}
 
 	public <T extends DataSource> Query<T> query(Connection connection, ServiceLocator locator, Class<T> manifest) {
-		return RevenjQueryComposer.findAll(
+		RevenjQuery<T> query = RevenjQueryComposer.findAll(
 				metamodel,
 				loader,
 				manifest,
@@ -33,7 +49,23 @@ final class RevenjQueryProvider implements QueryProvider {
 				connection,
 				locator,
 				this::getFromDataSource,
-				Connection::close);
+				Connection::close,
+				binaryResults,
+				statementCache);
+		Principal principal = PermissionManager.boundPrincipal.get();
+		if (principal == null) {
+			return query;
+		}
+		if (permissions == null) {
+			permissions = locator.tryResolve(PermissionManager.class);
+		}
+		if (permissions.isPresent()) {
+			//row filters are merged into the WHERE clause, so forbidden rows are never loaded
+			for (Specification<T> filter : permissions.get().queryFilters(manifest, principal)) {
+				query = query.restrict(manifest, filter);
+			}
+		}
+		return query;
 	}
 
 	private Connection getFromDataSource() throws SQLException {
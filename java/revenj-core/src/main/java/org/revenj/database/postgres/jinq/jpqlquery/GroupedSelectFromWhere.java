@@ -43,7 +43,7 @@ public class GroupedSelectFromWhere<T, U> extends SelectFromWhere<T> {
 
 	@Override
 	public boolean isSelectFromWhereGroupHaving() {
-		return sort.isEmpty() && limit < 0 && skip < 0;
+		return sort.isEmpty() && limit == null && skip == null;
 	}
 
 	@Override
@@ -7,15 +7,20 @@ public class SelectFromWhere<T> extends SelectOnly<T> {
 	public final List<From> froms = new ArrayList<>(1);
 	public Expression where;
 	public final List<SortingParameters> sort = new ArrayList<>(1);
-	public long limit = -1;
-	public long skip = -1;
+	/**
+	 * Limit and offset are bound as parameters, so all pages of a query share the same SQL.
+	 */
+	public Expression limit;
+	public Expression skip;
 
 	/**
 	 * Holds information needed to do a sort.
+	 * When sort is used for keyset pagination, only rows after the provided value are selected.
 	 */
 	public static class SortingParameters {
 		public Expression expr;
 		public boolean isAscending;
+		public Expression after;
 	}
 
 	/**
@@ -67,6 +72,9 @@ public class SelectFromWhere<T> extends SelectOnly<T> {
 		}
 		for (SortingParameters sortParams : sort) {
 			sortParams.expr.prepareQueryGeneration(preparePhase, queryState);
+			if (sortParams.after != null) {
+				sortParams.after.prepareQueryGeneration(preparePhase, queryState);
+			}
 		}
 	}
 
@@ -102,10 +110,42 @@ public class SelectFromWhere<T> extends SelectOnly<T> {
 				queryState.appendQuery(" ").appendQuery(queryState.getFromAlias(from));
 			}
 		}
-		if (where != null) {
+		Expression keyset = keysetCondition();
+		Expression condition = where == null ? keyset
+				: keyset == null ? where
+				: new BinaryExpression(where, "AND", keyset);
+		if (condition != null) {
 			queryState.appendQuery(" WHERE ");
-			where.generateQuery(queryState, OperatorPrecedenceLevel.JPQL_UNRESTRICTED_OPERATOR_PRECEDENCE);
+			condition.generateQuery(queryState, OperatorPrecedenceLevel.JPQL_UNRESTRICTED_OPERATOR_PRECEDENCE);
+		}
+	}
+
+	/**
+	 * Keyset pagination is translated into a range predicate on the sort keys.
+	 * Multiple keys are compared as a row, e.g. (a, b) &gt; (?, ?),
+	 * which can be processed by a multicolumn index.
+	 * Comparison is strict, so rows equal to the last seen keys are excluded.
+	 * Uniqueness of keys can't be checked here; when the last key is not unique,
+	 * rows which tie with the last row of the previous page are skipped.
+	 */
+	private Expression keysetCondition() {
+		List<Expression> keys = new ArrayList<>(sort.size());
+		List<Expression> values = new ArrayList<>(sort.size());
+		for (SortingParameters sortParams : sort) {
+			if (sortParams.after == null) {
+				break;
+			}
+			keys.add(sortParams.expr);
+			values.add(sortParams.after);
+		}
+		if (keys.isEmpty()) {
+			return null;
+		}
+		String operator = sort.get(0).isAscending ? ">" : "<";
+		if (keys.size() == 1) {
+			return new BinaryExpression(keys.get(0), operator, values.get(0));
 		}
+		return new BinaryExpression(FunctionExpression.withParams("ROW", keys), operator, FunctionExpression.withParams("ROW", values));
 	}
 
 	protected void generateSort(QueryGenerationState queryState) {
@@ -129,13 +169,13 @@ public class SelectFromWhere<T> extends SelectOnly<T> {
 	}
 
 	protected void generateLimitOffset(QueryGenerationState queryState) {
-		if (limit >= 0) {
+		if (limit != null) {
 			queryState.appendQuery(" LIMIT ");
-			queryState.appendQuery(Long.toString(limit));
+			limit.generateQuery(queryState, OperatorPrecedenceLevel.JPQL_UNRESTRICTED_OPERATOR_PRECEDENCE);
 		}
-		if (skip >= 0) {
+		if (skip != null) {
 			queryState.appendQuery(" OFFSET ");
-			queryState.appendQuery(Long.toString(skip));
+			skip.generateQuery(queryState, OperatorPrecedenceLevel.JPQL_UNRESTRICTED_OPERATOR_PRECEDENCE);
 		}
 	}
 
@@ -159,7 +199,7 @@ public class SelectFromWhere<T> extends SelectOnly<T> {
 	}
 
 	public boolean isSelectFromWhere() {
-		return !isAggregated && sort.isEmpty() && limit < 0 && skip < 0 && !isDistinct;
+		return !isAggregated && sort.isEmpty() && limit == null && skip == null && !isDistinct;
 	}
 
 	public boolean isSelectOnly() {
@@ -168,7 +208,7 @@ public class SelectFromWhere<T> extends SelectOnly<T> {
 
 	public boolean canSort() {
 		return ((this.getClass() == SelectFromWhere.class && !isAggregated) || (this instanceof GroupedSelectFromWhere))
-				&& limit < 0 && skip < 0;
+				&& limit == null && skip == null;
 	}
 
 	public boolean canDistinct() {
@@ -176,7 +216,7 @@ public class SelectFromWhere<T> extends SelectOnly<T> {
 	}
 
 	public boolean isValidSubquery() {
-		return limit < 0 && skip < 0 && sort.isEmpty();
+		return limit == null && skip == null && sort.isEmpty();
 	}
 
 	public <U> GroupedSelectFromWhere<T, U> shallowCopyWithGrouping() {
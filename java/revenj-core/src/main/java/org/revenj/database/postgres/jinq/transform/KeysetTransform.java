@@ -0,0 +1,57 @@
+package org.revenj.database.postgres.jinq.transform;
+
+import ch.epfl.labos.iu.orm.queryll2.symbolic.TypedValueVisitorException;
+import org.revenj.database.postgres.jinq.jpqlquery.ColumnExpressions;
+import org.revenj.database.postgres.jinq.jpqlquery.JinqPostgresQuery;
+import org.revenj.database.postgres.jinq.jpqlquery.ParameterExpression;
+import org.revenj.database.postgres.jinq.jpqlquery.SelectFromWhere;
+
+/**
+ * Keyset (seek) pagination. Query is sorted by the key and only rows after the provided value are selected.
+ * Consecutive keys are combined into a single row comparison, so they must be applied
+ * before other sorting and in the same direction.
+ * Value is provided through a {@link ValueInfo} which follows the key lambda.
+ */
+public class KeysetTransform extends RevenjOneLambdaQueryTransform {
+	public KeysetTransform(RevenjQueryTransformConfiguration config, boolean isAscending) {
+		super(config);
+		this.isAscending = isAscending;
+	}
+
+	private boolean isAscending;
+
+	@Override
+	public <U, V> JinqPostgresQuery<U> apply(JinqPostgresQuery<V> query, LambdaAnalysis lambda, SymbExArgumentHandler parentArgumentScope) throws QueryTransformException {
+		try {
+			if (query.getClass() == SelectFromWhere.class && query.canSort()) {
+				SelectFromWhere<V> sfw = (SelectFromWhere<V>) query;
+				for (SelectFromWhere.SortingParameters it : sfw.sort) {
+					if (it.after == null || it.isAscending != isAscending) {
+						throw new QueryTransformException("Keyset pagination must be applied before other sorting and in the same direction");
+					}
+				}
+				SelectFromWhereLambdaArgumentHandler argHandler = SelectFromWhereLambdaArgumentHandler.fromSelectFromWhere(sfw, lambda, config.metamodel, parentArgumentScope, false);
+				SymbExToColumns translator = config.newSymbExToColumns(argHandler, lambda.getLambdaIndex());
+
+				ColumnExpressions<U> returnExpr = makeSelectExpression(translator, lambda);
+
+				// Create the new query, merging in the analysis of the method
+				SelectFromWhere<U> toReturn = (SelectFromWhere<U>) sfw.shallowCopy();
+				SelectFromWhere.SortingParameters sort = new SelectFromWhere.SortingParameters();
+				sort.expr = returnExpr.getOnlyColumn();
+				sort.isAscending = isAscending;
+				sort.after = new ParameterExpression(lambda.getLambdaIndex() + 1, 0, null);
+				toReturn.sort.add(sort);
+				return toReturn;
+			}
+			throw new QueryTransformException("Existing query cannot be transformed further");
+		} catch (TypedValueVisitorException e) {
+			throw new QueryTransformException(e);
+		}
+	}
+
+	@Override
+	public String getTransformationTypeCachingTag() {
+		return isAscending ? "keyset-asc" : "keyset-desc";
+	}
+}
@@ -1,6 +1,16 @@
 package org.revenj.database.postgres.jinq.transform;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.jinq.rebased.org.objectweb.asm.Type;
 
@@ -22,7 +32,95 @@ public class LambdaInfo {
 	 */
 	protected int lambdaIndex;
 
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	/**
+	 * Lambda metadata doesn't change between instances of the same lambda class.
+	 * Once lambda was extracted through serialization, its method info is remembered
+	 * and captured arguments of other instances are read directly from the synthetic fields.
+	 */
+	private static final class Shape {
+		static final Shape UNSUPPORTED = new Shape(null, null, null, 0, null);
+
+		final String implClass;
+		final String implMethodName;
+		final String implMethodSignature;
+		final int implMethodKind;
+		final MethodHandle[] captured;
+
+		Shape(String implClass, String implMethodName, String implMethodSignature, int implMethodKind, MethodHandle[] captured) {
+			this.implClass = implClass;
+			this.implMethodName = implMethodName;
+			this.implMethodSignature = implMethodSignature;
+			this.implMethodKind = implMethodKind;
+			this.captured = captured;
+		}
+
+		SerializedLambda extract(Object lambda) throws Throwable {
+			SerializedLambda s = new SerializedLambda();
+			s.implClass = implClass;
+			s.implMethodName = implMethodName;
+			s.implMethodSignature = implMethodSignature;
+			s.implMethodKind = implMethodKind;
+			s.capturedArgs = new Object[captured.length];
+			for (int i = 0; i < captured.length; i++) {
+				s.capturedArgs[i] = captured[i].invokeExact(lambda);
+			}
+			return s;
+		}
+
+		static Shape create(Object lambda, SerializedLambda s) {
+			List<Field> fields = new ArrayList<>();
+			for (Field f : lambda.getClass().getDeclaredFields()) {
+				if (Modifier.isStatic(f.getModifiers())) continue;
+				if (!f.getName().startsWith("arg$")) return UNSUPPORTED;
+				fields.add(f);
+			}
+			if (s.capturedArgs == null || fields.size() != s.capturedArgs.length) return UNSUPPORTED;
+			try {
+				fields.sort(Comparator.comparingInt(f -> Integer.parseInt(f.getName().substring(4))));
+				MethodHandle[] captured = new MethodHandle[fields.size()];
+				for (int i = 0; i < captured.length; i++) {
+					Field f = fields.get(i);
+					f.setAccessible(true);
+					captured[i] = LOOKUP.unreflectGetter(f).asType(GETTER_TYPE);
+					Object value = captured[i].invokeExact(lambda);
+					Object serialized = s.capturedArgs[i];
+					//serialized arguments are copies, so only their type can be matched
+					boolean same = f.getType().isPrimitive()
+							? Objects.equals(value, serialized)
+							: value == null ? serialized == null : serialized != null && value.getClass() == serialized.getClass();
+					if (!same) return UNSUPPORTED;
+				}
+				return new Shape(s.implClass, s.implMethodName, s.implMethodSignature, s.implMethodKind, captured);
+			} catch (Throwable ignore) {
+				return UNSUPPORTED;
+			}
+		}
+	}
+
+	private static final class ClassInfo {
+		volatile Shape shape;
+		final ConcurrentMap<String, MethodHandle> fields = new ConcurrentHashMap<>();
+	}
+
+	private static final ClassValue<ClassInfo> CLASS_INFO = new ClassValue<ClassInfo>() {
+		@Override
+		protected ClassInfo computeValue(Class<?> type) {
+			return new ClassInfo();
+		}
+	};
+
 	public static LambdaInfo analyze(Object lambda, int lambdaIndex, boolean throwExceptionOnFailure) {
+		ClassInfo info = lambda != null ? CLASS_INFO.get(lambda.getClass()) : null;
+		Shape shape = info != null ? info.shape : null;
+		if (shape != null && shape != Shape.UNSUPPORTED) {
+			try {
+				return new LambdaInfo(lambda, shape.extract(lambda), lambdaIndex);
+			} catch (Throwable ignore) {
+			}
+		}
 		SerializedLambda s;
 		try {
 			s = SerializedLambda.extractLambda(lambda);
@@ -36,6 +134,9 @@ public class LambdaInfo {
 				throw new IllegalArgumentException("Could not extract code from lambda. This error sometimes occurs because your lambda references objects that aren't Serializable.");
 			return null;
 		}
+		if (info != null && shape == null) {
+			info.shape = Shape.create(lambda, s);
+		}
 		return new LambdaInfo(lambda, s, lambdaIndex);
 	}
 
@@ -82,15 +183,29 @@ public class LambdaInfo {
 	}
 
 	public Object getField(String fieldName) {
+		ConcurrentMap<String, MethodHandle> fields = CLASS_INFO.get(Lambda.getClass()).fields;
+		MethodHandle getter = fields.get(fieldName);
+		if (getter == null) {
+			getter = findGetter(Lambda.getClass(), fieldName);
+			fields.putIfAbsent(fieldName, getter);
+		}
+		try {
+			return getter.invokeExact(Lambda);
+		} catch (Throwable e) {
+			throw new IllegalArgumentException("Cannot read field " + fieldName + " of lambda", e);
+		}
+	}
+
+	private static MethodHandle findGetter(Class<?> manifest, String fieldName) {
 		try {
-			Field field = Lambda.getClass().getDeclaredField(fieldName);
+			Field field = manifest.getDeclaredField(fieldName);
 			field.setAccessible(true);
-			return field.get(Lambda);
+			return LOOKUP.unreflectGetter(field).asType(GETTER_TYPE);
 		} catch (SecurityException e) {
 			throw new IllegalArgumentException("Cannot read field " + fieldName + " of lambda", e);
 		} catch (Exception e) {
 			try {
-				return Lambda.getClass().getField(fieldName).get(Lambda);
+				return LOOKUP.unreflectGetter(manifest.getField(fieldName)).asType(GETTER_TYPE);
 			} catch (Exception e1) {
 				throw new IllegalArgumentException("Cannot read field " + fieldName + " of lambda", e1);
 			}
@@ -1,33 +1,48 @@
 package org.revenj.database.postgres.jinq.transform;
 
+import org.revenj.database.postgres.jinq.jpqlquery.BinaryExpression;
+import org.revenj.database.postgres.jinq.jpqlquery.ConstantExpression;
+import org.revenj.database.postgres.jinq.jpqlquery.Expression;
+import org.revenj.database.postgres.jinq.jpqlquery.FunctionExpression;
 import org.revenj.database.postgres.jinq.jpqlquery.JinqPostgresQuery;
+import org.revenj.database.postgres.jinq.jpqlquery.ParameterExpression;
 import org.revenj.database.postgres.jinq.jpqlquery.SelectFromWhere;
 
+/**
+ * Limit and skip are not part of the query text. Value is provided through a {@link ValueInfo}
+ * at the specified lambda index, so the same translated query can be used for all pages.
+ */
 public class LimitSkipTransform extends RevenjNoLambdaQueryTransform {
-	public LimitSkipTransform(RevenjQueryTransformConfiguration config, boolean isLimit, long n) {
+	public LimitSkipTransform(RevenjQueryTransformConfiguration config, boolean isLimit, int lambdaIndex) {
 		super(config);
-		constraint = n;
+		this.lambdaIndex = lambdaIndex;
 		this.isLimit = isLimit;
 	}
 
 	boolean isLimit;
-	long constraint;
+	int lambdaIndex;
 
 	@Override
 	public <U, V> JinqPostgresQuery<U> apply(JinqPostgresQuery<V> query, SymbExArgumentHandler parentArgumentScope) throws QueryTransformException {
 		if (query instanceof SelectFromWhere) {
 			SelectFromWhere<V> sfw = (SelectFromWhere<V>) query;
 
-			if (isLimit && sfw.limit >= 0) throw new IllegalArgumentException("Cannot limit a query more than once");
-			if (!isLimit && sfw.skip >= 0) throw new IllegalArgumentException("Cannot skip in a query more than once");
+			if (isLimit && sfw.limit != null) throw new IllegalArgumentException("Cannot limit a query more than once");
+			if (!isLimit && sfw.skip != null) throw new IllegalArgumentException("Cannot skip in a query more than once");
 
 			// Create the new query, merging in the analysis of the method
 			SelectFromWhere<U> toReturn = (SelectFromWhere<U>) sfw.shallowCopy();
 
+			Expression constraint = new ParameterExpression(lambdaIndex, 0, "long");
 			if (isLimit) {
 				toReturn.limit = constraint;
 			} else {
-				if (toReturn.limit >= 0) toReturn.limit -= constraint;
+				if (toReturn.limit != null) {
+					toReturn.limit = FunctionExpression.twoParam(
+							"GREATEST",
+							new BinaryExpression(toReturn.limit, "-", constraint),
+							new ConstantExpression("0"));
+				}
 				toReturn.skip = constraint;
 			}
 
@@ -38,6 +53,6 @@ public class LimitSkipTransform extends RevenjNoLambdaQueryTransform {
 
 	@Override
 	public String getTransformationTypeCachingTag() {
-		return LimitSkipTransform.class.getName() + ":" + isLimit + ":" + constraint;
+		return LimitSkipTransform.class.getName() + ":" + isLimit + ":" + lambdaIndex;
 	}
 }
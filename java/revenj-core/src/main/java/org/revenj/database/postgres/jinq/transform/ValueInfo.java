@@ -0,0 +1,21 @@
+package org.revenj.database.postgres.jinq.transform;
+
+/**
+ * Values which are passed to the query directly, instead of being captured by a lambda
+ * (such as limit, offset or keyset pagination values).
+ * They are kept in the list of query lambdas, so they are bound as parameters
+ * in the same way as captured lambda arguments, while the translated query doesn't depend on them.
+ */
+public class ValueInfo extends LambdaInfo {
+	private final Object[] values;
+
+	public ValueInfo(int lambdaIndex, Object... values) {
+		super(lambdaIndex, values.length, 0);
+		this.values = values;
+	}
+
+	@Override
+	public Object getCapturedArg(int argIndex) {
+		return values[argIndex];
+	}
+}
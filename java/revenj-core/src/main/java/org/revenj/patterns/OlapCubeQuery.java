@@ -1,6 +1,7 @@
 package org.revenj.patterns;
 
 import java.util.*;
+import java.util.stream.Stream;
 
 public interface OlapCubeQuery<TSource extends DataSource> {
 	Set<String> getDimensions();
@@ -15,6 +16,28 @@ public interface OlapCubeQuery<TSource extends DataSource> {
 			Integer limit,
 			Integer offset);
 
+	/**
+	 * Process analysis results lazily. Stream should be closed when not fully consumed
+	 * since implementations can keep database resources open while streaming.
+	 *
+	 * @param dimensions used dimensions
+	 * @param facts      used facts
+	 * @param order      custom order
+	 * @param filter     filter for source
+	 * @param limit      maximum number of rows
+	 * @param offset     number of skipped rows
+	 * @return stream of analysis rows
+	 */
+	default Stream<Map<String, Object>> stream(
+			List<String> dimensions,
+			List<String> facts,
+			Collection<Map.Entry<String, Boolean>> order,
+			Specification<TSource> filter,
+			Integer limit,
+			Integer offset) {
+		return analyze(dimensions, facts, order, filter, limit, offset).stream();
+	}
+
 	default List<Map<String, Object>> analyze(
 			List<String> dimensions,
 			List<String> facts,
@@ -41,6 +41,13 @@ public interface Query<T> {
 
 	List<T> list() throws IOException;
 
+	/**
+	 * Process results lazily. Stream should be closed when not fully consumed
+	 * since implementations can keep database resources open while streaming.
+	 *
+	 * @return stream of results
+	 * @throws IOException when query could not be executed
+	 */
 	default Stream<T> stream() throws IOException {
 		return list().stream();
 	}
@@ -14,16 +14,29 @@ import java.net.URLEncoder;
 import java.nio.file.Files;
 import java.util.*;
 
+/**
+ * Compile time processing of Revenj annotations.
+ * Instead of finding and constructing services through reflection at startup,
+ * processor generates container registrations with constructor calls
+ * and an index of plugins (event handlers, server commands and system aspects)
+ * which can be used instead of looking up service files in the classpath.
+ */
 @SupportedAnnotationTypes({"org.revenj.patterns.EventHandler", "javax.inject.Inject", "javax.inject.Singleton"})
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
 public class RevenjProcessor extends AbstractProcessor {
 
+	private static final String PLUGIN_INDEX = "META-INF/revenj.plugins";
+	private static final String SERVICES = "META-INF/services/";
+	private static final String ASPECT = "org.revenj.extensibility.SystemAspect";
+	private static final String COMMAND = "org.revenj.server.ServerCommand";
+
 	private TypeElement eventTypeElement;
 	private DeclaredType eventDeclaredType;
 	private TypeElement injectTypeElement;
 	private DeclaredType injectDeclaredType;
 	private TypeElement singletonTypeElement;
 	private DeclaredType singletonDeclaredType;
+	private TypeMirror commandType;
 
 	@Override
 	public synchronized void init(ProcessingEnvironment processingEnv) {
@@ -34,6 +47,8 @@ public class RevenjProcessor extends AbstractProcessor {
 		injectDeclaredType = injectTypeElement != null ? processingEnv.getTypeUtils().getDeclaredType(injectTypeElement) : null;
 		singletonTypeElement = processingEnv.getElementUtils().getTypeElement("javax.inject.Singleton");
 		singletonDeclaredType = singletonTypeElement != null ? processingEnv.getTypeUtils().getDeclaredType(singletonTypeElement) : null;
+		TypeElement commandTypeElement = processingEnv.getElementUtils().getTypeElement(COMMAND);
+		commandType = commandTypeElement != null ? processingEnv.getTypeUtils().erasure(commandTypeElement.asType()) : null;
 	}
 
 	@Override
@@ -44,33 +59,12 @@ public class RevenjProcessor extends AbstractProcessor {
 		Set<? extends Element> events = roundEnv.getElementsAnnotatedWith(eventTypeElement);
 		Set<? extends Element> injects = injectTypeElement != null ? roundEnv.getElementsAnnotatedWith(injectTypeElement) : new HashSet<>();
 		Set<? extends Element> singletons = singletonTypeElement != null ? roundEnv.getElementsAnnotatedWith(singletonTypeElement) : new HashSet<>();
-		Map<String, List<String>> handlers = new HashMap<>();
+		Map<String, List<String>> services = new LinkedHashMap<>();
 		StringBuilder registrations = new StringBuilder();
-		findEventHandlers(events, handlers);
+		findEventHandlers(events, services);
 		Set<TypeElement> added = findInjections(injects, registrations, singletons);
 		registerTypes(singletons, added, registrations, true, singletonDeclaredType);
-		if (!handlers.isEmpty()) {
-			try {
-				for (Map.Entry<String, List<String>> kv : handlers.entrySet()) {
-					String path = "META-INF/services/" + URLEncoder.encode(kv.getKey(), "UTF-8");
-					FileObject fo = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", path);
-					File file = new File(fo.toUri());
-					Writer writer;
-					if (!file.exists()) {
-						fo = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", path);
-						writer = fo.openWriter();
-					} else writer = new OutputStreamWriter(new FileOutputStream(file));
-					for (String impl : kv.getValue()) {
-						writer.write('\n');
-						writer.write(impl);
-					}
-					writer.write('\n');
-					writer.close();
-				}
-			} catch (IOException e) {
-				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed saving event handler registrations: " + e.getMessage());
-			}
-		}
+		findCommands(added, services);
 		if (registrations.length() > 0) {
 			try {
 				FileObject fo = processingEnv.getFiler().getResource(StandardLocation.SOURCE_OUTPUT, "", "revenj_container_Registrations.java");
@@ -85,27 +79,72 @@ public class RevenjProcessor extends AbstractProcessor {
 				writer.write(registrations.toString());
 				writer.write("\n  }\n}");
 				writer.close();
-				fo = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/services/org.revenj.extensibility.SystemAspect");
-				file = new File(fo.toUri());
-				if (file.exists()) {
-					List<String> content = Files.readAllLines(file.toPath());
-					if (!content.contains("revenj_container_Registrations")) {
-						writer = new OutputStreamWriter(new FileOutputStream(file, true));
-						writer.write("\nrevenj_container_Registrations\n");
-						writer.close();
+			} catch (IOException e) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed saving container registrations: " + e.getMessage());
+			}
+			services.put(ASPECT, Collections.singletonList("revenj_container_Registrations"));
+		}
+		if (!services.isEmpty()) {
+			try {
+				List<String> index = new ArrayList<>();
+				for (Map.Entry<String, List<String>> kv : services.entrySet()) {
+					String name = URLEncoder.encode(kv.getKey(), "UTF-8");
+					//event handler files are owned by the processor, while aspects and commands can also come from resources
+					boolean shared = ASPECT.equals(kv.getKey()) || COMMAND.equals(kv.getKey());
+					saveLines(SERVICES + name, kv.getValue(), shared);
+					for (String impl : kv.getValue()) {
+						index.add(name + "=" + impl);
 					}
-				} else {
-					writer = new OutputStreamWriter(new FileOutputStream(file));
-					writer.write("\nrevenj_container_Registrations\n");
-					writer.close();
 				}
+				saveLines(PLUGIN_INDEX, index, false);
 			} catch (IOException e) {
-				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed saving container registrations: " + e.getMessage());
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed saving plugin registrations: " + e.getMessage());
 			}
 		}
 		return false;
 	}
 
+	/**
+	 * Files which are fully generated by the processor are overwritten.
+	 * Shared service files can contain entries from resources or from previous compilations,
+	 * so new entries are appended to the existing ones.
+	 */
+	private void saveLines(String path, List<String> lines, boolean append) throws IOException {
+		FileObject fo = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", path);
+		File file = new File(fo.toUri());
+		List<String> content = append && file.exists() ? Files.readAllLines(file.toPath()) : new ArrayList<>();
+		Writer writer;
+		if (!file.exists()) {
+			fo = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", path);
+			writer = fo.openWriter();
+		} else writer = new OutputStreamWriter(new FileOutputStream(file, append));
+		for (String line : lines) {
+			if (!content.contains(line)) {
+				writer.write('\n');
+				writer.write(line);
+				content.add(line);
+			}
+		}
+		writer.write('\n');
+		writer.close();
+	}
+
+	private void findCommands(Set<TypeElement> registered, Map<String, List<String>> services) {
+		if (commandType == null) {
+			return;
+		}
+		for (TypeElement element : registered) {
+			if (processingEnv.getTypeUtils().isAssignable(element.asType(), commandType)) {
+				List<String> impl = services.get(COMMAND);
+				if (impl == null) {
+					impl = new ArrayList<>();
+					services.put(COMMAND, impl);
+				}
+				impl.add(processingEnv.getElementUtils().getBinaryName(element).toString());
+			}
+		}
+	}
+
 	private void findEventHandlers(Set<? extends Element> events, Map<String, List<String>> handlers) {
 		for (Element el : events) {
 			if (!(el instanceof TypeElement)) {
@@ -170,71 +209,89 @@ public class RevenjProcessor extends AbstractProcessor {
 						"@Inject used on '" + parent.asType() + "' will be handled by reflection",
 						element,
 						getAnnotation(element, injectDeclaredType));
-			} else {
-				int position = registrations.length();
-				registrations.append("    container.registerFactory(");
-				registrations.append(parent);
-				registrations.append(".class, c -> new ");
-				registrations.append(parent);
-				registrations.append("(");
-				for (VariableElement ve : element.getParameters()) {
-					String typeName = ve.asType().toString();
-					int genInd = typeName.indexOf('<');
-					String containerType = genInd > 0 ? typeName.substring(0, genInd) : typeName;
-					TypeElement argType = processingEnv.getElementUtils().getTypeElement(containerType);
-					if (!argType.getModifiers().contains(Modifier.PUBLIC)) {
-						processingEnv.getMessager().printMessage(
-								Diagnostic.Kind.WARNING,
-								"Arguments for constructor with @Inject must be public. '" + ve.asType() + "' is not public.",
-								element,
-								getAnnotation(element, injectDeclaredType));
-						registrations.setLength(position);
-						return registered;
-					}
-					if (genInd > 0) {
-						if (!checkGenericArguments(typeName, element)) {
-							registrations.setLength(position);
-							return registered;
-						}
-						registrations.append("new org.revenj.patterns.Generic<");
-						registrations.append(typeName);
-						registrations.append(">(){}.resolve(c)");
-					} else {
-						registrations.append("c.resolve(");
-						registrations.append(typeName);
-						registrations.append(".class)");
-					}
-					registrations.append(",");
-				}
-				if (element.getParameters().size() > 0) {
-					registrations.setLength(registrations.length() - 1);
-				}
-				if (singletons.contains(parent)) {
-					registrations.append("), org.revenj.extensibility.InstanceScope.SINGLETON);\n");
-				} else {
-					registrations.append("), org.revenj.extensibility.InstanceScope.TRANSIENT);\n");
-				}
+			} else if (registerFactory(parent, element, singletons.contains(parent), registrations, true)) {
 				registered.add(parent);
 			}
 		}
 		return registered;
 	}
 
-	private boolean checkGenericArguments(String typeName, ExecutableElement element) {
+	/**
+	 * Register a factory which calls the constructor directly, with arguments resolved from the container.
+	 * When some of the arguments can't be referenced from the generated code, nothing is registered
+	 * and type will be resolved through reflection.
+	 */
+	private boolean registerFactory(
+			TypeElement parent,
+			ExecutableElement element,
+			boolean singleton,
+			StringBuilder registrations,
+			boolean report) {
+		int position = registrations.length();
+		registrations.append("    container.registerFactory(");
+		registrations.append(parent);
+		registrations.append(".class, c -> new ");
+		registrations.append(parent);
+		registrations.append("(");
+		for (VariableElement ve : element.getParameters()) {
+			String typeName = ve.asType().toString();
+			int genInd = typeName.indexOf('<');
+			String containerType = genInd > 0 ? typeName.substring(0, genInd) : typeName;
+			TypeElement argType = processingEnv.getElementUtils().getTypeElement(containerType);
+			if (argType == null || !argType.getModifiers().contains(Modifier.PUBLIC)) {
+				if (report) {
+					processingEnv.getMessager().printMessage(
+							Diagnostic.Kind.WARNING,
+							"Arguments for constructor with @Inject must be public. '" + ve.asType() + "' is not public.",
+							element,
+							getAnnotation(element, injectDeclaredType));
+				}
+				registrations.setLength(position);
+				return false;
+			}
+			if (genInd > 0) {
+				if (!checkGenericArguments(typeName, element, report)) {
+					registrations.setLength(position);
+					return false;
+				}
+				registrations.append("new org.revenj.patterns.Generic<");
+				registrations.append(typeName);
+				registrations.append(">(){}.resolve(c)");
+			} else {
+				registrations.append("c.resolve(");
+				registrations.append(typeName);
+				registrations.append(".class)");
+			}
+			registrations.append(",");
+		}
+		if (element.getParameters().size() > 0) {
+			registrations.setLength(registrations.length() - 1);
+		}
+		if (singleton) {
+			registrations.append("), org.revenj.extensibility.InstanceScope.SINGLETON);\n");
+		} else {
+			registrations.append("), org.revenj.extensibility.InstanceScope.TRANSIENT);\n");
+		}
+		return true;
+	}
+
+	private boolean checkGenericArguments(String typeName, ExecutableElement element, boolean report) {
 		int genInd = typeName.indexOf('<');
 		if (genInd == -1) return true;
 		String[] args = typeName.substring(genInd + 1, typeName.length() - 1).split(",");
 		for (String t : args) {
 			TypeElement argType = processingEnv.getElementUtils().getTypeElement(t.trim());
-			if (!argType.getModifiers().contains(Modifier.PUBLIC)) {
-				processingEnv.getMessager().printMessage(
-						Diagnostic.Kind.WARNING,
-						"Arguments for constructor with @Inject must be public. '" + t.trim() + "' is not public.",
-						element,
-						getAnnotation(element, injectDeclaredType));
+			if (argType == null || !argType.getModifiers().contains(Modifier.PUBLIC)) {
+				if (report) {
+					processingEnv.getMessager().printMessage(
+							Diagnostic.Kind.WARNING,
+							"Arguments for constructor with @Inject must be public. '" + t.trim() + "' is not public.",
+							element,
+							getAnnotation(element, injectDeclaredType));
+				}
 				return false;
 			}
-			if (!checkGenericArguments(t, element)) return false;
+			if (!checkGenericArguments(t, element, report)) return false;
 		}
 		return true;
 	}
@@ -257,12 +314,34 @@ public class RevenjProcessor extends AbstractProcessor {
 						element,
 						getAnnotation(element, declaredType));
 			} else if (!injections.contains(element)) {
-				registrations.append("    container.register(");
-				registrations.append(element.asType());
-				registrations.append(".class, org.revenj.extensibility.InstanceScope.");
-				registrations.append(singleton ? "SINGLETON);" : "TRANSIENT);\n");
+				ExecutableElement ctor = singleConstructor(element);
+				if (ctor == null || !registerFactory(element, ctor, singleton, registrations, false)) {
+					registrations.append("    container.register(");
+					registrations.append(element.asType());
+					registrations.append(".class, org.revenj.extensibility.InstanceScope.");
+					registrations.append(singleton ? "SINGLETON);\n" : "TRANSIENT);\n");
+				}
+				injections.add(element);
+			}
+		}
+	}
+
+	private ExecutableElement singleConstructor(TypeElement element) {
+		if (element.getModifiers().contains(Modifier.ABSTRACT)
+				|| element.getTypeParameters().size() > 0
+				|| element.getNestingKind().isNested() && !element.getModifiers().contains(Modifier.STATIC)) {
+			return null;
+		}
+		ExecutableElement found = null;
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+			if (constructor.getModifiers().contains(Modifier.PUBLIC)) {
+				if (found != null) {
+					return null;
+				}
+				found = constructor;
 			}
 		}
+		return found;
 	}
 
 	private boolean hasPublicCtor(Element element) {
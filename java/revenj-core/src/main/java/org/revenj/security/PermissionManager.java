@@ -6,6 +6,7 @@ import org.revenj.patterns.DataSource;
 
 import java.io.Closeable;
 import java.security.Principal;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -30,6 +31,20 @@ public interface PermissionManager {
 
 	<T> Closeable registerFilter(Class<T> manifest, Specification<T> filter, String role, boolean inverse);
 
+	/**
+	 * Registered filters which should be merged into database queries for the provided type,
+	 * so rows which the user is not allowed to see are not even loaded.
+	 * Empty unless permission manager is configured to filter rows in the database.
+	 *
+	 * @param manifest filtered type
+	 * @param user     principal for which filters are resolved
+	 * @param <T>      filtered type
+	 * @return filters which must be satisfied by each row
+	 */
+	default <T> List<Specification<T>> queryFilters(Class<T> manifest, Principal user) {
+		return Collections.emptyList();
+	}
+
 	default <T> Closeable registerForRole(Class<T> manifest, Specification<T> filter, String role) {
 		return registerFilter(manifest, filter, role, false);
 	}
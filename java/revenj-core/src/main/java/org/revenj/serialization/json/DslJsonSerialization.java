@@ -1,6 +1,7 @@
 package org.revenj.serialization.json;
 
 import com.dslplatform.json.*;
+import org.revenj.BufferPool;
 import org.revenj.TreePath;
 import org.revenj.patterns.ServiceLocator;
 import org.revenj.serialization.Serialization;
@@ -12,6 +13,21 @@ import java.util.Optional;
 
 public class DslJsonSerialization extends DslJson<ServiceLocator> implements Serialization<String> {
 
+	private static final int DEFAULT_BUFFER_SIZE = 65536;
+	private static final int MAX_RETAINED_BUFFER = 1024 * 1024;
+
+	private static final BufferPool<byte[]> BUFFERS = new BufferPool<>(
+			size -> new byte[Math.max(size, DEFAULT_BUFFER_SIZE)],
+			buffer -> buffer.length,
+			MAX_RETAINED_BUFFER,
+			BufferPool.defaultMaxPerClass());
+
+	private final BufferPool<JsonWriter> writers = new BufferPool<>(
+			size -> newWriter(),
+			writer -> writer.getByteBuffer().length,
+			MAX_RETAINED_BUFFER,
+			BufferPool.defaultMaxPerClass());
+
 	private static DslJson.Settings<ServiceLocator> buildSettings(ServiceLocator locator, Fallback<ServiceLocator> fallback) {
 		return com.dslplatform.json.runtime.Settings.<ServiceLocator>withRuntime()
 				.withContext(locator)
@@ -27,22 +43,56 @@ public class DslJsonSerialization extends DslJson<ServiceLocator> implements Ser
 		registerWriter(TreePath.class, TreePathConverter.Writer);
 	}
 
+	/**
+	 * Writer from the shared pool. It should be returned with {@link #releaseWriter(JsonWriter)}
+	 * once its content has been consumed.
+	 *
+	 * @return empty writer
+	 */
+	public JsonWriter acquireWriter() {
+		JsonWriter writer = writers.acquire();
+		writer.reset();
+		return writer;
+	}
+
+	public void releaseWriter(JsonWriter writer) {
+		writers.release(writer);
+	}
+
+	/**
+	 * Scratch buffer from the shared pool, used for deserialization from streams.
+	 * It should be returned with {@link #releaseBuffer(byte[])} after deserialization.
+	 *
+	 * @return buffer of at least 64KB
+	 */
+	public byte[] acquireBuffer() {
+		return BUFFERS.acquire(DEFAULT_BUFFER_SIZE);
+	}
+
+	public void releaseBuffer(byte[] buffer) {
+		BUFFERS.release(buffer);
+	}
+
 	@Override
 	public String serialize(Type manifest, Object value) throws IOException {
 		if (value == null) return "null";
 		if (manifest == null) {
 			manifest = value.getClass();
 		}
-		final JsonWriter jw = newWriter();
-		if (!serialize(jw, manifest, value)) {
-			if (fallback != null) {
-				ByteArrayOutputStream os = new ByteArrayOutputStream();
-				fallback.serialize(value, os);
-				return os.toString("UTF-8");
+		final JsonWriter jw = acquireWriter();
+		try {
+			if (!serialize(jw, manifest, value)) {
+				if (fallback != null) {
+					ByteArrayOutputStream os = new ByteArrayOutputStream();
+					fallback.serialize(value, os);
+					return os.toString("UTF-8");
+				}
+				throw new IOException("Unable to serialize provided object. Failed to find serializer for: " + manifest);
 			}
-			throw new IOException("Unable to serialize provided object. Failed to find serializer for: " + manifest);
+			return jw.toString();
+		} finally {
+			releaseWriter(jw);
 		}
-		return jw.toString();
 	}
 
 	@Override
@@ -7,14 +7,20 @@ import org.revenj.extensibility.PluginLoader;
 import org.revenj.serialization.Serialization;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.JAXBIntrospector;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.dom.DOMResult;
 import java.awt.*;
 import java.awt.geom.Point2D;
@@ -22,6 +28,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.net.URL;
@@ -29,13 +36,145 @@ import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
+/**
+ * JAXB based XML serialization.
+ * Marshallers and unmarshallers are not thread safe, so each registered class has a pool of them
+ * created from a single JAXB context. Context is created and warmed up during registration,
+ * so requests don't pay for JAXB initialization.
+ * Collections of registered classes which don't have a dedicated wrapper are streamed one element at a time.
+ */
 public class XmlJaxbSerialization implements Serialization<Element> {
 
-	private final Map<Type, Map.Entry<Marshaller, Unmarshaller>> converters = new HashMap<>();
-	private final Map<Type, Function> packers = new HashMap<>();
-	private final Map<Type, Function> unpackers = new HashMap<>();
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+	private final ConcurrentMap<Class<?>, JaxbConverter> contexts = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Type, JaxbConverter> converters = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Type, Function> packers = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Type, Function> unpackers = new ConcurrentHashMap<>();
+
+	private static final int POOL_SIZE = Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Bounded pool of reusable objects. When pool is empty a new object is created,
+	 * and when it is full returned object is discarded.
+	 */
+	private static final class ObjectPool<T> {
+		private final ArrayBlockingQueue<T> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+		private final Supplier<T> factory;
+
+		ObjectPool(Supplier<T> factory) {
+			this.factory = factory;
+		}
+
+		T acquire() {
+			T instance = pool.poll();
+			return instance != null ? instance : factory.get();
+		}
+
+		void release(T instance) {
+			pool.offer(instance);
+		}
+	}
+
+	private static final class JaxbConverter {
+		final JAXBContext context;
+		final JAXBIntrospector introspector;
+		final ObjectPool<Marshaller> marshallers;
+		final ObjectPool<Unmarshaller> unmarshallers;
+
+		JaxbConverter(Class<?> manifest) {
+			try {
+				this.context = JAXBContext.newInstance(manifest);
+				this.introspector = context.createJAXBIntrospector();
+			} catch (JAXBException e) {
+				throw new RuntimeException(e);
+			}
+			this.marshallers = new ObjectPool<>(() -> createMarshaller(context));
+			this.unmarshallers = new ObjectPool<>(() -> createUnmarshaller(context));
+			//warm up, so first request doesn't pay for JAXB initialization
+			marshallers.release(marshallers.acquire());
+			unmarshallers.release(unmarshallers.acquire());
+		}
+
+		void marshal(Object value, OutputStream stream) throws JAXBException {
+			Marshaller marshaller = marshallers.acquire();
+			try {
+				marshaller.marshal(value, stream);
+			} finally {
+				marshallers.release(marshaller);
+			}
+		}
+
+		void marshal(Object value, DOMResult result) throws JAXBException {
+			Marshaller marshaller = marshallers.acquire();
+			try {
+				marshaller.marshal(value, result);
+			} finally {
+				marshallers.release(marshaller);
+			}
+		}
+
+		void marshal(Object value, XMLStreamWriter writer) throws JAXBException {
+			Marshaller marshaller = marshallers.acquire();
+			try {
+				marshaller.marshal(value, writer);
+			} finally {
+				marshallers.release(marshaller);
+			}
+		}
+
+		Object unmarshal(InputStream stream) throws JAXBException {
+			Unmarshaller unmarshaller = unmarshallers.acquire();
+			try {
+				return unmarshaller.unmarshal(stream);
+			} finally {
+				unmarshallers.release(unmarshaller);
+			}
+		}
+
+		Object unmarshal(Node node) throws JAXBException {
+			Unmarshaller unmarshaller = unmarshallers.acquire();
+			try {
+				return unmarshaller.unmarshal(node);
+			} finally {
+				unmarshallers.release(unmarshaller);
+			}
+		}
+
+		Object unmarshal(XMLStreamReader reader) throws JAXBException {
+			Unmarshaller unmarshaller = unmarshallers.acquire();
+			try {
+				return JAXBIntrospector.getValue(unmarshaller.unmarshal(reader));
+			} finally {
+				unmarshallers.release(unmarshaller);
+			}
+		}
+	}
+
+	private static Marshaller createMarshaller(JAXBContext context) {
+		try {
+			Marshaller marshaller = context.createMarshaller();
+			marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+			return marshaller;
+		} catch (JAXBException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static Unmarshaller createUnmarshaller(JAXBContext context) {
+		try {
+			return context.createUnmarshaller();
+		} catch (JAXBException e) {
+			throw new RuntimeException(e);
+		}
+	}
 
 	public XmlJaxbSerialization(Container container, Optional<PluginLoader> extensibility) throws IOException {
 		this(extensibility.isPresent() ? getPlugins(container, extensibility.get()) : new JaxbConfiguration[0]);
@@ -109,15 +248,16 @@ public class XmlJaxbSerialization implements Serialization<Element> {
 		}
 	}
 
-	static Map.Entry<Marshaller, Unmarshaller> create(Class<?> manifest) {
-		try {
-			JAXBContext ctx = JAXBContext.newInstance(manifest);
-			Marshaller marshaller = ctx.createMarshaller();
-			marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
-			Unmarshaller unmarshaller = ctx.createUnmarshaller();
-			return new HashMap.SimpleEntry<>(marshaller, unmarshaller);
-		} catch (JAXBException e) {
-			throw new RuntimeException(e);
+	private JaxbConverter create(Class<?> manifest) {
+		return contexts.computeIfAbsent(manifest, JaxbConverter::new);
+	}
+
+	private void registerWrapper(Type type, Function packer, Function unpacker) {
+		if (packer != null) {
+			packers.put(type, packer);
+		}
+		if (unpacker != null) {
+			unpackers.put(type, unpacker);
 		}
 	}
 
@@ -131,22 +271,19 @@ public class XmlJaxbSerialization implements Serialization<Element> {
 
 	public <T, W> void register(Class<? extends T> type, Class<W> wrapper, Function<T, W> packer, Function<W, T> unpacker) {
 		converters.put(type, create(wrapper));
-		packers.put(type, packer);
-		unpackers.put(type, unpacker);
+		registerWrapper(type, packer, unpacker);
 	}
 
 	public <T, W> void registerArray(Class<? extends T> content, Class<W> wrapper, Function<T[], W> packer, Function<W, T[]> unpacker) {
 		Type type = Array.newInstance(content, 0).getClass();
 		converters.put(type, create(wrapper));
-		packers.put(type, packer);
-		unpackers.put(type, unpacker);
+		registerWrapper(type, packer, unpacker);
 	}
 
 	public <T, W> void registerList(Class<? extends T> content, Class<W> wrapper, Function<List<T>, W> packer, Function<W, List<T>> unpacker) {
 		Type type = Utils.makeGenericType(List.class, content);
 		converters.put(type, create(wrapper));
-		packers.put(type, packer);
-		unpackers.put(type, unpacker);
+		registerWrapper(type, packer, unpacker);
 	}
 
 	private static final byte[] NULL = "<object nil=\"true\"/>".getBytes();
@@ -158,7 +295,7 @@ public class XmlJaxbSerialization implements Serialization<Element> {
 			return;
 		}
 		Type manifest = findBestManifest(value);
-		Map.Entry<Marshaller, Unmarshaller> converter = converters.get(manifest);
+		JaxbConverter converter = converters.get(manifest);
 		if (converter == null) {
 			if (value instanceof Collection) {
 				Collection items = (Collection) value;
@@ -170,6 +307,16 @@ public class XmlJaxbSerialization implements Serialization<Element> {
 				list.addAll(items);
 				manifest = findBestManifest(list);
 				converter = converters.get(manifest);
+				if (converter == null && (findCollectionElement(manifest) != null || allNull(list))) {
+					try {
+						XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(stream, "UTF-8");
+						writeCollection(list, writer);
+						writer.close();
+					} catch (XMLStreamException | JAXBException e) {
+						throw new IOException(e);
+					}
+					return;
+				}
 			}
 			if (converter == null) {
 				throw new IOException("Unable to find XML marshaller for: " + manifest);
@@ -177,12 +324,98 @@ public class XmlJaxbSerialization implements Serialization<Element> {
 		}
 		Function wrapper = packers.get(manifest);
 		try {
-			converter.getKey().marshal(wrapper != null ? wrapper.apply(value) : value, stream);
+			converter.marshal(wrapper != null ? wrapper.apply(value) : value, stream);
 		} catch (JAXBException e) {
 			throw new IOException(e);
 		}
 	}
 
+	private static boolean allNull(Collection<?> items) {
+		for (Object item : items) {
+			if (item != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void writeCollection(List<?> items, XMLStreamWriter writer) throws XMLStreamException, JAXBException, IOException {
+		//collection without elements is written the same way as an empty collection
+		String name = "object";
+		for (Object item : items) {
+			if (item != null) {
+				JaxbConverter converter = converters.get(item.getClass());
+				QName qname = converter != null ? converter.introspector.getElementName(item) : null;
+				if (qname == null) {
+					throw new IOException("Unable to find XML element name for: " + item.getClass());
+				}
+				name = qname.getLocalPart();
+				break;
+			}
+		}
+		writer.writeStartElement("ArrayOf" + name);
+		for (Object item : items) {
+			if (item == null) {
+				writer.writeStartElement(name);
+				writer.writeAttribute("nil", "true");
+				writer.writeEndElement();
+				continue;
+			}
+			JaxbConverter converter = converters.get(item.getClass());
+			if (converter == null) {
+				throw new IOException("Unable to find XML marshaller for: " + item.getClass());
+			}
+			converter.marshal(item, writer);
+		}
+		writer.writeEndElement();
+		writer.flush();
+	}
+
+	/**
+	 * Element of a collection which is streamed one element at a time.
+	 * Types registered with a wrapper are not streamed, since their elements are not root elements.
+	 */
+	private Type findCollectionElement(Type type) {
+		if (type instanceof ParameterizedType) {
+			ParameterizedType pt = (ParameterizedType) type;
+			Type raw = pt.getRawType();
+			Type element = pt.getActualTypeArguments()[0];
+			if ((raw == List.class || raw == Collection.class || raw == ArrayList.class)
+					&& converters.containsKey(element)
+					&& !packers.containsKey(element)
+					&& !unpackers.containsKey(element)) {
+				return element;
+			}
+		}
+		return null;
+	}
+
+	private List<Object> readCollection(JaxbConverter converter, XMLStreamReader reader) throws XMLStreamException, JAXBException {
+		List<Object> result = new ArrayList<>();
+		reader.nextTag();
+		reader.next();
+		nextElement(reader);
+		while (reader.getEventType() == XMLStreamConstants.START_ELEMENT) {
+			if ("true".equals(reader.getAttributeValue(null, "nil"))) {
+				result.add(null);
+				reader.nextTag();
+				reader.next();
+			} else {
+				result.add(converter.unmarshal(reader));
+			}
+			nextElement(reader);
+		}
+		return result;
+	}
+
+	private static void nextElement(XMLStreamReader reader) throws XMLStreamException {
+		int event = reader.getEventType();
+		while (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT
+				&& event != XMLStreamConstants.END_DOCUMENT) {
+			event = reader.next();
+		}
+	}
+
 	private Type findBestManifest(Object value) {
 		Class<?> container = value.getClass();
 		if (List.class.isAssignableFrom(container)) {
@@ -211,14 +444,26 @@ public class XmlJaxbSerialization implements Serialization<Element> {
 			doc.appendChild(object);
 			return object;
 		}
-		Map.Entry<Marshaller, Unmarshaller> converter = converters.get(manifest);
+		JaxbConverter converter = converters.get(manifest);
 		if (converter == null) {
+			Type element = findCollectionElement(manifest);
+			if (value instanceof Collection && (element != null || allNull((Collection) value))) {
+				try {
+					DOMResult result = new DOMResult(Utils.newDocument());
+					XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(result);
+					writeCollection(new ArrayList<Object>((Collection) value), writer);
+					writer.close();
+					return ((Document) result.getNode()).getDocumentElement();
+				} catch (XMLStreamException | JAXBException e) {
+					throw new IOException(e);
+				}
+			}
 			throw new IOException("Unable to find XML marshaller for: " + manifest);
 		}
 		Function wrapper = packers.get(manifest);
 		try {
 			DOMResult result = new DOMResult();
-			converter.getKey().marshal(wrapper != null ? wrapper.apply(value) : value, result);
+			converter.marshal(wrapper != null ? wrapper.apply(value) : value, result);
 			return ((Document) result.getNode()).getDocumentElement();
 		} catch (JAXBException e) {
 			throw new IOException(e);
@@ -227,12 +472,23 @@ public class XmlJaxbSerialization implements Serialization<Element> {
 
 	public Object deserialize(Type type, InputStream stream) throws IOException {
 		if (stream == null) return null;
-		Map.Entry<Marshaller, Unmarshaller> converter = converters.get(type);
+		JaxbConverter converter = converters.get(type);
 		if (converter == null) {
+			Type element = findCollectionElement(type);
+			if (element != null) {
+				try {
+					XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(stream);
+					List<Object> result = readCollection(converters.get(element), reader);
+					reader.close();
+					return result;
+				} catch (XMLStreamException | JAXBException e) {
+					throw new IOException(e);
+				}
+			}
 			throw new IOException("Unable to find XML unmarshaller for: " + type);
 		}
 		try {
-			Object result = converter.getValue().unmarshal(stream);
+			Object result = converter.unmarshal(stream);
 			Function wrapper = unpackers.get(type);
 			return wrapper == null ? result : wrapper.apply(result);
 		} catch (JAXBException e) {
@@ -244,12 +500,27 @@ public class XmlJaxbSerialization implements Serialization<Element> {
 	public Object deserialize(Type type, Element data) throws IOException {
 		if (data == null) return null;
 		if (data.getFirstChild() == null) return null;
-		Map.Entry<Marshaller, Unmarshaller> converter = converters.get(type);
+		JaxbConverter converter = converters.get(type);
 		if (converter == null) {
+			Type element = findCollectionElement(type);
+			if (element != null) {
+				JaxbConverter elementConverter = converters.get(element);
+				List<Object> result = new ArrayList<>();
+				try {
+					for (Node node = data.getFirstChild(); node != null; node = node.getNextSibling()) {
+						if (node.getNodeType() != Node.ELEMENT_NODE) continue;
+						Element item = (Element) node;
+						result.add("true".equals(item.getAttribute("nil")) ? null : elementConverter.unmarshal(item));
+					}
+				} catch (JAXBException e) {
+					throw new IOException(e);
+				}
+				return result;
+			}
 			throw new IOException("Unable to find XML unmarshaller for: " + type);
 		}
 		try {
-			Object result = converter.getValue().unmarshal(data);
+			Object result = converter.unmarshal(data);
 			Function wrapper = unpackers.get(type);
 			return wrapper == null ? result : wrapper.apply(result);
 		} catch (JAXBException e) {
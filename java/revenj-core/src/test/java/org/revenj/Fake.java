@@ -0,0 +1,71 @@
+package org.revenj;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dynamic proxy based fakes for interfaces such as JDBC connections, statements and result sets.
+ * Only configured methods are handled; others go to the fallback handler
+ * or return the default value of their return type.
+ */
+public final class Fake<T> {
+
+	public interface Handler {
+		Object handle(Object proxy, String method, Object[] args) throws Throwable;
+	}
+
+	private final Class<T> manifest;
+	private final Map<String, Handler> handlers = new HashMap<>();
+	private Handler fallback;
+
+	private Fake(Class<T> manifest) {
+		this.manifest = manifest;
+	}
+
+	public static <T> Fake<T> of(Class<T> manifest) {
+		return new Fake<>(manifest);
+	}
+
+	public Fake<T> on(String method, Handler handler) {
+		handlers.put(method, handler);
+		return this;
+	}
+
+	public Fake<T> returns(String method, Object value) {
+		return on(method, (proxy, name, args) -> value);
+	}
+
+	public Fake<T> otherwise(Handler handler) {
+		this.fallback = handler;
+		return this;
+	}
+
+	public T create() {
+		return manifest.cast(Proxy.newProxyInstance(
+				manifest.getClassLoader(),
+				new Class<?>[]{manifest},
+				(proxy, method, args) -> {
+					Handler handler = handlers.get(method.getName());
+					if (handler != null) {
+						return handler.handle(proxy, method.getName(), args);
+					}
+					if (fallback != null) {
+						return fallback.handle(proxy, method.getName(), args);
+					}
+					return defaultValue(method.getReturnType());
+				}));
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (!type.isPrimitive() || type == void.class) return null;
+		if (type == boolean.class) return false;
+		if (type == long.class) return 0L;
+		if (type == double.class) return 0d;
+		if (type == float.class) return 0f;
+		if (type == char.class) return '\0';
+		if (type == byte.class) return (byte) 0;
+		if (type == short.class) return (short) 0;
+		return 0;
+	}
+}
@@ -0,0 +1,88 @@
+package org.revenj;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.revenj.database.postgres.BulkReaderQuery;
+import org.revenj.database.postgres.BulkRepository;
+import org.revenj.patterns.DataSource;
+
+import java.lang.reflect.ParameterizedType;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+public class TestBulkReader {
+
+	public static class BulkItem implements DataSource {
+	}
+
+	@Test
+	public void multiStatementBulkReaderProcessesEachResult() throws Exception {
+		List<String> calls = new ArrayList<>();
+		List<ResultSet> results = new ArrayList<>();
+		for (long i = 1; i <= 2; i++) {
+			final long value = i;
+			results.add(Fake.of(ResultSet.class)
+					.returns("next", true)
+					.on("getLong", (proxy, method, args) -> {
+						Assert.assertEquals(1, args[0]);
+						return value;
+					})
+					.on("close", (proxy, method, args) -> calls.add("close " + value))
+					.create());
+		}
+		AtomicInteger current = new AtomicInteger();
+		PreparedStatement ps = Fake.of(PreparedStatement.class)
+				.returns("execute", true)
+				.on("getResultSet", (proxy, method, args) -> results.get(current.get()))
+				.on("getMoreResults", (proxy, method, args) -> current.incrementAndGet() < results.size())
+				.returns("getUpdateCount", -1)
+				.otherwise((proxy, method, args) -> {
+					calls.add(method);
+					return null;
+				})
+				.create();
+		Connection connection = Fake.of(Connection.class)
+				.on("prepareStatement", (proxy, method, args) -> {
+					calls.add((String) args[0]);
+					return ps;
+				})
+				.create();
+		BulkRepository<?> repository = Fake.of(BulkRepository.class)
+				.on("count", (proxy, method, args) -> {
+					((BulkReaderQuery) args[0]).getBuilder().append("SELECT COUNT(*) FROM x");
+					return (BiFunction<ResultSet, Integer, Long>) (rs, index) -> {
+						try {
+							return rs.getLong(index);
+						} catch (SQLException e) {
+							throw new RuntimeException(e);
+						}
+					};
+				})
+				.create();
+		PostgresBulkReader reader = new PostgresBulkReader(
+				type -> type instanceof ParameterizedType ? repository : null,
+				connection,
+				false,
+				true);
+		Callable<Long> first = reader.count(BulkItem.class, null);
+		Callable<Long> second = reader.count(BulkItem.class, null);
+		Assert.assertEquals(1L, first.call().longValue());
+		Assert.assertEquals(2L, second.call().longValue());
+		Assert.assertEquals(
+				Arrays.asList(
+						"SELECT (SELECT COUNT(*) FROM x);\nSELECT (SELECT COUNT(*) FROM x)",
+						"close 1",
+						"close 2",
+						"close"),
+				calls);
+		reader.close();
+	}
+}
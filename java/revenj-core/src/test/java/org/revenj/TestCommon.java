@@ -3,7 +3,14 @@ package org.revenj;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
 
 public class TestCommon {
 
@@ -18,4 +25,30 @@ public class TestCommon {
 		Assert.assertTrue(t2.isAncestor(t1));
 		Assert.assertTrue(t2.isAncestor(t2));
 	}
+
+	public static class IndexedPlugin implements Runnable {
+		public void run() {
+		}
+	}
+
+	public static class ServicePlugin implements Runnable {
+		public void run() {
+		}
+	}
+
+	@Test
+	public void pluginsCanBeFoundThroughIndex() throws Exception {
+		Path root = Files.createTempDirectory("revenj-plugins");
+		File services = root.resolve("META-INF/services").toFile();
+		Assert.assertTrue(services.mkdirs());
+		Files.write(root.resolve("META-INF/revenj.plugins"), Collections.singletonList("java.lang.Runnable=" + IndexedPlugin.class.getName()));
+		Files.write(services.toPath().resolve("java.lang.Runnable"), Collections.singletonList(ServicePlugin.class.getName()));
+		try (URLClassLoader loader = new URLClassLoader(new URL[]{root.toUri().toURL()}, TestCommon.class.getClassLoader())) {
+			List<Class<Runnable>> fromIndex = new ServicesPluginLoader(loader, true).find(Runnable.class);
+			Assert.assertEquals(Collections.singletonList(IndexedPlugin.class), fromIndex);
+			List<Class<Runnable>> fromServices = new ServicesPluginLoader(loader, false).find(Runnable.class);
+			Assert.assertEquals(Collections.singletonList(ServicePlugin.class), fromServices);
+			Assert.assertTrue(new ServicesPluginLoader(loader, true).find(AutoCloseable.class).isEmpty());
+		}
+	}
 }
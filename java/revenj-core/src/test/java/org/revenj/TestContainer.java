@@ -5,11 +5,21 @@ import org.junit.Test;
 import org.revenj.extensibility.Container;
 import org.revenj.extensibility.InstanceScope;
 import org.revenj.patterns.Generic;
+import org.revenj.patterns.ServiceLocator;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestContainer {
 
@@ -354,4 +364,136 @@ public class TestContainer {
 			throw new RuntimeException("naah");
 		}
 	}
+
+	public static class PublicService {
+		public final A a;
+		public final Optional<D> d;
+
+		public PublicService(A a, Optional<D> d) {
+			this.a = a;
+			this.d = d;
+		}
+	}
+
+	public static class FailingService {
+		public FailingService() {
+			throw new IllegalStateException("ctor failed");
+		}
+	}
+
+	public static class ErrorService {
+		public ErrorService() {
+			throw new AssertionError("ctor error");
+		}
+	}
+
+	@Test
+	public void publicConstructorsAreInvokedDirectly() throws Exception {
+		Container container = new SimpleContainer(true);
+		PublicService service = container.resolve(PublicService.class);
+		Assert.assertNotNull(service.a.b);
+		Assert.assertTrue(service.d.isPresent());
+		Assert.assertNotSame(service, container.resolve(PublicService.class));
+		try {
+			container.resolve((Type) FailingService.class);
+			Assert.fail("Expecting ReflectiveOperationException");
+		} catch (ReflectiveOperationException ex) {
+			Assert.assertEquals("ctor failed", ex.getCause().getMessage());
+		}
+		try {
+			container.resolve((Type) ErrorService.class);
+			Assert.fail("Expecting ReflectiveOperationException");
+		} catch (ReflectiveOperationException ex) {
+			Assert.assertEquals("ctor error", ex.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void contextInstanceIsCreatedOnceAcrossThreads() throws Exception {
+		Container container = new SimpleContainer(false);
+		AtomicInteger created = new AtomicInteger();
+		container.registerFactory(Single.class, c -> {
+			created.incrementAndGet();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException ignore) {
+			}
+			return new Single();
+		}, InstanceScope.CONTEXT);
+		Container scope = container.createScope();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			Future<Single>[] results = new Future[4];
+			for (int i = 0; i < results.length; i++) {
+				results[i] = executor.submit(() -> {
+					start.await();
+					return scope.resolve(Single.class);
+				});
+			}
+			start.countDown();
+			for (Future<Single> it : results) {
+				Assert.assertSame(results[0].get(), it.get());
+			}
+			Assert.assertEquals(1, created.get());
+			Assert.assertNotSame(results[0].get(), container.createScope().resolve(Single.class));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void scopeResolvesItself() throws Exception {
+		Container container = new SimpleContainer(false);
+		Container scope = container.createScope();
+		Container nested = scope.createScope();
+		Assert.assertSame(container, container.resolve(Container.class));
+		Assert.assertSame(scope, scope.resolve(Container.class));
+		Assert.assertSame(nested, nested.resolve(ServiceLocator.class));
+		container.register(UsesContainer.class, InstanceScope.CONTEXT);
+		Assert.assertSame(nested, nested.resolve(UsesContainer.class).container);
+		Assert.assertArrayEquals(new Container[]{nested, scope, container}, nested.resolve(Container[].class));
+	}
+
+	public static class CrossLeft {
+		public CrossLeft(CrossRight right) {
+		}
+	}
+
+	public static class CrossRight {
+		public CrossRight(CrossLeft left) {
+		}
+	}
+
+	private static <T> T awaitAndResolve(CyclicBarrier barrier, Container container, Class<T> manifest) {
+		try {
+			barrier.await(5, TimeUnit.SECONDS);
+			return container.resolve(manifest);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Test
+	public void circularDependencyAcrossThreads() throws Exception {
+		Container container = new SimpleContainer(false);
+		CyclicBarrier barrier = new CyclicBarrier(2);
+		container.registerFactory(CrossLeft.class, c -> new CrossLeft(awaitAndResolve(barrier, c, CrossRight.class)), InstanceScope.SINGLETON);
+		container.registerFactory(CrossRight.class, c -> new CrossRight(awaitAndResolve(barrier, c, CrossLeft.class)), InstanceScope.SINGLETON);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Object> left = executor.submit(() -> container.resolve((Type) CrossLeft.class));
+			Future<Object> right = executor.submit(() -> container.resolve((Type) CrossRight.class));
+			for (Future<?> it : Arrays.asList(left, right)) {
+				try {
+					it.get(5, TimeUnit.SECONDS);
+					Assert.fail("Expecting error");
+				} catch (ExecutionException ex) {
+					Assert.assertTrue(ex.getCause() instanceof ReflectiveOperationException);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
 }
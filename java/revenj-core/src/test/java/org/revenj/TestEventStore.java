@@ -0,0 +1,137 @@
+package org.revenj;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.revenj.extensibility.InstanceScope;
+import org.revenj.patterns.DomainEvent;
+import org.revenj.patterns.DomainEventStore;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestEventStore {
+
+	public static class QueuedEvent implements DomainEvent {
+		@Override
+		public String getURI() {
+			return null;
+		}
+
+		@Override
+		public OffsetDateTime getQueuedAt() {
+			return null;
+		}
+
+		@Override
+		public OffsetDateTime getProcessedAt() {
+			return null;
+		}
+	}
+
+	public static class OtherQueuedEvent extends QueuedEvent {
+	}
+
+	@Test
+	public void eventStoreBatchesAndFlushesOnClose() throws Exception {
+		BlockingQueue<String> submitted = new LinkedBlockingQueue<>();
+		SimpleContainer container = new SimpleContainer(false);
+		Properties properties = new Properties();
+		properties.setProperty("revenj.eventStore.batchSize", "3");
+		properties.setProperty("revenj.eventStore.linger", "60000");
+		properties.setProperty("revenj.eventStore.writers", "1");
+		container.registerInstance(properties);
+		container.registerGenerics(DomainEventStore.class, (c, args) -> (DomainEventStore) Fake.of(DomainEventStore.class)
+				.on("submit", (proxy, method, margs) -> {
+					Collection<?> events = (Collection<?>) margs[0];
+					submitted.add(((Class<?>) args[0]).getSimpleName() + ":" + events.size());
+					return new String[events.size()];
+				})
+				.create(), InstanceScope.TRANSIENT);
+		Connection connection = Fake.of(Connection.class).create();
+		DataSource dataSource = Fake.of(DataSource.class)
+				.returns("getConnection", connection)
+				.create();
+		GlobalEventStore store = new GlobalEventStore(container, dataSource);
+		store.queue(new OtherQueuedEvent());
+		for (int i = 0; i < 4; i++) {
+			store.queue(new QueuedEvent());
+		}
+		//full batch is written without waiting for the linger, even while other type is lingering
+		Assert.assertEquals("QueuedEvent:3", submitted.poll(5, TimeUnit.SECONDS));
+		Assert.assertNull(submitted.poll(100, TimeUnit.MILLISECONDS));
+		store.close();
+		Assert.assertEquals(5, store.getFlushed());
+		Assert.assertEquals(0, store.getPending());
+		Set<String> remaining = new HashSet<>(submitted);
+		Assert.assertEquals(new HashSet<>(Arrays.asList("OtherQueuedEvent:1", "QueuedEvent:1")), remaining);
+		try {
+			store.queue(new QueuedEvent());
+			Assert.fail("Expecting IllegalStateException");
+		} catch (IllegalStateException ignore) {
+		}
+		Assert.assertEquals(5, store.getQueued());
+	}
+
+	private static GlobalEventStore failingStore(Properties properties, int failures, List<Long> attempts) {
+		SimpleContainer container = new SimpleContainer(false);
+		container.registerInstance(properties);
+		AtomicInteger remaining = new AtomicInteger(failures);
+		container.registerGenerics(DomainEventStore.class, (c, args) -> (DomainEventStore) Fake.of(DomainEventStore.class)
+				.on("submit", (proxy, method, margs) -> {
+					attempts.add(System.nanoTime());
+					if (remaining.getAndDecrement() > 0) {
+						throw new IOException("database is down");
+					}
+					return new String[((Collection<?>) margs[0]).size()];
+				})
+				.create(), InstanceScope.TRANSIENT);
+		DataSource dataSource = Fake.of(DataSource.class)
+				.returns("getConnection", Fake.of(Connection.class).create())
+				.create();
+		return new GlobalEventStore(container, dataSource);
+	}
+
+	@Test
+	public void failedBatchIsRetriedWithBackoff() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("revenj.eventStore.writers", "1");
+		properties.setProperty("revenj.eventStore.retries", "2");
+		properties.setProperty("revenj.eventStore.retryDelay", "20");
+		List<Long> attempts = new CopyOnWriteArrayList<>();
+		GlobalEventStore store = failingStore(properties, 2, attempts);
+		store.queue(new QueuedEvent());
+		store.close();
+		Assert.assertEquals(1, store.getFlushed());
+		Assert.assertEquals(0, store.getFailed());
+		Assert.assertEquals(3, attempts.size());
+		Assert.assertTrue(attempts.get(1) - attempts.get(0) >= TimeUnit.MILLISECONDS.toNanos(20));
+		Assert.assertTrue(attempts.get(2) - attempts.get(1) >= TimeUnit.MILLISECONDS.toNanos(40));
+	}
+
+	@Test
+	public void retryCountIsConfigurable() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("revenj.eventStore.writers", "1");
+		properties.setProperty("revenj.eventStore.retries", "0");
+		List<Long> attempts = new CopyOnWriteArrayList<>();
+		GlobalEventStore store = failingStore(properties, 1, attempts);
+		store.queue(new QueuedEvent());
+		store.close();
+		Assert.assertEquals(0, store.getFlushed());
+		Assert.assertEquals(1, store.getFailed());
+		Assert.assertEquals(1, attempts.size());
+	}
+}
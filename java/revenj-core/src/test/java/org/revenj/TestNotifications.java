@@ -0,0 +1,224 @@
+package org.revenj;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.revenj.patterns.DataChangeNotification;
+import org.revenj.patterns.DataSource;
+import org.revenj.patterns.Identifiable;
+import org.revenj.patterns.Repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class TestNotifications {
+
+	public static class NotifiedItem implements Identifiable {
+		private final String uri;
+
+		NotifiedItem(String uri) {
+			this.uri = uri;
+		}
+
+		@Override
+		public String getURI() {
+			return uri;
+		}
+	}
+
+	@Test
+	public void notificationLookupsAreBatchedAndRetried() throws Exception {
+		List<List<String>> lookups = new ArrayList<>();
+		Repository<?> repository = Fake.of(Repository.class)
+				.on("find", (proxy, method, args) -> {
+					String[] uris = (String[]) args[0];
+					lookups.add(Arrays.asList(uris));
+					if (lookups.size() == 1) {
+						throw new RuntimeException("database is down");
+					}
+					List<NotifiedItem> items = new ArrayList<>();
+					for (String uri : uris) {
+						items.add(new NotifiedItem(uri));
+					}
+					return items;
+				})
+				.create();
+		Properties properties = new Properties();
+		properties.setProperty("revenj.notifications.status", "disabled");
+		properties.setProperty("revenj.notifications.fetchWindow", "60000");
+		PostgresDatabaseNotification notification = new PostgresDatabaseNotification(
+				null,
+				Optional.of(name -> Optional.of(NotifiedItem.class)),
+				properties,
+				null,
+				type -> repository);
+		List<DataChangeNotification.TrackInfo<NotifiedItem>> tracked = new ArrayList<>();
+		notification.track(NotifiedItem.class).subscribe(tracked::add);
+		notification.notify(new DataChangeNotification.NotifyInfo("Item", DataChangeNotification.Operation.Insert, DataChangeNotification.Source.Local, new String[]{"1"}));
+		notification.notify(new DataChangeNotification.NotifyInfo("Item", DataChangeNotification.Operation.Insert, DataChangeNotification.Source.Local, new String[]{"2", "3"}));
+		Assert.assertEquals(2, tracked.size());
+		try {
+			tracked.get(0).result.call();
+			Assert.fail("Expecting error");
+		} catch (RuntimeException e) {
+			Assert.assertEquals("database is down", e.getMessage());
+		}
+		Assert.assertEquals("1", tracked.get(0).result.call().get(0).getURI());
+		Assert.assertEquals(2, tracked.get(1).result.call().size());
+		Assert.assertEquals(Arrays.asList(Arrays.asList("1", "2", "3"), Arrays.asList("1", "2", "3")), lookups);
+		notification.close();
+	}
+
+	public static class PlainItem implements DataSource {
+	}
+
+	@Test
+	public void notificationLookupsAreBatchedOnlyWhenEnabled() throws Exception {
+		List<List<String>> lookups = new ArrayList<>();
+		Repository<?> repository = Fake.of(Repository.class)
+				.on("find", (proxy, method, args) -> {
+					String[] uris = (String[]) args[0];
+					lookups.add(Arrays.asList(uris));
+					List<Object> items = new ArrayList<>();
+					for (String uri : uris) {
+						items.add(new NotifiedItem(uri));
+					}
+					return items;
+				})
+				.create();
+		Properties properties = new Properties();
+		properties.setProperty("revenj.notifications.status", "disabled");
+		PostgresDatabaseNotification notification = new PostgresDatabaseNotification(
+				null,
+				Optional.of(name -> Optional.of(NotifiedItem.class)),
+				properties,
+				null,
+				type -> repository);
+		List<DataChangeNotification.TrackInfo<NotifiedItem>> tracked = new ArrayList<>();
+		notification.track(NotifiedItem.class).subscribe(tracked::add);
+		notification.notify(new DataChangeNotification.NotifyInfo("Item", DataChangeNotification.Operation.Insert, DataChangeNotification.Source.Local, new String[]{"1"}));
+		notification.notify(new DataChangeNotification.NotifyInfo("Item", DataChangeNotification.Operation.Insert, DataChangeNotification.Source.Local, new String[]{"2", "3"}));
+		Assert.assertEquals(1, tracked.get(0).result.call().size());
+		Assert.assertEquals(2, tracked.get(1).result.call().size());
+		Assert.assertEquals(Arrays.asList(Arrays.asList("1"), Arrays.asList("2", "3")), lookups);
+		notification.close();
+		lookups.clear();
+		//items which are not identifiable can't be matched to the notification, so they are not batched
+		properties.setProperty("revenj.notifications.fetchWindow", "60000");
+		notification = new PostgresDatabaseNotification(
+				null,
+				Optional.of(name -> Optional.of(PlainItem.class)),
+				properties,
+				null,
+				type -> repository);
+		List<DataChangeNotification.TrackInfo<PlainItem>> plain = new ArrayList<>();
+		notification.track(PlainItem.class).subscribe(plain::add);
+		notification.notify(new DataChangeNotification.NotifyInfo("Item", DataChangeNotification.Operation.Insert, DataChangeNotification.Source.Local, new String[]{"1"}));
+		notification.notify(new DataChangeNotification.NotifyInfo("Item", DataChangeNotification.Operation.Insert, DataChangeNotification.Source.Local, new String[]{"2", "3"}));
+		Assert.assertEquals(1, plain.get(0).result.call().size());
+		Assert.assertEquals(2, plain.get(1).result.call().size());
+		Assert.assertEquals(Arrays.asList(Arrays.asList("1"), Arrays.asList("2", "3")), lookups);
+		notification.close();
+	}
+
+	private static byte[] notificationMessage(String channel, String payload) throws IOException {
+		byte[] name = channel.getBytes(StandardCharsets.UTF_8);
+		byte[] value = payload.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(os);
+		dos.writeByte('A');
+		dos.writeInt(4 + 4 + name.length + 1 + value.length + 1);
+		dos.writeInt(123);
+		dos.write(name);
+		dos.writeByte(0);
+		dos.write(value);
+		dos.writeByte(0);
+		return os.toByteArray();
+	}
+
+	@Test
+	public void selectorReceivesNotifications() throws Exception {
+		try (ServerSocketChannel server = ServerSocketChannel.open()) {
+			server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			SocketChannel client = SocketChannel.open(server.getLocalAddress());
+			SocketChannel connection = server.accept();
+			BlockingQueue<String> received = new LinkedBlockingQueue<>();
+			PostgresNotificationSelector.getInstance().register(client, new PostgresNotificationSelector.Listener() {
+				@Override
+				public void onNotification(String channel, int pid, String payload) {
+					received.add(channel + ":" + payload.length());
+				}
+
+				@Override
+				public void onError(Exception ex) {
+					received.add("error");
+				}
+			});
+			char[] large = new char[20000];
+			Arrays.fill(large, 'x');
+			byte[] first = notificationMessage("events", "Test:Insert:{1}");
+			byte[] second = notificationMessage("revenj", new String(large));
+			connection.write(ByteBuffer.wrap(first, 0, 7));
+			Thread.sleep(10);
+			connection.write(ByteBuffer.wrap(first, 7, first.length - 7));
+			ByteBuffer remaining = ByteBuffer.wrap(second);
+			while (remaining.hasRemaining()) {
+				connection.write(remaining);
+			}
+			Assert.assertEquals("events:15", received.poll(5, TimeUnit.SECONDS));
+			Assert.assertEquals("revenj:20000", received.poll(5, TimeUnit.SECONDS));
+			connection.close();
+			Assert.assertEquals("error", received.poll(5, TimeUnit.SECONDS));
+			client.close();
+		}
+	}
+
+	@Test
+	public void closedSelectorFailsListenersAndRestarts() throws Exception {
+		try (ServerSocketChannel server = ServerSocketChannel.open()) {
+			server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			SocketChannel client = SocketChannel.open(server.getLocalAddress());
+			SocketChannel connection = server.accept();
+			BlockingQueue<String> received = new LinkedBlockingQueue<>();
+			PostgresNotificationSelector.Listener listener = new PostgresNotificationSelector.Listener() {
+				@Override
+				public void onNotification(String channel, int pid, String payload) {
+					received.add(channel);
+				}
+
+				@Override
+				public void onError(Exception ex) {
+					received.add("error");
+				}
+			};
+			PostgresNotificationSelector selector = PostgresNotificationSelector.getInstance();
+			selector.register(client, listener);
+			connection.write(ByteBuffer.wrap(notificationMessage("events", "Test:Insert:{1}")));
+			Assert.assertEquals("events", received.poll(5, TimeUnit.SECONDS));
+			selector.close();
+			Assert.assertEquals("error", received.poll(5, TimeUnit.SECONDS));
+			try {
+				selector.register(client, listener);
+				Assert.fail("Expecting IOException");
+			} catch (IOException ignore) {
+			}
+			Assert.assertNotSame(selector, PostgresNotificationSelector.getInstance());
+			connection.close();
+			client.close();
+		}
+	}
+}
@@ -1,12 +1,24 @@
 package org.revenj;
 
+import com.dslplatform.json.JsonWriter;
 import org.junit.Assert;
 import org.junit.Test;
+import org.postgresql.core.Oid;
+import org.revenj.database.postgres.PostgresBinaryReader;
 import org.revenj.database.postgres.PostgresReader;
 import org.revenj.database.postgres.PostgresWriter;
 import org.revenj.database.postgres.converters.*;
+import org.revenj.serialization.json.DslJsonSerialization;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.util.*;
 
@@ -62,6 +74,131 @@ public class TestPostgres {
 		Assert.assertEquals("\\x80007f", uri);
 	}
 
+	@Test
+	public void byteaRoundtrip() throws IOException {
+		byte[] large = new byte[100000];
+		new Random(42).nextBytes(large);
+		byte[] small = Base64.getDecoder().decode("gAB/");
+		PostgresTuple record = RecordTuple.from(new PostgresTuple[]{
+				ByteaConverter.toTuple(large),
+				ByteaConverter.toTuple(small),
+				ByteaConverter.toTuple(new byte[0]),
+				ByteaConverter.toTuple(null)});
+		PostgresReader reader = new PostgresReader();
+		String value = record.buildTuple(false);
+		reader.process(value);
+		reader.read();
+		Assert.assertArrayEquals(large, ByteaConverter.parse(reader, 1));
+		InputStream stream = ByteaConverter.parseStream(reader, 1);
+		Assert.assertArrayEquals(new byte[0], ByteaConverter.parse(reader, 1));
+		Assert.assertNull(ByteaConverter.parseBuffer(reader, 1));
+		reader.process(value.substring(0, value.length() / 2));
+		Assert.assertEquals(3, stream.available());
+		Assert.assertEquals(0x80, stream.read());
+		byte[] rest = new byte[10];
+		Assert.assertEquals(2, stream.read(rest));
+		Assert.assertEquals(-1, stream.read());
+		Assert.assertEquals(0x7f, rest[1]);
+
+		List<byte[]> items = Arrays.asList(large, null, small);
+		reader.process(RecordTuple.from(new PostgresTuple[]{ArrayTuple.create(items, ByteaConverter::toTuple)}).buildTuple(false));
+		reader.read();
+		List<byte[]> result = ByteaConverter.parseCollection(reader, 1, true);
+		Assert.assertEquals(3, result.size());
+		Assert.assertArrayEquals(large, result.get(0));
+		Assert.assertNull(result.get(1));
+		Assert.assertArrayEquals(small, result.get(2));
+	}
+
+	@Test
+	public void jsonRoundtrip() throws IOException {
+		DslJsonSerialization json = new DslJsonSerialization(null, Optional.empty());
+		JsonConverter converter = new JsonConverter(json);
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("quote \" and \\ slash", "comma, (parens) {braces}");
+		map.put("unicode", "\u010d\u20ac\uD83D\uDE00");
+		map.put("number", 42L);
+		map.put("nested", Collections.singletonMap("a", Arrays.asList("b", null)));
+		PostgresTuple expected = RecordTuple.from(new PostgresTuple[]{
+				ArrayTuple.from(new PostgresTuple[]{ValueTuple.from(json.serialize(map)), null}),
+				ValueTuple.from(json.serialize(map))});
+		PostgresTuple tuple = RecordTuple.from(new PostgresTuple[]{
+				ArrayTuple.from(new PostgresTuple[]{converter.toTuple(map), converter.toTuple(null)}),
+				converter.toTuple(map)});
+		String value = tuple.buildTuple(false);
+		Assert.assertEquals(expected.buildTuple(false), value);
+		Assert.assertEquals(expected.buildTuple(true), tuple.buildTuple(true));
+		PostgresReader reader = new PostgresReader();
+		reader.process(value);
+		reader.read();
+		List<Map<String, Object>> list = converter.parseCollection(reader, 1, false);
+		Assert.assertEquals(2, list.size());
+		Assert.assertEquals(map, list.get(0));
+		Assert.assertEquals(new HashMap<>(), list.get(1));
+		Assert.assertEquals(map, converter.parse(reader, 1, true));
+	}
+
+	@Test
+	public void utf8BufferKeepsSupplementaryCharacters() throws IOException {
+		PostgresReader reader = new PostgresReader();
+		String value = "a\u010d\u20ac\uD83D\uDE00";
+		reader.addToBuffer(value);
+		byte[] encoded = reader.bufferToUtf8Value(Arrays::copyOf);
+		Assert.assertArrayEquals(value.getBytes(StandardCharsets.UTF_8), encoded);
+	}
+
+	@Test
+	public void jsonTupleRejectsInvalidUtf8() {
+		DslJsonSerialization json = new DslJsonSerialization(null, Optional.empty()) {
+			@Override
+			public boolean serialize(JsonWriter writer, Type manifest, Object value) {
+				writer.writeByte((byte) '{');
+				writer.writeByte((byte) 0xE2);
+				writer.writeByte((byte) 0x82);
+				return true;
+			}
+		};
+		PostgresTuple tuple = new JsonConverter(json).toTuple(Collections.singletonMap("a", "b"));
+		try {
+			tuple.buildTuple(false);
+			Assert.fail("Expecting error");
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals("Invalid UTF-8 sequence in serialized JSON at byte 1 of 3", e.getMessage());
+		}
+	}
+
+	@Test
+	public void bufferPoolIsBounded() {
+		BufferPool<byte[]> pool = new BufferPool<>(byte[]::new, b -> b.length, 65536, 2);
+		byte[] small = pool.acquire(100);
+		byte[] large = pool.acquire(20000);
+		Assert.assertTrue(large.length >= 20000);
+		pool.release(small);
+		pool.release(large);
+		pool.release(new byte[100000]);
+		Assert.assertEquals(2, pool.getRetained());
+		Assert.assertEquals(1, pool.getDropped());
+		Assert.assertSame(large, pool.acquire(10000));
+		Assert.assertSame(small, pool.acquire());
+		pool.release(new byte[10]);
+		pool.release(new byte[10]);
+		pool.release(new byte[10]);
+		Assert.assertEquals(2, pool.getRetained());
+		Assert.assertEquals(2, pool.getDropped());
+	}
+
+	@Test
+	public void pooledWriterIsNotSharedUntilClosed() {
+		PostgresWriter first = PostgresWriter.create();
+		PostgresWriter second = PostgresWriter.create();
+		Assert.assertNotSame(first, second);
+		first.write("abc");
+		Assert.assertEquals("(1,2)", RecordTuple.from(new PostgresTuple[]{ValueTuple.from("1"), ValueTuple.from("2")}).buildTuple(false));
+		Assert.assertEquals("abc", first.toString());
+		first.close();
+		second.close();
+	}
+
 	@Test
 	public void zoneRange() throws IOException {
 		PostgresReader reader = new PostgresReader();
@@ -142,6 +279,83 @@ public class TestPostgres {
 		Assert.assertEquals(longs, result);
 	}
 
+	private static void binaryField(DataOutputStream dos, int oid, byte[] value) throws IOException {
+		dos.writeInt(oid);
+		if (value == null) {
+			dos.writeInt(-1);
+		} else {
+			dos.writeInt(value.length);
+			dos.write(value);
+		}
+	}
+
+	@Test
+	public void binaryRecord() throws IOException {
+		ByteArrayOutputStream numeric = new ByteArrayOutputStream();
+		DataOutputStream num = new DataOutputStream(numeric);
+		//-12345.670 => digits 1, 2345, 6700; weight 1; scale 3
+		num.writeShort(3);
+		num.writeShort(1);
+		num.writeShort(0x4000);
+		num.writeShort(3);
+		num.writeShort(1);
+		num.writeShort(2345);
+		num.writeShort(6700);
+		ByteArrayOutputStream array = new ByteArrayOutputStream();
+		DataOutputStream arr = new DataOutputStream(array);
+		arr.writeInt(1);
+		arr.writeInt(1);
+		arr.writeInt(Oid.INT4);
+		arr.writeInt(3);
+		arr.writeInt(1);
+		arr.writeInt(4);
+		arr.writeInt(42);
+		arr.writeInt(-1);
+		arr.writeInt(4);
+		arr.writeInt(-7);
+		UUID uuid = UUID.randomUUID();
+		ByteBuffer uuidBytes = ByteBuffer.allocate(16);
+		uuidBytes.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(record);
+		dos.writeInt(7);
+		binaryField(dos, Oid.INT4, ByteBuffer.allocate(4).putInt(-5).array());
+		binaryField(dos, Oid.VARCHAR, "ab \\ \"ž".getBytes(StandardCharsets.UTF_8));
+		binaryField(dos, Oid.UUID, uuidBytes.array());
+		binaryField(dos, Oid.INT4_ARRAY, array.toByteArray());
+		binaryField(dos, Oid.NUMERIC, numeric.toByteArray());
+		//2015-09-28 => 5749 days after 2000-01-01
+		binaryField(dos, Oid.DATE, ByteBuffer.allocate(4).putInt(5749).array());
+		binaryField(dos, Oid.TIMESTAMPTZ, null);
+		PostgresBinaryReader reader = new PostgresBinaryReader();
+		reader.process(record.toByteArray());
+		Assert.assertEquals(7, reader.readRecord());
+		Assert.assertEquals(-5, IntConverter.parse(reader));
+		Assert.assertEquals("ab \\ \"ž", StringConverter.parse(reader, false));
+		Assert.assertEquals(uuid, UuidConverter.parse(reader, false));
+		Assert.assertEquals(Arrays.asList(42, null, -7), IntConverter.parseCollection(reader, true));
+		Assert.assertEquals(new BigDecimal("-12345.670"), DecimalConverter.parse(reader, false));
+		Assert.assertEquals(LocalDate.of(2015, 9, 28), DateConverter.parse(reader, false));
+		Assert.assertNull(TimestampConverter.parseOffset(reader, true, true));
+		Assert.assertEquals(0, reader.remaining());
+	}
+
+	@Test
+	public void binaryTimestamp() throws IOException {
+		OffsetDateTime expected = OffsetDateTime.parse("2015-09-28T13:35:42.973123Z");
+		long micros = (expected.toEpochSecond() - 946684800L) * 1000000L + expected.getNano() / 1000;
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(record);
+		binaryField(dos, Oid.TIMESTAMPTZ, ByteBuffer.allocate(8).putLong(micros).array());
+		binaryField(dos, Oid.TIMESTAMPTZ, ByteBuffer.allocate(8).putLong(-1).array());
+		PostgresBinaryReader reader = new PostgresBinaryReader();
+		reader.process(record.toByteArray());
+		Assert.assertEquals(expected, TimestampConverter.parseOffset(reader, false, true));
+		Assert.assertEquals(
+				OffsetDateTime.parse("1999-12-31T23:59:59.999999Z"),
+				TimestampConverter.parseOffset(reader, false, true));
+	}
+
 	@Test
 	public void invalidUrl() throws IOException {
 		try {
@@ -4,12 +4,19 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.revenj.extensibility.Container;
 import org.revenj.patterns.DataSource;
+import org.revenj.patterns.Query;
+import org.revenj.patterns.SearchableRepository;
+import org.revenj.patterns.Specification;
+import org.revenj.security.GlobalPermission;
 import org.revenj.security.PermissionManager;
+import org.revenj.security.RolePermission;
 import org.revenj.security.UserPrincipal;
+import rx.subjects.PublishSubject;
 
 import java.io.Closeable;
 import java.security.Principal;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 public class TestSecurity {
 
@@ -66,4 +73,193 @@ public class TestSecurity {
 		Assert.assertEquals(3, filtered1.size());
 		Assert.assertEquals(3, filtered2.size());
 	}
+
+	static class ListRepository<T extends DataSource> implements SearchableRepository<T> {
+		final List<T> items = new ArrayList<>();
+
+		@Override
+		public Query<T> query(Specification<T> specification) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<T> search(Specification<T> specification, Integer limit, Integer offset) {
+			return new ArrayList<>(items);
+		}
+
+		@Override
+		public long count(Specification<T> specification) {
+			return items.size();
+		}
+
+		@Override
+		public boolean exists(Specification<T> specification) {
+			return !items.isEmpty();
+		}
+	}
+
+	static class Global implements GlobalPermission {
+		private final String name;
+		private final boolean isAllowed;
+
+		Global(String name, boolean isAllowed) {
+			this.name = name;
+			this.isAllowed = isAllowed;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public boolean getIsAllowed() {
+			return isAllowed;
+		}
+	}
+
+	static class Role implements RolePermission {
+		private final String name;
+		private final String role;
+		private final boolean isAllowed;
+
+		Role(String name, String role, boolean isAllowed) {
+			this.name = name;
+			this.role = role;
+			this.isAllowed = isAllowed;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getRoleID() {
+			return role;
+		}
+
+		public boolean getIsAllowed() {
+			return isAllowed;
+		}
+	}
+
+	@Test
+	public void permissionsAreReloadedOnChange() throws Exception {
+		ListRepository<GlobalPermission> globals = new ListRepository<>();
+		ListRepository<RolePermission> roles = new ListRepository<>();
+		PublishSubject<Callable<GlobalPermission>> globalChanges = PublishSubject.create();
+		PublishSubject<Callable<RolePermission>> roleChanges = PublishSubject.create();
+		RevenjPermissionManager permissions = new RevenjPermissionManager(
+				new Properties(),
+				globalChanges,
+				roleChanges,
+				() -> Optional.of(globals),
+				() -> Optional.of(roles));
+		Principal admin = new UserPrincipal("admin", Collections.singleton("admin"));
+		Principal user = new UserPrincipal("user", Collections.singleton("user"));
+
+		Assert.assertTrue(permissions.canAccess("module.Entity", user));
+		Assert.assertTrue(permissions.canAccess(Model.class, null));
+
+		globals.items.add(new Global("module", false));
+		roles.items.add(new Role("module.Entity", "admin", true));
+		roles.items.add(new Role("org.revenj", "user", false));
+		Assert.assertTrue(permissions.canAccess("module.Entity", user));
+		globalChanges.onNext(() -> null);
+
+		Assert.assertFalse(permissions.canAccess("module.Entity", user));
+		Assert.assertFalse(permissions.canAccess("module.Other", admin));
+		Assert.assertTrue(permissions.canAccess("module.Entity", admin));
+		Assert.assertTrue(permissions.canAccess("module.Entity.nested", admin));
+		Assert.assertTrue(permissions.canAccess("other", user));
+		Assert.assertFalse(permissions.canAccess(Model.class, user));
+		Assert.assertTrue(permissions.canAccess(Model.class, admin));
+
+		roles.items.clear();
+		roleChanges.onNext(() -> null);
+		Assert.assertTrue(permissions.canAccess(Model.class, user));
+		Assert.assertFalse(permissions.canAccess("module.Entity", admin));
+		permissions.close();
+	}
+
+	@Test
+	public void queryFiltersAreResolvedForPrincipal() throws Exception {
+		Principal user1 = new UserPrincipal("user1", Collections.singleton("role"));
+		Principal user2 = new UserPrincipal("user2", Collections.singleton("not-in-role"));
+		Properties properties = new Properties();
+		properties.setProperty("revenj.permissions.queryFilters", "enabled");
+		RevenjPermissionManager permissions = new RevenjPermissionManager(
+				properties,
+				PublishSubject.create(),
+				PublishSubject.create(),
+				Optional::empty,
+				Optional::empty);
+		Assert.assertTrue(permissions.queryFilters(Model.class, user1).isEmpty());
+
+		Closeable reg1 = permissions.registerWhenNotInRole(Model.class, it -> it.i > 5, "role");
+		Closeable reg2 = permissions.registerForRole(Model.class, it -> it.i == 5, "role");
+
+		List<Specification<Model>> filters1 = permissions.queryFilters(Model.class, user1);
+		List<Specification<Model>> filters2 = permissions.queryFilters(Model.class, user2);
+		Assert.assertEquals(1, filters1.size());
+		Assert.assertTrue(filters1.get(0).test(new Model(5)));
+		Assert.assertEquals(1, filters2.size());
+		Assert.assertTrue(filters2.get(0).test(new Model(7)));
+		Assert.assertTrue(permissions.queryFilters(Model.class, null).isEmpty());
+
+		reg1.close();
+		reg2.close();
+		Assert.assertTrue(permissions.queryFilters(Model.class, user1).isEmpty());
+
+		PermissionManager inMemory = new RevenjPermissionManager(
+				new Properties(),
+				PublishSubject.create(),
+				PublishSubject.create(),
+				Optional::empty,
+				Optional::empty);
+		inMemory.registerForRole(Model.class, it -> it.i == 5, "role");
+		Assert.assertTrue(inMemory.queryFilters(Model.class, user1).isEmpty());
+	}
+
+	@Test
+	public void decisionsAreCachedByRoleMembership() throws Exception {
+		ListRepository<RolePermission> roles = new ListRepository<>();
+		roles.items.add(new Role("module", "admin", true));
+		Properties properties = new Properties();
+		properties.setProperty("revenj.permissions", "closed");
+		RevenjPermissionManager permissions = new RevenjPermissionManager(
+				properties,
+				PublishSubject.create(),
+				PublishSubject.create(),
+				Optional::empty,
+				() -> Optional.of(roles));
+		Set<String> granted = new HashSet<>();
+		Principal changing = new UserPrincipal("user", granted::contains);
+		Assert.assertFalse(permissions.canAccess("module.Entity", changing));
+		//same name, different roles
+		Assert.assertTrue(permissions.canAccess("module.Entity", new UserPrincipal("user", Collections.singleton("admin"))));
+		granted.add("admin");
+		Assert.assertTrue(permissions.canAccess("module.Entity", changing));
+		Assert.assertFalse(permissions.canAccess("module.Entity", new UserPrincipal("admin2", Collections.emptySet())));
+		Assert.assertFalse(permissions.canAccess("module.Entity", null));
+		Assert.assertEquals(2, permissions.getCachedDecisions());
+		permissions.close();
+	}
+
+	@Test
+	public void decisionCacheEvictsOldestEntries() throws Exception {
+		RevenjPermissionManager permissions = new RevenjPermissionManager(
+				new Properties(),
+				PublishSubject.create(),
+				PublishSubject.create(),
+				Optional::empty,
+				Optional::empty);
+		Principal user = new UserPrincipal("user", Collections.emptySet());
+		for (int i = 0; i < RevenjPermissionManager.MAX_CACHED_DECISIONS + 10; i++) {
+			Assert.assertTrue(permissions.canAccess("module.Entity" + i, user));
+		}
+		Assert.assertEquals(RevenjPermissionManager.MAX_CACHED_DECISIONS, permissions.getCachedDecisions());
+		Assert.assertTrue(permissions.canAccess("module.Entity" + (RevenjPermissionManager.MAX_CACHED_DECISIONS + 9), user));
+		Assert.assertEquals(RevenjPermissionManager.MAX_CACHED_DECISIONS, permissions.getCachedDecisions());
+		Assert.assertTrue(permissions.canAccess("module.Entity0", user));
+		Assert.assertEquals(RevenjPermissionManager.MAX_CACHED_DECISIONS, permissions.getCachedDecisions());
+		permissions.close();
+	}
 }
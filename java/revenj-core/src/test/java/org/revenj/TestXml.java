@@ -13,6 +13,8 @@ import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
 import java.awt.*;
 import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.time.*;
@@ -154,6 +156,62 @@ public class TestXml {
 		Assert.assertEquals(pojo.getStrings(), value.getStrings());
 	}
 
+	@Test
+	public void pojoCollectionIsStreamed() throws Exception {
+		xml.register(POJO.class);
+		List<POJO> pojos = Arrays.asList(new POJO().setNum(1), null, new POJO().setNum(2).setStrings(Arrays.asList("abc")));
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		xml.serializeTo(pojos, os);
+		String text = os.toString("UTF-8");
+		Assert.assertTrue(text, text.contains("<ArrayOfPOJO><POJO"));
+		List<POJO> values = (List<POJO>) xml.deserialize(Utils.makeGenericType(List.class, POJO.class), new ByteArrayInputStream(os.toByteArray()));
+		Assert.assertEquals(3, values.size());
+		Assert.assertEquals(1, values.get(0).getNum());
+		Assert.assertNull(values.get(1));
+		Assert.assertEquals(2, values.get(2).getNum());
+		Assert.assertEquals(Arrays.asList("abc"), values.get(2).getStrings());
+		Element elem = xml.serialize(Utils.makeGenericType(List.class, POJO.class), pojos);
+		Assert.assertEquals("ArrayOfPOJO", elem.getTagName());
+		values = xml.deserialize(elem, List.class, POJO.class);
+		Assert.assertEquals(3, values.size());
+		Assert.assertNull(values.get(1));
+		Assert.assertEquals(2, values.get(2).getNum());
+	}
+
+	@Test
+	public void collectionWithoutElementsIsSerialized() throws Exception {
+		xml.register(POJO.class);
+		List<POJO> pojos = Arrays.asList(null, null);
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		xml.serializeTo(pojos, os);
+		List<POJO> values = (List<POJO>) xml.deserialize(Utils.makeGenericType(List.class, POJO.class), new ByteArrayInputStream(os.toByteArray()));
+		Assert.assertEquals(pojos, values);
+		Element elem = xml.serialize(Utils.makeGenericType(List.class, POJO.class), pojos);
+		Assert.assertEquals("ArrayOfobject", elem.getTagName());
+		values = xml.deserialize(elem, List.class, POJO.class);
+		Assert.assertEquals(pojos, values);
+		elem = xml.serialize(null, pojos);
+		Assert.assertEquals(2, elem.getChildNodes().getLength());
+	}
+
+	@Test
+	public void marshallersCanBeUsedConcurrently() throws Exception {
+		xml.register(POJO.class);
+		List<Integer> numbers = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			numbers.add(i);
+		}
+		numbers.parallelStream().forEach(i -> {
+			try {
+				Element elem = xml.serialize(POJO.class, new POJO().setNum(i));
+				POJO value = xml.deserialize(elem, POJO.class);
+				Assert.assertEquals((long) i, value.getNum());
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+	}
+
 	@Test
 	public void dateConversion() throws Exception {
 		LocalDate today = LocalDate.now();
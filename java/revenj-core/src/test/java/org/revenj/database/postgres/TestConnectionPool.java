@@ -0,0 +1,147 @@
+package org.revenj.database.postgres;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.revenj.Fake;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestConnectionPool {
+
+	private static Fake<Connection> physicalConnection() {
+		return Fake.of(Connection.class)
+				.returns("getAutoCommit", true)
+				.returns("isValid", true)
+				.returns("isClosed", false);
+	}
+
+	@Test
+	public void poolIsBoundedAndReusesConnections() throws SQLException {
+		AtomicInteger physicalClosed = new AtomicInteger();
+		PGSimpleDataSource factory = new PGSimpleDataSource() {
+			@Override
+			public Connection getConnection() {
+				return physicalConnection()
+						.on("close", (proxy, method, args) -> physicalClosed.incrementAndGet())
+						.create();
+			}
+		};
+		PostgresConnectionPool pool = new PostgresConnectionPool(factory, 2, 50, 0, 5, 1000, 0);
+		Connection first = pool.getConnection();
+		Connection second = pool.getConnection();
+		Assert.assertEquals(2, pool.getActiveConnections());
+		try {
+			pool.getConnection();
+			Assert.fail("Expecting timeout");
+		} catch (SQLException ex) {
+			Assert.assertTrue(ex.getMessage().startsWith("Timeout waiting for connection"));
+		}
+		Assert.assertEquals(1, pool.getTimeouts());
+		first.close();
+		first.close();
+		Assert.assertTrue(first.isClosed());
+		Assert.assertEquals(1, pool.getIdleConnections());
+		Connection third = pool.getConnection();
+		Assert.assertEquals(2, pool.getCreatedConnections());
+		third.close();
+		second.close();
+		Assert.assertEquals(0, pool.getActiveConnections());
+		Assert.assertEquals(2, pool.getIdleConnections());
+		pool.close();
+		Assert.assertEquals(2, physicalClosed.get());
+		Assert.assertEquals(0, pool.getTotalConnections());
+	}
+
+	@Test
+	public void poolDoesNotExposePhysicalConnection() throws Exception {
+		List<String> users = new ArrayList<>();
+		PGSimpleDataSource factory = new PGSimpleDataSource() {
+			@Override
+			public Connection getConnection() {
+				return getConnection(getUser(), getPassword());
+			}
+
+			@Override
+			public Connection getConnection(String user, String password) {
+				users.add(user);
+				return Fake.of(BaseConnection.class)
+						.returns("getAutoCommit", true)
+						.returns("isValid", true)
+						.returns("isClosed", false)
+						.on("prepareStatement", (proxy, method, args) -> {
+							ResultSet rs = Fake.of(ResultSet.class).create();
+							return Fake.of(PreparedStatement.class)
+									.returns("getConnection", proxy)
+									.returns("executeQuery", rs)
+									.create();
+						})
+						.create();
+			}
+		};
+		Set<Thread> existing = Thread.getAllStackTraces().keySet();
+		factory.setUser("user");
+		factory.setPassword("secret");
+		PostgresConnectionPool pool = new PostgresConnectionPool(factory, 2, 50, 60000, 5, 1000, 0);
+		Set<Thread> housekeeping = new HashSet<>(Thread.getAllStackTraces().keySet());
+		housekeeping.removeAll(existing);
+		Assert.assertEquals(1, housekeeping.size());
+		Connection connection = pool.getConnection();
+		PreparedStatement ps = connection.prepareStatement("SELECT 1");
+		Assert.assertSame(connection, ps.getConnection());
+		ResultSet rs = ps.executeQuery();
+		Assert.assertSame(connection, rs.getStatement().getConnection());
+		Assert.assertSame(connection, connection.unwrap(Connection.class));
+		Assert.assertTrue(connection.isWrapperFor(PGConnection.class));
+		PGConnection pg = connection.unwrap(PGConnection.class);
+		Assert.assertFalse(pg instanceof BaseConnection);
+		BaseConnection physical = PostgresConnectionPool.physicalConnection(connection);
+		Assert.assertNotNull(physical);
+		Assert.assertNotSame(pg, physical);
+		((Connection) pg).close();
+		Assert.assertEquals(0, pool.getActiveConnections());
+		try {
+			ps.executeQuery();
+			Assert.fail("Expecting error");
+		} catch (SQLException ex) {
+			Assert.assertEquals("Connection has been closed", ex.getMessage());
+		}
+		try {
+			connection.unwrap(PGConnection.class);
+			Assert.fail("Expecting error");
+		} catch (SQLException ex) {
+			Assert.assertEquals("Connection has been closed", ex.getMessage());
+		}
+		try {
+			pool.getConnection().unwrap(String.class);
+			Assert.fail("Expecting error");
+		} catch (SQLException ignore) {
+		}
+		Assert.assertEquals(1, pool.getActiveConnections());
+		Connection other = pool.getConnection("user", "secret");
+		try {
+			pool.getConnection("other", "secret");
+			Assert.fail("Expecting error");
+		} catch (SQLException ignore) {
+		}
+		Assert.assertEquals(Arrays.asList("user", "user"), users);
+		Assert.assertEquals(2, pool.getTotalConnections());
+		other.close();
+		pool.close();
+		for (Thread t : housekeeping) {
+			t.join(1000);
+			Assert.assertFalse(t.isAlive());
+		}
+	}
+}
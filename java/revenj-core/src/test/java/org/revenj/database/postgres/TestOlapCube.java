@@ -0,0 +1,63 @@
+package org.revenj.database.postgres;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.revenj.database.postgres.jinq.jpqlquery.GeneratedQueryParameter;
+import org.revenj.database.postgres.jinq.transform.LambdaInfo;
+import org.revenj.database.postgres.jinq.transform.MetamodelUtil;
+import org.revenj.patterns.DataSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TestOlapCube {
+
+	public static class CubeItem implements DataSource {
+	}
+
+	private static class ItemCube extends PostgresOlapCubeQuery<CubeItem> {
+		ItemCube() {
+			super(type -> {
+				if (type == ClassLoader.class) return TestOlapCube.class.getClassLoader();
+				if (type == MetamodelUtil.class) return new MetamodelUtil() {
+					@Override
+					public <U> String dataSourceNameFromClass(Class<U> dataSource) {
+						return "\"test\".\"Item\"";
+					}
+
+					@Override
+					public String dataSourceNameFromClassName(String className) {
+						return "\"test\".\"Item\"";
+					}
+				};
+				return null;
+			});
+			cubeDimensions.put("value", it -> it + ".value");
+			cubeFacts.put("count", it -> "COUNT(*)");
+		}
+
+		@Override
+		protected String getSource() {
+			return "\"test\".\"Item\"";
+		}
+	}
+
+	@Test
+	public void cubeLimitAndOffsetAreBoundAsParameters() {
+		ItemCube cube = new ItemCube();
+		List<String> sqls = new ArrayList<>();
+		for (int page = 0; page < 2; page++) {
+			StringBuilder sb = new StringBuilder();
+			List<GeneratedQueryParameter> parameters = new ArrayList<>();
+			List<LambdaInfo> lambdas = new ArrayList<>();
+			cube.prepareSql(sb, true, Collections.singletonList("value"), Collections.singletonList("count"), null, null, 10, page * 10, parameters, lambdas);
+			sqls.add(sb.toString());
+			Assert.assertEquals(2, parameters.size());
+			Assert.assertEquals(10L, parameters.get(0).getValue.apply(lambdas.get(parameters.get(0).lambdaIndex)));
+			Assert.assertEquals(page * 10L, parameters.get(1).getValue.apply(lambdas.get(parameters.get(1).lambdaIndex)));
+		}
+		Assert.assertTrue(sqls.get(0).endsWith(" LIMIT ? OFFSET ?"));
+		Assert.assertEquals(sqls.get(0), sqls.get(1));
+	}
+}
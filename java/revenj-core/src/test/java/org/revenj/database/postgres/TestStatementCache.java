@@ -0,0 +1,104 @@
+package org.revenj.database.postgres;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.postgresql.PGStatement;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.util.PGobject;
+import org.revenj.Fake;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestStatementCache {
+
+	@Test
+	public void statementCacheFallsBackForUnknownConnection() throws SQLException {
+		AtomicInteger closed = new AtomicInteger();
+		PreparedStatement statement = Fake.of(PreparedStatement.class)
+				.on("close", (proxy, method, args) -> closed.incrementAndGet())
+				.create();
+		Connection connection = Fake.of(Connection.class)
+				.returns("prepareStatement", statement)
+				.create();
+		PreparedStatementCache cache = new PreparedStatementCache(10);
+		try (PreparedStatementCache.Lease lease = cache.prepare(connection, "SELECT 1")) {
+			Assert.assertSame(statement, lease.statement);
+		}
+		Assert.assertEquals(1, closed.get());
+		Assert.assertEquals(0, cache.getHits() + cache.getMisses());
+	}
+
+	@Test
+	public void statementsAreCachedByParameterTypes() throws SQLException {
+		List<String> calls = new ArrayList<>();
+		PGStatement pg = Fake.of(PGStatement.class)
+				.on("setPrepareThreshold", (proxy, method, args) -> calls.add("threshold " + args[0]))
+				.create();
+		List<PreparedStatement> prepared = new ArrayList<>();
+		BaseConnection physical = Fake.of(BaseConnection.class)
+				.returns("getPrepareThreshold", 5)
+				.on("unwrap", (proxy, method, args) -> proxy)
+				.on("prepareStatement", (proxy, method, args) -> {
+					int index = prepared.size();
+					calls.add("prepare " + index);
+					PreparedStatement ps = Fake.of(PreparedStatement.class)
+							.returns("unwrap", pg)
+							.returns("isWrapperFor", true)
+							.on("isClosed", (p, m, a) -> {
+								calls.add("isClosed " + index);
+								return false;
+							})
+							.otherwise((p, m, a) -> {
+								calls.add(m + " " + index + (a != null && a.length > 1 ? " " + a[1] : ""));
+								return null;
+							})
+							.create();
+					prepared.add(ps);
+					return ps;
+				})
+				.create();
+		PreparedStatementCache cache = new PreparedStatementCache(10);
+		PGobject date = new PGobject();
+		date.setType("date");
+		date.setValue("2000-01-01");
+		try (PreparedStatementCache.Lease lease = cache.prepare(physical, "SELECT ?", ps -> ps.setString(1, "a"))) {
+			Assert.assertSame(prepared.get(0), lease.statement);
+		}
+		try (PreparedStatementCache.Lease lease = cache.prepare(physical, "SELECT ?", ps -> ps.setObject(1, date))) {
+			Assert.assertSame(prepared.get(1), lease.statement);
+		}
+		try (PreparedStatementCache.Lease lease = cache.prepare(physical, "SELECT ?", ps -> ps.setString(1, "b"))) {
+			Assert.assertSame(prepared.get(0), lease.statement);
+		}
+		try (PreparedStatementCache.Lease lease = cache.prepare(physical, "SELECT ?", ps -> ps.setNull(1, Types.VARCHAR))) {
+			Assert.assertSame(prepared.get(2), lease.statement);
+		}
+		//binary transfer can't be turned off, so such statements are not shared with text ones
+		try (PreparedStatementCache.Lease lease = cache.prepare(physical, "SELECT ?", ps -> ps.setString(1, "c"), true)) {
+			Assert.assertSame(prepared.get(3), lease.statement);
+		}
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(4, cache.getMisses());
+		Assert.assertEquals(
+				Arrays.asList(
+						"prepare 0", "threshold 1", "setString 0 a", "clearParameters 0",
+						"prepare 1", "threshold 1", "setObject 1 " + date, "clearParameters 1",
+						"isClosed 0", "setString 0 b", "clearParameters 0",
+						"prepare 2", "threshold 1", "setNull 2 " + Types.VARCHAR, "clearParameters 2",
+						"prepare 3", "threshold -1", "setString 3 c", "clearParameters 3"),
+				calls);
+		try {
+			cache.prepare(physical, "SELECT 1", ps -> ps.setFetchSize(10));
+			Assert.fail("Expecting error");
+		} catch (SQLException ex) {
+			Assert.assertTrue(ex.getMessage().contains("setFetchSize"));
+		}
+	}
+}
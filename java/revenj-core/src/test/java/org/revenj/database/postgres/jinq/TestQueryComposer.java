@@ -0,0 +1,330 @@
+package org.revenj.database.postgres.jinq;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.revenj.Fake;
+import org.postgresql.PGResultSetMetaData;
+import org.postgresql.PGStatement;
+import org.postgresql.core.Field;
+import org.revenj.database.postgres.BinaryObjectConverter;
+import org.revenj.database.postgres.ObjectConverter;
+import org.revenj.database.postgres.PostgresBinaryReader;
+import org.revenj.database.postgres.PostgresReader;
+import org.revenj.database.postgres.PreparedStatementCache;
+import org.revenj.database.postgres.converters.PostgresTuple;
+import org.revenj.database.postgres.jinq.transform.MetamodelUtil;
+import org.revenj.patterns.DataSource;
+import org.revenj.patterns.Query;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class TestQueryComposer {
+
+	public static class StreamedItem implements DataSource {
+		public final char value;
+
+		StreamedItem(char value) {
+			this.value = value;
+		}
+	}
+
+	private static class StreamingConnection {
+		final List<String> calls = new ArrayList<>();
+		boolean autoCommit = true;
+		boolean failRollback;
+		int released;
+		final Connection connection;
+
+		StreamingConnection(String... rows) {
+			AtomicInteger index = new AtomicInteger(-1);
+			ResultSet rs = Fake.of(ResultSet.class)
+					.on("next", (proxy, method, args) -> {
+						calls.add("next");
+						return index.incrementAndGet() < rows.length;
+					})
+					.on("getString", (proxy, method, args) -> rows[index.get()])
+					.on("close", (proxy, method, args) -> calls.add("close results"))
+					.create();
+			PreparedStatement ps = Fake.of(PreparedStatement.class)
+					.on("executeQuery", (proxy, method, args) -> {
+						calls.add("execute in " + (autoCommit ? "autocommit" : "transaction"));
+						return rs;
+					})
+					.on("close", (proxy, method, args) -> calls.add("close statement"))
+					.create();
+			connection = Fake.of(Connection.class)
+					.returns("prepareStatement", ps)
+					.on("getAutoCommit", (proxy, method, args) -> autoCommit)
+					.on("setAutoCommit", (proxy, method, args) -> autoCommit = (Boolean) args[0])
+					.on("commit", (proxy, method, args) -> calls.add("commit"))
+					.on("rollback", (proxy, method, args) -> {
+						calls.add("rollback");
+						if (failRollback) throw new SQLException("rollback failed");
+						return null;
+					})
+					.create();
+		}
+
+		Query<StreamedItem> query() {
+			return TestQueryComposer.query(connection, false, new StreamedConverter(), false, new PreparedStatementCache(0), () -> released++);
+		}
+
+		Query<StreamedItem> provided() {
+			return TestQueryComposer.query(connection, true, new StreamedConverter(), false, new PreparedStatementCache(0), () -> released++);
+		}
+	}
+
+	private static class StreamedConverter implements BinaryObjectConverter<StreamedItem> {
+		@Override
+		public StreamedItem from(PostgresReader reader, int context) throws IOException {
+			char value = (char) reader.read();
+			if (value == '!') throw new IOException("invalid row");
+			return new StreamedItem(value);
+		}
+
+		@Override
+		public StreamedItem from(PostgresBinaryReader reader) throws IOException {
+			return new StreamedItem((char) reader.readByte());
+		}
+
+		@Override
+		public PostgresTuple to(StreamedItem instance) {
+			return null;
+		}
+
+		@Override
+		public String getDbName() {
+			return "\"test\".\"Item\"";
+		}
+	}
+
+	private static Query<StreamedItem> query(
+			Connection connection,
+			boolean provided,
+			ObjectConverter<StreamedItem> converter,
+			boolean binaryResults,
+			PreparedStatementCache statementCache,
+			Runnable release) {
+		MetamodelUtil metamodel = new MetamodelUtil() {
+			@Override
+			public <U> String dataSourceNameFromClass(Class<U> dataSource) {
+				return "\"test\".\"Item\"";
+			}
+
+			@Override
+			public String dataSourceNameFromClassName(String className) {
+				return "\"test\".\"Item\"";
+			}
+		};
+		return RevenjQueryComposer.findAll(
+				metamodel,
+				TestQueryComposer.class.getClassLoader(),
+				StreamedItem.class,
+				new RevenjQueryComposerCache(),
+				provided ? connection : null,
+				type -> converter,
+				() -> connection,
+				c -> release.run(),
+				binaryResults,
+				statementCache);
+	}
+
+	private static PreparedStatement binaryStatement(List<String> calls, boolean binaryFormat, String... rows) {
+		AtomicInteger index = new AtomicInteger(-1);
+		PGResultSetMetaData pgMetadata = Fake.of(PGResultSetMetaData.class)
+				.on("getFormat", (proxy, method, args) -> {
+					Assert.assertEquals(1, args[0]);
+					return binaryFormat ? Field.BINARY_FORMAT : Field.TEXT_FORMAT;
+				})
+				.create();
+		ResultSetMetaData metadata = Fake.of(ResultSetMetaData.class)
+				.returns("isWrapperFor", true)
+				.returns("unwrap", pgMetadata)
+				.create();
+		ResultSet rs = Fake.of(ResultSet.class)
+				.returns("getMetaData", metadata)
+				.on("next", (proxy, method, args) -> index.incrementAndGet() < rows.length)
+				.on("getBytes", (proxy, method, args) -> {
+					calls.add("binary " + rows[index.get()]);
+					return rows[index.get()].getBytes(StandardCharsets.UTF_8);
+				})
+				.on("getString", (proxy, method, args) -> {
+					calls.add("text " + rows[index.get()]);
+					return rows[index.get()];
+				})
+				.create();
+		PGStatement pg = Fake.of(PGStatement.class)
+				.on("setPrepareThreshold", (proxy, method, args) -> calls.add("threshold " + args[0]))
+				.create();
+		return Fake.of(PreparedStatement.class)
+				.returns("isWrapperFor", true)
+				.returns("unwrap", pg)
+				.returns("executeQuery", rs)
+				.create();
+	}
+
+	@Test
+	public void binaryResultsAreDecodedWithBinaryConverter() throws Exception {
+		List<String> calls = new ArrayList<>();
+		List<PreparedStatement> statements = new ArrayList<>(Arrays.asList(
+				binaryStatement(calls, true, "a", "b"),
+				binaryStatement(calls, false, "c")));
+		Connection connection = Fake.of(Connection.class)
+				.on("prepareStatement", (proxy, method, args) -> statements.remove(0))
+				.create();
+		Query<StreamedItem> query = query(connection, false, new StreamedConverter(), true, new PreparedStatementCache(0), () -> {});
+		Assert.assertEquals("ab", query.list().stream().map(it -> String.valueOf(it.value)).collect(Collectors.joining()));
+		//when the type is not registered for binary transfer, server returns text
+		Assert.assertEquals('c', query.findAny().get().value);
+		Assert.assertEquals(Arrays.asList("threshold -1", "binary a", "binary b", "threshold -1", "text c"), calls);
+	}
+
+	@Test
+	public void textResultsDoNotForceBinaryTransfer() throws Exception {
+		List<String> calls = new ArrayList<>();
+		PreparedStatement ps = binaryStatement(calls, false, "a");
+		Connection connection = Fake.of(Connection.class)
+				.returns("prepareStatement", ps)
+				.create();
+		Query<StreamedItem> query = query(connection, false, new StreamedConverter(), false, new PreparedStatementCache(0), () -> {});
+		Assert.assertEquals('a', query.findAny().get().value);
+		Assert.assertEquals(Arrays.asList("text a"), calls);
+	}
+
+	@Test
+	public void streamRollsBackAndReleasesConnection() throws IOException {
+		StreamingConnection sc = new StreamingConnection("a", "b");
+		try (Stream<StreamedItem> stream = sc.query().stream()) {
+			Assert.assertEquals("ab", stream.map(it -> String.valueOf(it.value)).collect(Collectors.joining()));
+		}
+		//transaction only keeps the cursor open, so there is nothing to commit
+		Assert.assertEquals(
+				Arrays.asList("execute in transaction", "next", "next", "next", "close results", "close statement", "rollback"),
+				sc.calls);
+		Assert.assertTrue(sc.autoCommit);
+		Assert.assertEquals(1, sc.released);
+	}
+
+	@Test
+	public void streamRollsBackAfterError() throws IOException {
+		StreamingConnection sc = new StreamingConnection("a", "!", "c");
+		try (Stream<StreamedItem> stream = sc.query().stream()) {
+			stream.count();
+			Assert.fail("Expecting error");
+		} catch (RuntimeException e) {
+			Assert.assertEquals("invalid row", e.getCause().getMessage());
+		}
+		Assert.assertTrue(sc.calls.contains("rollback"));
+		Assert.assertFalse(sc.calls.contains("commit"));
+		Assert.assertTrue(sc.autoCommit);
+		Assert.assertEquals(1, sc.released);
+	}
+
+	@Test
+	public void streamRestoresConnectionWhenRollbackFails() throws IOException {
+		StreamingConnection sc = new StreamingConnection("a");
+		sc.failRollback = true;
+		Stream<StreamedItem> stream = sc.query().stream();
+		Assert.assertEquals(1, stream.limit(1).count());
+		try {
+			stream.close();
+			Assert.fail("Expecting error");
+		} catch (RuntimeException e) {
+			Assert.assertEquals("rollback failed", e.getCause().getMessage());
+		}
+		Assert.assertEquals("rollback", sc.calls.get(sc.calls.size() - 1));
+		Assert.assertFalse(sc.calls.contains("commit"));
+		Assert.assertTrue(sc.autoCommit);
+		Assert.assertEquals(1, sc.released);
+	}
+
+	@Test
+	public void streamOnProvidedAutocommitConnectionIsMaterialized() throws IOException {
+		StreamingConnection sc = new StreamingConnection("a", "b");
+		Stream<StreamedItem> stream = sc.provided().stream();
+		//whole result was read and resources released before the stream is consumed
+		Assert.assertEquals(
+				Arrays.asList("execute in autocommit", "next", "next", "next", "close results", "close statement"),
+				sc.calls);
+		Assert.assertEquals("ab", stream.map(it -> String.valueOf(it.value)).collect(Collectors.joining()));
+		Assert.assertTrue(sc.autoCommit);
+		Assert.assertEquals(0, sc.released);
+	}
+
+	@Test
+	public void streamUsesTransactionOfProvidedConnection() throws IOException {
+		StreamingConnection sc = new StreamingConnection("a", "b");
+		sc.autoCommit = false;
+		try (Stream<StreamedItem> stream = sc.provided().stream()) {
+			Assert.assertEquals("ab", stream.map(it -> String.valueOf(it.value)).collect(Collectors.joining()));
+		}
+		Assert.assertEquals(
+				Arrays.asList("execute in transaction", "next", "next", "next", "close results", "close statement"),
+				sc.calls);
+		Assert.assertFalse(sc.autoCommit);
+		Assert.assertEquals(0, sc.released);
+	}
+
+	@Test
+	public void queryCacheIsBounded() {
+		RevenjQueryComposerCache cache = new RevenjQueryComposerCache(16);
+		for (int i = 0; i < 100; i++) {
+			String[] lambdas = new String[]{"lambda" + i};
+			Assert.assertNull(cache.findInCache(null, "where", lambdas));
+			cache.cacheQuery(null, "where", lambdas, Optional.empty());
+			Assert.assertNotNull(cache.findInCache(null, "where", lambdas));
+		}
+		Assert.assertTrue(cache.size() <= 16);
+		Assert.assertEquals(100, cache.getHits());
+		Assert.assertEquals(100, cache.getMisses());
+		Assert.assertEquals(100 - cache.size(), cache.getEvictions());
+		Assert.assertNotNull(cache.findInCache(null, "where", new String[]{"lambda99"}));
+	}
+
+	@Test
+	public void queryCacheKeepsUsedEntries() {
+		RevenjQueryComposerCache cache = new RevenjQueryComposerCache(8);
+		for (int i = 0; i < 20; i++) {
+			cache.cacheQuery(null, "where", new String[]{"cold" + i}, Optional.empty());
+		}
+		String[] hot = new String[]{"hot"};
+		cache.cacheQuery(null, "where", hot, Optional.empty());
+		for (int i = 0; i < 100; i++) {
+			Assert.assertNotNull(cache.findInCache(null, "where", hot));
+			cache.cacheQuery(null, "where", new String[]{"lambda" + i}, Optional.empty());
+		}
+		Assert.assertEquals(8, cache.size());
+		Assert.assertNotNull(cache.findInCache(null, "where", hot));
+		Assert.assertNull(cache.findInCache(null, "where", new String[]{"lambda0"}));
+		Assert.assertEquals(121 - 8, cache.getEvictions());
+	}
+
+	@Test
+	public void queryCacheIsConfiguredFromProperties() {
+		Properties properties = new Properties();
+		Assert.assertEquals(RevenjQueryComposerCache.DEFAULT_CAPACITY, RevenjQueryComposerCache.create(properties).getCapacity());
+		properties.setProperty("revenj.queryCache.size", "10");
+		Assert.assertEquals(10, RevenjQueryComposerCache.create(properties).getCapacity());
+		properties.setProperty("revenj.queryCache.size", "-1");
+		try {
+			RevenjQueryComposerCache.create(properties);
+			Assert.fail("Expecting error");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getMessage().startsWith("Error parsing revenj.queryCache.size"));
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package org.revenj.database.postgres.jinq.transform;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.revenj.database.postgres.jinq.jpqlquery.GeneratedQueryParameter;
+import org.revenj.database.postgres.jinq.jpqlquery.JinqPostgresQuery;
+import org.revenj.patterns.DataSource;
+import org.revenj.patterns.Query;
+import org.revenj.patterns.Specification;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.List;
+
+public class TestQueryTransform {
+
+	@Test
+	public void limitAndOffsetAreBoundAsParameters() throws Exception {
+		RevenjQueryTransformConfiguration config = new RevenjQueryTransformConfiguration();
+		JinqPostgresQuery<Object> query = JinqPostgresQuery.findAll("\"test\".\"Item\"");
+		LimitSkipTransform limit = new LimitSkipTransform(config, true, 0);
+		LimitSkipTransform skip = new LimitSkipTransform(config, false, 1);
+		JinqPostgresQuery<Object> paged = skip.apply(limit.apply(query, null), null);
+		Assert.assertTrue(paged.getQueryString().endsWith(" LIMIT GREATEST(? - ?, 0) OFFSET ?"));
+		Assert.assertEquals(3, paged.getQueryParameters().size());
+		Assert.assertEquals(0, paged.getQueryParameters().get(0).lambdaIndex);
+		Assert.assertEquals(1, paged.getQueryParameters().get(2).lambdaIndex);
+	}
+
+	public static class KeysetItem implements DataSource {
+		public LocalDate getDate() {
+			return null;
+		}
+
+		public String getId() {
+			return null;
+		}
+	}
+
+	private static RevenjQueryTransformConfiguration keysetConfiguration() throws NoSuchMethodException {
+		RevenjQueryTransformConfiguration config = new RevenjQueryTransformConfiguration();
+		config.metamodel = new MetamodelUtil() {
+			{
+				addProperty(KeysetItem.class.getMethod("getDate"), "date");
+				addProperty(KeysetItem.class.getMethod("getId"), "id");
+			}
+
+			@Override
+			public <U> String dataSourceNameFromClass(Class<U> dataSource) {
+				return "\"test\".\"Item\"";
+			}
+
+			@Override
+			public String dataSourceNameFromClassName(String className) {
+				return "\"test\".\"Item\"";
+			}
+		};
+		return config;
+	}
+
+	private static <V> LambdaAnalysis analyzeKey(RevenjQueryTransformConfiguration config, Query.Compare<KeysetItem, V> key, int lambdaIndex) {
+		return LambdaInfo.analyze(key, lambdaIndex, true).fullyAnalyze(config.metamodel, null, true, true, true, true);
+	}
+
+	@Test
+	public void keysetIsTranslatedToRowComparison() throws Exception {
+		RevenjQueryTransformConfiguration config = keysetConfiguration();
+		JinqPostgresQuery<KeysetItem> query = JinqPostgresQuery.findAll("\"test\".\"Item\"");
+		//key lambdas are followed by value infos, so keys are at 0 and 2 while values are at 1 and 3
+		KeysetTransform keyset = new KeysetTransform(config, false);
+		JinqPostgresQuery<KeysetItem> byDate = keyset.apply(query, analyzeKey(config, KeysetItem::getDate, 0), null);
+		JinqPostgresQuery<KeysetItem> byDateAndId = keyset.apply(byDate, analyzeKey(config, KeysetItem::getId, 2), null);
+		String sql = byDateAndId.getQueryString();
+		Assert.assertTrue(sql, sql.endsWith(" WHERE ROW((A.date), (A.id)) < ROW(?, ?) ORDER BY (A.date) DESC, (A.id) DESC"));
+		List<GeneratedQueryParameter> parameters = byDateAndId.getQueryParameters();
+		Assert.assertEquals(2, parameters.size());
+		Assert.assertEquals(1, parameters.get(0).lambdaIndex);
+		Assert.assertEquals(0, parameters.get(0).argIndex);
+		Assert.assertEquals(3, parameters.get(1).lambdaIndex);
+		Assert.assertEquals(0, parameters.get(1).argIndex);
+	}
+
+	@Test
+	public void keysetExcludesRowsEqualToLastKey() throws Exception {
+		RevenjQueryTransformConfiguration config = keysetConfiguration();
+		JinqPostgresQuery<KeysetItem> query = JinqPostgresQuery.findAll("\"test\".\"Item\"");
+		JinqPostgresQuery<KeysetItem> byDate = new KeysetTransform(config, true).apply(query, analyzeKey(config, KeysetItem::getDate, 0), null);
+		//comparison is strict, so with a non unique key, rows with the same date as the last row are skipped.
+		//unique key must be added as the last key to page through ties
+		String sql = byDate.getQueryString();
+		Assert.assertTrue(sql, sql.endsWith(" WHERE (A.date) > ? ORDER BY (A.date) ASC"));
+		JinqPostgresQuery<KeysetItem> withTiebreaker = new KeysetTransform(config, true).apply(byDate, analyzeKey(config, KeysetItem::getId, 2), null);
+		sql = withTiebreaker.getQueryString();
+		Assert.assertTrue(sql, sql.endsWith(" WHERE ROW((A.date), (A.id)) > ROW(?, ?) ORDER BY (A.date) ASC, (A.id) ASC"));
+	}
+
+	@Test
+	public void keysetMustUseSameDirection() throws Exception {
+		RevenjQueryTransformConfiguration config = keysetConfiguration();
+		JinqPostgresQuery<KeysetItem> query = JinqPostgresQuery.findAll("\"test\".\"Item\"");
+		JinqPostgresQuery<KeysetItem> byDate = new KeysetTransform(config, true).apply(query, analyzeKey(config, KeysetItem::getDate, 0), null);
+		try {
+			new KeysetTransform(config, false).apply(byDate, analyzeKey(config, KeysetItem::getId, 2), null);
+			Assert.fail("Expecting error");
+		} catch (QueryTransformException e) {
+			Assert.assertTrue(e.getMessage().contains("same direction"));
+		}
+	}
+
+	@Test
+	public void keysetMustBeAppliedBeforeSorting() throws Exception {
+		RevenjQueryTransformConfiguration config = keysetConfiguration();
+		JinqPostgresQuery<KeysetItem> query = JinqPostgresQuery.findAll("\"test\".\"Item\"");
+		JinqPostgresQuery<KeysetItem> sorted = new SortingTransform(config, true).apply(query, analyzeKey(config, KeysetItem::getDate, 0), null);
+		try {
+			new KeysetTransform(config, true).apply(sorted, analyzeKey(config, KeysetItem::getId, 1), null);
+			Assert.fail("Expecting error");
+		} catch (QueryTransformException e) {
+			Assert.assertTrue(e.getMessage().contains("before other sorting"));
+		}
+	}
+
+	public static class Prefix implements Serializable {
+		public final String value;
+
+		Prefix(String value) {
+			this.value = value;
+		}
+	}
+
+	private static Specification<String> longerThan(Prefix prefix, int length) {
+		return s -> s.startsWith(prefix.value) && s.length() > length;
+	}
+
+	@Test
+	public void lambdaInstancesShareMetadata() {
+		Prefix a = new Prefix("a");
+		Prefix b = new Prefix("b");
+		Prefix c = new Prefix("c");
+		LambdaInfo first = LambdaInfo.analyze(longerThan(a, 1), 0, true);
+		LambdaInfo second = LambdaInfo.analyze(longerThan(b, 2), 1, true);
+		LambdaInfo third = LambdaInfo.analyze(longerThan(c, 3), 2, true);
+		//first lambda is extracted through serialization which copies captured arguments,
+		//while cached metadata reads them directly from the lambda instance
+		Assert.assertNotSame(a, first.getCapturedArg(0));
+		Assert.assertSame(b, second.getCapturedArg(0));
+		Assert.assertSame(c, third.getCapturedArg(0));
+		Assert.assertEquals(first.getLambdaSourceString(), second.getLambdaSourceString());
+		Assert.assertEquals(first.getLambdaSourceString(), third.getLambdaSourceString());
+		Assert.assertEquals(2, third.getNumCapturedArgs());
+		Assert.assertEquals(3, third.getNumLambdaArgs());
+		Assert.assertTrue(third.isInvokeStatic());
+		Assert.assertEquals("a", ((Prefix) first.getCapturedArg(0)).value);
+		Assert.assertEquals(1, first.getCapturedArg(1));
+		Assert.assertEquals(3, third.getCapturedArg(1));
+	}
+}
@@ -1,10 +1,13 @@
 package org.revenj.processor;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.revenj.processor.models.*;
 
 import javax.annotation.processing.Processor;
 import javax.tools.Diagnostic;
+import java.io.File;
+import java.nio.file.Files;
 import java.util.Collection;
 import java.util.Collections;
 
@@ -48,4 +51,20 @@ public class ValidationTest extends AbstractAnnotationProcessorTest {
 	public void testGenericNonPublicArgument() {
 		assertCompilationReturned(Diagnostic.Kind.WARNING, 8, compileTestCase(GenericNonPublicArgument.class));
 	}
+
+	@Test
+	public void testSingletonFactory() throws Exception {
+		assertCompilationSuccessful(compileTestCase(SingletonService.class));
+		String source = new String(Files.readAllBytes(new File("revenj_container_Registrations.java").toPath()), "UTF-8");
+		Assert.assertTrue(source.contains("container.registerFactory(org.revenj.processor.models.SingletonService.class, c -> new org.revenj.processor.models.SingletonService(c.resolve(org.revenj.patterns.ServiceLocator.class)), org.revenj.extensibility.InstanceScope.SINGLETON);"));
+	}
+
+	@Test
+	public void testHandlerServicesAreOverwritten() throws Exception {
+		File services = new File("org.revenj.patterns.DomainEventHandler%3Corg.revenj.processor.models.SimpleEvent%3E");
+		Files.write(services.toPath(), "\norg.revenj.processor.models.RemovedHandler\n".getBytes("UTF-8"));
+		assertCompilationSuccessful(compileTestCase(ValidEventHandler.class));
+		String content = new String(Files.readAllBytes(services.toPath()), "UTF-8");
+		Assert.assertEquals("org.revenj.processor.models.ValidEventHandler", content.trim());
+	}
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package org.revenj.processor.models;
+
+import org.revenj.patterns.ServiceLocator;
+
+import javax.inject.Singleton;
+
+@Singleton
+public class SingletonService {
+	public SingletonService(ServiceLocator locator) {
+	}
+}
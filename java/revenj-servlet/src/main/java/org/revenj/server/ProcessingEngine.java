@@ -1,5 +1,6 @@
 package org.revenj.server;
 
+import org.revenj.Utils;
 import org.revenj.extensibility.Container;
 import org.revenj.extensibility.PluginLoader;
 import org.revenj.security.PermissionManager;
@@ -7,19 +8,36 @@ import org.revenj.serialization.Serialization;
 import org.revenj.serialization.WireSerialization;
 
 import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public final class ProcessingEngine {
+public final class ProcessingEngine implements AutoCloseable {
 
 	private final Container container;
 	private final DataSource dataSource;
 	private final Map<Class<?>, ServerCommand> serverCommands = new HashMap<>();
+	private final Map<String, Optional<Class<?>>> commandNames = new HashMap<>();
 	private final WireSerialization serialization;
 	private final PermissionManager permissions;
+	private final int parallelism;
+	private final ThreadPoolExecutor workers;
 
 	public ProcessingEngine(
 			Container container,
@@ -31,7 +49,8 @@ public final class ProcessingEngine {
 				dataSource,
 				serialization,
 				permissions,
-				extensibility.isPresent() ? extensibility.get().resolve(container, ServerCommand.class) : new ServerCommand[0]);
+				extensibility.isPresent() ? extensibility.get().resolve(container, ServerCommand.class) : new ServerCommand[0],
+				parseParallelism(container.tryResolve(Properties.class).orElse(new Properties())));
 	}
 
 	ProcessingEngine(
@@ -40,22 +59,195 @@ public final class ProcessingEngine {
 			WireSerialization serialization,
 			PermissionManager permissions,
 			ServerCommand[] commands) {
+		this(container, dataSource, serialization, permissions, commands, 1);
+	}
+
+	/**
+	 * Batches which contain only read only commands can be executed concurrently,
+	 * each worker with its own connection. Parallelism limits the number of workers
+	 * (and connections) used by a single batch. Default parallelism of 1 executes all commands
+	 * sequentially on a single connection.
+	 * Helper workers are shared by all batches, so there are at most parallelism - 1 helper threads
+	 * in total, while the calling thread always processes its own batch too.
+	 * Parallelism is configured through revenj.processing.parallelism property.
+	 */
+	ProcessingEngine(
+			Container container,
+			DataSource dataSource,
+			WireSerialization serialization,
+			PermissionManager permissions,
+			ServerCommand[] commands,
+			int parallelism) {
+		if (parallelism < 1) throw new IllegalArgumentException("parallelism must be positive");
 		this.container = container;
 		this.dataSource = dataSource;
 		this.serialization = serialization;
 		this.permissions = permissions;
+		this.parallelism = parallelism;
+		if (parallelism > 1) {
+			this.workers = new ThreadPoolExecutor(
+					parallelism - 1,
+					parallelism - 1,
+					60L,
+					TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(),
+					r -> {
+						Thread thread = new Thread(r, "Revenj command worker");
+						thread.setDaemon(true);
+						return thread;
+					});
+			this.workers.allowCoreThreadTimeOut(true);
+		} else {
+			this.workers = null;
+		}
 		for (ServerCommand com : commands) {
 			serverCommands.put(com.getClass(), com);
 		}
+		for (Class<?> command : serverCommands.keySet()) {
+			commandNames.putIfAbsent(command.getSimpleName(), Optional.of(command));
+		}
+		//full names take precedence over simple names
+		for (Class<?> command : serverCommands.keySet()) {
+			commandNames.put(command.getName(), Optional.of(command));
+		}
+	}
+
+	private static int parseParallelism(Properties properties) {
+		String value = properties.getProperty("revenj.processing.parallelism");
+		if (value == null) {
+			return 1;
+		}
+		try {
+			int result = Integer.parseInt(value);
+			if (result < 1) {
+				throw new NumberFormatException();
+			}
+			return result;
+		} catch (NumberFormatException e) {
+			throw new RuntimeException("Error parsing revenj.processing.parallelism setting. Expecting positive integer. Found: " + value);
+		}
 	}
 
 	public Optional<Class<?>> findCommand(String name) {
-		for (Class<?> command : serverCommands.keySet()) {
-			if (command.getName().equals(name) || command.getSimpleName().equals(name)) {
-				return Optional.of(command);
+		Optional<Class<?>> command = name != null ? commandNames.get(name) : null;
+		return command != null ? command : Optional.empty();
+	}
+
+	/**
+	 * Pass-through input which understands raw request bodies.
+	 * Request body is deserialized directly from the request stream, instead of
+	 * reading it into a string first and then deserializing that string.
+	 * Nested text arguments are parsed only for the command which received the request body,
+	 * other pass-through arguments are left as they are.
+	 */
+	private static final class RequestSerialization implements Serialization<Object> {
+		private final Serialization<Object> objects;
+		private final WireSerialization wire;
+		private boolean fromRequest;
+
+		RequestSerialization(Serialization<Object> objects, WireSerialization wire) {
+			this.objects = objects;
+			this.wire = wire;
+		}
+
+		RequestSerialization forCommand() {
+			return new RequestSerialization(objects, wire);
+		}
+
+		@Override
+		public Object serialize(Type type, Object value) throws IOException {
+			return objects.serialize(type, value);
+		}
+
+		@Override
+		public Object deserialize(Type type, Object data) throws IOException {
+			if (data instanceof RequestBody) {
+				fromRequest = true;
+				RequestBody body = (RequestBody) data;
+				PushbackInputStream stream = new PushbackInputStream(body.stream);
+				int first = stream.read();
+				//empty body is the same as missing argument
+				if (first == -1) {
+					return null;
+				}
+				stream.unread(first);
+				Charset charset = body.characterEncoding != null && body.characterEncoding.length() > 0
+						? Charset.forName(body.characterEncoding)
+						: StandardCharsets.UTF_8;
+				if (!StandardCharsets.UTF_8.equals(charset)) {
+					//wire serialization expects UTF-8, so body in other encodings is converted first
+					byte[] content = readText(stream, charset).getBytes(StandardCharsets.UTF_8);
+					return wire.deserialize(asText(type), content, content.length, body.contentType);
+				}
+				return wire.deserialize(asText(type), stream, body.contentType);
+			}
+			if (fromRequest && data instanceof String && !(type instanceof Class<?> && ((Class<?>) type).isInstance(data))) {
+				Optional<Serialization<String>> text = wire.find(String.class);
+				if (text.isPresent()) {
+					return text.get().deserialize(type, (String) data);
+				}
+			}
+			return objects.deserialize(type, data);
+		}
+
+		private static String readText(InputStream stream, Charset charset) throws IOException {
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int len;
+			while ((len = stream.read(buffer)) != -1) {
+				os.write(buffer, 0, len);
+			}
+			return new String(os.toByteArray(), charset);
+		}
+
+		private static Type asText(Type type) {
+			if (!(type instanceof ParameterizedType)) {
+				return type;
+			}
+			ParameterizedType pt = (ParameterizedType) type;
+			Type[] arguments = pt.getActualTypeArguments().clone();
+			boolean changed = false;
+			for (int i = 0; i < arguments.length; i++) {
+				if (arguments[i] == RequestBody.class) {
+					arguments[i] = String.class;
+					changed = true;
+				}
+			}
+			if (!changed) {
+				return type;
+			}
+			return Utils.makeGenericType(
+					(Class<?>) pt.getRawType(),
+					arguments[0],
+					Arrays.copyOfRange(arguments, 1, arguments.length));
+		}
+	}
+
+	@FunctionalInterface
+	public interface ResultHandler<TOutput> {
+		void handle(ProcessingResult<TOutput> result) throws IOException;
+	}
+
+	private static final class HandlerState<TOutput> {
+		final ResultHandler<TOutput> handler;
+		final boolean streaming;
+		boolean invoked;
+		Exception error;
+
+		HandlerState(ResultHandler<TOutput> handler, boolean streaming) {
+			this.handler = handler;
+			this.streaming = streaming;
+		}
+
+		//lazy results can fail with runtime exceptions while the handler consumes them
+		void invoke(ProcessingResult<TOutput> result) {
+			invoked = true;
+			try {
+				handler.handle(result);
+			} catch (IOException | RuntimeException e) {
+				error = e;
 			}
 		}
-		return Optional.empty();
 	}
 
 	public <TInput, TOutput> ProcessingResult<TOutput> execute(
@@ -63,6 +255,95 @@ public final class ProcessingEngine {
 			Class<TOutput> output,
 			ServerCommandDescription<TInput>[] commandDescriptions,
 			Principal principal) {
+		return process(input, output, commandDescriptions, principal, null);
+	}
+
+	/**
+	 * Execute commands and process the result before resources used by the commands are released.
+	 * Handler is invoked exactly once, with either successful or failed result.
+	 *
+	 * @param input               input format
+	 * @param output              output format
+	 * @param commandDescriptions commands to execute
+	 * @param principal           user executing commands
+	 * @param handler             result processing, eg. writing the response
+	 * @param <TInput>            input format
+	 * @param <TOutput>           output format
+	 * @return processing result
+	 * @throws IOException error from the handler, runtime errors are wrapped
+	 */
+	public <TInput, TOutput> ProcessingResult<TOutput> execute(
+			Class<TInput> input,
+			Class<TOutput> output,
+			ServerCommandDescription<TInput>[] commandDescriptions,
+			Principal principal,
+			ResultHandler<TOutput> handler) throws IOException {
+		return execute(input, output, commandDescriptions, principal, handler, false);
+	}
+
+	/**
+	 * Execute commands and process the result before resources used by the commands are released.
+	 * When streaming is requested, output is passed through as objects and all commands are read only,
+	 * commands can return {@link StreamingResult} which will be consumed by the handler while
+	 * connection is still open. Such batch is executed within a read only transaction, since cursors
+	 * are closed on commit. Streaming is opt-in, as commands can change their behavior when it's supported,
+	 * eg. search doesn't report the number of found items.
+	 * Handler is invoked exactly once, with either successful or failed result.
+	 *
+	 * @param input               input format
+	 * @param output              output format
+	 * @param commandDescriptions commands to execute
+	 * @param principal           user executing commands
+	 * @param handler             result processing, eg. writing the response
+	 * @param streaming           allow commands to return lazy results
+	 * @param <TInput>            input format
+	 * @param <TOutput>           output format
+	 * @return processing result
+	 * @throws IOException error from the handler, runtime errors are wrapped
+	 */
+	public <TInput, TOutput> ProcessingResult<TOutput> execute(
+			Class<TInput> input,
+			Class<TOutput> output,
+			ServerCommandDescription<TInput>[] commandDescriptions,
+			Principal principal,
+			ResultHandler<TOutput> handler,
+			boolean streaming) throws IOException {
+		HandlerState<TOutput> state = new HandlerState<>(handler, streaming);
+		ProcessingResult<TOutput> result = process(input, output, commandDescriptions, principal, state);
+		if (!state.invoked) {
+			handler.handle(result);
+		} else if (state.error instanceof IOException) {
+			throw (IOException) state.error;
+		} else if (state.error != null) {
+			throw new IOException(state.error.getMessage(), state.error);
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <TInput> Serialization<TInput> commandInput(Serialization<TInput> input) {
+		return input instanceof RequestSerialization
+				? (Serialization<TInput>) ((RequestSerialization) input).forCommand()
+				: input;
+	}
+
+	private static void closeStreaming(List<? extends CommandResultDescription<?>> executedCommands) {
+		for (CommandResultDescription<?> cr : executedCommands) {
+			if (cr.result.data instanceof StreamingResult) {
+				try {
+					((StreamingResult) cr.result.data).close();
+				} catch (RuntimeException ignore) {
+				}
+			}
+		}
+	}
+
+	private <TInput, TOutput> ProcessingResult<TOutput> process(
+			Class<TInput> input,
+			Class<TOutput> output,
+			ServerCommandDescription<TInput>[] commandDescriptions,
+			Principal principal,
+			HandlerState<TOutput> state) {
 		long startProcessing = System.nanoTime();
 
 		PermissionManager.boundPrincipal.set(principal);
@@ -74,6 +355,9 @@ public final class ProcessingEngine {
 		Serialization<TInput> inputSerializer = serialization.find(input).orElseGet(() -> {
 			throw new RuntimeException("Invalid serialization format: " + input);
 		});
+		if (Object.class.equals(input)) {
+			inputSerializer = (Serialization<TInput>) new RequestSerialization((Serialization<Object>) inputSerializer, serialization);
+		}
 		Serialization<TOutput> outputSerializer = serialization.find(output).orElseGet(() -> {
 			throw new RuntimeException("Invalid serialization format: " + output);
 		});
@@ -99,6 +383,12 @@ public final class ProcessingEngine {
 					Collections.EMPTY_LIST,
 					startProcessing);
 		}
+		if (!withTransaction && parallelism > 1 && commandDescriptions.length > 1) {
+			return processParallel(commandDescriptions, inputSerializer, outputSerializer, principal, state, startProcessing);
+		}
+		//cursors are closed on commit, so lazy results are consumed within a read only transaction
+		boolean streaming = state != null && state.streaming && !withTransaction && Object.class.equals(output);
+		boolean explicitTransaction = withTransaction || streaming;
 		ArrayList<CommandResultDescription<TOutput>> executedCommands = new ArrayList<>(commandDescriptions.length);
 		Connection connection;
 		try {
@@ -110,20 +400,23 @@ public final class ProcessingEngine {
 			try {
 				try (Container scope = container.createScope()) {
 					scope.registerInstance(Connection.class, connection, false);
-					connection.setAutoCommit(!withTransaction);
+					if (streaming) {
+						scope.registerInstance(StreamingResult.Support.class, StreamingResult.SUPPORTED, false);
+					}
+					connection.setAutoCommit(!explicitTransaction);
 					for (ServerCommandDescription<TInput> cd : commandDescriptions) {
 						long startCommand = System.nanoTime();
 						ServerCommand command = serverCommands.get(cd.commandClass);
 						if (command == null) {
 							throw new RuntimeException("Command not registered: " + cd.commandClass);
 						}
-						CommandResult<TOutput> result = command.execute(scope, inputSerializer, outputSerializer, cd.data, principal);
+						CommandResult<TOutput> result = command.execute(scope, commandInput(inputSerializer), outputSerializer, cd.data, principal);
 						if (result == null) {
 							throw new RuntimeException("Result returned null for: " + cd.commandClass);
 						}
 						executedCommands.add(CommandResultDescription.create(cd.requestID, result, startCommand));
 						if (result.status >= 400) {
-							if (withTransaction) {
+							if (explicitTransaction) {
 								connection.rollback();
 							}
 							return new ProcessingResult<>(result.message, result.status, null, startProcessing);
@@ -132,28 +425,24 @@ public final class ProcessingEngine {
 					if (withTransaction) {
 						connection.commit();
 					}
-					return ProcessingResult.success(executedCommands, startProcessing);
-				}
-			} catch (IOException e) {
-				if (withTransaction) {
-					connection.rollback();
-				}
-				if (e.getCause() instanceof SQLException) {
-					return new ProcessingResult<>(e.getCause().getMessage(), 409, null, startProcessing);
-				}
-				return new ProcessingResult<>(e.getMessage(), 500, null, startProcessing);
-			} catch (SecurityException e) {
-				if (withTransaction) {
-					connection.rollback();
+					ProcessingResult<TOutput> success = ProcessingResult.success(executedCommands, startProcessing);
+					if (state != null) {
+						state.invoke(success);
+					}
+					if (streaming) {
+						closeStreaming(executedCommands);
+						connection.commit();
+					}
+					return success;
 				}
-				return new ProcessingResult<>(e.getMessage(), 403, null, startProcessing);
 			} catch (Exception e) {
-				if (withTransaction) {
+				if (explicitTransaction) {
 					connection.rollback();
 				}
-				return ProcessingResult.error(e, startProcessing);
+				return failure(e, startProcessing);
 			} finally {
-				if (withTransaction) {
+				closeStreaming(executedCommands);
+				if (explicitTransaction) {
 					connection.setAutoCommit(true);
 				}
 				connection.close();
@@ -162,4 +451,226 @@ public final class ProcessingEngine {
 			return ProcessingResult.error(ex, startProcessing);
 		}
 	}
+
+	/**
+	 * Maps command failure to processing result, same for sequential and concurrent processing.
+	 */
+	private static <TOutput> ProcessingResult<TOutput> failure(Exception e, long startProcessing) {
+		if (e instanceof IOException) {
+			if (e.getCause() instanceof SQLException) {
+				return new ProcessingResult<>(e.getCause().getMessage(), 409, null, startProcessing);
+			}
+			return new ProcessingResult<>(e.getMessage(), 500, null, startProcessing);
+		} else if (e instanceof SecurityException) {
+			return new ProcessingResult<>(e.getMessage(), 403, null, startProcessing);
+		}
+		return ProcessingResult.error(e, startProcessing);
+	}
+
+	/**
+	 * Connections used by workers of a single concurrent batch. Each worker runs in its own transaction,
+	 * and all of them are committed or rolled back together once every worker is done,
+	 * so a failure in one worker doesn't leave the work of other workers committed.
+	 * Commit is not atomic across connections; if one of the commits fails, remaining ones are rolled back.
+	 * Workers which finish after the batch was completed (eg. when caller was interrupted) roll back on their own.
+	 */
+	private static final class BatchTransaction {
+		private final List<Connection> connections = new ArrayList<>();
+		private boolean completed;
+
+		synchronized boolean join(Connection connection) {
+			if (completed) {
+				return false;
+			}
+			connections.add(connection);
+			return true;
+		}
+
+		void complete(boolean commit) throws SQLException {
+			List<Connection> joined;
+			synchronized (this) {
+				completed = true;
+				joined = new ArrayList<>(connections);
+				connections.clear();
+			}
+			SQLException error = null;
+			for (Connection connection : joined) {
+				try {
+					if (commit && error == null) {
+						connection.commit();
+					} else {
+						connection.rollback();
+					}
+				} catch (SQLException e) {
+					if (error == null) {
+						error = e;
+					}
+					try {
+						connection.rollback();
+					} catch (SQLException ignore) {
+					}
+				} finally {
+					release(connection);
+				}
+			}
+			if (error != null) {
+				throw error;
+			}
+		}
+
+		static void release(Connection connection) {
+			try {
+				connection.setAutoCommit(true);
+			} catch (SQLException ignore) {
+			}
+			try {
+				connection.close();
+			} catch (SQLException ignore) {
+			}
+		}
+	}
+
+	/**
+	 * Execute read only commands concurrently. Each worker claims the next command in order,
+	 * so results keep the order of the batch, and uses its own scope and connection.
+	 * Calling thread is one of the workers. When a command fails, workers stop claiming new commands
+	 * and the first failure in batch order is returned, same as with sequential processing.
+	 * Connections are not committed until all workers are done, see {@link BatchTransaction}.
+	 * Since results are not consumed on the connection which produced them, streaming is not supported.
+	 */
+	@SuppressWarnings("unchecked")
+	private <TInput, TOutput> ProcessingResult<TOutput> processParallel(
+			ServerCommandDescription<TInput>[] commandDescriptions,
+			Serialization<TInput> inputSerializer,
+			Serialization<TOutput> outputSerializer,
+			Principal principal,
+			HandlerState<TOutput> state,
+			long startProcessing) {
+		int total = commandDescriptions.length;
+		CommandResultDescription<TOutput>[] results = new CommandResultDescription[total];
+		ProcessingResult<TOutput>[] failures = new ProcessingResult[total];
+		AtomicInteger next = new AtomicInteger();
+		AtomicBoolean failed = new AtomicBoolean();
+		BatchTransaction transaction = new BatchTransaction();
+		Runnable worker = () -> {
+			int index = next.getAndIncrement();
+			if (index >= total || failed.get()) {
+				return;
+			}
+			Connection connection;
+			try {
+				connection = dataSource.getConnection();
+			} catch (Exception e) {
+				failures[index] = new ProcessingResult<>("Unable to create database connection", 503, null, startProcessing);
+				failed.set(true);
+				return;
+			}
+			//helper threads are shared, so principal must not stay bound after the batch
+			Principal previous = PermissionManager.boundPrincipal.get();
+			PermissionManager.boundPrincipal.set(principal);
+			try {
+				connection.setAutoCommit(false);
+				try (Container scope = container.createScope()) {
+					scope.registerInstance(Connection.class, connection, false);
+					do {
+						ServerCommandDescription<TInput> cd = commandDescriptions[index];
+						long startCommand = System.nanoTime();
+						try {
+							ServerCommand command = serverCommands.get(cd.commandClass);
+							if (command == null) {
+								throw new RuntimeException("Command not registered: " + cd.commandClass);
+							}
+							CommandResult<TOutput> result = command.execute(scope, commandInput(inputSerializer), outputSerializer, cd.data, principal);
+							if (result == null) {
+								throw new RuntimeException("Result returned null for: " + cd.commandClass);
+							}
+							results[index] = CommandResultDescription.create(cd.requestID, result, startCommand);
+							if (result.status >= 400) {
+								failures[index] = new ProcessingResult<>(result.message, result.status, null, startProcessing);
+								failed.set(true);
+							}
+						} catch (Exception e) {
+							failures[index] = failure(e, startProcessing);
+							failed.set(true);
+						}
+						index = next.getAndIncrement();
+					} while (index < total && !failed.get());
+				}
+			} catch (Exception e) {
+				if (index < total) {
+					failures[index] = failure(e, startProcessing);
+				}
+				failed.set(true);
+			} finally {
+				PermissionManager.boundPrincipal.set(previous);
+				if (!transaction.join(connection)) {
+					try {
+						connection.rollback();
+					} catch (SQLException ignore) {
+					}
+					BatchTransaction.release(connection);
+				}
+			}
+		};
+		int helpers = Math.min(parallelism, total) - 1;
+		List<Future<?>> pending = new ArrayList<>(helpers);
+		for (int i = 0; i < helpers; i++) {
+			pending.add(workers.submit(worker));
+		}
+		worker.run();
+		//all commands have been claimed, so helpers which are still queued have nothing to do
+		pending.removeIf(future -> workers.remove((Runnable) future));
+		for (Future<?> future : pending) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				failed.set(true);
+				for (Future<?> f : pending) {
+					f.cancel(true);
+				}
+				Thread.currentThread().interrupt();
+				rollback(transaction);
+				return failure(e, startProcessing);
+			} catch (ExecutionException e) {
+				rollback(transaction);
+				Throwable cause = e.getCause();
+				return failure(cause instanceof Exception ? (Exception) cause : e, startProcessing);
+			}
+		}
+		ArrayList<CommandResultDescription<TOutput>> executedCommands = new ArrayList<>(total);
+		for (int i = 0; i < total; i++) {
+			if (failures[i] != null) {
+				rollback(transaction);
+				return failures[i];
+			}
+			executedCommands.add(results[i]);
+		}
+		try {
+			transaction.complete(true);
+		} catch (SQLException e) {
+			return ProcessingResult.error(e, startProcessing);
+		}
+		ProcessingResult<TOutput> success = ProcessingResult.success(executedCommands, startProcessing);
+		if (state != null) {
+			state.invoke(success);
+		}
+		return success;
+	}
+
+	private static void rollback(BatchTransaction transaction) {
+		try {
+			transaction.complete(false);
+		} catch (SQLException ignore) {
+		}
+	}
+
+	/**
+	 * Stop helper workers used for concurrent processing.
+	 */
+	@Override
+	public void close() {
+		if (workers != null) {
+			workers.shutdownNow();
+		}
+	}
 }
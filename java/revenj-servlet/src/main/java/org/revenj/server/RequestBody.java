@@ -0,0 +1,26 @@
+package org.revenj.server;
+
+import java.io.InputStream;
+
+/**
+ * Raw command argument which will be deserialized directly from the request stream.
+ * When commands are executed with pass-through input, they will deserialize it exactly once,
+ * into the type they expect. Nested arguments (such as specifications) are expected as text,
+ * same as when commands are executed with text input.
+ */
+public final class RequestBody {
+	public final InputStream stream;
+	public final String contentType;
+	public final String characterEncoding;
+
+	public RequestBody(InputStream stream, String contentType) {
+		this(stream, contentType, null);
+	}
+
+	public RequestBody(InputStream stream, String contentType, String characterEncoding) {
+		if (stream == null) throw new IllegalArgumentException("stream can't be null");
+		this.stream = stream;
+		this.contentType = contentType;
+		this.characterEncoding = characterEncoding;
+	}
+}
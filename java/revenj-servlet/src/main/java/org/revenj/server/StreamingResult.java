@@ -0,0 +1,45 @@
+package org.revenj.server;
+
+import org.revenj.patterns.ServiceLocator;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Lazy command result. Items are decoded while they are serialized into the response,
+ * so the whole result doesn't need to be kept in memory.
+ * Since items can be backed by a database cursor, they must be consumed before
+ * command scope is closed. Commands should return it only when streaming is supported
+ * in the current scope.
+ */
+public final class StreamingResult implements AutoCloseable {
+
+	/**
+	 * Marker registered in command scope when results are consumed before the scope is closed.
+	 */
+	public interface Support {
+	}
+
+	static final Support SUPPORTED = new Support() {
+	};
+
+	private final Stream<?> items;
+
+	public StreamingResult(Stream<?> items) {
+		if (items == null) throw new IllegalArgumentException("items can't be null");
+		this.items = items;
+	}
+
+	public static boolean isSupported(ServiceLocator locator) {
+		return locator.tryResolve(Support.class).isPresent();
+	}
+
+	public Iterator<?> iterator() {
+		return items.iterator();
+	}
+
+	@Override
+	public void close() {
+		items.close();
+	}
+}
@@ -5,6 +5,7 @@ import org.revenj.security.PermissionManager;
 import org.revenj.serialization.Serialization;
 import org.revenj.server.CommandResult;
 import org.revenj.server.ReadOnlyServerCommand;
+import org.revenj.server.StreamingResult;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
@@ -106,6 +107,16 @@ public class AnalyzeOlapCube implements ReadOnlyServerCommand {
 		}
 		List<String> dimensions = arg.Dimensions == null ? null : Arrays.asList(arg.Dimensions);
 		List<String> facts = arg.Facts == null ? null : Arrays.asList(arg.Facts);
+		if (StreamingResult.isSupported(locator)) {
+			//rows are decoded from the cursor while the response is written
+			StreamingResult result = new StreamingResult(cube.stream(dimensions, facts, arg.Order, specification, arg.Limit, arg.Offset));
+			try {
+				return CommandResult.success("Streaming items", output.serialize(result));
+			} catch (IOException e) {
+				result.close();
+				return new CommandResult<>(null, "Error serializing result.", 500);
+			}
+		}
 		List found = cube.analyze(dimensions, facts, arg.Order, specification, arg.Limit, arg.Offset);
 		try {
 			return CommandResult.success("Found " + found.size() + " items", output.serialize(found));
@@ -5,12 +5,14 @@ import org.revenj.database.postgres.jinq.JinqMetaModel;
 import org.revenj.security.PermissionManager;
 import org.revenj.server.CommandResult;
 import org.revenj.server.ReadOnlyServerCommand;
+import org.revenj.server.StreamingResult;
 import org.revenj.serialization.Serialization;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.security.Principal;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -96,10 +98,12 @@ public class SearchDomainObject implements ReadOnlyServerCommand {
 		} catch (ReflectiveOperationException e) {
 			return CommandResult.badRequest("Error resolving repository for: " + arg.Name + ". Reason: " + e.getMessage());
 		}
+		boolean streaming = StreamingResult.isSupported(locator);
 		List<DataSource> found;
-		if (arg.Order != null && !arg.Order.isEmpty()) {
+		if (streaming || arg.Order != null && !arg.Order.isEmpty()) {
 			Query<DataSource> query = repository.query(specification);
-			for (Map.Entry<String, Boolean> o : arg.Order) {
+			List<Map.Entry<String, Boolean>> order = arg.Order != null ? arg.Order : Collections.emptyList();
+			for (Map.Entry<String, Boolean> o : order) {
 				Method method;
 				try {
 					method = manifest.get().getMethod("get" + o.getKey().substring(0, 1).toUpperCase() + o.getKey().substring(1));
@@ -118,6 +122,23 @@ public class SearchDomainObject implements ReadOnlyServerCommand {
 			if (arg.Limit != null) {
 				query = query.limit(arg.Limit);
 			}
+			if (streaming) {
+				//rows are decoded from the cursor while the response is written
+				StreamingResult result;
+				try {
+					result = new StreamingResult(query.stream());
+				} catch (IOException ex) {
+					return CommandResult.badRequest(ex.getMessage());
+				}
+				//item count is known only after the response has been written,
+				//so unlike the materialized search, message can't report it
+				try {
+					return CommandResult.success("Streaming items", output.serialize(result));
+				} catch (IOException e) {
+					result.close();
+					return new CommandResult<>(null, "Error serializing result.", 500);
+				}
+			}
 			try {
 				found = query.list();
 			} catch (IOException ex) {
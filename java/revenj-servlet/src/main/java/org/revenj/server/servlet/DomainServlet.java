@@ -22,10 +22,31 @@ public class DomainServlet extends HttpServlet {
 	private final ProcessingEngine engine;
 	private final WireSerialization serialization;
 
+	private final Routes getRoutes;
+	private final Routes postRoutes;
+	private final Routes putRoutes;
+
 	public DomainServlet(DomainModel model, ProcessingEngine engine, WireSerialization serialization) {
 		this.model = model;
 		this.engine = engine;
 		this.serialization = serialization;
+		this.getRoutes = new Routes()
+				.add("/search/", this::search)
+				.add("/count/", this::count)
+				.add("/exists/", this::exists)
+				.add("/check/", this::check);
+		this.postRoutes = new Routes()
+				.add("/submit/", this::submit)
+				.add("/queue/", this::queue)
+				.add("/find/", this::findWithArguments)
+				.add("/search/", this::searchWithArguments)
+				.add("/count/", this::countWithArguments)
+				.add("/exists/", this::existsWithArguments);
+		this.putRoutes = new Routes()
+				.add("/find/", this::findWithArguments)
+				.add("/search/", this::searchWithArguments)
+				.add("/count/", this::countWithArguments)
+				.add("/exists/", this::existsWithArguments);
 	}
 
 	DomainServlet(ServiceLocator locator) {
@@ -34,123 +55,113 @@ public class DomainServlet extends HttpServlet {
 
 	@Override
 	protected void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
-		String path = req.getPathInfo();
-		if (path.startsWith("/search/")) {
-			Optional<String> name = Utility.findName(model, path, "/search/", res);
-			if (name.isPresent()) {
-				String spec = req.getParameter("specification");
-				Optional<Object> specification = Utility.specificationFromQuery(name.get(), spec, model, req, res);
-				if (spec != null && !specification.isPresent()) {
-					return;
-				}
-				List<Map.Entry<String, Boolean>> order = Utility.parseOrder(req.getParameter("order"));
-				Integer limit;
-				Integer offset;
-				try {
-					limit = req.getParameter("limit") != null ? Integer.parseInt(req.getParameter("limit")) : null;
-					offset = req.getParameter("offset") != null ? Integer.parseInt(req.getParameter("offset")) : null;
-				} catch (NumberFormatException nfe) {
-					res.sendError(400, "Invalid limit/offset provided: " + nfe.getMessage());
-					return;
-				}
-				SearchDomainObject.Argument arg = new SearchDomainObject.Argument<>(name.get(), spec, specification.orElse(null), offset, limit, order);
-				Utility.execute(engine, req, res, serialization, SearchDomainObject.class, arg);
-			}
-		} else if (path.startsWith("/count/")) {
-			Optional<String> name = Utility.findName(model, path, "/count/", res);
-			if (name.isPresent()) {
-				String spec = req.getParameter("specification");
-				Optional<Object> specification = Utility.specificationFromQuery(name.get(), spec, model, req, res);
-				if (spec != null && !specification.isPresent()) {
-					return;
-				}
-				CountDomainObject.Argument arg = new CountDomainObject.Argument<>(name.get(), spec, specification.orElse(null));
-				Utility.execute(engine, req, res, serialization, CountDomainObject.class, arg);
+		if (!getRoutes.route(req, res)) {
+			res.sendError(405, "Unknown URL path: " + req.getPathInfo());
+		}
+	}
+
+	@Override
+	protected void doPost(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+		if (!postRoutes.route(req, res)) {
+			res.sendError(405, "Unknown URL path: " + req.getPathInfo());
+		}
+	}
+
+	@Override
+	protected void doPut(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+		if (!putRoutes.route(req, res)) {
+			res.sendError(405, "Unknown URL path: " + req.getPathInfo());
+		}
+	}
+
+	private void search(HttpServletRequest req, HttpServletResponse res, String typeName) throws IOException {
+		Optional<String> name = Utility.findName(model, typeName, res);
+		if (name.isPresent()) {
+			String spec = req.getParameter("specification");
+			Optional<Object> specification = Utility.specificationFromQuery(name.get(), spec, model, req, res);
+			if (spec != null && !specification.isPresent()) {
+				return;
 			}
-		} else if (path.startsWith("/exists/")) {
-			Optional<String> name = Utility.findName(model, path, "/exists/", res);
-			if (name.isPresent()) {
-				String spec = req.getParameter("specification");
-				Optional<Object> specification = Utility.specificationFromQuery(name.get(), spec, model, req, res);
-				if (spec != null && !specification.isPresent()) {
-					return;
-				}
-				DomainObjectExists.Argument arg = new DomainObjectExists.Argument<>(name.get(), spec, specification.orElse(null));
-				Utility.execute(engine, req, res, serialization, DomainObjectExists.class, arg);
+			List<Map.Entry<String, Boolean>> order = Utility.parseOrder(req.getParameter("order"));
+			Integer limit;
+			Integer offset;
+			try {
+				limit = req.getParameter("limit") != null ? Integer.parseInt(req.getParameter("limit")) : null;
+				offset = req.getParameter("offset") != null ? Integer.parseInt(req.getParameter("offset")) : null;
+			} catch (NumberFormatException nfe) {
+				res.sendError(400, "Invalid limit/offset provided: " + nfe.getMessage());
+				return;
 			}
-		} else if (path.startsWith("/check/")) {
-			Optional<String> name = Utility.findName(model, path, "/check/", res);
-			if (name.isPresent()) {
-				String uri = req.getParameter("uri");
-				if (uri == null) {
-					res.sendError(400, "Uri parameter not set. Expecting /module.name?uri=value");
-					return;
-				}
-				CheckDomainObject.Argument arg = new CheckDomainObject.Argument(name.get(), uri);
-				Utility.execute(engine, req, res, serialization, CheckDomainObject.class, arg);
+			SearchDomainObject.Argument arg = new SearchDomainObject.Argument<>(name.get(), spec, specification.orElse(null), offset, limit, order);
+			Utility.execute(engine, req, res, serialization, SearchDomainObject.class, arg);
+		}
+	}
+
+	private void count(HttpServletRequest req, HttpServletResponse res, String typeName) throws IOException {
+		Optional<String> name = Utility.findName(model, typeName, res);
+		if (name.isPresent()) {
+			String spec = req.getParameter("specification");
+			Optional<Object> specification = Utility.specificationFromQuery(name.get(), spec, model, req, res);
+			if (spec != null && !specification.isPresent()) {
+				return;
 			}
-		} else {
-			res.sendError(405, "Unknown URL path: " + path);
+			CountDomainObject.Argument arg = new CountDomainObject.Argument<>(name.get(), spec, specification.orElse(null));
+			Utility.execute(engine, req, res, serialization, CountDomainObject.class, arg);
 		}
 	}
 
-	@Override
-	protected void doPost(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
-		String path = req.getPathInfo();
-		if (path.startsWith("/submit/")) {
-			String name = path.substring("/submit/".length(), path.length());
-			Optional<Class<?>> manifest = model.find(name);
-			if (!manifest.isPresent()) {
-				res.sendError(400, "Unknown domain object: " + name);
+	private void exists(HttpServletRequest req, HttpServletResponse res, String typeName) throws IOException {
+		Optional<String> name = Utility.findName(model, typeName, res);
+		if (name.isPresent()) {
+			String spec = req.getParameter("specification");
+			Optional<Object> specification = Utility.specificationFromQuery(name.get(), spec, model, req, res);
+			if (spec != null && !specification.isPresent()) {
 				return;
 			}
-			Optional<?> domainEvent = Utility.deserializeOrBadRequest(serialization, manifest.get(), req, res);
-			if (!domainEvent.isPresent()) return;
-			SubmitEvent.Argument arg = new SubmitEvent.Argument<>(name, domainEvent.get(), Utility.returnInstance(req));
-			Utility.execute(engine, req, res, serialization, SubmitEvent.class, arg);
-		} else if (path.startsWith("/queue/")) {
-			String name = path.substring("/queue/".length(), path.length());
-			Optional<Class<?>> manifest = model.find(name);
-			if (!manifest.isPresent()) {
-				res.sendError(400, "Unknown domain object: " + name);
+			DomainObjectExists.Argument arg = new DomainObjectExists.Argument<>(name.get(), spec, specification.orElse(null));
+			Utility.execute(engine, req, res, serialization, DomainObjectExists.class, arg);
+		}
+	}
+
+	private void check(HttpServletRequest req, HttpServletResponse res, String typeName) throws IOException {
+		Optional<String> name = Utility.findName(model, typeName, res);
+		if (name.isPresent()) {
+			String uri = req.getParameter("uri");
+			if (uri == null) {
+				res.sendError(400, "Uri parameter not set. Expecting /module.name?uri=value");
 				return;
 			}
-			Optional<?> domainEvent = Utility.deserializeOrBadRequest(serialization, manifest.get(), req, res);
-			if (!domainEvent.isPresent()) return;
-			QueueEvent.Argument arg = new QueueEvent.Argument<>(name, domainEvent.get());
-			Utility.execute(engine, req, res, serialization, QueueEvent.class, arg);
-		} else if (path.startsWith("/find/")) {
-			findWithArguments(req, res, path);
-		} else if (path.startsWith("/search/")) {
-			searchWithArguments(req, res, path);
-		} else if (path.startsWith("/count/")) {
-			countWithArguments(req, res, path);
-		} else if (path.startsWith("/exists/")) {
-			existsWithArguments(req, res, path);
+			CheckDomainObject.Argument arg = new CheckDomainObject.Argument(name.get(), uri);
+			Utility.execute(engine, req, res, serialization, CheckDomainObject.class, arg);
+		}
+	}
 
-		} else {
-			res.sendError(405, "Unknown URL path: " + path);
+	private void submit(HttpServletRequest req, HttpServletResponse res, String name) throws IOException {
+		Optional<Class<?>> manifest = model.find(name);
+		if (!manifest.isPresent()) {
+			res.sendError(400, "Unknown domain object: " + name);
+			return;
 		}
+		Optional<?> domainEvent = Utility.deserializeOrBadRequest(serialization, manifest.get(), req, res);
+		if (!domainEvent.isPresent()) return;
+		SubmitEvent.Argument arg = new SubmitEvent.Argument<>(name, domainEvent.get(), Utility.returnInstance(req));
+		Utility.execute(engine, req, res, serialization, SubmitEvent.class, arg);
 	}
 
-	@Override
-	protected void doPut(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
-		String path = req.getPathInfo();
-		if (path.startsWith("/find/")) {
-			findWithArguments(req, res, path);
-		} else if (path.startsWith("/search/")) {
-			searchWithArguments(req, res, path);
-		} else if (path.startsWith("/count/")) {
-			countWithArguments(req, res, path);
-		} else if (path.startsWith("/exists/")) {
-			existsWithArguments(req, res, path);
-		} else {
-			res.sendError(405, "Unknown URL path: " + path);
+	private void queue(HttpServletRequest req, HttpServletResponse res, String name) throws IOException {
+		Optional<Class<?>> manifest = model.find(name);
+		if (!manifest.isPresent()) {
+			res.sendError(400, "Unknown domain object: " + name);
+			return;
 		}
+		Optional<?> domainEvent = Utility.deserializeOrBadRequest(serialization, manifest.get(), req, res);
+		if (!domainEvent.isPresent()) return;
+		QueueEvent.Argument arg = new QueueEvent.Argument<>(name, domainEvent.get());
+		Utility.execute(engine, req, res, serialization, QueueEvent.class, arg);
 	}
 
-	private void existsWithArguments(HttpServletRequest req, HttpServletResponse res, String path) throws IOException {
-		Optional<String> name = Utility.findName(model, path, "/exists/", res);
+	private void existsWithArguments(HttpServletRequest req, HttpServletResponse res, String typeName) throws IOException {
+		Optional<String> name = Utility.findName(model, typeName, res);
 		if (name.isPresent()) {
 			executeWithSpecification(
 					DomainObjectExists.class,
@@ -161,8 +172,8 @@ public class DomainServlet extends HttpServlet {
 		}
 	}
 
-	private void countWithArguments(HttpServletRequest req, HttpServletResponse res, String path) throws IOException {
-		Optional<String> name = Utility.findName(model, path, "/count/", res);
+	private void countWithArguments(HttpServletRequest req, HttpServletResponse res, String typeName) throws IOException {
+		Optional<String> name = Utility.findName(model, typeName, res);
 		if (name.isPresent()) {
 			executeWithSpecification(
 					CountDomainObject.class,
@@ -173,8 +184,8 @@ public class DomainServlet extends HttpServlet {
 		}
 	}
 
-	private void searchWithArguments(HttpServletRequest req, HttpServletResponse res, String path) throws IOException {
-		final Optional<String> name = Utility.findName(model, path, "/search/", res);
+	private void searchWithArguments(HttpServletRequest req, HttpServletResponse res, String typeName) throws IOException {
+		final Optional<String> name = Utility.findName(model, typeName, res);
 		if (name.isPresent()) {
 			List<Map.Entry<String, Boolean>> order = Utility.parseOrder(req.getParameter("order"));
 			Integer limit;
@@ -195,8 +206,8 @@ public class DomainServlet extends HttpServlet {
 		}
 	}
 
-	private void findWithArguments(HttpServletRequest req, HttpServletResponse res, String path) throws IOException {
-		Optional<String> name = Utility.findName(model, path, "/find/", res);
+	private void findWithArguments(HttpServletRequest req, HttpServletResponse res, String typeName) throws IOException {
+		Optional<String> name = Utility.findName(model, typeName, res);
 		if (name.isPresent()) {
 			Optional<String[]> uris = Utility.deserializeOrBadRequest(serialization, String[].class, req, res);
 			if (!uris.isPresent()) return;
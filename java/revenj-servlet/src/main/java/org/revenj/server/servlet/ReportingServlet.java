@@ -20,6 +20,9 @@ public class ReportingServlet extends HttpServlet {
 	private final ProcessingEngine engine;
 	private final WireSerialization serialization;
 
+	private final Routes getRoutes;
+	private final Routes putRoutes;
+
 	public ReportingServlet(
 			DomainModel model,
 			ProcessingEngine engine,
@@ -27,6 +30,8 @@ public class ReportingServlet extends HttpServlet {
 		this.model = model;
 		this.engine = engine;
 		this.serialization = serialization;
+		this.getRoutes = new Routes().add("/report/", this::reportFromQuery);
+		this.putRoutes = new Routes().add("/report/", this::reportFromBody);
 	}
 
 	ReportingServlet(ServiceLocator locator) {
@@ -35,38 +40,38 @@ public class ReportingServlet extends HttpServlet {
 
 	@Override
 	protected void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
-		String path = req.getPathInfo();
-		if (path.startsWith("/report/")) {
-			String name = path.substring("/report/".length(), path.length());
-			Optional<Class<?>> manifest = model.find(name);
-			if (!manifest.isPresent()) {
-				res.sendError(400, "Unknown report object: " + name);
-				return;
-			}
-			final Optional<Object> report = Utility.objectFromQuery(manifest.get(), req, res);
-			if (report.isPresent()) {
-				PopulateReport.Argument<Object> arg = new PopulateReport.Argument<>(report.get(), name);
-				Utility.execute(engine, req, res, serialization, PopulateReport.class, arg);
-			}
-		} else {
-			res.sendError(405, "Unknown URL path: " + path);
+		if (!getRoutes.route(req, res)) {
+			res.sendError(405, "Unknown URL path: " + req.getPathInfo());
 		}
 	}
 
 	@Override
 	protected void doPut(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
-		String path = req.getPathInfo();
-		if (path.startsWith("/report/")) {
-			final Optional<Class<?>> manifest = Utility.findType(model, path, "/report/", res);
-			if (manifest.isPresent()) {
-				String name = path.substring("/report/".length(), path.length());
-				Optional<?> report = Utility.deserializeOrBadRequest(serialization, manifest.get(), req, res);
-				if (!report.isPresent()) return;
-				PopulateReport.Argument<Object> arg = new PopulateReport.Argument<>(report.get(), name);
-				Utility.execute(engine, req, res, serialization, PopulateReport.class, arg);
-			}
-		} else {
-			res.sendError(405, "Unknown URL path: " + path);
+		if (!putRoutes.route(req, res)) {
+			res.sendError(405, "Unknown URL path: " + req.getPathInfo());
+		}
+	}
+
+	private void reportFromQuery(HttpServletRequest req, HttpServletResponse res, String name) throws IOException {
+		Optional<Class<?>> manifest = model.find(name);
+		if (!manifest.isPresent()) {
+			res.sendError(400, "Unknown report object: " + name);
+			return;
+		}
+		final Optional<Object> report = Utility.objectFromQuery(manifest.get(), req, res);
+		if (report.isPresent()) {
+			PopulateReport.Argument<Object> arg = new PopulateReport.Argument<>(report.get(), name);
+			Utility.execute(engine, req, res, serialization, PopulateReport.class, arg);
+		}
+	}
+
+	private void reportFromBody(HttpServletRequest req, HttpServletResponse res, String name) throws IOException {
+		final Optional<Class<?>> manifest = Utility.findType(model, name, res);
+		if (manifest.isPresent()) {
+			Optional<?> report = Utility.deserializeOrBadRequest(serialization, manifest.get(), req, res);
+			if (!report.isPresent()) return;
+			PopulateReport.Argument<Object> arg = new PopulateReport.Argument<>(report.get(), name);
+			Utility.execute(engine, req, res, serialization, PopulateReport.class, arg);
 		}
 	}
 }
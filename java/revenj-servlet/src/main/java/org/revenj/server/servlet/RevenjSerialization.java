@@ -8,6 +8,7 @@ import org.revenj.serialization.Serialization;
 import org.revenj.patterns.ServiceLocator;
 import org.revenj.serialization.WireSerialization;
 import org.revenj.serialization.xml.XmlJaxbSerialization;
+import org.revenj.server.StreamingResult;
 import org.w3c.dom.Element;
 
 import java.io.ByteArrayInputStream;
@@ -15,6 +16,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
 
 final class RevenjSerialization implements WireSerialization {
@@ -44,29 +48,60 @@ final class RevenjSerialization implements WireSerialization {
 		this.xml = xml;
 	}
 
-	private static final ThreadLocal<JsonWriter> threadWriter = new ThreadLocal<JsonWriter>() {
-		@Override
-		protected JsonWriter initialValue() {
-			return new JsonWriter();
-		}
-	};
-	private static final ThreadLocal<byte[]> threadBuffer = new ThreadLocal<byte[]>() {
-		@Override
-		protected byte[] initialValue() {
-			return new byte[65536];
-		}
-	};
+	private static final int STREAM_FLUSH_SIZE = 16384;
 
 	@Override
 	public String serialize(Object value, OutputStream stream, String accept) throws IOException {
+		if (value instanceof StreamingResult) {
+			return serializeStream((StreamingResult) value, stream, accept);
+		}
 		if (accept != null && accept.startsWith("application/xml")) {
 			xml.serializeTo(value, stream);
 			return "application/xml; charset=UTF-8";
 		}
-		JsonWriter writer = threadWriter.get();
-		writer.reset();
-		json.serialize(writer, value);
-		writer.toStream(stream);
+		JsonWriter writer = json.acquireWriter();
+		try {
+			json.serialize(writer, value);
+			writer.toStream(stream);
+		} finally {
+			json.releaseWriter(writer);
+		}
+		return "application/json";
+	}
+
+	private String serializeStream(StreamingResult value, OutputStream stream, String accept) throws IOException {
+		Iterator<?> iterator = value.iterator();
+		//servlets request streaming only for JSON, but lazy results can still be serialized into XML
+		if (accept != null && accept.startsWith("application/xml")) {
+			List<Object> items = new ArrayList<>();
+			while (iterator.hasNext()) {
+				items.add(iterator.next());
+			}
+			xml.serializeTo(items, stream);
+			return "application/xml; charset=UTF-8";
+		}
+		//items are written as they are decoded. Writer is flushed after each chunk,
+		//so response is sent with chunked encoding and only a single chunk is kept in memory
+		JsonWriter writer = json.acquireWriter();
+		try {
+			writer.writeByte(JsonWriter.ARRAY_START);
+			boolean first = true;
+			while (iterator.hasNext()) {
+				if (!first) {
+					writer.writeByte(JsonWriter.COMMA);
+				}
+				first = false;
+				json.serialize(writer, iterator.next());
+				if (writer.size() > STREAM_FLUSH_SIZE) {
+					writer.toStream(stream);
+					writer.reset();
+				}
+			}
+			writer.writeByte(JsonWriter.ARRAY_END);
+			writer.toStream(stream);
+		} finally {
+			json.releaseWriter(writer);
+		}
 		return "application/json";
 	}
 
@@ -84,7 +119,12 @@ final class RevenjSerialization implements WireSerialization {
 		if (contentType != null && contentType.startsWith("application/xml")) {
 			return xml.deserialize(type, stream);
 		}
-		return json.deserialize(type, stream, threadBuffer.get());
+		byte[] buffer = json.acquireBuffer();
+		try {
+			return json.deserialize(type, stream, buffer);
+		} finally {
+			json.releaseBuffer(buffer);
+		}
 	}
 
 	@Override
@@ -0,0 +1,94 @@
+package org.revenj.server.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Routing table for servlet paths, built once when servlet is created.
+ * Path prefixes are kept in a character trie, so the handler is found in a single pass over the path,
+ * without testing each prefix in turn. Remainder of the path (usually domain object name)
+ * is passed to the handler.
+ * Table must not be changed after servlet starts processing requests.
+ */
+final class Routes {
+
+	@FunctionalInterface
+	interface Handler {
+		void handle(HttpServletRequest req, HttpServletResponse res, String name) throws IOException;
+	}
+
+	private static final class Node {
+		private char[] keys = new char[0];
+		private Node[] children = new Node[0];
+		private Handler handler;
+
+		Node find(char c) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] == c) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		Node add(char c) {
+			Node child = find(c);
+			if (child == null) {
+				child = new Node();
+				keys = Arrays.copyOf(keys, keys.length + 1);
+				children = Arrays.copyOf(children, children.length + 1);
+				keys[keys.length - 1] = c;
+				children[children.length - 1] = child;
+			}
+			return child;
+		}
+	}
+
+	private final Node root = new Node();
+
+	Routes add(String prefix, Handler handler) {
+		if (prefix == null || prefix.length() == 0) throw new IllegalArgumentException("prefix can't be empty");
+		if (handler == null) throw new IllegalArgumentException("handler can't be null");
+		Node node = root;
+		for (int i = 0; i < prefix.length(); i++) {
+			if (node.handler != null) {
+				throw new IllegalArgumentException("Prefix " + prefix + " is shadowed by an existing route");
+			}
+			node = node.add(prefix.charAt(i));
+		}
+		if (node.handler != null || node.keys.length > 0) {
+			throw new IllegalArgumentException("Prefix " + prefix + " conflicts with an existing route");
+		}
+		node.handler = handler;
+		return this;
+	}
+
+	/**
+	 * Process request with the handler registered for the path prefix.
+	 *
+	 * @param req request
+	 * @param res response
+	 * @return false when there is no route for the request path
+	 * @throws IOException handler error
+	 */
+	boolean route(HttpServletRequest req, HttpServletResponse res) throws IOException {
+		String path = req.getPathInfo();
+		if (path == null) {
+			return false;
+		}
+		Node node = root;
+		for (int i = 0; i < path.length(); i++) {
+			node = node.find(path.charAt(i));
+			if (node == null) {
+				return false;
+			}
+			if (node.handler != null) {
+				node.handler.handle(req, res, path.substring(i + 1));
+				return true;
+			}
+		}
+		return false;
+	}
+}
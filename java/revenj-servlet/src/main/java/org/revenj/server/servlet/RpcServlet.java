@@ -3,16 +3,14 @@ package org.revenj.server.servlet;
 import org.revenj.patterns.ServiceLocator;
 import org.revenj.serialization.WireSerialization;
 import org.revenj.server.ProcessingEngine;
-import org.revenj.server.ProcessingResult;
-import org.revenj.server.ServerCommandDescription;
+import org.revenj.server.RequestBody;
 
 import javax.servlet.ServletException;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.*;
-import java.nio.charset.Charset;
+import java.io.IOException;
 import java.util.Optional;
 
 public class RpcServlet extends HttpServlet {
@@ -41,12 +39,9 @@ public class RpcServlet extends HttpServlet {
 			res.sendError(404, "Unknown command: " + name);
 			return;
 		}
-		String argument = Utility.readString(stream, req.getCharacterEncoding());
-		ServerCommandDescription[] scd = new ServerCommandDescription[]{
-				new ServerCommandDescription<>(null, command.get(), argument)
-		};
-		ProcessingResult<Object> result = engine.execute(String.class, Object.class, scd, Utility.toPrincipal(req));
-		Utility.returnResponse(req, res, serialization, result);
+		//command will deserialize its argument directly from the request stream
+		RequestBody argument = stream != null ? new RequestBody(stream, req.getContentType(), req.getCharacterEncoding()) : null;
+		Utility.execute(engine, req, res, serialization, command.get(), argument);
 	}
 
 	@Override
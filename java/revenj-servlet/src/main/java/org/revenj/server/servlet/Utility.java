@@ -7,10 +7,10 @@ import org.revenj.server.CommandResult;
 import org.revenj.server.ProcessingEngine;
 import org.revenj.server.ProcessingResult;
 import org.revenj.server.ServerCommandDescription;
+import org.revenj.server.StreamingResult;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Method;
@@ -20,9 +20,12 @@ import java.nio.charset.Charset;
 import java.security.Principal;
 import java.time.*;
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 abstract class Utility {
 	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final Logger LOGGER = Logger.getLogger(Utility.class.getName());
 
 	static void execute(
 			ProcessingEngine engine,
@@ -34,8 +37,56 @@ abstract class Utility {
 		ServerCommandDescription[] scd = new ServerCommandDescription[]{
 				new ServerCommandDescription<>(null, commandType, argument)
 		};
-		ProcessingResult<Object> result = engine.execute(Object.class, Object.class, scd, toPrincipal(request));
-		returnResponse(request, response, serialization, result);
+		ProcessingResult<Object>[] written = new ProcessingResult[1];
+		ProcessingResult<Object> result;
+		try {
+			result = engine.execute(
+					Object.class,
+					Object.class,
+					scd,
+					toPrincipal(request),
+					processed -> {
+						written[0] = processed;
+						returnResponse(request, response, serialization, processed);
+					},
+					streamingRequested(request));
+		} catch (IOException | RuntimeException e) {
+			abortResponse(response, e);
+			return;
+		}
+		if (result != written[0]) {
+			//processing failed after the response has been written, eg. transaction could not be finished
+			abortResponse(response, new IOException(result.message));
+		}
+	}
+
+	/**
+	 * Results are streamed only when client asks for it with the x-revenj-stream: true header.
+	 * Streaming search runs within a read only transaction and doesn't report the number of found items,
+	 * so it's not used by default. XML is not written item by item, so streaming is used only for JSON.
+	 */
+	static boolean streamingRequested(HttpServletRequest request) {
+		String accept = request.getHeader("accept");
+		return (accept == null || !accept.startsWith("application/xml"))
+				&& "true".equals(request.getHeader("x-revenj-stream"));
+	}
+
+	/**
+	 * Response can fail while it is being written, eg. when cursor used for streaming breaks.
+	 * If nothing has been sent yet, response is replaced with the error.
+	 * Otherwise, status has already been sent, so request fails and container drops the connection,
+	 * which lets the client know the response is incomplete.
+	 */
+	private static void abortResponse(HttpServletResponse response, Exception error) throws IOException {
+		LOGGER.log(Level.SEVERE, "Error writing response", error);
+		if (response.isCommitted()) {
+			throw error instanceof IOException ? (IOException) error : new IOException(error.getMessage(), error);
+		}
+		response.reset();
+		response.setStatus(500);
+		response.setContentType("text/plain; charset=UTF-8");
+		String message = error.getMessage();
+		response.getOutputStream().write((message != null ? message : error.toString()).getBytes(UTF8));
 	}
 
 	static void returnResponse(HttpServletRequest request, HttpServletResponse response, WireSerialization serialization, ProcessingResult<Object> result) throws IOException {
@@ -43,7 +94,14 @@ abstract class Utility {
 			CommandResult<Object> command = result.executedCommandResults[0].result;
 			response.setStatus(command.status);
 			response.setHeader("X-Duration", BigDecimal.valueOf(result.duration, 3).toPlainString());
-			if (command.data != null) {
+			if (command.data instanceof StreamingResult) {
+				//response is committed while streaming, so content type must be set upfront
+				String accept = request.getHeader("accept");
+				response.setContentType(accept != null && accept.startsWith("application/xml")
+						? "application/xml; charset=UTF-8"
+						: "application/json");
+				serialization.serialize(command.data, response.getOutputStream(), accept);
+			} else if (command.data != null) {
 				response.setContentType(serialization.serialize(command.data, response.getOutputStream(), request.getHeader("accept")));
 			} else if (result.message != null) {
 				try {
@@ -63,22 +121,6 @@ abstract class Utility {
 		}
 	}
 
-	static String readString(InputStream stream, String encoding) throws IOException {
-		if (stream == null) {
-			return null;
-		}
-		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		final byte[] buffer = new byte[1024];
-		int len;
-		while ((len = stream.read(buffer)) != -1) {
-			baos.write(buffer, 0, len);
-		}
-		if (baos.size() == 0) {
-			return null;
-		}
-		return new String(baos.toByteArray(), encoding != null && encoding.length() > 0 ? encoding : "UTF-8");
-	}
-
 	public static Principal toPrincipal(HttpServletRequest req) {
 		Principal principal = req.getUserPrincipal();
 		return principal != null && !(principal instanceof UserPrincipal)
@@ -86,8 +128,7 @@ abstract class Utility {
 				: principal;
 	}
 
-	static Optional<String> findName(DomainModel model, String path, String prefix, HttpServletResponse res) throws IOException {
-		String name = path.substring(prefix.length(), path.length());
+	static Optional<String> findName(DomainModel model, String name, HttpServletResponse res) throws IOException {
 		Optional<Class<?>> manifest = model.find(name);
 		if (!manifest.isPresent()) {
 			res.sendError(400, "Unknown domain object: " + name);
@@ -96,8 +137,7 @@ abstract class Utility {
 		return Optional.of(name);
 	}
 
-	static Optional<Class<?>> findType(DomainModel model, String path, String prefix, HttpServletResponse res) throws IOException {
-		String name = path.substring(prefix.length(), path.length());
+	static Optional<Class<?>> findType(DomainModel model, String name, HttpServletResponse res) throws IOException {
 		Optional<Class<?>> manifest = model.find(name);
 		if (!manifest.isPresent()) {
 			res.sendError(400, "Unknown domain object: " + name);
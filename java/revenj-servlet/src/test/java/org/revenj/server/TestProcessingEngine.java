@@ -15,4 +15,14 @@ public class TestProcessingEngine {
 			ServerCommand ...commands) throws Exception {
 		return new ProcessingEngine(container, dataSource, serialization, permissions, commands);
 	}
+
+	public static ProcessingEngine create(
+			int parallelism,
+			Container container,
+			DataSource dataSource,
+			WireSerialization serialization,
+			PermissionManager permissions,
+			ServerCommand ...commands) throws Exception {
+		return new ProcessingEngine(container, dataSource, serialization, permissions, commands, parallelism);
+	}
 }
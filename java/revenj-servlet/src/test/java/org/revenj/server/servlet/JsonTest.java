@@ -4,8 +4,12 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.revenj.TreePath;
 import org.revenj.Utils;
+import org.revenj.serialization.xml.JaxbConfiguration;
+import org.revenj.serialization.xml.XmlJaxbSerialization;
+import org.revenj.server.StreamingResult;
 import org.w3c.dom.Element;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -15,6 +19,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
 
@@ -57,6 +63,27 @@ public class JsonTest {
 		Assert.assertEquals("root", value.getNodeName());
 	}
 
+	@Test
+	public void streamingResultIsWrittenAsArray() throws IOException {
+		RevenjSerialization serialization = new RevenjSerialization(
+				type -> {
+					throw new ReflectiveOperationException("Not registered");
+				},
+				new XmlJaxbSerialization(new JaxbConfiguration[0]));
+		AtomicBoolean closed = new AtomicBoolean();
+		StreamingResult result = new StreamingResult(IntStream.range(0, 5000).boxed().onClose(() -> closed.set(true)));
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		Assert.assertEquals("application/json", serialization.serialize(result, os, null));
+		result.close();
+		Assert.assertTrue(closed.get());
+		List<Integer> values = (List<Integer>) serialization.deserialize(Utils.makeGenericType(List.class, Integer.class), os.toByteArray(), os.size(), null);
+		Assert.assertEquals(5000, values.size());
+		Assert.assertEquals(4999, values.get(4999).intValue());
+		os.reset();
+		serialization.serialize(new StreamingResult(IntStream.range(0, 0).boxed()), os, null);
+		Assert.assertEquals("[]", os.toString("UTF-8"));
+	}
+
 	static class WithXml {
 		public String URI;
 		public List<Element> xmls;
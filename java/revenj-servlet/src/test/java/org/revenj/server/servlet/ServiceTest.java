@@ -6,13 +6,19 @@ import org.mockito.Mockito;
 import org.revenj.extensibility.Container;
 import org.revenj.patterns.DomainModel;
 import org.revenj.patterns.Query;
+import org.revenj.patterns.ServiceLocator;
 import org.revenj.patterns.Specification;
 import org.revenj.security.PermissionManager;
 import org.revenj.serialization.Serialization;
 import org.revenj.serialization.WireSerialization;
 import org.revenj.serialization.json.DslJsonSerialization;
+import org.revenj.server.CommandResult;
 import org.revenj.server.ProcessingEngine;
+import org.revenj.server.ProcessingResult;
+import org.revenj.server.ReadOnlyServerCommand;
+import org.revenj.server.ServerCommandDescription;
 import org.revenj.server.ServerService;
+import org.revenj.server.StreamingResult;
 import org.revenj.server.TestProcessingEngine;
 import org.revenj.server.commands.ExecuteService;
 
@@ -24,8 +30,13 @@ import java.io.*;
 import java.lang.reflect.Type;
 import java.security.Principal;
 import java.sql.Connection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 public class ServiceTest extends Mockito {
 
@@ -188,4 +199,372 @@ public class ServiceTest extends Mockito {
 
 		Assert.assertEquals("{\"message\":\"message: some\",\"result\":10}", outputStream.stream.toString("UTF-8"));
 	}
+
+	@Test
+	public void rpcArgumentIsReadFromStream() throws Exception {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		Container container = mock(Container.class);
+		DataSource dataSource = mock(DataSource.class);
+		Connection connection = mock(Connection.class);
+		PermissionManager permissions = new PermissionManagerMock();
+		WireSerialization serialization = new SerializationMock();
+
+		InStream inputStream = new InStream(
+				"{\"Name\":\"org.revenj.server.servlet.ServiceTest$MyService\",\"Data\":\"{\\\"text\\\":\\\"rpc\\\",\\\"number\\\":21}\"}".getBytes("UTF-8"));
+		OutStream outputStream = new OutStream();
+		when(request.getPathInfo()).thenReturn("/ExecuteService");
+		when(request.getInputStream()).thenReturn(inputStream);
+		when(dataSource.getConnection()).thenReturn(connection);
+		when(response.getOutputStream()).thenReturn(outputStream);
+		when(container.createScope()).thenReturn(container);
+		when(container.resolve((Type) MyService.class)).thenReturn(new MyService());
+
+		ProcessingEngine engine = TestProcessingEngine.create(
+			container,
+			dataSource,
+			serialization,
+			permissions,
+			new ExecuteService(Thread.currentThread().getContextClassLoader(), permissions));
+		RpcServlet servlet = new RpcServlet(engine, serialization);
+		servlet.doPost(request, response);
+
+		Assert.assertEquals("{\"message\":\"message: rpc\",\"result\":42}", outputStream.stream.toString("UTF-8"));
+	}
+
+	@Test
+	public void rpcArgumentHonorsCharacterEncoding() throws Exception {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		Container container = mock(Container.class);
+		DataSource dataSource = mock(DataSource.class);
+		PermissionManager permissions = new PermissionManagerMock();
+		WireSerialization serialization = new SerializationMock();
+
+		InStream inputStream = new InStream(
+				"{\"Name\":\"org.revenj.server.servlet.ServiceTest$MyService\",\"Data\":\"{\\\"text\\\":\\\"caf\u00e9\\\",\\\"number\\\":1}\"}".getBytes("ISO-8859-1"));
+		OutStream outputStream = new OutStream();
+		when(request.getPathInfo()).thenReturn("/ExecuteService");
+		when(request.getInputStream()).thenReturn(inputStream);
+		when(request.getCharacterEncoding()).thenReturn("ISO-8859-1");
+		when(dataSource.getConnection()).thenReturn(mock(Connection.class));
+		when(response.getOutputStream()).thenReturn(outputStream);
+		when(container.createScope()).thenReturn(container);
+		when(container.resolve((Type) MyService.class)).thenReturn(new MyService());
+
+		ProcessingEngine engine = TestProcessingEngine.create(
+			container,
+			dataSource,
+			serialization,
+			permissions,
+			new ExecuteService(Thread.currentThread().getContextClassLoader(), permissions));
+		RpcServlet servlet = new RpcServlet(engine, serialization);
+		servlet.doPost(request, response);
+
+		Assert.assertEquals("{\"message\":\"message: caf\u00e9\",\"result\":2}", outputStream.stream.toString("UTF-8"));
+	}
+
+	public static class ArgumentEcho implements ReadOnlyServerCommand {
+		@Override
+		public <TInput, TOutput> CommandResult<TOutput> execute(
+				ServiceLocator locator,
+				Serialization<TInput> input,
+				Serialization<TOutput> output,
+				TInput data,
+				Principal principal) {
+			try {
+				return CommandResult.success("ok", (TOutput) input.deserialize(MyInputArg.class, data));
+			} catch (IOException e) {
+				return CommandResult.badRequest(e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void passThroughTextIsNotParsed() throws Exception {
+		Container container = mock(Container.class);
+		DataSource dataSource = mock(DataSource.class);
+		when(dataSource.getConnection()).thenReturn(mock(Connection.class));
+		when(container.createScope()).thenReturn(container);
+		ProcessingEngine engine = TestProcessingEngine.create(
+			container,
+			dataSource,
+			new SerializationMock(),
+			new PermissionManagerMock(),
+			new ArgumentEcho());
+		String text = "{\"text\":\"some\",\"number\":5}";
+		ServerCommandDescription[] scd = new ServerCommandDescription[]{
+				new ServerCommandDescription<>(null, ArgumentEcho.class, text)
+		};
+		ProcessingResult<Object> result = engine.execute(Object.class, Object.class, scd, null);
+		Assert.assertEquals(200, result.status);
+		Assert.assertSame(text, result.executedCommandResults[0].result.data);
+	}
+
+	@Test
+	public void unknownRoutesAreRejected() throws Exception {
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		PermissionManager permissions = new PermissionManagerMock();
+		WireSerialization serialization = new SerializationMock();
+		ProcessingEngine engine = TestProcessingEngine.create(
+			mock(Container.class),
+			mock(DataSource.class),
+			serialization,
+			permissions,
+			new ExecuteService(Thread.currentThread().getContextClassLoader(), permissions));
+		StandardServlet servlet = new StandardServlet(mock(DomainModel.class), engine, serialization);
+		for (String path : new String[]{"/exec/", "/executeX", "/olap/x", null}) {
+			HttpServletRequest request = mock(HttpServletRequest.class);
+			when(request.getPathInfo()).thenReturn(path);
+			servlet.doPost(request, response);
+			verify(response).sendError(405, "Unknown URL path: " + path);
+		}
+		Assert.assertTrue(engine.findCommand("ExecuteService").isPresent());
+		Assert.assertTrue(engine.findCommand(ExecuteService.class.getName()).isPresent());
+		Assert.assertFalse(engine.findCommand("executeservice").isPresent());
+		Assert.assertFalse(engine.findCommand(null).isPresent());
+	}
+
+	public static class SlowLookup implements ReadOnlyServerCommand {
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger maxActive = new AtomicInteger();
+		final CountDownLatch overlap = new CountDownLatch(2);
+		final AtomicInteger timeouts = new AtomicInteger();
+		final AtomicInteger boundPrincipals = new AtomicInteger();
+
+		@Override
+		public <TInput, TOutput> CommandResult<TOutput> execute(
+				ServiceLocator locator,
+				Serialization<TInput> input,
+				Serialization<TOutput> output,
+				TInput data,
+				Principal principal) {
+			if (PermissionManager.boundPrincipal.get() == principal) {
+				boundPrincipals.incrementAndGet();
+			}
+			int current = active.incrementAndGet();
+			maxActive.accumulateAndGet(current, Math::max);
+			try {
+				//first two commands wait for each other, so they must be executed concurrently
+				overlap.countDown();
+				if (!overlap.await(5, TimeUnit.SECONDS)) {
+					timeouts.incrementAndGet();
+				}
+			} catch (InterruptedException ignore) {
+			} finally {
+				active.decrementAndGet();
+			}
+			if ("fail".equals(data)) {
+				return CommandResult.badRequest("failed lookup");
+			}
+			return CommandResult.success("ok", (TOutput) data);
+		}
+	}
+
+	@Test
+	public void readOnlyBatchIsExecutedConcurrently() throws Exception {
+		Container container = mock(Container.class);
+		DataSource dataSource = mock(DataSource.class);
+		when(dataSource.getConnection()).thenReturn(mock(Connection.class));
+		when(container.createScope()).thenReturn(container);
+		SlowLookup lookup = new SlowLookup();
+		Principal principal = () -> "user";
+		try (ProcessingEngine engine = TestProcessingEngine.create(
+			4,
+			container,
+			dataSource,
+			new SerializationMock(),
+			new PermissionManagerMock(),
+			lookup)) {
+			ServerCommandDescription<Object>[] batch = new ServerCommandDescription[8];
+			for (int i = 0; i < batch.length; i++) {
+				batch[i] = new ServerCommandDescription<>("r" + i, SlowLookup.class, "value " + i);
+			}
+			ProcessingResult<Object> result = engine.execute(Object.class, Object.class, batch, principal);
+			Assert.assertEquals(200, result.status);
+			Assert.assertEquals(8, result.executedCommandResults.length);
+			for (int i = 0; i < batch.length; i++) {
+				Assert.assertEquals("r" + i, result.executedCommandResults[i].requestID);
+				Assert.assertEquals("value " + i, result.executedCommandResults[i].result.data);
+			}
+			Assert.assertEquals(0, lookup.timeouts.get());
+			Assert.assertTrue(lookup.maxActive.get() > 1);
+			Assert.assertTrue(lookup.maxActive.get() <= 4);
+			Assert.assertEquals(8, lookup.boundPrincipals.get());
+			verify(dataSource, atMost(4)).getConnection();
+
+			batch[2] = new ServerCommandDescription<>("r2", SlowLookup.class, "fail");
+			result = engine.execute(Object.class, Object.class, batch, principal);
+			Assert.assertEquals(400, result.status);
+			Assert.assertEquals("failed lookup", result.message);
+		}
+	}
+
+	@Test
+	public void failedWorkerRollsBackOtherWorkers() throws Exception {
+		Container container = mock(Container.class);
+		DataSource dataSource = mock(DataSource.class);
+		Connection first = mock(Connection.class);
+		Connection second = mock(Connection.class);
+		when(dataSource.getConnection()).thenReturn(first, second);
+		when(container.createScope()).thenReturn(container);
+		try (ProcessingEngine engine = TestProcessingEngine.create(
+			2,
+			container,
+			dataSource,
+			new SerializationMock(),
+			new PermissionManagerMock(),
+			new SlowLookup())) {
+			ServerCommandDescription<Object>[] batch = new ServerCommandDescription[]{
+				new ServerCommandDescription<>("r0", SlowLookup.class, "value"),
+				new ServerCommandDescription<>("r1", SlowLookup.class, "fail")
+			};
+			ProcessingResult<Object> result = engine.execute(Object.class, Object.class, batch, null);
+			Assert.assertEquals(400, result.status);
+			for (Connection connection : new Connection[]{first, second}) {
+				verify(connection).setAutoCommit(false);
+				verify(connection).rollback();
+				verify(connection, never()).commit();
+				verify(connection).setAutoCommit(true);
+				verify(connection).close();
+			}
+		}
+	}
+
+	@Test
+	public void concurrentWorkersCommitTogether() throws Exception {
+		Container container = mock(Container.class);
+		DataSource dataSource = mock(DataSource.class);
+		Connection first = mock(Connection.class);
+		Connection second = mock(Connection.class);
+		when(dataSource.getConnection()).thenReturn(first, second);
+		when(container.createScope()).thenReturn(container);
+		try (ProcessingEngine engine = TestProcessingEngine.create(
+			2,
+			container,
+			dataSource,
+			new SerializationMock(),
+			new PermissionManagerMock(),
+			new SlowLookup())) {
+			ServerCommandDescription<Object>[] batch = new ServerCommandDescription[]{
+				new ServerCommandDescription<>("r0", SlowLookup.class, "value 0"),
+				new ServerCommandDescription<>("r1", SlowLookup.class, "value 1")
+			};
+			ProcessingResult<Object> result = engine.execute(Object.class, Object.class, batch, null);
+			Assert.assertEquals(200, result.status);
+			for (Connection connection : new Connection[]{first, second}) {
+				verify(connection).commit();
+				verify(connection, never()).rollback();
+				verify(connection).close();
+			}
+		}
+	}
+
+	public static class BrokenCursor implements ReadOnlyServerCommand {
+		@Override
+		public <TInput, TOutput> CommandResult<TOutput> execute(
+				ServiceLocator locator,
+				Serialization<TInput> input,
+				Serialization<TOutput> output,
+				TInput data,
+				Principal principal) {
+			Stream<Object> items = Stream.of(1, 2).map(i -> {
+				if (i == 2) throw new IllegalStateException("cursor failed");
+				return i;
+			});
+			return CommandResult.success("Streaming items", (TOutput) new StreamingResult(items));
+		}
+	}
+
+	static class StreamingSerializationMock extends SerializationMock {
+		@Override
+		public String serialize(Object value, OutputStream stream, String accept) throws IOException {
+			Iterator<?> iterator = ((StreamingResult) value).iterator();
+			while (iterator.hasNext()) {
+				stream.write(iterator.next().toString().getBytes("UTF-8"));
+			}
+			return "application/json";
+		}
+	}
+
+	@Test
+	public void streamingFailureAbortsResponse() throws Exception {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		Container container = mock(Container.class);
+		DataSource dataSource = mock(DataSource.class);
+		when(dataSource.getConnection()).thenReturn(mock(Connection.class));
+		when(container.createScope()).thenReturn(container);
+		OutStream outputStream = new OutStream();
+		when(response.getOutputStream()).thenReturn(outputStream);
+		WireSerialization serialization = new StreamingSerializationMock();
+		ProcessingEngine engine = TestProcessingEngine.create(
+			container,
+			dataSource,
+			serialization,
+			new PermissionManagerMock(),
+			new BrokenCursor());
+
+		doAnswer(invocation -> {
+			outputStream.stream.reset();
+			return null;
+		}).when(response).reset();
+		Utility.execute(engine, request, response, serialization, BrokenCursor.class, null);
+		verify(response).reset();
+		verify(response).setStatus(500);
+		Assert.assertEquals("cursor failed", outputStream.stream.toString("UTF-8"));
+
+		when(response.isCommitted()).thenReturn(true);
+		try {
+			Utility.execute(engine, request, response, serialization, BrokenCursor.class, null);
+			Assert.fail("Expecting IOException");
+		} catch (IOException e) {
+			Assert.assertEquals("cursor failed", e.getMessage());
+		}
+		verify(response, times(1)).reset();
+	}
+
+	public static class StreamingLookup implements ReadOnlyServerCommand {
+		@Override
+		public <TInput, TOutput> CommandResult<TOutput> execute(
+				ServiceLocator locator,
+				Serialization<TInput> input,
+				Serialization<TOutput> output,
+				TInput data,
+				Principal principal) {
+			return CommandResult.success("Found 0 items", null);
+		}
+	}
+
+	@Test
+	public void streamingIsOptIn() throws Exception {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		Container container = mock(Container.class);
+		DataSource dataSource = mock(DataSource.class);
+		Connection connection = mock(Connection.class);
+		when(dataSource.getConnection()).thenReturn(connection);
+		when(container.createScope()).thenReturn(container);
+		when(response.getOutputStream()).thenReturn(new OutStream());
+		WireSerialization serialization = new SerializationMock();
+		ProcessingEngine engine = TestProcessingEngine.create(
+			container,
+			dataSource,
+			serialization,
+			new PermissionManagerMock(),
+			new StreamingLookup());
+
+		Utility.execute(engine, request, response, serialization, StreamingLookup.class, null);
+		when(request.getHeader("x-revenj-stream")).thenReturn("true");
+		when(request.getHeader("accept")).thenReturn("application/xml");
+		Utility.execute(engine, request, response, serialization, StreamingLookup.class, null);
+		verify(container, never()).registerInstance(eq(StreamingResult.Support.class), any(), anyBoolean());
+		verify(connection, never()).setAutoCommit(false);
+
+		when(request.getHeader("accept")).thenReturn("application/json");
+		Utility.execute(engine, request, response, serialization, StreamingLookup.class, null);
+		verify(container).registerInstance(eq(StreamingResult.Support.class), any(), eq(false));
+		verify(connection).setAutoCommit(false);
+		verify(connection).commit();
+	}
 }
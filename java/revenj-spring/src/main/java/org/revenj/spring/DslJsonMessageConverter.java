@@ -21,19 +21,6 @@ public class DslJsonMessageConverter extends AbstractGenericHttpMessageConverter
 		this.serializer = serializer;
 	}
 
-	private static final ThreadLocal<JsonWriter> threadWriter = new ThreadLocal<JsonWriter>() {
-		@Override
-		protected JsonWriter initialValue() {
-			return new JsonWriter();
-		}
-	};
-	private static final ThreadLocal<byte[]> threadBuffer = new ThreadLocal<byte[]>() {
-		@Override
-		protected byte[] initialValue() {
-			return new byte[65536];
-		}
-	};
-
 	public boolean canRead(Class<?> clazz, MediaType mediaType) {
 		return serializer.canDeserialize(clazz) && canRead(mediaType);
 	}
@@ -55,18 +42,31 @@ public class DslJsonMessageConverter extends AbstractGenericHttpMessageConverter
 	}
 
 	protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException, HttpMessageNotReadableException {
-		return serializer.deserialize(clazz, inputMessage.getBody(), threadBuffer.get());
+		byte[] buffer = serializer.acquireBuffer();
+		try {
+			return serializer.deserialize(clazz, inputMessage.getBody(), buffer);
+		} finally {
+			serializer.releaseBuffer(buffer);
+		}
 	}
 
 	public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException, HttpMessageNotReadableException {
-		return serializer.deserialize(type, inputMessage.getBody(), threadBuffer.get());
+		byte[] buffer = serializer.acquireBuffer();
+		try {
+			return serializer.deserialize(type, inputMessage.getBody(), buffer);
+		} finally {
+			serializer.releaseBuffer(buffer);
+		}
 	}
 
 	protected void writeInternal(Object instance, Type type, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
-		JsonWriter writer = threadWriter.get();
-		writer.reset();
-		serializer.serialize(writer, type, instance);
-		writer.toStream(outputMessage.getBody());
+		JsonWriter writer = serializer.acquireWriter();
+		try {
+			serializer.serialize(writer, type, instance);
+			writer.toStream(outputMessage.getBody());
+		} finally {
+			serializer.releaseWriter(writer);
+		}
 	}
 
 	protected MediaType getDefaultContentType(Object object) throws IOException {
@@ -3,6 +3,7 @@ package org.revenj.spring;
 import org.revenj.patterns.DataSource;
 import org.revenj.patterns.Query;
 import org.revenj.patterns.ServiceLocator;
+import org.revenj.database.postgres.PreparedStatementCache;
 import org.revenj.database.postgres.QueryProvider;
 import org.revenj.database.postgres.jinq.RevenjQueryComposer;
 import org.revenj.database.postgres.jinq.RevenjQueryComposerCache;
@@ -16,12 +17,23 @@ final class JinqQueryProvider implements QueryProvider {
 	private final MetamodelUtil metamodel;
 	private final ClassLoader loader;
 	private final javax.sql.DataSource dataSource;
-	private final RevenjQueryComposerCache cachedQueries = new RevenjQueryComposerCache();
+	private final boolean binaryResults;
+	private final PreparedStatementCache statementCache;
+	private final RevenjQueryComposerCache cachedQueries;
 
-	public JinqQueryProvider(MetamodelUtil metamodel, ClassLoader loader, javax.sql.DataSource dataSource) {
+	public JinqQueryProvider(
+			MetamodelUtil metamodel,
+			ClassLoader loader,
+			javax.sql.DataSource dataSource,
+			boolean binaryResults,
+			PreparedStatementCache statementCache,
+			RevenjQueryComposerCache cachedQueries) {
 		this.metamodel = metamodel;
 		this.loader = loader;
 		this.dataSource = dataSource;
+		this.binaryResults = binaryResults;
+		this.statementCache = statementCache;
+		this.cachedQueries = cachedQueries;
 	}
 
 	public <T extends DataSource> Query<T> query(Connection connection, ServiceLocator locator, Class<T> manifest) {
@@ -33,7 +45,9 @@ final class JinqQueryProvider implements QueryProvider {
 				connection,
 				locator,
 				this::getConnection,
-				this::releaseConnection);
+				this::releaseConnection,
+				binaryResults,
+				statementCache);
 	}
 
 	private Connection getConnection() throws SQLException {
@@ -8,7 +8,9 @@ import org.revenj.serialization.json.DslJsonSerialization;
 import org.revenj.patterns.DataChangeNotification;
 import org.revenj.patterns.DataContext;
 import org.revenj.patterns.ServiceLocator;
+import org.revenj.database.postgres.PreparedStatementCache;
 import org.revenj.database.postgres.QueryProvider;
+import org.revenj.database.postgres.jinq.RevenjQueryComposerCache;
 import org.revenj.database.postgres.jinq.transform.MetamodelUtil;
 import org.revenj.security.PermissionManager;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -66,7 +68,15 @@ public class RevenjStartup {
 		MetamodelUtil metamodel = container.resolve(MetamodelUtil.class);
 		DataSource dataSource = container.resolve(DataSource.class);
 		ClassLoader loader = container.resolve(ClassLoader.class);
-		container.registerInstance(QueryProvider.class, new JinqQueryProvider(metamodel, loader, dataSource), false);
+		Properties properties = container.resolve(Properties.class);
+		boolean binaryResults = "binary".equals(properties.getProperty("revenj.resultFormat"));
+		PreparedStatementCache statementCache = container.tryResolve(PreparedStatementCache.class).orElse(PreparedStatementCache.DISABLED);
+		RevenjQueryComposerCache cachedQueries = RevenjQueryComposerCache.create(properties);
+		container.registerInstance(RevenjQueryComposerCache.class, cachedQueries, false);
+		container.registerInstance(
+				QueryProvider.class,
+				new JinqQueryProvider(metamodel, loader, dataSource, binaryResults, statementCache, cachedQueries),
+				false);
 	}
 
 	@Bean